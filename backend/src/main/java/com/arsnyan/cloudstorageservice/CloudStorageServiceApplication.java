@@ -2,8 +2,10 @@ package com.arsnyan.cloudstorageservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.boot.security.autoconfigure.UserDetailsServiceAutoConfiguration;
 
+@ConfigurationPropertiesScan
 @SpringBootApplication(exclude = UserDetailsServiceAutoConfiguration.class)
 public class CloudStorageServiceApplication {
     public static void main(String[] args) {
@@ -0,0 +1,145 @@
+package com.arsnyan.cloudstorageservice.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Small in-process LRU cache with a time-to-live per entry. Entries are evicted in
+ * least-recently-used order once their total weight exceeds {@code maxWeight}; without
+ * a weigher every entry weighs one, so the bound is simply the number of entries.
+ */
+public class BoundedLocalCache<K, V> {
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToLongBiFunction<K, V> weigher;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BoundedLocalCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, (key, value) -> 1, System::nanoTime);
+    }
+
+    public BoundedLocalCache(long maxWeight, Duration ttl, ToLongBiFunction<K, V> weigher) {
+        this(maxWeight, ttl, weigher, System::nanoTime);
+    }
+
+    BoundedLocalCache(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        this(maxEntries, ttl, (key, value) -> 1, nanoClock);
+    }
+
+    BoundedLocalCache(long maxWeight, Duration ttl, ToLongBiFunction<K, V> weigher, LongSupplier nanoClock) {
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+        this.weigher = weigher;
+        this.nanoClock = nanoClock;
+    }
+
+    public V get(K key) {
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry == null || entry.isExpired(nanoClock.getAsLong())) {
+                if (entry != null) {
+                    remove(key);
+                }
+                misses.increment();
+                return null;
+            }
+
+            hits.increment();
+            return entry.value();
+        }
+    }
+
+    public void put(K key, V value) {
+        var weight = weigher.applyAsLong(key, value);
+        if (weight > maxWeight) {
+            return;
+        }
+
+        synchronized (entries) {
+            var previous = entries.put(key, new Entry<>(value, weight, nanoClock.getAsLong() + ttlNanos));
+            totalWeight += weight - (previous != null ? previous.weight() : 0);
+
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            while (totalWeight > maxWeight && eldest.hasNext()) {
+                totalWeight -= eldest.next().getValue().weight();
+                eldest.remove();
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            remove(key);
+        }
+    }
+
+    public void invalidateIf(Predicate<K> predicate) {
+        synchronized (entries) {
+            var iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (predicate.test(entry.getKey())) {
+                    totalWeight -= entry.getValue().weight();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long weight() {
+        synchronized (entries) {
+            return totalWeight;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public double hitRatio() {
+        var hitCount = hitCount();
+        var total = hitCount + missCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private void remove(K key) {
+        var entry = entries.remove(key);
+        if (entry != null) {
+            totalWeight -= entry.weight();
+        }
+    }
+
+    private record Entry<V>(V value, long weight, long expiresAtNanos) {
+        boolean isExpired(long nowNanos) {
+            return nowNanos - expiresAtNanos >= 0;
+        }
+    }
+}
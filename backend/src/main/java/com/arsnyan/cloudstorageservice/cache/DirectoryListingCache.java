@@ -0,0 +1,328 @@
+package com.arsnyan.cloudstorageservice.cache;
+
+import com.arsnyan.cloudstorageservice.config.CacheProperties;
+import com.arsnyan.cloudstorageservice.dto.resource.ResourceGetInfoResponseDto;
+import com.arsnyan.cloudstorageservice.event.ChangeSource;
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.getParentFolder;
+import static com.arsnyan.cloudstorageservice.util.FileUtils.getResourceType;
+
+/**
+ * Two-level cache of folder listings: a bounded local LRU in front of Redis hashes keyed by
+ * user id and folder path. Every change to a user's objects invalidates the listings of the
+ * folders it touched, on this node directly and on the other nodes through a Redis channel.
+ * <p>
+ * A folder's listing is only written back to Redis if its version key did not change while
+ * the listing was loaded, so a concurrent write can't leave a stale listing behind.
+ */
+@Slf4j
+@Component
+public class DirectoryListingCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "storage:listing:invalidations";
+
+    private static final int GENERATION_STRIPES = 1024;
+    private static final String COMPLETE_MARKER_FIELD = "";
+    private static final String MESSAGE_SEPARATOR = "\0";
+    private static final RedisScript<Long> PUT_IF_VERSION_UNCHANGED = new DefaultRedisScript<>("""
+        local current = redis.call('GET', KEYS[2]) or ''
+        if current ~= ARGV[1] then return 0 end
+        redis.call('DEL', KEYS[1])
+        for i = 4, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end
+        redis.call('EXPIRE', KEYS[1], ARGV[2])
+        redis.call('SADD', KEYS[3], ARGV[3])
+        redis.call('EXPIRE', KEYS[3], ARGV[2])
+        return 1
+        """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final BoundedLocalCache<ListingKey, List<ResourceGetInfoResponseDto>> localCache;
+    // Invalidations per stripe of users, so one only cancels concurrent fills of the users sharing it
+    private final AtomicLongArray localGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter remoteErrors;
+
+    public DirectoryListingCache(
+        StringRedisTemplate redisTemplate,
+        MeterRegistry meterRegistry,
+        CacheProperties properties
+    ) {
+        var listing = properties.listing();
+        this.redisTemplate = redisTemplate;
+        this.enabled = listing.enabled();
+        this.ttl = listing.ttl();
+        this.localCache = new BoundedLocalCache<>(listing.local().maxEntries(), listing.local().ttl());
+
+        this.localHits = requestCounter(meterRegistry, "local", "hit");
+        this.localMisses = requestCounter(meterRegistry, "local", "miss");
+        this.remoteHits = requestCounter(meterRegistry, "redis", "hit");
+        this.remoteMisses = requestCounter(meterRegistry, "redis", "miss");
+        this.remoteErrors = requestCounter(meterRegistry, "redis", "error");
+        Gauge.builder("storage.listing.cache.local.size", localCache, BoundedLocalCache::size)
+            .register(meterRegistry);
+    }
+
+    public List<ResourceGetInfoResponseDto> getOrLoad(Long userId, String folderPath,
+                                                      Supplier<List<ResourceGetInfoResponseDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        var key = new ListingKey(userId, folderPath);
+        var localGeneration = localGenerations.get(stripe(userId));
+
+        var cached = localCache.get(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+        localMisses.increment();
+
+        var remote = readRemote(key);
+        if (remote != null && remote.listing() != null) {
+            remoteHits.increment();
+            putLocal(key, remote.listing(), localGeneration);
+            return remote.listing();
+        }
+        remoteMisses.increment();
+
+        var listing = loader.get();
+        if (remote != null) {
+            writeRemote(key, listing, remote.version());
+        }
+        putLocal(key, listing, localGeneration);
+
+        return listing;
+    }
+
+    @EventListener
+    public void onStorageChange(StorageChangeEvent event) {
+        if (!enabled || event.changes().isEmpty()) {
+            return;
+        }
+
+        var folders = new LinkedHashSet<String>();
+        var subtrees = new LinkedHashSet<String>();
+
+        for (var change : event.changes()) {
+            var parent = getParentFolder(change.path());
+            folders.add(parent);
+
+            if (change.isFolder() && change.type() == ChangeType.REMOVED) {
+                subtrees.add(change.path());
+            }
+
+            // Writes outside the application may create or drop implicit folders on the way up
+            if (event.source() == ChangeSource.BUCKET_NOTIFICATION) {
+                while (!parent.isEmpty()) {
+                    parent = getParentFolder(parent);
+                    folders.add(parent);
+                }
+            }
+        }
+
+        invalidate(event.userId(), folders, subtrees);
+    }
+
+    public void invalidate(Long userId, Collection<String> folders, Collection<String> subtrees) {
+        invalidateLocal(userId, folders, subtrees);
+
+        try {
+            var keysToDrop = new LinkedHashSet<>(folders);
+            if (!subtrees.isEmpty()) {
+                var cachedFolders = redisTemplate.opsForSet().members(indexKey(userId));
+                if (cachedFolders != null) {
+                    cachedFolders.stream()
+                        .filter(folder -> subtrees.stream().anyMatch(folder::startsWith))
+                        .forEach(keysToDrop::add);
+                }
+            }
+
+            redisTemplate.executePipelined(new SessionCallback<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(@NonNull RedisOperations<K, V> operations) throws DataAccessException {
+                    var ops = (RedisOperations<String, String>) operations;
+                    for (var folder : keysToDrop) {
+                        ops.delete(listingKey(userId, folder));
+                        ops.opsForValue().increment(versionKey(userId, folder));
+                        ops.expire(versionKey(userId, folder), ttl.multipliedBy(2));
+                    }
+                    ops.opsForSet().remove(indexKey(userId), keysToDrop.toArray());
+                    return null;
+                }
+            });
+
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, encodeMessage(userId, folders, subtrees));
+        } catch (DataAccessException e) {
+            remoteErrors.increment();
+            log.warn("Failed to invalidate cached listings of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        var parts = new String(message.getBody(), StandardCharsets.UTF_8).split(MESSAGE_SEPARATOR, -1);
+        var userId = Long.valueOf(parts[0]);
+        var folders = new ArrayList<String>();
+        var subtrees = new ArrayList<String>();
+
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].isEmpty()) continue;
+
+            var path = parts[i].substring(1);
+            if (parts[i].charAt(0) == '*') {
+                subtrees.add(path);
+            } else {
+                folders.add(path);
+            }
+        }
+
+        invalidateLocal(userId, folders, subtrees);
+    }
+
+    private void invalidateLocal(Long userId, Collection<String> folders, Collection<String> subtrees) {
+        localGenerations.incrementAndGet(stripe(userId));
+        localCache.invalidateIf(key -> key.userId().equals(userId)
+            && (folders.contains(key.folderPath()) || subtrees.stream().anyMatch(key.folderPath()::startsWith)));
+    }
+
+    private void putLocal(ListingKey key, List<ResourceGetInfoResponseDto> listing, long generation) {
+        if (localGenerations.get(stripe(key.userId())) == generation) {
+            localCache.put(key, listing);
+        }
+    }
+
+    private static int stripe(Long userId) {
+        return Math.floorMod(userId.hashCode(), GENERATION_STRIPES);
+    }
+
+    private RemoteListing readRemote(ListingKey key) {
+        try {
+            var results = redisTemplate.executePipelined(new SessionCallback<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(@NonNull RedisOperations<K, V> operations) throws DataAccessException {
+                    var ops = (RedisOperations<String, String>) operations;
+                    ops.opsForHash().entries(listingKey(key.userId(), key.folderPath()));
+                    ops.opsForValue().get(versionKey(key.userId(), key.folderPath()));
+                    return null;
+                }
+            });
+
+            var fields = (Map<?, ?>) results.get(0);
+            var version = results.get(1) != null ? results.get(1).toString() : "";
+
+            if (fields == null || !fields.containsKey(COMPLETE_MARKER_FIELD)) {
+                return new RemoteListing(null, version);
+            }
+
+            var listing = fields.entrySet().stream()
+                .filter(entry -> !COMPLETE_MARKER_FIELD.equals(entry.getKey()))
+                .map(entry -> {
+                    var name = entry.getKey().toString();
+                    return new ResourceGetInfoResponseDto(
+                        key.folderPath(),
+                        name,
+                        Long.valueOf(entry.getValue().toString()),
+                        getResourceType(name)
+                    );
+                })
+                .sorted(Comparator.comparing(ResourceGetInfoResponseDto::name))
+                .toList();
+
+            return new RemoteListing(listing, version);
+        } catch (DataAccessException e) {
+            remoteErrors.increment();
+            log.warn("Failed to read cached listing of {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRemote(ListingKey key, List<ResourceGetInfoResponseDto> listing, String expectedVersion) {
+        var args = new ArrayList<String>(listing.size() * 2 + 5);
+        args.add(expectedVersion);
+        args.add(Long.toString(ttl.toSeconds()));
+        args.add(key.folderPath());
+        args.add(COMPLETE_MARKER_FIELD);
+        args.add("");
+        for (var entry : listing) {
+            args.add(entry.name());
+            args.add(Long.toString(entry.size() != null ? entry.size() : 0));
+        }
+
+        try {
+            redisTemplate.execute(
+                PUT_IF_VERSION_UNCHANGED,
+                List.of(
+                    listingKey(key.userId(), key.folderPath()),
+                    versionKey(key.userId(), key.folderPath()),
+                    indexKey(key.userId())
+                ),
+                args.toArray()
+            );
+        } catch (DataAccessException e) {
+            remoteErrors.increment();
+            log.warn("Failed to cache listing of {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static String encodeMessage(Long userId, Collection<String> folders, Collection<String> subtrees) {
+        var message = new StringBuilder().append(userId);
+        folders.forEach(folder -> message.append(MESSAGE_SEPARATOR).append('=').append(folder));
+        subtrees.forEach(subtree -> message.append(MESSAGE_SEPARATOR).append('*').append(subtree));
+        return message.toString();
+    }
+
+    // Hash tags keep all keys of one user in the same cluster slot, which the put script needs
+    private static String listingKey(Long userId, String folderPath) {
+        return "storage:listing:{%d}:%s".formatted(userId, folderPath);
+    }
+
+    private static String versionKey(Long userId, String folderPath) {
+        return "storage:listing-version:{%d}:%s".formatted(userId, folderPath);
+    }
+
+    private static String indexKey(Long userId) {
+        return "storage:listing-index:{%d}".formatted(userId);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String level, String result) {
+        return Counter.builder("storage.listing.cache.requests")
+            .tag("level", level)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private record ListingKey(Long userId, String folderPath) {}
+
+    private record RemoteListing(List<ResourceGetInfoResponseDto> listing, String version) {}
+}
@@ -0,0 +1,84 @@
+package com.arsnyan.cloudstorageservice.cache;
+
+import io.minio.StatObjectResponse;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Object stats by key, kept on each node. Invalidated keys are dropped locally and sent to the
+ * other nodes over a Redis channel, since a write through one node would otherwise leave the others
+ * serving the stat of a replaced or removed object until it expires.
+ */
+@Slf4j
+public class ObjectStatCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "storage:object-stat:invalidations";
+
+    private static final String MESSAGE_SEPARATOR = "\0";
+
+    private final BoundedLocalCache<String, StatObjectResponse> cache;
+    private final StringRedisTemplate redisTemplate;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param redisTemplate channel to the other nodes, or {@code null} for a single node
+     */
+    public ObjectStatCache(BoundedLocalCache<String, StatObjectResponse> cache, StringRedisTemplate redisTemplate) {
+        this.cache = cache;
+        this.redisTemplate = redisTemplate;
+    }
+
+    public StatObjectResponse get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Counts invalidations; pass the value read before loading a stat to {@link #put}.
+     */
+    public long generation() {
+        return invalidations.get();
+    }
+
+    // A write that raced with the load may already have invalidated the key
+    public void put(String key, StatObjectResponse stat, long generation) {
+        if (invalidations.get() == generation) {
+            cache.put(key, stat);
+        }
+    }
+
+    public void invalidate(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        invalidateLocal(keys);
+        if (redisTemplate == null) {
+            return;
+        }
+
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join(MESSAGE_SEPARATOR, keys));
+        } catch (DataAccessException e) {
+            // Other nodes fall back to the TTL
+            log.warn("Failed to broadcast invalidation of {} object stats: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        invalidateLocal(List.of(new String(message.getBody(), StandardCharsets.UTF_8).split(MESSAGE_SEPARATOR)));
+    }
+
+    private void invalidateLocal(Collection<String> keys) {
+        invalidations.incrementAndGet();
+        keys.forEach(cache::invalidate);
+    }
+}
@@ -0,0 +1,53 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties("app.archive")
+public record ArchiveProperties(
+    @DefaultValue Stored stored,
+    @DefaultValue Browse browse,
+    @DefaultValue Extract extract
+) {
+    /**
+     * Folder downloads stored uncompressed, so they have a known length and can be resumed.
+     *
+     * @param maxChecksumBytes CRCs not known yet computed before a download starts; beyond that
+     *                         the archive is deflated instead
+     */
+    public record Stored(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("128MB") DataSize maxChecksumBytes
+    ) {
+    }
+
+    /**
+     * Central directories of stored ZIP files, cached while browsing them.
+     */
+    public record Browse(
+        @DefaultValue("32MB") DataSize cacheSize,
+        @DefaultValue("1h") Duration cacheTtl,
+        @DefaultValue("64MB") DataSize maxDirectorySize
+    ) {
+    }
+
+    /**
+     * Server-side extraction.
+     *
+     * @param smallFileSize files below it are uploaded in snowball batches of up to
+     *                      {@code batchSize} bytes, larger ones are streamed one by one
+     */
+    public record Extract(
+        @DefaultValue("1MB") DataSize smallFileSize,
+        @DefaultValue("16MB") DataSize batchSize,
+        @DefaultValue("500") int batchEntries,
+        @DefaultValue("100000") int maxEntries,
+        @DefaultValue("2") int workers,
+        @DefaultValue("20") int queueCapacity,
+        @DefaultValue("4") int uploadsPerJob
+    ) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import com.arsnyan.cloudstorageservice.cache.DirectoryListingCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class CacheConfig {
+    @Bean
+    @ConditionalOnProperty(name = "app.cache.listing.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer listingInvalidationListenerContainer(
+        RedisConnectionFactory connectionFactory,
+        DirectoryListingCache listingCache
+    ) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(listingCache, new ChannelTopic(DirectoryListingCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
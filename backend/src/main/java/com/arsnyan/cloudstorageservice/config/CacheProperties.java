@@ -0,0 +1,38 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties("app.cache")
+public record CacheProperties(
+    @DefaultValue Listing listing,
+    @DefaultValue ObjectStat objectStat
+) {
+    /**
+     * Folder listings, kept in Redis and in a local LRU in front of it.
+     */
+    public record Listing(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10m") Duration ttl,
+        @DefaultValue Local local
+    ) {
+        public record Local(
+            @DefaultValue("10000") int maxEntries,
+            @DefaultValue("30s") Duration ttl
+        ) {
+        }
+    }
+
+    /**
+     * Object metadata, kept locally and invalidated across instances.
+     */
+    public record ObjectStat(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("16MB") DataSize maxSize,
+        @DefaultValue("30s") Duration ttl
+    ) {
+    }
+}
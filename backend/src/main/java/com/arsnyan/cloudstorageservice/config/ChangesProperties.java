@@ -0,0 +1,20 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param settleDelay  how old a change has to be before a page includes it
+ * @param compactAfter how old a change superseded by a newer one of the same path gets before it is dropped
+ */
+@ConfigurationProperties("app.changes")
+public record ChangesProperties(
+    @DefaultValue("1000") int pageSize,
+    @DefaultValue("2s") Duration settleDelay,
+    @DefaultValue("1d") Duration compactAfter,
+    @DefaultValue("30d") Duration retention,
+    @DefaultValue("PT1H") Duration compactionInterval
+) {
+}
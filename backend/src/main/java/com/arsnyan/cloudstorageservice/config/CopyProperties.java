@@ -0,0 +1,16 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param workers               CopyObject calls in flight across the instance
+ * @param parallelismPerRequest CopyObject calls in flight for one request
+ */
+@ConfigurationProperties("app.copy")
+public record CopyProperties(
+    @DefaultValue("16") int workers,
+    @DefaultValue("8") int parallelismPerRequest,
+    @DefaultValue("500") int folderBatchSize
+) {
+}
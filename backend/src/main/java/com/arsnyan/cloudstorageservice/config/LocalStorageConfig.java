@@ -0,0 +1,23 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import com.arsnyan.cloudstorageservice.util.FileSystemS3Client;
+import com.arsnyan.cloudstorageservice.util.InMemoryS3Client;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LocalStorageConfig {
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "memory")
+    public InMemoryS3Client inMemoryS3Client() {
+        return new InMemoryS3Client();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "filesystem")
+    public FileSystemS3Client fileSystemS3Client(StorageProperties properties) {
+        var filesystem = properties.filesystem();
+        return new FileSystemS3Client(filesystem.rootDir(), filesystem.mmapThreshold().toBytes());
+    }
+}
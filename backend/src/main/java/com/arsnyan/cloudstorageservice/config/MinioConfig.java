@@ -1,55 +1,242 @@
 package com.arsnyan.cloudstorageservice.config;
 
+import com.arsnyan.cloudstorageservice.cache.BoundedLocalCache;
+import com.arsnyan.cloudstorageservice.cache.ObjectStatCache;
+import com.arsnyan.cloudstorageservice.event.BucketNotificationListener;
 import com.arsnyan.cloudstorageservice.exception.ServerErrorException;
+import com.arsnyan.cloudstorageservice.repository.BucketEventRepository;
+import com.arsnyan.cloudstorageservice.repository.StoragePlacementRepository;
+import com.arsnyan.cloudstorageservice.repository.StorageRebalanceRepository;
+import com.arsnyan.cloudstorageservice.storage.*;
 import com.arsnyan.cloudstorageservice.util.MinioS3Client;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
+import io.minio.StatObjectResponse;
 import io.minio.errors.MinioException;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 @Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "minio", matchIfMissing = true)
 public class MinioConfig {
-    @Value("${app.minio.endpoint-url}")
-    private String endpointUrl;
+    private final MinioProperties properties;
+    private final CacheProperties cacheProperties;
+    private final String applicationName;
 
-    @Value("${app.minio.credentials.access-key}")
-    private String accessKey;
-
-    @Value("${app.minio.credentials.secret-key}")
-    private String secretKey;
+    public MinioConfig(
+        MinioProperties properties,
+        CacheProperties cacheProperties,
+        @Value("${spring.application.name:cloud-storage-service}") String applicationName
+    ) {
+        this.properties = properties;
+        this.cacheProperties = cacheProperties;
+        this.applicationName = applicationName;
+    }
 
-    @Value("${app.minio.root-bucket-name}")
-    private String rootBucket;
+    @Bean
+    public MinioClient minioClient(MeterRegistry meterRegistry) {
+        var credentials = properties.credentials();
+        var minioClient = createClient(
+            ShardRegistry.DEFAULT_SHARD, properties.endpointUrl(), properties.nodes(), credentials.accessKey(),
+            credentials.secretKey(), meterRegistry
+        );
+        createBucketIfMissing(minioClient, properties.rootBucketName());
+        return minioClient;
+    }
 
     @Bean
-    public MinioClient minioClient() {
-        try {
-            var minioClient = MinioClient.builder()
-                .endpoint(endpointUrl)
-                .credentials(accessKey, secretKey)
-                .build();
+    public ShardRegistry shardRegistry(MinioClient minioClient, MeterRegistry meterRegistry) {
+        var endpointUrl = properties.endpointUrl();
+        var accessKey = properties.credentials().accessKey();
+        var secretKey = properties.credentials().secretKey();
+
+        var shards = new ArrayList<StorageShard>();
+        shards.add(new StorageShard(
+            ShardRegistry.DEFAULT_SHARD, minioClient, properties.rootBucketName(), properties.placement().defaultWeight()
+        ));
 
-            var rootPathExists = minioClient.bucketExists(BucketExistsArgs.builder().bucket(rootBucket).build());
+        // Shards on the same deployment share a client, which also lets the rebalancer copy server-side
+        var clients = new HashMap<List<String>, MinioClient>();
+        clients.put(List.of(endpointUrl, accessKey), minioClient);
 
-            if (!rootPathExists) {
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(rootBucket).build());
+        properties.shards().forEach((name, shard) -> {
+            if (shard.bucket() == null) {
+                throw new IllegalArgumentException("Storage shard " + name + " needs a bucket");
             }
 
-            return minioClient;
+            var endpoint = shard.endpointUrl() != null ? shard.endpointUrl() : endpointUrl;
+            var endpointNodes = shard.endpointUrl() == null ? properties.nodes()
+                : shard.nodes() != null ? shard.nodes() : List.<String>of();
+            var key = shard.accessKey() != null ? shard.accessKey() : accessKey;
+            var secret = shard.secretKey() != null ? shard.secretKey() : secretKey;
+
+            var client = clients.computeIfAbsent(List.of(endpoint, key), k ->
+                createClient(name, endpoint, endpointNodes, key, secret, meterRegistry)
+            );
+            createBucketIfMissing(client, shard.bucket());
+
+            var weight = shard.weight() != null ? shard.weight() : 1;
+            shards.add(new StorageShard(name, client, shard.bucket(), weight));
+        });
+
+        return new ShardRegistry(shards);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PlacementStrategy placementStrategy(ShardRegistry shardRegistry) {
+        return new ConsistentHashPlacementStrategy(shardRegistry.shards(), properties.placement().pointsPerWeight());
+    }
+
+    @Bean
+    public ShardRouter shardRouter(ShardRegistry shardRegistry, PlacementStrategy placementStrategy,
+                                   StoragePlacementRepository placementRepository) {
+        var placement = properties.placement();
+        return new ShardRouter(
+            shardRegistry, placementStrategy, placementRepository, placement.cacheSize(), placement.cacheTtl()
+        );
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardRegistry shardRegistry, ShardRouter shardRouter,
+                                           StoragePlacementRepository placementRepository,
+                                           StorageRebalanceRepository rebalanceRepository) {
+        var rebalance = properties.rebalance();
+        return new ShardRebalancer(
+            shardRegistry, shardRouter, placementRepository, rebalanceRepository, rebalance.batchSize(),
+            properties.placement().cacheTtl(), rebalance.lease()
+        );
+    }
+
+    @Bean
+    public ResilientReads resilientReads(MeterRegistry meterRegistry) {
+        var resilience = properties.resilience();
+        var hedging = resilience.hedging();
+        var circuit = resilience.circuit();
+        return new ResilientReads(
+            resilience.maxAttempts(),
+            resilience.backoff(),
+            resilience.maxBackoff(),
+            hedging.enabled(),
+            hedging.percentile(),
+            hedging.minDelay(),
+            shard -> new CircuitBreaker(
+                circuit.window(), circuit.minimumCalls(), circuit.failureRate(), circuit.openDuration()
+            ),
+            meterRegistry
+        );
+    }
+
+    @Bean
+    public ObjectStatCache objectStatCache(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        var settings = cacheProperties.objectStat();
+        var statCache = new BoundedLocalCache<String, StatObjectResponse>(
+            settings.enabled() ? settings.maxSize().toBytes() : 0,
+            settings.ttl(),
+            MinioConfig::estimateStatSize
+        );
+
+        FunctionCounter.builder("storage.object-stat.cache.requests", statCache, BoundedLocalCache::hitCount)
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("storage.object-stat.cache.requests", statCache, BoundedLocalCache::missCount)
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("storage.object-stat.cache.hit-ratio", statCache, BoundedLocalCache::hitRatio)
+            .register(meterRegistry);
+        Gauge.builder("storage.object-stat.cache.size", statCache, BoundedLocalCache::weight)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+
+        return new ObjectStatCache(statCache, redisTemplate);
+    }
+
+    // Writes through another node, and bucket notifications applied by whichever node holds the checkpoint, reach this one here
+    @Bean
+    @ConditionalOnProperty(name = "app.cache.object-stat.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer objectStatInvalidationListenerContainer(
+        RedisConnectionFactory connectionFactory,
+        ObjectStatCache objectStatCache
+    ) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(objectStatCache, new ChannelTopic(ObjectStatCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    @Bean
+    public MinioS3Client s3Client(ShardRouter shardRouter, ResilientReads resilientReads, ObjectStatCache objectStatCache) {
+        return new MinioS3Client(shardRouter, resilientReads, objectStatCache);
+    }
+
+    private MinioClient createClient(String name, String endpoint, List<String> nodes, String accessKey,
+                                     String secretKey, MeterRegistry meterRegistry) {
+        var builder = MinioClient.builder()
+            .endpoint(endpoint)
+            .credentials(accessKey, secretKey);
+
+        if (nodes.size() > 1) {
+            var balancing = properties.balancing();
+            var balancer = new EndpointBalancer(
+                name, nodes, balancing.maxAttempts(), balancing.failureThreshold(), balancing.ejection(), meterRegistry
+            );
+            // The same timeouts as MinIO's own client, except that a dead node is given up on quickly
+            builder.httpClient(new OkHttpClient.Builder()
+                .connectTimeout(balancing.connectTimeout())
+                .writeTimeout(Duration.ofMinutes(5))
+                .readTimeout(Duration.ofMinutes(5))
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .addInterceptor(balancer)
+                .build());
+        }
+
+        var minioClient = builder.build();
+        // Bucket notifications recognise the application's own writes by this user agent
+        minioClient.setAppInfo(applicationName, "1.0");
+
+        return minioClient;
+    }
+
+    private static void createBucketIfMissing(MinioClient minioClient, String bucket) {
+        try {
+            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
+                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+            }
         } catch (MinioException | IOException | NoSuchAlgorithmException | InvalidKeyException e) {
             throw new ServerErrorException("Minio Error", e);
         }
     }
 
+    // Approximate heap footprint: the key, the response headers and a fixed overhead for the objects
+    private static long estimateStatSize(String key, StatObjectResponse stat) {
+        return 2L * key.length() + stat.headers().byteCount() + 256;
+    }
+
     @Bean
-    public MinioS3Client s3Client(MinioClient minioClient) {
-        return new MinioS3Client(minioClient);
+    @ConditionalOnProperty(name = "app.minio.notifications.enabled", havingValue = "true", matchIfMissing = true)
+    public BucketNotificationListener bucketNotificationListener(ShardRegistry shardRegistry,
+                                                                 BucketEventRepository bucketEventRepository) {
+        return new BucketNotificationListener(shardRegistry.shards(), bucketEventRepository, applicationName);
     }
 }
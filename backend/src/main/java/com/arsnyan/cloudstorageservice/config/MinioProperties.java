@@ -0,0 +1,117 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @param nodes  nodes of a distributed deployment behind {@code endpointUrl}, to balance requests over
+ * @param shards shards besides the root bucket, which is the one named "default"
+ */
+@ConfigurationProperties("app.minio")
+public record MinioProperties(
+    String endpointUrl,
+    Credentials credentials,
+    @DefaultValue List<String> nodes,
+    String rootBucketName,
+    @DefaultValue Map<String, Shard> shards,
+    @DefaultValue Notifications notifications,
+    @DefaultValue Balancing balancing,
+    @DefaultValue Resilience resilience,
+    @DefaultValue Placement placement,
+    @DefaultValue Rebalance rebalance
+) {
+    public record Credentials(String accessKey, String secretKey) {
+    }
+
+    /**
+     * Endpoint and credentials default to those of the root bucket, so a shard can be just another
+     * bucket on the same deployment. A shard with an endpoint of its own lists that deployment's
+     * nodes separately.
+     */
+    public record Shard(String bucket, String endpointUrl, List<String> nodes, String accessKey, String secretKey,
+                        Integer weight) {
+    }
+
+    /**
+     * Bucket notifications, recorded in the database and applied in batches.
+     *
+     * @param settleDelay how old an event has to be before it is applied, since a lower event id
+     *                    can commit after a higher one
+     * @param retention   how long applied events are kept
+     */
+    public record Notifications(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("PT1S") Duration pollInterval,
+        @DefaultValue("5s") Duration settleDelay,
+        @DefaultValue("7d") Duration retention
+    ) {
+    }
+
+    /**
+     * Balancing of requests over {@code nodes}.
+     *
+     * @param ejection how long a node that failed {@code failureThreshold} times in a row is left out
+     */
+    public record Balancing(
+        @DefaultValue("2") int maxAttempts,
+        @DefaultValue("3") int failureThreshold,
+        @DefaultValue("15s") Duration ejection,
+        @DefaultValue("2s") Duration connectTimeout
+    ) {
+    }
+
+    /**
+     * Retries, hedging and circuit breaking of reads.
+     */
+    public record Resilience(
+        @DefaultValue("3") int maxAttempts,
+        @DefaultValue("50ms") Duration backoff,
+        @DefaultValue("1s") Duration maxBackoff,
+        @DefaultValue Hedging hedging,
+        @DefaultValue Circuit circuit
+    ) {
+        /**
+         * @param percentile a read slower than this percentile of recent reads is sent again
+         */
+        public record Hedging(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("0.95") double percentile,
+            @DefaultValue("20ms") Duration minDelay
+        ) {
+        }
+
+        public record Circuit(
+            @DefaultValue("50") int window,
+            @DefaultValue("20") int minimumCalls,
+            @DefaultValue("0.5") double failureRate,
+            @DefaultValue("10s") Duration openDuration
+        ) {
+        }
+    }
+
+    /**
+     * @param defaultWeight weight of the root bucket's shard
+     * @param cacheTtl      how long an instance may keep routing a user by a cached shard
+     */
+    public record Placement(
+        @DefaultValue("1") int defaultWeight,
+        @DefaultValue("128") int pointsPerWeight,
+        @DefaultValue("100000") int cacheSize,
+        @DefaultValue("1m") Duration cacheTtl
+    ) {
+    }
+
+    /**
+     * @param lease how long a rebalance may go unreported before another instance may take it over
+     */
+    public record Rebalance(
+        @DefaultValue("100") int batchSize,
+        @DefaultValue("5m") Duration lease
+    ) {
+    }
+}
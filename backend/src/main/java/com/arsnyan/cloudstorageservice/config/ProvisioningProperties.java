@@ -0,0 +1,15 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param batchSize         users hashed and inserted per transaction
+ * @param folderConcurrency root folders of new users created at once
+ */
+@ConfigurationProperties("app.users.provisioning")
+public record ProvisioningProperties(
+    @DefaultValue("500") int batchSize,
+    @DefaultValue("32") int folderConcurrency
+) {
+}
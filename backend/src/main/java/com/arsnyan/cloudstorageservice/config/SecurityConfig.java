@@ -1,10 +1,18 @@
 package com.arsnyan.cloudstorageservice.config;
 
+import com.arsnyan.cloudstorageservice.model.Role;
+import com.arsnyan.cloudstorageservice.security.BoundedPasswordEncoder;
+import com.arsnyan.cloudstorageservice.security.CompactSessionSerializer;
+import com.arsnyan.cloudstorageservice.security.TokenAuthenticationFilter;
+import com.arsnyan.cloudstorageservice.security.TokenService;
 import com.arsnyan.cloudstorageservice.service.impl.CustomUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
@@ -13,10 +21,14 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 import org.springframework.web.cors.CorsConfiguration;
@@ -24,45 +36,56 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
-@EnableRedisHttpSession
 @RequiredArgsConstructor
 public class SecurityConfig {
-    @Value("${app.security.allowed-origins}")
-    private List<String> allowedOrigins;
-
+    private final SecurityProperties properties;
     private final CustomUserDetailsService customUserDetailsService;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, ObjectProvider<TokenService> tokenService) {
         http
             .csrf(AbstractHttpConfigurer::disable) // for dev build only
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .authorizeHttpRequests(authorize -> authorize
-                .requestMatchers("/api/auth/sign-in", "/api/auth/sign-up", "/actuator/health").permitAll()
+                .requestMatchers("/api/auth/sign-in", "/api/auth/sign-up", "/api/auth/refresh", "/actuator/health").permitAll()
+                .requestMatchers("/api/admin/**").hasAuthority(Role.ADMIN.name())
                 .anyRequest().authenticated()
             )
-            .sessionManagement(session -> session
+            .securityContext(context -> context
+                .securityContextRepository(securityContextRepository()));
+
+        if (isTokenMode()) {
+            http
+                .sessionManagement(session -> session
+                    .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService.getObject()),
+                    UsernamePasswordAuthenticationFilter.class);
+        } else {
+            http.sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED)
                 .sessionConcurrency(sessionConcurrency -> sessionConcurrency
                     .maximumSessions(4))
-            )
-            .securityContext(context -> context
-                .securityContextRepository(securityContextRepository()));
+            );
+        }
+
         return http.build();
     }
 
     @Bean
     public SecurityContextRepository securityContextRepository() {
-        return new HttpSessionSecurityContextRepository();
+        return isTokenMode()
+            ? new RequestAttributeSecurityContextRepository()
+            : new HttpSessionSecurityContextRepository();
     }
 
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         var config = new CorsConfiguration();
-        config.setAllowedOrigins(allowedOrigins);
+        config.setAllowedOrigins(properties.allowedOrigins());
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT,
             HttpHeaders.CONTENT_DISPOSITION, "X-Requested-With", HttpHeaders.AUTHORIZATION));
@@ -74,14 +97,38 @@ public class SecurityConfig {
     }
 
     @Bean
-    public AuthenticationManager authenticationManager() {
+    public AuthenticationManager authenticationManager(PasswordEncoder passwordEncoder) {
         var authProvider = new DaoAuthenticationProvider(customUserDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Rehashes passwords stored with an outdated algorithm or strength on successful sign-in
+        authProvider.setUserDetailsPasswordService(customUserDetailsService);
         return new ProviderManager(authProvider);
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        var hashing = properties.passwordHashing();
+        var encoder = new DelegatingPasswordEncoder(
+            "bcrypt", Map.of("bcrypt", new BCryptPasswordEncoder(hashing.bcryptStrength()))
+        );
+        encoder.setDefaultPasswordEncoderForMatches(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+
+        var threads = hashing.threads() > 0 ? hashing.threads() : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(encoder, threads, hashing.queueCapacity(), hashing.timeout(), meterRegistry);
+    }
+
+    private boolean isTokenMode() {
+        return "token".equals(properties.mode());
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.security.mode", havingValue = "session", matchIfMissing = true)
+    @EnableRedisHttpSession
+    static class SessionConfig {
+        // Picked up by Spring Session by name in place of JDK serialization
+        @Bean
+        public RedisSerializer<Object> springSessionDefaultRedisSerializer(MeterRegistry meterRegistry) {
+            return new CompactSessionSerializer(meterRegistry);
+        }
     }
 }
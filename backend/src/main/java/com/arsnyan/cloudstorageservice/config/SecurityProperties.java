@@ -0,0 +1,42 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param mode "session" keeps the security context in Redis-backed sessions, "token" uses signed bearer tokens
+ */
+@ConfigurationProperties("app.security")
+public record SecurityProperties(
+    @DefaultValue("session") String mode,
+    List<String> allowedOrigins,
+    @DefaultValue PasswordHashing passwordHashing,
+    @DefaultValue Token token
+) {
+    /**
+     * Hashing runs on a pool of its own.
+     *
+     * @param threads 0 for one per CPU
+     */
+    public record PasswordHashing(
+        @DefaultValue("10") int bcryptStrength,
+        @DefaultValue("0") int threads,
+        @DefaultValue("64") int queueCapacity,
+        @DefaultValue("5s") Duration timeout
+    ) {
+    }
+
+    /**
+     * @param secret Base64-encoded HMAC key of at least 32 bytes, shared by all instances
+     */
+    public record Token(
+        String secret,
+        @DefaultValue("5m") Duration accessTtl,
+        @DefaultValue("14d") Duration refreshTtl,
+        @DefaultValue("PT15S") Duration revocationSyncInterval
+    ) {
+    }
+}
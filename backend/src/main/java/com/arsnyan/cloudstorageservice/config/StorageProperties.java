@@ -0,0 +1,45 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.boot.context.properties.bind.Name;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @param backend minio, filesystem or memory
+ */
+@ConfigurationProperties("app.storage")
+public record StorageProperties(
+    @DefaultValue("minio") String backend,
+    @DefaultValue Filesystem filesystem,
+    @DefaultValue Quota quota,
+    @DefaultValue Usage usage
+) {
+    /**
+     * @param mmapThreshold files larger than this are read through a memory mapping
+     */
+    public record Filesystem(
+        @DefaultValue("./storage") Path rootDir,
+        @DefaultValue("4MB") DataSize mmapThreshold
+    ) {
+    }
+
+    /**
+     * @param reservationTimeout how old a reservation that was never given back gets before
+     *                           reconciliation drops it
+     */
+    public record Quota(
+        @DefaultValue("true") boolean enabled,
+        @Name("default") @DefaultValue("10GB") DataSize defaultQuota,
+        @DefaultValue("PT24H") Duration reservationTimeout
+    ) {
+    }
+
+    public record Usage(
+        @DefaultValue("PT6H") Duration reconciliationInterval
+    ) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * @param sizes            edges a requested size is rounded up to
+ * @param pregeneratedSize the size made in the background on upload
+ */
+@ConfigurationProperties("app.thumbnails")
+public record ThumbnailProperties(
+    @DefaultValue({"128", "256", "512"}) List<Integer> sizes,
+    @DefaultValue("256") int pregeneratedSize,
+    @DefaultValue("30MB") DataSize maxSourceSize,
+    @DefaultValue("100000000") long maxSourcePixels,
+    @DefaultValue("2") int workers,
+    @DefaultValue("1000") int queueCapacity
+) {
+}
@@ -0,0 +1,71 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import com.arsnyan.cloudstorageservice.repository.AuthSessionRepository;
+import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import com.arsnyan.cloudstorageservice.security.AccessTokenCodec;
+import com.arsnyan.cloudstorageservice.security.TokenRevocationList;
+import com.arsnyan.cloudstorageservice.security.TokenService;
+import com.arsnyan.cloudstorageservice.service.impl.CustomUserDetailsService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.security.mode", havingValue = "token")
+public class TokenAuthenticationConfig {
+    private final String secret;
+    private final Duration accessTokenTtl;
+    private final Duration refreshTokenTtl;
+
+    public TokenAuthenticationConfig(SecurityProperties properties) {
+        this.secret = properties.token().secret();
+        this.accessTokenTtl = properties.token().accessTtl();
+        this.refreshTokenTtl = properties.token().refreshTtl();
+    }
+
+    @Bean
+    public AccessTokenCodec accessTokenCodec() {
+        if (secret == null || secret.isBlank()) {
+            // Tokens won't survive a restart or work across instances, but local setups keep working
+            log.warn("app.security.token.secret is not set, signing access tokens with a random key");
+            var key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            return new AccessTokenCodec(key);
+        }
+
+        return new AccessTokenCodec(Base64.getDecoder().decode(secret));
+    }
+
+    @Bean
+    public TokenRevocationList tokenRevocationList(AuthSessionRepository authSessionRepository, MeterRegistry meterRegistry) {
+        var revocationList = new TokenRevocationList(authSessionRepository, accessTokenTtl, Clock.systemUTC());
+
+        Gauge.builder("security.token.revocations", revocationList, TokenRevocationList::size)
+            .description("Revoked sessions held in the local revocation list")
+            .register(meterRegistry);
+
+        return revocationList;
+    }
+
+    @Bean
+    public TokenService tokenService(
+        AuthSessionRepository authSessionRepository,
+        UserRepository userRepository,
+        CustomUserDetailsService customUserDetailsService,
+        AccessTokenCodec accessTokenCodec,
+        TokenRevocationList tokenRevocationList,
+        MeterRegistry meterRegistry
+    ) {
+        return new TokenService(authSessionRepository, userRepository, customUserDetailsService, accessTokenCodec,
+            tokenRevocationList, accessTokenTtl, refreshTokenTtl, Clock.systemUTC(), meterRegistry);
+    }
+}
@@ -0,0 +1,14 @@
+package com.arsnyan.cloudstorageservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("app.trash")
+public record TrashProperties(
+    @DefaultValue("30d") Duration retention,
+    @DefaultValue("PT1H") Duration purgeInterval,
+    @DefaultValue("100") int purgeBatchSize
+) {
+}
@@ -0,0 +1,124 @@
+package com.arsnyan.cloudstorageservice.controller;
+
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersRequestDto;
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersResponseDto;
+import com.arsnyan.cloudstorageservice.dto.admin.RebalanceStatusDto;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.service.UserService;
+import com.arsnyan.cloudstorageservice.storage.ShardRebalancer;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+    private final UserService userService;
+    // Only the MinIO backend has shards to balance
+    private final Optional<ShardRebalancer> shardRebalancer;
+
+    @PostMapping("/users")
+    @Operation(
+        summary = "Bulk user provisioning",
+        description = "Creates up to 5000 users at once, each with an empty root folder. Existing usernames are skipped"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Provisioning finished. Returns the number of created users and the skipped usernames",
+            content = @Content(schema = @Schema(implementation = ProvisionUsersResponseDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Validation error"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "User is not an administrator"
+        )
+    })
+    public ResponseEntity<@NonNull ProvisionUsersResponseDto> provisionUsers(
+        @RequestBody @Valid ProvisionUsersRequestDto dto
+    ) {
+        return ResponseEntity.ok(userService.provisionAccounts(dto));
+    }
+
+    @PostMapping("/storage/rebalance")
+    @Operation(
+        summary = "Start a storage rebalance",
+        description = "Moves users whose storage shard no longer matches the placement strategy, in the background"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "202",
+            description = "Rebalance started",
+            content = @Content(schema = @Schema(implementation = RebalanceStatusDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "User is not an administrator"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "The storage backend is not sharded"
+        ),
+        @ApiResponse(
+            responseCode = "409",
+            description = "A rebalance is already running"
+        )
+    })
+    public ResponseEntity<@NonNull RebalanceStatusDto> startRebalance() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(rebalancer().start());
+    }
+
+    @GetMapping("/storage/rebalance")
+    @Operation(
+        summary = "Storage rebalance progress",
+        description = "Progress of the running rebalance, or the outcome of the last one"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Rebalance status",
+            content = @Content(schema = @Schema(implementation = RebalanceStatusDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "403",
+            description = "User is not an administrator"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "The storage backend is not sharded"
+        )
+    })
+    public ResponseEntity<@NonNull RebalanceStatusDto> getRebalanceStatus() {
+        return ResponseEntity.ok(rebalancer().status());
+    }
+
+    private ShardRebalancer rebalancer() {
+        return shardRebalancer.orElseThrow(() -> new NoSuchEntityException("Storage rebalancing needs the MinIO backend"));
+    }
+}
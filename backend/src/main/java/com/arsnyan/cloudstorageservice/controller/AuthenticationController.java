@@ -1,5 +1,7 @@
 package com.arsnyan.cloudstorageservice.controller;
 
+import com.arsnyan.cloudstorageservice.dto.authentication.AuthTokensDto;
+import com.arsnyan.cloudstorageservice.dto.authentication.RefreshTokenRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserLoginRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserLoginResponseDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
@@ -38,7 +40,7 @@ public class AuthenticationController {
     @ApiResponses({
         @ApiResponse(
             responseCode = "200",
-            description = "Sign in successful. Returns username and makes a session token",
+            description = "Sign in successful. Returns username and makes a session token, or returns tokens in token mode",
             content = @Content(schema = @Schema(implementation = UserLoginResponseDto.class))
         ),
         @ApiResponse(
@@ -55,8 +57,31 @@ public class AuthenticationController {
         HttpServletRequest request,
         HttpServletResponse response
     ) {
-        authenticationService.login(dto.username(), dto.password(), request, response);
-        return ResponseEntity.ok(new UserLoginResponseDto(dto.username()));
+        return ResponseEntity.ok(authenticationService.login(dto.username(), dto.password(), request, response));
+    }
+
+    @PostMapping("/refresh")
+    @Operation(
+        summary = "Token refresh",
+        description = "Exchanges a refresh token for a new access token and refresh token. Only available in token mode"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Refresh successful. The old refresh token can no longer be used",
+            content = @Content(schema = @Schema(implementation = AuthTokensDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Validation error"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "Refresh token is invalid, expired, already used or signed out"
+        )
+    })
+    public ResponseEntity<@NonNull AuthTokensDto> refresh(@RequestBody @Valid RefreshTokenRequestDto dto) {
+        return ResponseEntity.ok(authenticationService.refresh(dto.refreshToken()));
     }
 
     @PostMapping("/sign-up")
@@ -0,0 +1,52 @@
+package com.arsnyan.cloudstorageservice.controller;
+
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeFeedDto;
+import com.arsnyan.cloudstorageservice.service.FileStorageService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/changes")
+@RequiredArgsConstructor
+@Validated
+public class ChangesController {
+    private final FileStorageService fileStorageService;
+
+    @GetMapping
+    @Operation(
+        summary = "Get changes since a cursor",
+        description = "Returns changes after the cursor, oldest first, and the cursor to send next. Without a cursor, "
+            + "or when the changes after it were compacted, the response asks the client to list its tree again "
+            + "and carries the cursor to continue from afterwards"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Returns a page of changes",
+            content = @Content(schema = @Schema(implementation = ChangeFeedDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        )
+    })
+    public ResponseEntity<@NonNull ChangeFeedDto> getChanges(
+        @RequestParam(required = false) Long cursor,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        return ResponseEntity.ok(fileStorageService.getChanges(user.getUsername(), cursor));
+    }
+}
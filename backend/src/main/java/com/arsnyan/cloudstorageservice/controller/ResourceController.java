@@ -1,7 +1,11 @@
 package com.arsnyan.cloudstorageservice.controller;
 
+import com.arsnyan.cloudstorageservice.dto.resource.ArchiveEntryDto;
+import com.arsnyan.cloudstorageservice.dto.resource.BatchDownloadRequestDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ExtractionStatusDto;
 import com.arsnyan.cloudstorageservice.dto.resource.ResourceGetInfoResponseDto;
 import com.arsnyan.cloudstorageservice.service.FileStorageService;
+import com.arsnyan.cloudstorageservice.util.HttpRanges;
 import com.arsnyan.cloudstorageservice.validation.ResourcePath;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -9,7 +13,10 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -23,6 +30,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -30,6 +41,12 @@ import java.util.List;
 @RequiredArgsConstructor
 @Validated
 public class ResourceController {
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    private static final Duration THUMBNAIL_MAX_AGE = Duration.ofHours(1);
+
     private final FileStorageService fileStorageService;
 
     @GetMapping
@@ -65,7 +82,8 @@ public class ResourceController {
 
     @DeleteMapping
     @Operation(
-        summary = "Remove resource"
+        summary = "Remove resource",
+        description = "Moves the resource to the trash, from which it can be restored until it is purged"
     )
     @ApiResponses({
         @ApiResponse(
@@ -96,7 +114,8 @@ public class ResourceController {
     @GetMapping(value = "/download", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
     @Operation(
         summary = "Download resource",
-        description = "Produces either a file for resource or a zip archive for a folder with nested resources"
+        description = "Produces either a file for resource or a zip archive for a folder with nested resources. "
+            + "Folder archives have a known length and accept Range requests unless the server has to compress them"
     )
     @ApiResponses({
         @ApiResponse(
@@ -104,6 +123,11 @@ public class ResourceController {
             description = "Resource is packed and returned as a file",
             content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)
         ),
+        @ApiResponse(
+            responseCode = "206",
+            description = "Requested byte range of a file is returned",
+            content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+        ),
         @ApiResponse(
             responseCode = "400",
             description = "Invalid path or path is not set"
@@ -115,13 +139,21 @@ public class ResourceController {
         @ApiResponse(
             responseCode = "404",
             description = "Resource is not found for this user"
+        ),
+        @ApiResponse(
+            responseCode = "416",
+            description = "Requested byte range is outside of the file"
         )
     })
     public ResponseEntity<@NonNull StreamingResponseBody> downloadResource(
         @RequestParam @Valid @ResourcePath String path,
-        @AuthenticationPrincipal UserDetails user
+        @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+        @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+        @AuthenticationPrincipal UserDetails user,
+        HttpServletRequest request
     ) {
-        var fileData = fileStorageService.getDownloadableResource(user.getUsername(), path);
+        var range = HttpRanges.parseSingle(rangeHeader);
+        var fileData = fileStorageService.getDownloadableResource(user.getUsername(), path, range, ifRange);
 
         var contentDisposition = ContentDisposition
             .attachment()
@@ -132,20 +164,330 @@ public class ResourceController {
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         headers.setContentDisposition(contentDisposition);
 
-        if (fileData.contentLength() > 0) {
-            headers.setContentLength(fileData.contentLength());
+        if (fileData.streamingResponseBody() != null && fileData.contentLength() < 0) {
+            return ResponseEntity
+                .ok()
+                .headers(headers)
+                .body(fileData.streamingResponseBody());
+        }
+
+        var contentRange = fileData.contentRange();
+        var status = contentRange != null ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK;
+        var start = contentRange != null ? contentRange.start() : 0L;
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentLength(fileData.contentLength());
+        if (contentRange != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, contentRange.toHeaderValue());
+        }
+        if (fileData.etag() != null) {
+            headers.setETag(fileData.etag());
+        }
+        if (fileData.lastModified() != null) {
+            headers.setLastModified(fileData.lastModified());
+        }
+
+        if (fileData.streamingResponseBody() != null) {
+            return ResponseEntity.status(status).headers(headers).body(fileData.streamingResponseBody());
+        }
+
+        if (fileData.localFile() != null) {
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+                request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, fileData.localFile().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+                request.setAttribute(SENDFILE_END_ATTRIBUTE, start + fileData.contentLength());
+                return ResponseEntity.status(status).headers(headers).build();
+            }
+
             StreamingResponseBody stream = outputStream -> {
-                try (var input = fileData.stream()) {
-                    input.transferTo(outputStream);
+                try (var channel = FileChannel.open(fileData.localFile(), StandardOpenOption.READ)) {
+                    var target = Channels.newChannel(outputStream);
+                    var position = start;
+                    var end = start + fileData.contentLength();
+                    while (position < end) {
+                        position += channel.transferTo(position, end - position, target);
+                    }
                 }
             };
-            return ResponseEntity.ok().headers(headers).body(stream);
+            return ResponseEntity.status(status).headers(headers).body(stream);
+        }
+
+        StreamingResponseBody stream = outputStream -> {
+            try (var input = fileData.stream()) {
+                input.transferTo(outputStream);
+            }
+        };
+        return ResponseEntity.status(status).headers(headers).body(stream);
+    }
+
+    @PostMapping(
+        value = "/download",
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_OCTET_STREAM_VALUE
+    )
+    @Operation(
+        summary = "Download several resources",
+        description = "Packs the selected files and folders into a single zip archive, streamed as it is built"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Resources are packed and returned as a zip archive",
+            content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "No paths are given, there are too many of them or one of them is invalid"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "One of the resources is not found for this user"
+        )
+    })
+    public ResponseEntity<@NonNull StreamingResponseBody> downloadResources(
+        @RequestBody @Valid BatchDownloadRequestDto dto,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        var archive = fileStorageService.getDownloadableArchive(user.getUsername(), dto.paths());
+
+        var contentDisposition = ContentDisposition
+            .attachment()
+            .name(archive.filename())
+            .build();
+
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(contentDisposition);
+        if (archive.contentLength() >= 0) {
+            headers.setContentLength(archive.contentLength());
         }
 
         return ResponseEntity
             .ok()
             .headers(headers)
-            .body(fileData.streamingResponseBody());
+            .body(archive.streamingResponseBody());
+    }
+
+    @GetMapping(value = "/thumbnail", produces = MediaType.IMAGE_JPEG_VALUE)
+    @Operation(
+        summary = "Get image thumbnail",
+        description = "Returns a JPEG preview of an image that fits in a square of the requested size, "
+            + "rounded up to one of the sizes the server keeps"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Thumbnail is returned",
+            content = @Content(mediaType = MediaType.IMAGE_JPEG_VALUE)
+        ),
+        @ApiResponse(
+            responseCode = "304",
+            description = "Thumbnail named in If-None-Match is still current"
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path, path is not set or size is out of range"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Resource is not found for this user or is not an image"
+        )
+    })
+    public ResponseEntity<byte @NonNull []> getThumbnail(
+        @RequestParam @Valid @ResourcePath String path,
+        @RequestParam(defaultValue = "256") @Min(16) @Max(2048) int size,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        var thumbnail = fileStorageService.getThumbnail(user.getUsername(), path, size, ifNoneMatch);
+
+        // The path can be overwritten, so browsers revalidate with the ETag once this runs out
+        var cacheControl = CacheControl.maxAge(THUMBNAIL_MAX_AGE).cachePrivate();
+        if (thumbnail.content() == null) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(thumbnail.etag())
+                .cacheControl(cacheControl)
+                .build();
+        }
+
+        return ResponseEntity.ok()
+            .eTag(thumbnail.etag())
+            .cacheControl(cacheControl)
+            .contentType(MediaType.IMAGE_JPEG)
+            .body(thumbnail.content());
+    }
+
+    @GetMapping("/archive")
+    @Operation(
+        summary = "List zip archive contents",
+        description = "Lists the entries of a stored zip archive without downloading it"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Entries of the archive are returned",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ArchiveEntryDto.class)))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path or path is not set"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Archive is not found for this user"
+        ),
+        @ApiResponse(
+            responseCode = "422",
+            description = "Resource is not a zip archive or is damaged"
+        )
+    })
+    public ResponseEntity<@NonNull List<ArchiveEntryDto>> listArchiveEntries(
+        @RequestParam @Valid @ResourcePath String path,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        return ResponseEntity.ok(fileStorageService.listArchiveEntries(user.getUsername(), path));
+    }
+
+    @GetMapping(value = "/archive/entry", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(
+        summary = "Download a file from zip archive",
+        description = "Extracts a single file of a stored zip archive, reading only that file from storage"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "File is extracted and returned",
+            content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path, path or entry is not set"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Archive is not found for this user or has no such file"
+        ),
+        @ApiResponse(
+            responseCode = "422",
+            description = "Resource is not a zip archive, is damaged or the file is encrypted"
+        )
+    })
+    public ResponseEntity<@NonNull StreamingResponseBody> downloadArchiveEntry(
+        @RequestParam @Valid @ResourcePath String path,
+        @RequestParam @NotBlank(message = "Entry must not be empty") String entry,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        var fileData = fileStorageService.getArchiveEntry(user.getUsername(), path, entry);
+
+        var contentDisposition = ContentDisposition
+            .attachment()
+            .name(fileData.filename())
+            .build();
+
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(contentDisposition);
+        headers.setContentLength(fileData.contentLength());
+
+        StreamingResponseBody stream = outputStream -> {
+            try (var input = fileData.stream()) {
+                input.transferTo(outputStream);
+            }
+        };
+        return ResponseEntity.ok().headers(headers).body(stream);
+    }
+
+    @PostMapping("/extract")
+    @Operation(
+        summary = "Extract zip archive",
+        description = "Unpacks a stored zip archive into a new folder on the server, in the background. "
+            + "Without a destination the folder is named after the archive and placed next to it"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "202",
+            description = "Extraction started",
+            content = @Content(schema = @Schema(implementation = ExtractionStatusDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path or destination, or path is not set"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Archive is not found for this user"
+        ),
+        @ApiResponse(
+            responseCode = "409",
+            description = "Destination folder already exists"
+        ),
+        @ApiResponse(
+            responseCode = "422",
+            description = "Resource is not a zip archive, is damaged or has too many entries"
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Too many archives are being extracted"
+        ),
+        @ApiResponse(
+            responseCode = "507",
+            description = "Extracted files would exceed the storage quota"
+        )
+    })
+    public ResponseEntity<@NonNull ExtractionStatusDto> extractArchive(
+        @RequestParam @Valid @ResourcePath String path,
+        @RequestParam(required = false) @Valid @ResourcePath String to,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(fileStorageService.extractArchive(user.getUsername(), path, to));
+    }
+
+    @GetMapping("/extract")
+    @Operation(
+        summary = "Archive extraction progress",
+        description = "Progress of a running extraction, or the outcome of a finished one"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Extraction status",
+            content = @Content(schema = @Schema(implementation = ExtractionStatusDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "No such extraction for this user, or it finished too long ago"
+        )
+    })
+    public ResponseEntity<@NonNull ExtractionStatusDto> getExtractionStatus(
+        @RequestParam @NotBlank String id,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        return ResponseEntity.ok(fileStorageService.getExtractionStatus(user.getUsername(), id));
     }
 
     @GetMapping("/move")
@@ -184,6 +526,47 @@ public class ResourceController {
         return ResponseEntity.ok(result);
     }
 
+    @PostMapping("/copy")
+    @Operation(
+        summary = "Copy resource",
+        description = "Copies a file, or a folder with everything in it, on the storage server"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "201",
+            description = "Resource is copied. Returns information about the copy",
+            content = @Content(schema = @Schema(implementation = ResourceGetInfoResponseDto.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path or path is not set, or a file and a folder path are mixed"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Resource is not found for this user"
+        ),
+        @ApiResponse(
+            responseCode = "409",
+            description = "Resource in output path already exists, or a folder is copied into itself"
+        ),
+        @ApiResponse(
+            responseCode = "507",
+            description = "Copy would exceed the storage quota"
+        )
+    })
+    public ResponseEntity<@NonNull ResourceGetInfoResponseDto> copyResource(
+        @RequestParam @Valid @ResourcePath String from,
+        @RequestParam @Valid @ResourcePath String to,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        var result = fileStorageService.copyResource(user.getUsername(), from, to);
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
     @GetMapping("/search")
     @Operation(
         summary = "Search resources",
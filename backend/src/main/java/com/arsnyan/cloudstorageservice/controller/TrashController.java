@@ -0,0 +1,100 @@
+package com.arsnyan.cloudstorageservice.controller;
+
+import com.arsnyan.cloudstorageservice.dto.trash.TrashEntryDto;
+import com.arsnyan.cloudstorageservice.service.FileStorageService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/trash")
+@RequiredArgsConstructor
+@Validated
+public class TrashController {
+    private final FileStorageService fileStorageService;
+
+    @GetMapping
+    @Operation(
+        summary = "List resources in the trash"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Returns trashed resources, most recently deleted first, with the time each one is purged",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = TrashEntryDto.class)))
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        )
+    })
+    public ResponseEntity<@NonNull List<TrashEntryDto>> listTrash(
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        return ResponseEntity.ok(fileStorageService.listTrash(user.getUsername()));
+    }
+
+    @PostMapping("/restore")
+    @Operation(
+        summary = "Restore a resource from the trash"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "204",
+            description = "Resource is back at its original path"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Trash entry is not found for this user"
+        )
+    })
+    public ResponseEntity<@NonNull Void> restore(
+        @RequestParam Long id,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        fileStorageService.restoreFromTrash(user.getUsername(), id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping
+    @Operation(
+        summary = "Permanently remove a resource from the trash"
+    )
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "204",
+            description = "Resource is removed"
+        ),
+        @ApiResponse(
+            responseCode = "401",
+            description = "User is not authenticated"
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Trash entry is not found for this user"
+        )
+    })
+    public ResponseEntity<@NonNull Void> deleteFromTrash(
+        @RequestParam Long id,
+        @AuthenticationPrincipal UserDetails user
+    ) {
+        fileStorageService.deleteFromTrash(user.getUsername(), id);
+        return ResponseEntity.noContent().build();
+    }
+}
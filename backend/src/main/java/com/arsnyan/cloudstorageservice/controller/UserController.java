@@ -2,6 +2,7 @@ package com.arsnyan.cloudstorageservice.controller;
 
 import com.arsnyan.cloudstorageservice.dto.authentication.UserDetailsResponseDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserLoginResponseDto;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -20,15 +21,17 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/user")
 @RequiredArgsConstructor
 public class UserController {
+    private final StorageUsageService storageUsageService;
+
     @GetMapping("/me")
     @Operation(
         summary = "Get info about user",
-        description = "Fetches user from database for verification of being signed in"
+        description = "Fetches user from database for verification of being signed in, along with their storage usage"
     )
     @ApiResponses({
         @ApiResponse(
             responseCode = "200",
-            description = "User is authenticated. Returns their username",
+            description = "User is authenticated. Returns their username and storage usage",
             content = @Content(schema = @Schema(implementation = UserDetailsResponseDto.class))
         ),
         @ApiResponse(
@@ -37,6 +40,9 @@ public class UserController {
         )
     })
     public ResponseEntity<@NonNull UserDetailsResponseDto> getUserDetails(@AuthenticationPrincipal UserDetails user) {
-        return ResponseEntity.ok(new UserDetailsResponseDto(user.getUsername()));
+        return ResponseEntity.ok(new UserDetailsResponseDto(
+            user.getUsername(),
+            storageUsageService.getUsage(user.getUsername())
+        ));
     }
 }
@@ -1,12 +1,19 @@
 package com.arsnyan.cloudstorageservice.controller.advice;
 
 import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.InvalidResourcePathException;
 import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
 import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.RangeNotSatisfiableException;
 import com.arsnyan.cloudstorageservice.exception.ServerErrorException;
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException;
+import com.arsnyan.cloudstorageservice.exception.UnsupportedArchiveException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -23,6 +30,15 @@ public class GlobalExceptionHandler {
         );
     }
     
+    @ExceptionHandler(InvalidResourcePathException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ProblemDetail handleInvalidResourcePathException(InvalidResourcePathException e) {
+        return ProblemDetail.forStatusAndDetail(
+            HttpStatus.BAD_REQUEST,
+            e.getMessage()
+        );
+    }
+
     @ExceptionHandler(MinioWrappedException.class)
     public ProblemDetail handleMinioWrappedException(MinioWrappedException e) {
         var detail = ProblemDetail.forStatusAndDetail(
@@ -47,6 +63,40 @@ public class GlobalExceptionHandler {
         );
     }
     
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public ResponseEntity<ProblemDetail> handleRangeNotSatisfiableException(RangeNotSatisfiableException e) {
+        return ResponseEntity
+            .status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+            .header(HttpHeaders.CONTENT_RANGE, "bytes */%d".formatted(e.getResourceLength()))
+            .body(ProblemDetail.forStatusAndDetail(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, e.getMessage()));
+    }
+
+    @ExceptionHandler(StorageQuotaExceededException.class)
+    @ResponseStatus(HttpStatus.INSUFFICIENT_STORAGE)
+    public ProblemDetail handleStorageQuotaExceededException(StorageQuotaExceededException e) {
+        return ProblemDetail.forStatusAndDetail(
+            HttpStatus.INSUFFICIENT_STORAGE,
+            e.getMessage()
+        );
+    }
+
+    @ExceptionHandler(UnsupportedArchiveException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public ProblemDetail handleUnsupportedArchiveException(UnsupportedArchiveException e) {
+        return ProblemDetail.forStatusAndDetail(
+            HttpStatus.UNPROCESSABLE_ENTITY,
+            e.getMessage()
+        );
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ProblemDetail> handleServiceOverloadedException(ServiceOverloadedException e) {
+        return ResponseEntity
+            .status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter().toSeconds()))
+            .body(ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage()));
+    }
+
     @ExceptionHandler(ServerErrorException.class)
     public ProblemDetail handleServerErrorException(ServerErrorException e) {
         var detail = ProblemDetail.forStatusAndDetail(
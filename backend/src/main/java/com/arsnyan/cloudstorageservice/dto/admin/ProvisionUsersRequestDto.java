@@ -0,0 +1,14 @@
+package com.arsnyan.cloudstorageservice.dto.admin;
+
+import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record ProvisionUsersRequestDto(
+    @NotEmpty
+    @Size(max = 5000)
+    List<@Valid UserRegisterRequestDto> users
+) {}
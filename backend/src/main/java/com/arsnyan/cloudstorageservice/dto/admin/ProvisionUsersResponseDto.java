@@ -0,0 +1,8 @@
+package com.arsnyan.cloudstorageservice.dto.admin;
+
+import java.util.List;
+
+public record ProvisionUsersResponseDto(
+    int created,
+    List<String> skipped
+) {}
@@ -0,0 +1,12 @@
+package com.arsnyan.cloudstorageservice.dto.admin;
+
+import java.time.Instant;
+
+public record RebalanceStatusDto(
+    boolean running,
+    long checkedUsers,
+    long movedUsers,
+    long failedUsers,
+    Instant startedAt,
+    Instant finishedAt
+) {}
@@ -0,0 +1,8 @@
+package com.arsnyan.cloudstorageservice.dto.authentication;
+
+public record AuthTokensDto(
+    String accessToken,
+    String tokenType,
+    long expiresIn,
+    String refreshToken
+) {}
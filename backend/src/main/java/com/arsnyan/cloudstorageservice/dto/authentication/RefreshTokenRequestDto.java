@@ -0,0 +1,8 @@
+package com.arsnyan.cloudstorageservice.dto.authentication;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record RefreshTokenRequestDto(
+    @NotBlank
+    String refreshToken
+) {}
@@ -1,5 +1,8 @@
 package com.arsnyan.cloudstorageservice.dto.authentication;
 
+import com.arsnyan.cloudstorageservice.dto.storage.StorageUsageResponseDto;
+
 public record UserDetailsResponseDto(
-    String username
+    String username,
+    StorageUsageResponseDto storage
 ) {}
@@ -1,5 +1,14 @@
 package com.arsnyan.cloudstorageservice.dto.authentication;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Tokens are only issued in token mode
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record UserRegisterResponseDto(
-    String username
-) {}
+    String username,
+    AuthTokensDto tokens
+) {
+    public UserRegisterResponseDto(String username) {
+        this(username, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.arsnyan.cloudstorageservice.dto.changes;
+
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+
+import java.time.Instant;
+
+public record ChangeDto(
+    Long id,
+    String path,
+    ChangeType type,
+    long size,
+    Instant changedAt
+) {}
@@ -0,0 +1,16 @@
+package com.arsnyan.cloudstorageservice.dto.changes;
+
+import java.util.List;
+
+/**
+ * @param cursor  to pass with the next request
+ * @param hasMore whether more changes are waiting past the cursor
+ * @param reset   whether the client has to list its whole tree again, because it has no cursor yet
+ *                or the changes after its cursor were compacted away
+ */
+public record ChangeFeedDto(
+    List<ChangeDto> changes,
+    Long cursor,
+    boolean hasMore,
+    boolean reset
+) {}
@@ -0,0 +1,15 @@
+package com.arsnyan.cloudstorageservice.dto.resource;
+
+import com.arsnyan.cloudstorageservice.model.ResourceType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ArchiveEntryDto(
+    String path,
+    Long size,
+    Long compressedSize,
+    ResourceType type,
+    Instant lastModified
+) {}
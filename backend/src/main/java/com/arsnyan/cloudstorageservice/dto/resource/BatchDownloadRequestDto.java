@@ -0,0 +1,17 @@
+package com.arsnyan.cloudstorageservice.dto.resource;
+
+import com.arsnyan.cloudstorageservice.validation.ResourcePath;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * @param paths files and folders to pack into one archive; folders end with "/"
+ */
+public record BatchDownloadRequestDto(
+    @NotEmpty
+    @Size(max = 1000)
+    List<@NotBlank @ResourcePath String> paths
+) {}
@@ -0,0 +1,30 @@
+package com.arsnyan.cloudstorageservice.dto.resource;
+
+import com.arsnyan.cloudstorageservice.exception.RangeNotSatisfiableException;
+import org.springframework.http.HttpRange;
+
+public record ContentRange(
+    long start,
+    long end,
+    long totalLength
+) {
+    public static ContentRange of(HttpRange range, long resourceLength) {
+        try {
+            return new ContentRange(
+                range.getRangeStart(resourceLength),
+                range.getRangeEnd(resourceLength),
+                resourceLength
+            );
+        } catch (IllegalArgumentException e) {
+            throw new RangeNotSatisfiableException("Requested range is not satisfiable", resourceLength);
+        }
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String toHeaderValue() {
+        return "bytes %d-%d/%d".formatted(start, end, totalLength);
+    }
+}
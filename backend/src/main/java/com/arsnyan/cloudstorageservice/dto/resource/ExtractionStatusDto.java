@@ -0,0 +1,23 @@
+package com.arsnyan.cloudstorageservice.dto.resource;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExtractionStatusDto(
+    String id,
+    String path,
+    String destination,
+    boolean running,
+    long totalFiles,
+    long extractedFiles,
+    long totalBytes,
+    long extractedBytes,
+    long skippedEntries,
+    String error,
+    // Files extracted before a failure stay in the destination
+    boolean partial,
+    Instant startedAt,
+    Instant finishedAt
+) {}
@@ -3,15 +3,43 @@ package com.arsnyan.cloudstorageservice.dto.resource;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
 
+/**
+ * @param etag identifies the exact bytes of a file or generated archive, so clients can resume it;
+ *             {@code null} for anything else
+ * @param lastModified of a file, the other validator a client may resume with
+ */
 public record FileDownloadResponseDto(
     InputStream stream,
     String filename,
     long contentLength,
     String contentType,
-    StreamingResponseBody streamingResponseBody
+    StreamingResponseBody streamingResponseBody,
+    Path localFile,
+    ContentRange contentRange,
+    String etag,
+    ZonedDateTime lastModified
 ) {
     public FileDownloadResponseDto(InputStream stream, String filename, long contentLength, String contentType) {
-        this(stream, filename, contentLength, contentType, null);
+        this(stream, filename, contentLength, contentType, null, null, null, null, null);
+    }
+
+    public FileDownloadResponseDto(InputStream stream, String filename, long contentLength, String contentType,
+                                   StreamingResponseBody streamingResponseBody) {
+        this(stream, filename, contentLength, contentType, streamingResponseBody, null, null, null, null);
+    }
+
+    public FileDownloadResponseDto(InputStream stream, String filename, long contentLength, String contentType,
+                                   StreamingResponseBody streamingResponseBody, Path localFile,
+                                   ContentRange contentRange) {
+        this(stream, filename, contentLength, contentType, streamingResponseBody, localFile, contentRange, null, null);
+    }
+
+    public FileDownloadResponseDto(InputStream stream, String filename, long contentLength, String contentType,
+                                   StreamingResponseBody streamingResponseBody, Path localFile,
+                                   ContentRange contentRange, String etag) {
+        this(stream, filename, contentLength, contentType, streamingResponseBody, localFile, contentRange, etag, null);
     }
 }
@@ -0,0 +1,9 @@
+package com.arsnyan.cloudstorageservice.dto.resource;
+
+/**
+ * @param content the JPEG image, or {@code null} when the caller's copy is still current
+ */
+public record ThumbnailDto(
+    String etag,
+    byte[] content
+) {}
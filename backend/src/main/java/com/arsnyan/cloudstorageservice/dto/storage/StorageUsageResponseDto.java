@@ -0,0 +1,7 @@
+package com.arsnyan.cloudstorageservice.dto.storage;
+
+public record StorageUsageResponseDto(
+    long usedBytes,
+    long objectCount,
+    Long quotaBytes
+) {}
@@ -0,0 +1,14 @@
+package com.arsnyan.cloudstorageservice.dto.trash;
+
+import com.arsnyan.cloudstorageservice.model.ResourceType;
+
+import java.time.Instant;
+
+public record TrashEntryDto(
+    Long id,
+    String path,
+    String name,
+    ResourceType type,
+    Instant trashedAt,
+    Instant purgeAt
+) {}
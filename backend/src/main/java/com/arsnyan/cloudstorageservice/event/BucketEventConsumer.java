@@ -0,0 +1,117 @@
+package com.arsnyan.cloudstorageservice.event;
+
+import com.arsnyan.cloudstorageservice.config.MinioProperties;
+import com.arsnyan.cloudstorageservice.model.BucketEvent;
+import com.arsnyan.cloudstorageservice.repository.BucketEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.extractUserId;
+import static com.arsnyan.cloudstorageservice.util.FileUtils.getRelativePath;
+
+/**
+ * Applies recorded bucket events in batches, one {@link StorageChangeEvent} per user and batch, so
+ * usage counters, the change journal and listing caches follow writes made outside the application.
+ * <p>
+ * A batch is published while the checkpoint row is locked and the checkpoint moves in the same
+ * transaction as the listeners' database updates, so each event is counted once however many
+ * instances run. When a batch fails, or the instance stops halfway, the events after the
+ * checkpoint are replayed from the table by the next run. Events are only read once they are
+ * settle-delay old, since a lower event id can commit after a higher one.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.minio.notifications.enabled", havingValue = "true", matchIfMissing = true)
+public class BucketEventConsumer {
+    static final String CONSUMER = "storage";
+
+    private final BucketEventRepository bucketEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration settleDelay;
+    private final Duration retention;
+
+    public BucketEventConsumer(
+        BucketEventRepository bucketEventRepository,
+        ApplicationEventPublisher eventPublisher,
+        TransactionTemplate transactionTemplate,
+        MinioProperties properties
+    ) {
+        this.bucketEventRepository = bucketEventRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = properties.notifications().batchSize();
+        this.settleDelay = properties.notifications().settleDelay();
+        this.retention = properties.notifications().retention();
+    }
+
+    @Scheduled(fixedDelayString = "${app.minio.notifications.poll-interval:PT1S}")
+    public void consume() {
+        try {
+            boolean full;
+            do {
+                full = Boolean.TRUE.equals(transactionTemplate.execute(status -> applyBatch()));
+            } while (full);
+        } catch (RuntimeException e) {
+            log.error("Failed to apply bucket events, retrying from the checkpoint: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT1H", initialDelayString = "PT5M")
+    public void purgeConsumed() {
+        var purged = bucketEventRepository.deleteConsumedBefore(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} applied bucket events", purged);
+        }
+    }
+
+    /**
+     * @return whether the batch was full
+     */
+    boolean applyBatch() {
+        var checkpoint = bucketEventRepository.lockCheckpoint(CONSUMER);
+        if (checkpoint.isEmpty()) {
+            return false;
+        }
+
+        var events = bucketEventRepository.findByIdGreaterThanAndReceivedAtBeforeOrderById(
+            checkpoint.get(), Instant.now().minus(settleDelay), Limit.of(batchSize)
+        );
+        if (events.isEmpty()) {
+            return false;
+        }
+
+        publish(events);
+        bucketEventRepository.advanceCheckpoint(CONSUMER, events.getLast().getId());
+        return events.size() == batchSize;
+    }
+
+    private void publish(List<BucketEvent> events) {
+        var changesByUser = new LinkedHashMap<Long, List<ObjectChange>>();
+
+        for (var event : events) {
+            var userId = extractUserId(event.getObjectKey());
+            if (userId == null) continue;
+
+            var path = getRelativePath(userId, event.getObjectKey());
+            changesByUser.computeIfAbsent(userId, id -> new ArrayList<>())
+                .add(new ObjectChange(path, event.getType(), event.getSize()));
+        }
+
+        changesByUser.forEach((userId, changes) ->
+            eventPublisher.publishEvent(new StorageChangeEvent(userId, List.copyOf(changes), ChangeSource.BUCKET_NOTIFICATION))
+        );
+    }
+}
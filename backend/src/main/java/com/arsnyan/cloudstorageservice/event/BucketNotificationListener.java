@@ -0,0 +1,161 @@
+package com.arsnyan.cloudstorageservice.event;
+
+import com.arsnyan.cloudstorageservice.repository.BucketEventRepository;
+import com.arsnyan.cloudstorageservice.storage.StorageShard;
+import io.minio.CloseableIterator;
+import io.minio.ListenBucketNotificationArgs;
+import io.minio.Result;
+import io.minio.messages.Event;
+import io.minio.messages.NotificationRecords;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.extractUserId;
+
+/**
+ * Follows MinIO bucket notifications and records changes made to user objects by anything other
+ * than this application in the bucket event table, from which {@link BucketEventConsumer} applies
+ * them. Changes made by the application itself are recognised by the user agent of the request and
+ * skipped, since they have already been published by the service that made them. Every storage
+ * shard is followed by a thread of its own.
+ */
+@Slf4j
+public class BucketNotificationListener implements SmartLifecycle {
+    private static final String[] EVENTS = {"s3:ObjectCreated:*", "s3:ObjectRemoved:*"};
+    // Reported as creations, though only the object's metadata changed
+    private static final Set<String> METADATA_EVENTS = Set.of(
+        "s3:ObjectCreated:PutTagging",
+        "s3:ObjectCreated:DeleteTagging",
+        "s3:ObjectCreated:PutRetention",
+        "s3:ObjectCreated:PutLegalHold"
+    );
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final Collection<StorageShard> shards;
+    private final BucketEventRepository bucketEventRepository;
+    private final String applicationUserAgent;
+
+    private final Set<CloseableIterator<Result<NotificationRecords>>> currentStreams = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public BucketNotificationListener(Collection<StorageShard> shards, BucketEventRepository bucketEventRepository,
+                                      String applicationUserAgent) {
+        this.shards = shards;
+        this.bucketEventRepository = bucketEventRepository;
+        this.applicationUserAgent = applicationUserAgent;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (var shard : shards) {
+            workers.add(Thread.ofPlatform()
+                .name("bucket-notifications-" + shard.name())
+                .daemon()
+                .start(() -> listen(shard)));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        for (var stream : currentStreams) {
+            try {
+                stream.close();
+            } catch (Exception e) {
+                log.debug("Failed to close bucket notification stream: {}", e.getMessage());
+            }
+        }
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen(StorageShard shard) {
+        var backoff = INITIAL_BACKOFF;
+
+        while (running) {
+            var args = ListenBucketNotificationArgs.builder()
+                .bucket(shard.bucket())
+                .prefix("")
+                .suffix("")
+                .events(EVENTS)
+                .build();
+
+            CloseableIterator<Result<NotificationRecords>> current = null;
+            try (var stream = shard.client().listenBucketNotification(args)) {
+                current = stream;
+                currentStreams.add(stream);
+                backoff = INITIAL_BACKOFF;
+
+                while (running && stream.hasNext()) {
+                    record(shard, stream.next().get().events());
+                }
+            } catch (Exception e) {
+                if (!running) break;
+
+                log.warn("Notification stream of shard {} failed, reconnecting in {}: {}", shard.name(), backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+            } finally {
+                if (current != null) {
+                    currentStreams.remove(current);
+                }
+            }
+        }
+    }
+
+    // A failed insert drops the event; the periodic usage reconciliation makes up for lost events
+    void record(StorageShard shard, List<Event> events) {
+        for (var event : events) {
+            if (event.userAgent() != null && event.userAgent().contains(applicationUserAgent)) {
+                continue;
+            }
+            var eventName = event.eventType().toString();
+            if (METADATA_EVENTS.contains(eventName)) continue;
+
+            // Keys arrive URL-encoded in notification payloads
+            var key = URLDecoder.decode(event.objectName(), StandardCharsets.UTF_8);
+            if (extractUserId(key) == null) continue;
+
+            var type = eventName.startsWith("s3:ObjectRemoved")
+                ? ChangeType.REMOVED
+                : ChangeType.CREATED;
+
+            try {
+                bucketEventRepository.insertIfAbsent(
+                    shard.bucket(),
+                    key,
+                    type.name(),
+                    event.objectSize(),
+                    event.sequencer() != null ? event.sequencer() : "",
+                    event.eventTime() != null ? event.eventTime().toInstant() : null
+                );
+            } catch (DataAccessException e) {
+                log.error("Failed to record bucket event for {}: {}", key, e.getMessage());
+            }
+        }
+    }
+}
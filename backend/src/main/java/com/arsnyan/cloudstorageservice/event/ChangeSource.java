@@ -0,0 +1,6 @@
+package com.arsnyan.cloudstorageservice.event;
+
+public enum ChangeSource {
+    APPLICATION,
+    BUCKET_NOTIFICATION
+}
@@ -0,0 +1,23 @@
+package com.arsnyan.cloudstorageservice.event;
+
+/**
+ * A single object written or removed in a user's storage. The path is relative to the
+ * user's root folder, and folder placeholders end with "/".
+ */
+public record ObjectChange(
+    String path,
+    ChangeType type,
+    long size
+) {
+    public static ObjectChange created(String path, long size) {
+        return new ObjectChange(path, ChangeType.CREATED, size);
+    }
+
+    public static ObjectChange removed(String path, long size) {
+        return new ObjectChange(path, ChangeType.REMOVED, size);
+    }
+
+    public boolean isFolder() {
+        return path.endsWith("/");
+    }
+}
@@ -0,0 +1,18 @@
+package com.arsnyan.cloudstorageservice.event;
+
+import java.util.List;
+
+/**
+ * Published after objects of one user were changed, either by this application or by
+ * anything else writing to the bucket. Listeners run synchronously, so caches are
+ * invalidated before the request that made the change returns.
+ */
+public record StorageChangeEvent(
+    Long userId,
+    List<ObjectChange> changes,
+    ChangeSource source
+) {
+    public static StorageChangeEvent of(Long userId, List<ObjectChange> changes) {
+        return new StorageChangeEvent(userId, List.copyOf(changes), ChangeSource.APPLICATION);
+    }
+}
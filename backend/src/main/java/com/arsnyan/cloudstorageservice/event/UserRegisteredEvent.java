@@ -0,0 +1,8 @@
+package com.arsnyan.cloudstorageservice.event;
+
+/**
+ * Published when an account is created through sign-up, so its storage can be prepared.
+ */
+public record UserRegisteredEvent(
+    Long userId
+) {}
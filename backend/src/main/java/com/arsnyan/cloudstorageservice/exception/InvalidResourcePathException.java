@@ -0,0 +1,11 @@
+package com.arsnyan.cloudstorageservice.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidResourcePathException extends RuntimeException {
+    public InvalidResourcePathException(String message) {
+        super(message);
+    }
+}
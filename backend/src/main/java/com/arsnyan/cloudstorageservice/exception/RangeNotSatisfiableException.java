@@ -0,0 +1,16 @@
+package com.arsnyan.cloudstorageservice.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+public class RangeNotSatisfiableException extends RuntimeException {
+    private final long resourceLength;
+
+    public RangeNotSatisfiableException(String message, long resourceLength) {
+        super(message);
+        this.resourceLength = resourceLength;
+    }
+}
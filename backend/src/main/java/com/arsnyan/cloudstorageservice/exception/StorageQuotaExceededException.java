@@ -0,0 +1,11 @@
+package com.arsnyan.cloudstorageservice.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.INSUFFICIENT_STORAGE)
+public class StorageQuotaExceededException extends RuntimeException {
+    public StorageQuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.arsnyan.cloudstorageservice.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class UnsupportedArchiveException extends RuntimeException {
+    public UnsupportedArchiveException(String message) {
+        super(message);
+    }
+}
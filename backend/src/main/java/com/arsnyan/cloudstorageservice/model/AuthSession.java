@@ -0,0 +1,41 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * A signed-in device in token mode. The refresh token is kept only as a hash and is replaced
+ * on every refresh; the session id is carried by access tokens so the session can be revoked.
+ */
+@Entity
+@Table(name = "auth_sessions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthSession {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "session_id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "refresh_token_hash", nullable = false, unique = true, length = 64)
+    private String refreshTokenHash;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at")
+    private Instant revokedAt;
+}
@@ -0,0 +1,46 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "bucket_events")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long id;
+
+    @Column(name = "bucket", nullable = false, length = 63)
+    private String bucket;
+
+    @Column(name = "object_key", nullable = false, length = 1024)
+    private String objectKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private ChangeType type;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    // Orders events of one object; MinIO sends the same value to every listener, or none, stored as ""
+    @Column(name = "sequencer", nullable = false, length = 64)
+    private String sequencer;
+
+    @Column(name = "event_time")
+    private Instant eventTime;
+
+    @Column(name = "received_at", nullable = false, insertable = false, updatable = false)
+    private Instant receivedAt;
+}
@@ -0,0 +1,40 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "change_journal")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "change_id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Relative to the user's root, with a trailing "/" for folders
+    @Column(name = "path", nullable = false, length = 1024)
+    private String path;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private ChangeType type;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+}
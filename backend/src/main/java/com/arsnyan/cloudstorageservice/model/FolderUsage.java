@@ -0,0 +1,41 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Objects;
+
+/**
+ * Total size and number of files anywhere below a folder, path relative to the user's root.
+ */
+@Entity
+@Table(name = "folder_usage")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderUsage {
+    @EmbeddedId
+    private FolderUsageId id;
+
+    @Column(name = "total_bytes", nullable = false)
+    private Long totalBytes = 0L;
+
+    @Column(name = "object_count", nullable = false)
+    private Long objectCount = 0L;
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        FolderUsage that = (FolderUsage) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+}
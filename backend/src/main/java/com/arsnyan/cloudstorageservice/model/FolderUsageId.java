@@ -0,0 +1,37 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+@Embeddable
+@NoArgsConstructor
+@Getter
+@Setter
+@AllArgsConstructor
+public class FolderUsageId implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "path", columnDefinition = "varchar")
+    private String path;
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        FolderUsageId that = (FolderUsageId) o;
+        return Objects.equals(userId, that.userId) && Objects.equals(path, that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, path);
+    }
+}
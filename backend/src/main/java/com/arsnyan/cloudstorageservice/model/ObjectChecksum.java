@@ -0,0 +1,34 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * CRC-32 of one version of an object. Keyed by the object as well as its ETag, since an ETag is
+ * only unique among the versions of one key: storages that do not hash the content derive it from
+ * size and modification time, which two objects can share.
+ */
+@Entity
+@Table(name = "object_checksums")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectChecksum {
+    @EmbeddedId
+    private ObjectChecksumId id;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "crc32", nullable = false)
+    private Long crc32;
+
+    @Column(name = "computed_at", nullable = false)
+    private Instant computedAt;
+}
@@ -0,0 +1,38 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+@Embeddable
+@NoArgsConstructor
+@Getter
+@Setter
+@AllArgsConstructor
+public class ObjectChecksumId implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "object_key", columnDefinition = "varchar")
+    private String objectKey;
+
+    // ETag of the object version, without quotes
+    @Column(name = "etag", length = 128)
+    private String etag;
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        ObjectChecksumId that = (ObjectChecksumId) o;
+        return Objects.equals(objectKey, that.objectKey) && Objects.equals(etag, that.etag);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(objectKey, etag);
+    }
+}
@@ -8,26 +8,27 @@ import lombok.Setter;
 
 import java.util.Objects;
 
+/**
+ * Last known size of an object, folder placeholders included, path relative to the user's root.
+ */
 @Entity
-@Table(name = "roles")
+@Table(name = "object_sizes")
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-public class UserRole {
+public class ObjectSize {
     @EmbeddedId
-    private UserRoleId id;
+    private ObjectSizeId id;
 
-    @ManyToOne(fetch = FetchType.LAZY)
-    @MapsId("userId")
-    @JoinColumn(name = "user_id", foreignKey = @ForeignKey(name = "fk_role_user_id"))
-    private User user;
+    @Column(name = "size", nullable = false)
+    private Long size;
 
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
-        UserRole userRole = (UserRole) o;
-        return Objects.equals(id, userRole.id);
+        ObjectSize that = (ObjectSize) o;
+        return Objects.equals(id, that.id);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package com.arsnyan.cloudstorageservice.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Embeddable;
 import lombok.*;
 
@@ -12,22 +13,25 @@ import java.util.Objects;
 @Getter
 @Setter
 @AllArgsConstructor
-public class UserRoleId implements Serializable {
+public class ObjectSizeId implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    @Column(name = "user_id")
     private Long userId;
-    private String role;
+
+    @Column(name = "path", columnDefinition = "varchar")
+    private String path;
 
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
-        UserRoleId that = (UserRoleId) o;
-        return Objects.equals(userId, that.userId) && Objects.equals(role, that.role);
+        ObjectSizeId that = (ObjectSizeId) o;
+        return Objects.equals(userId, that.userId) && Objects.equals(path, that.path);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(userId, role);
+        return Objects.hash(userId, path);
     }
 }
@@ -0,0 +1,60 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Roles a user can hold. Each role owns one bit, so a set of roles fits in an int; the bit
+ * values are persisted and must never be reassigned.
+ */
+public enum Role {
+    DEFAULT(1),
+    ADMIN(1 << 1);
+
+    private static final Role[] ROLES = values();
+    private static final int ALL_BITS = (1 << ROLES.length) - 1;
+    // Every possible role combination is built once; principals share these immutable lists
+    private static final List<List<GrantedAuthority>> AUTHORITY_SETS = buildAuthoritySets();
+
+    private final int bit;
+
+    Role(int bit) {
+        this.bit = bit;
+    }
+
+    public int bit() {
+        return bit;
+    }
+
+    public static int toMask(Collection<String> roleNames) {
+        var mask = 0;
+        for (var role : ROLES) {
+            if (roleNames.contains(role.name())) {
+                mask |= role.bit;
+            }
+        }
+        return mask;
+    }
+
+    public static List<GrantedAuthority> toAuthorities(int mask) {
+        return AUTHORITY_SETS.get(mask & ALL_BITS);
+    }
+
+    private static List<List<GrantedAuthority>> buildAuthoritySets() {
+        var sets = new ArrayList<List<GrantedAuthority>>(ALL_BITS + 1);
+        for (var mask = 0; mask <= ALL_BITS; mask++) {
+            var authorities = new ArrayList<GrantedAuthority>();
+            for (var role : ROLES) {
+                if ((mask & role.bit) != 0) {
+                    authorities.add(new SimpleGrantedAuthority(role.name()));
+                }
+            }
+            sets.add(List.copyOf(authorities));
+        }
+        return List.copyOf(sets);
+    }
+}
@@ -0,0 +1,30 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "scheduled_task_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledTaskLease {
+    @Id
+    @Column(name = "task", length = 64)
+    private String task;
+
+    @Column(name = "locked_until", nullable = false)
+    private Instant lockedUntil;
+
+    @Column(name = "locked_by", nullable = false, length = 64)
+    private String lockedBy;
+}
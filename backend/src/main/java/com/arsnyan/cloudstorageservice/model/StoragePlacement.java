@@ -0,0 +1,28 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "storage_placements")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoragePlacement {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Name of the storage shard holding the user's objects
+    @Column(name = "shard", nullable = false, length = 64)
+    private String shard;
+
+    @Column(name = "assigned_at", nullable = false)
+    private Instant assignedAt;
+}
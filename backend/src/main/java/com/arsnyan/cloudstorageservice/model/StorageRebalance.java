@@ -0,0 +1,51 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "storage_rebalance")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageRebalance {
+    public static final short ID = 1;
+
+    @Id
+    @Column(name = "id")
+    private Short id;
+
+    @Column(name = "running", nullable = false)
+    private boolean running;
+
+    // The instance running the rebalance
+    @Column(name = "owner", length = 64)
+    private String owner;
+
+    @Column(name = "checked_users", nullable = false)
+    private long checkedUsers;
+
+    @Column(name = "moved_users", nullable = false)
+    private long movedUsers;
+
+    @Column(name = "failed_users", nullable = false)
+    private long failedUsers;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @Column(name = "reported_at")
+    private Instant reportedAt;
+}
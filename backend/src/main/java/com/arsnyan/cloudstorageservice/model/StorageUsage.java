@@ -0,0 +1,49 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "storage_usage")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageUsage {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "used_bytes", nullable = false)
+    private Long usedBytes = 0L;
+
+    @Column(name = "object_count", nullable = false)
+    private Long objectCount = 0L;
+
+    // Overrides the default quota when set
+    @Column(name = "quota_bytes")
+    private Long quotaBytes;
+
+    // Bumped by every update, so a reconciliation scan can tell whether it raced with a write
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    // Files and folders directly in the user root, or null when not known yet
+    @Column(name = "root_entries")
+    private Long rootEntries;
+
+    // Bytes of writes in progress, counted towards the quota until they finish
+    @Column(name = "reserved_bytes", nullable = false)
+    private Long reservedBytes = 0L;
+
+    @Column(name = "reserved_at")
+    private Instant reservedAt;
+
+    @Column(name = "reconciled_at")
+    private Instant reconciledAt;
+}
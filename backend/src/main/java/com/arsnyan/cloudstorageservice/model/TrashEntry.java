@@ -0,0 +1,43 @@
+package com.arsnyan.cloudstorageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * A file or folder in the trash. The path is relative to the user's root and ends with "/" for
+ * folders, which hides everything below it while the objects are still there.
+ */
+@Entity
+@Table(name = "trash_entries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrashEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "trash_id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "path", nullable = false, length = 1024)
+    private String path;
+
+    @Column(name = "trashed_at", nullable = false)
+    private Instant trashedAt;
+
+    // Where the objects are when they were moved aside for a newer resource at the path
+    @Column(name = "stored_path", length = 1024)
+    private String storedPath;
+
+    public String getLocation() {
+        return storedPath != null ? storedPath : path;
+    }
+}
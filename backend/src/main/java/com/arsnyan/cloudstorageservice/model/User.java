@@ -7,17 +7,12 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.Objects;
-import java.util.Set;
 
 @Entity
+// uq_users_username also INCLUDEs the remaining columns, see changelog-1.5.yaml
 @Table(
     name = "users",
-    indexes = {
-        @Index(name = "idx_user_username", columnList = "username"),
-        @Index(name = "idx_user_is_disabled", columnList = "is_disabled DESC"),
-        @Index(name = "idx_user_is_expired", columnList = "is_expired DESC"),
-        @Index(name = "idx_user_is_locked", columnList = "is_locked DESC")
-    }
+    uniqueConstraints = @UniqueConstraint(name = "uq_users_username", columnNames = "username")
 )
 @Getter
 @Setter
@@ -25,7 +20,8 @@ import java.util.Set;
 @AllArgsConstructor
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     @Column(name = "user_id")
     private Long id;
 
@@ -47,8 +43,9 @@ public class User {
     @Column(name = "is_locked", nullable = false)
     private Boolean isLocked = false;
 
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
-    private Set<UserRole> roles;
+    // Bitwise OR of Role bits, so loading an account needs no join
+    @Column(name = "role_mask", nullable = false)
+    private Integer roleMask = 0;
 
     @Override
     public boolean equals(Object o) {
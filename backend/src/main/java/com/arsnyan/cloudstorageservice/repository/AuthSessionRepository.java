@@ -0,0 +1,44 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.AuthSession;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface AuthSessionRepository extends JpaRepository<@NonNull AuthSession, @NonNull Long> {
+    Optional<AuthSession> findByRefreshTokenHash(String refreshTokenHash);
+
+    @Query("SELECT s.id FROM AuthSession s WHERE s.revokedAt >= :since")
+    List<Long> getRevokedSince(@Param("since") Instant since);
+
+    // Only the caller that swaps the hash wins, so a refresh token can be used once
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE AuthSession s SET s.refreshTokenHash = :newHash, s.expiresAt = :expiresAt
+        WHERE s.id = :id AND s.refreshTokenHash = :oldHash AND s.revokedAt IS NULL
+        """)
+    int rotate(
+        @Param("id") Long id,
+        @Param("oldHash") String oldHash,
+        @Param("newHash") String newHash,
+        @Param("expiresAt") Instant expiresAt
+    );
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AuthSession s SET s.revokedAt = :now WHERE s.id = :id AND s.revokedAt IS NULL")
+    int revoke(@Param("id") Long id, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AuthSession s WHERE s.expiresAt < :before OR s.revokedAt < :before")
+    int deleteExpired(@Param("before") Instant before);
+}
@@ -0,0 +1,61 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.BucketEvent;
+import lombok.NonNull;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface BucketEventRepository extends JpaRepository<@NonNull BucketEvent, @NonNull Long> {
+    // A missing sequencer is stored as '', since NULLs would never conflict with each other; the event
+    // time then tells writes of the same key apart, and events without either are all kept
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO bucket_events (bucket, object_key, change_type, size, sequencer, event_time)
+        VALUES (:bucket, :objectKey, :type, :size, COALESCE(:sequencer, ''), :eventTime)
+        ON CONFLICT (bucket, object_key, change_type, sequencer, event_time) DO NOTHING
+        """, nativeQuery = true)
+    void insertIfAbsent(
+        @Param("bucket") String bucket,
+        @Param("objectKey") String objectKey,
+        @Param("type") String type,
+        @Param("size") long size,
+        @Param("sequencer") String sequencer,
+        @Param("eventTime") Instant eventTime
+    );
+
+    List<BucketEvent> findByIdGreaterThanAndReceivedAtBeforeOrderById(Long id, Instant receivedBefore, Limit limit);
+
+    // Empty while another instance holds the row, which then applies the next batch itself
+    @Query(value = """
+        SELECT last_event_id FROM bucket_event_checkpoints
+        WHERE consumer = :consumer
+        FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    Optional<Long> lockCheckpoint(@Param("consumer") String consumer);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE bucket_event_checkpoints SET last_event_id = :eventId, updated_at = now()
+        WHERE consumer = :consumer
+        """, nativeQuery = true)
+    void advanceCheckpoint(@Param("consumer") String consumer, @Param("eventId") long eventId);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM bucket_events
+        WHERE received_at < :before
+          AND event_id <= (SELECT min(last_event_id) FROM bucket_event_checkpoints)
+        """, nativeQuery = true)
+    int deleteConsumedBefore(@Param("before") Instant before);
+}
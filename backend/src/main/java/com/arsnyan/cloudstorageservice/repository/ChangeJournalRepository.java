@@ -0,0 +1,82 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.ChangeJournalEntry;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface ChangeJournalRepository extends JpaRepository<@NonNull ChangeJournalEntry, @NonNull Long> {
+    // Both sides of the settle check use the database clock, so instances with drifting clocks agree on it
+    @Query(value = """
+        SELECT * FROM change_journal
+        WHERE user_id = :userId AND change_id > :cursor
+            AND changed_at < clock_timestamp() - CAST(:settleDelay AS interval)
+        ORDER BY change_id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ChangeJournalEntry> findSettled(
+        @Param("userId") Long userId,
+        @Param("cursor") Long cursor,
+        @Param("settleDelay") String settleDelay,
+        @Param("limit") int limit
+    );
+
+    // The arrays are parallel, each index names one change
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO change_journal (user_id, path, change_type, size, changed_at)
+        SELECT :userId, c.path, c.change_type, c.size, clock_timestamp()
+        FROM unnest(CAST(:paths AS text[]), CAST(:types AS text[]), CAST(:sizes AS bigint[])) AS c(path, change_type, size)
+        """, nativeQuery = true)
+    void appendAll(
+        @Param("userId") Long userId,
+        @Param("paths") String[] paths,
+        @Param("types") String[] types,
+        @Param("sizes") Long[] sizes
+    );
+
+    // Where a client resumes after listing its tree; changes that are not settled yet may still be preceded by others
+    @Query(value = """
+        SELECT max(change_id) FROM change_journal
+        WHERE user_id = :userId AND changed_at < clock_timestamp() - CAST(:settleDelay AS interval)
+        """, nativeQuery = true)
+    Optional<Long> getLatestSettledId(@Param("userId") Long userId, @Param("settleDelay") String settleDelay);
+
+    @Query(value = "SELECT floor_id FROM change_journal_floors WHERE user_id = :userId", nativeQuery = true)
+    Optional<Long> getFloor(@Param("userId") Long userId);
+
+    // A client only needs the latest change of each path, so older ones can go once nobody is likely paging through them
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM change_journal c
+        WHERE c.changed_at < :before AND EXISTS (
+            SELECT 1 FROM change_journal n
+            WHERE n.user_id = c.user_id AND n.path = c.path AND n.change_id > c.change_id
+        )
+        """, nativeQuery = true)
+    int deleteSuperseded(@Param("before") Instant before);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO change_journal_floors (user_id, floor_id)
+        SELECT user_id, max(change_id) FROM change_journal WHERE changed_at < :before GROUP BY user_id
+        ON CONFLICT (user_id) DO UPDATE SET
+            floor_id = GREATEST(change_journal_floors.floor_id, EXCLUDED.floor_id)
+        """, nativeQuery = true)
+    void raiseFloors(@Param("before") Instant before);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM change_journal WHERE changed_at < :before", nativeQuery = true)
+    int deleteBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,66 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.FolderUsage;
+import com.arsnyan.cloudstorageservice.model.FolderUsageId;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FolderUsageRepository extends JpaRepository<@NonNull FolderUsage, @NonNull FolderUsageId> {
+    @Query("SELECT f FROM FolderUsage f WHERE f.id.userId = :userId AND f.id.path IN :paths")
+    List<FolderUsage> getFolderUsages(@Param("userId") Long userId, @Param("paths") Collection<String> paths);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO folder_usage (user_id, path, total_bytes, object_count)
+        VALUES (:userId, :path, GREATEST(:bytes, 0), GREATEST(:objects, 0))
+        ON CONFLICT (user_id, path) DO UPDATE SET
+            total_bytes = GREATEST(folder_usage.total_bytes + :bytes, 0),
+            object_count = GREATEST(folder_usage.object_count + :objects, 0)
+        """, nativeQuery = true)
+    void addUsage(
+        @Param("userId") Long userId,
+        @Param("path") String path,
+        @Param("bytes") long bytes,
+        @Param("objects") long objects
+    );
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM FolderUsage f WHERE f.id.userId = :userId AND f.objectCount <= 0")
+    void deleteEmpty(@Param("userId") Long userId);
+
+    // Replaces the counters of every given folder in one statement, the arrays are parallel
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO folder_usage (user_id, path, total_bytes, object_count)
+        SELECT :userId, u.path, u.total_bytes, u.object_count
+        FROM unnest(CAST(:paths AS text[]), CAST(:bytes AS bigint[]), CAST(:objects AS bigint[]))
+            AS u(path, total_bytes, object_count)
+        ON CONFLICT (user_id, path) DO UPDATE SET
+            total_bytes = EXCLUDED.total_bytes,
+            object_count = EXCLUDED.object_count
+        """, nativeQuery = true)
+    void replaceUsages(
+        @Param("userId") Long userId,
+        @Param("paths") String[] paths,
+        @Param("bytes") long[] bytes,
+        @Param("objects") long[] objects
+    );
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM folder_usage
+        WHERE user_id = :userId AND NOT (path = ANY (CAST(:paths AS text[])))
+        """, nativeQuery = true)
+    void deleteAllOfUserExcept(@Param("userId") Long userId, @Param("paths") String[] paths);
+}
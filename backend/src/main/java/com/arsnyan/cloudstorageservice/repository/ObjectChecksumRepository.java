@@ -0,0 +1,39 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.ObjectChecksum;
+import com.arsnyan.cloudstorageservice.model.ObjectChecksumId;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ObjectChecksumRepository extends JpaRepository<@NonNull ObjectChecksum, @NonNull ObjectChecksumId> {
+    // The arrays are parallel, each pair names one object version
+    @Query(value = """
+        SELECT c.* FROM object_checksums c
+        JOIN unnest(CAST(:objectKeys AS text[]), CAST(:etags AS text[])) AS v(object_key, etag)
+            ON c.object_key = v.object_key AND c.etag = v.etag
+        """, nativeQuery = true)
+    List<ObjectChecksum> findAllByVersions(
+        @Param("objectKeys") String[] objectKeys,
+        @Param("etags") String[] etags
+    );
+
+    // Two downloads of the same folder may compute the same checksum at once
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO object_checksums (object_key, etag, size, crc32) VALUES (:objectKey, :etag, :size, :crc32)
+        ON CONFLICT (object_key, etag) DO NOTHING
+        """, nativeQuery = true)
+    void saveIfMissing(
+        @Param("objectKey") String objectKey,
+        @Param("etag") String etag,
+        @Param("size") long size,
+        @Param("crc32") long crc32
+    );
+}
@@ -0,0 +1,45 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.ObjectSize;
+import com.arsnyan.cloudstorageservice.model.ObjectSizeId;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ObjectSizeRepository extends JpaRepository<@NonNull ObjectSize, @NonNull ObjectSizeId> {
+    @Query("SELECT o FROM ObjectSize o WHERE o.id.userId = :userId AND o.id.path IN :paths")
+    List<ObjectSize> getSizes(@Param("userId") Long userId, @Param("paths") Collection<String> paths);
+
+    // The arrays are parallel
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO object_sizes (user_id, path, size)
+        SELECT :userId, o.path, o.size
+        FROM unnest(CAST(:paths AS text[]), CAST(:sizes AS bigint[])) AS o(path, size)
+        ON CONFLICT (user_id, path) DO UPDATE SET size = EXCLUDED.size
+        """, nativeQuery = true)
+    void putSizes(@Param("userId") Long userId, @Param("paths") String[] paths, @Param("sizes") long[] sizes);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM object_sizes
+        WHERE user_id = :userId AND path = ANY (CAST(:paths AS text[]))
+        """, nativeQuery = true)
+    void deleteSizes(@Param("userId") Long userId, @Param("paths") String[] paths);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM object_sizes
+        WHERE user_id = :userId AND NOT (path = ANY (CAST(:paths AS text[])))
+        """, nativeQuery = true)
+    void deleteAllOfUserExcept(@Param("userId") Long userId, @Param("paths") String[] paths);
+}
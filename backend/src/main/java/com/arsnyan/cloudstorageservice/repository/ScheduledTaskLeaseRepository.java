@@ -0,0 +1,32 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.ScheduledTaskLease;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ScheduledTaskLeaseRepository extends JpaRepository<@NonNull ScheduledTaskLease, @NonNull String> {
+    // 1 when the lease was free or had expired, 0 while another instance holds it
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO scheduled_task_leases (task, locked_until, locked_by)
+        VALUES (:task, now() + make_interval(secs => :seconds), :owner)
+        ON CONFLICT (task) DO UPDATE SET
+            locked_until = EXCLUDED.locked_until,
+            locked_by = EXCLUDED.locked_by
+        WHERE scheduled_task_leases.locked_until < now()
+        """, nativeQuery = true)
+    int tryAcquire(@Param("task") String task, @Param("seconds") long seconds, @Param("owner") String owner);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE scheduled_task_leases SET locked_until = now()
+        WHERE task = :task AND locked_by = :owner
+        """, nativeQuery = true)
+    void release(@Param("task") String task, @Param("owner") String owner);
+}
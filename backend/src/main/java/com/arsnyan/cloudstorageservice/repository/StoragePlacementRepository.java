@@ -0,0 +1,47 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.StoragePlacement;
+import lombok.NonNull;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface StoragePlacementRepository extends JpaRepository<@NonNull StoragePlacement, @NonNull Long> {
+    @Query("SELECT p.shard FROM StoragePlacement p WHERE p.userId = :userId")
+    String getShard(@Param("userId") Long userId);
+
+    /**
+     * Records the shard of a user that has none yet and returns the one in effect, which is a
+     * different one when a concurrent request got there first. Commits on its own, so callers in
+     * read-only transactions can use it and other instances see the placement before any write.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = """
+        WITH inserted AS (
+            INSERT INTO storage_placements (user_id, shard) VALUES (:userId, :shard)
+            ON CONFLICT (user_id) DO NOTHING
+            RETURNING shard
+        )
+        SELECT shard FROM inserted
+        UNION ALL
+        SELECT shard FROM storage_placements WHERE user_id = :userId
+        LIMIT 1
+        """, nativeQuery = true)
+    String assignIfMissing(@Param("userId") Long userId, @Param("shard") String shard);
+
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE StoragePlacement p SET p.shard = :to, p.assignedAt = CURRENT_TIMESTAMP
+        WHERE p.userId = :userId AND p.shard = :from
+        """)
+    int reassign(@Param("userId") Long userId, @Param("from") String from, @Param("to") String to);
+
+    List<StoragePlacement> findByUserIdGreaterThanOrderByUserId(Long userId, Limit limit);
+}
@@ -0,0 +1,57 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.StorageRebalance;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface StorageRebalanceRepository extends JpaRepository<@NonNull StorageRebalance, @NonNull Short> {
+    // 1 when no rebalance was running or its owner stopped reporting within the lease, 0 otherwise
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_rebalance SET
+            running = true,
+            owner = :owner,
+            checked_users = 0,
+            moved_users = 0,
+            failed_users = 0,
+            started_at = now(),
+            finished_at = NULL,
+            reported_at = now()
+        WHERE id = 1 AND (NOT running OR reported_at < now() - make_interval(secs => :leaseSeconds))
+        """, nativeQuery = true)
+    int tryStart(@Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    // 0 once another instance has taken the rebalance over
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_rebalance SET
+            checked_users = :checked,
+            moved_users = :moved,
+            failed_users = :failed,
+            reported_at = now()
+        WHERE id = 1 AND running AND owner = :owner
+        """, nativeQuery = true)
+    int report(@Param("owner") String owner, @Param("checked") long checked, @Param("moved") long moved,
+               @Param("failed") long failed);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_rebalance SET
+            running = false,
+            checked_users = :checked,
+            moved_users = :moved,
+            failed_users = :failed,
+            finished_at = now(),
+            reported_at = now()
+        WHERE id = 1 AND running AND owner = :owner
+        """, nativeQuery = true)
+    int finish(@Param("owner") String owner, @Param("checked") long checked, @Param("moved") long moved,
+               @Param("failed") long failed);
+}
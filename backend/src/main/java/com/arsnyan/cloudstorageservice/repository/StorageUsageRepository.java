@@ -0,0 +1,95 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.StorageUsage;
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface StorageUsageRepository extends JpaRepository<@NonNull StorageUsage, @NonNull Long> {
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO storage_usage (user_id, used_bytes, object_count, version)
+        VALUES (:userId, GREATEST(:bytes, 0), GREATEST(:objects, 0), 1)
+        ON CONFLICT (user_id) DO UPDATE SET
+            used_bytes = GREATEST(storage_usage.used_bytes + :bytes, 0),
+            object_count = GREATEST(storage_usage.object_count + :objects, 0),
+            version = storage_usage.version + 1
+        """, nativeQuery = true)
+    void addUsage(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("objects") long objects);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO storage_usage (user_id) VALUES (:userId)
+        ON CONFLICT (user_id) DO NOTHING
+        """, nativeQuery = true)
+    void createIfMissing(@Param("userId") Long userId);
+
+    // Only a fresh row starts with a known root entry count; an existing row keeps whatever it has
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO storage_usage (user_id, root_entries) VALUES (:userId, 0)
+        ON CONFLICT (user_id) DO NOTHING
+        """, nativeQuery = true)
+    void initializeManifest(@Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_usage
+        SET root_entries = GREATEST(root_entries + :delta, 0)
+        WHERE user_id = :userId AND root_entries IS NOT NULL
+        """, nativeQuery = true)
+    void addRootEntries(@Param("userId") Long userId, @Param("delta") long delta);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_usage
+        SET used_bytes = :bytes, object_count = :objects, root_entries = :rootEntries,
+            version = version + 1, reconciled_at = now()
+        WHERE user_id = :userId AND version = :version
+        """, nativeQuery = true)
+    int reconcile(
+        @Param("userId") Long userId,
+        @Param("bytes") long bytes,
+        @Param("objects") long objects,
+        @Param("rootEntries") long rootEntries,
+        @Param("version") long expectedVersion
+    );
+
+    // 0 when the reservation would take the user over their quota; the row lock orders concurrent writers
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_usage
+        SET reserved_bytes = reserved_bytes + :bytes, reserved_at = now()
+        WHERE user_id = :userId
+          AND used_bytes + reserved_bytes + :bytes <= COALESCE(quota_bytes, :defaultQuota)
+        """, nativeQuery = true)
+    int reserve(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("defaultQuota") long defaultQuota);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_usage SET reserved_bytes = GREATEST(reserved_bytes - :bytes, 0)
+        WHERE user_id = :userId
+        """, nativeQuery = true)
+    void release(@Param("userId") Long userId, @Param("bytes") long bytes);
+
+    // Reservations of an instance that died before giving them back
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE storage_usage SET reserved_bytes = 0
+        WHERE reserved_bytes > 0 AND reserved_at < :before
+        """, nativeQuery = true)
+    int releaseReservedBefore(@Param("before") Instant before);
+}
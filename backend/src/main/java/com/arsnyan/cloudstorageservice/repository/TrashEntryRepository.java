@@ -0,0 +1,58 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.model.TrashEntry;
+import lombok.NonNull;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface TrashEntryRepository extends JpaRepository<@NonNull TrashEntry, @NonNull Long> {
+    List<TrashEntry> findAllByUserIdOrderByTrashedAtDesc(Long userId);
+
+    // LIKE treats "_" and "%" in the prefix as wildcards, which only adds rows the caller filters out
+    @Query("""
+        SELECT t.path FROM TrashEntry t
+        WHERE t.userId = :userId AND t.storedPath IS NULL
+            AND (t.path IN :paths OR t.path LIKE CONCAT(:prefix, '%'))
+        """)
+    List<String> getTrashedPaths(
+        @Param("userId") Long userId,
+        @Param("paths") Collection<String> paths,
+        @Param("prefix") String prefix
+    );
+
+    // Entries whose objects are still at their path, the same rows getTrashedPaths reads
+    @Query("""
+        SELECT t FROM TrashEntry t
+        WHERE t.userId = :userId AND t.storedPath IS NULL
+            AND (t.path IN :paths OR t.path LIKE CONCAT(:prefix, '%'))
+        """)
+    List<TrashEntry> findAllInPlace(
+        @Param("userId") Long userId,
+        @Param("paths") Collection<String> paths,
+        @Param("prefix") String prefix
+    );
+
+    @Query("""
+        SELECT t FROM TrashEntry t
+        WHERE t.userId = :userId AND COALESCE(t.storedPath, t.path) LIKE CONCAT(:prefix, '%')
+        """)
+    List<TrashEntry> findAllStoredUnder(@Param("userId") Long userId, @Param("prefix") String prefix);
+
+    Optional<TrashEntry> findByIdAndUserId(Long id, Long userId);
+
+    List<TrashEntry> findByTrashedAtBeforeOrderByTrashedAt(Instant before, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TrashEntry t WHERE t.id = :id AND t.userId = :userId")
+    int deleteEntry(@Param("id") Long id, @Param("userId") Long userId);
+}
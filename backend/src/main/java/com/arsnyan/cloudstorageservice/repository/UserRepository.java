@@ -2,18 +2,75 @@ package com.arsnyan.cloudstorageservice.repository;
 
 import com.arsnyan.cloudstorageservice.model.User;
 import lombok.NonNull;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<@NonNull User, @NonNull Long> {
-    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :username")
+    @Query("SELECT u FROM User u WHERE u.username = :username")
     Optional<User> getUserByUsername(@Param("username") String username);
 
     @Query("SELECT u.id FROM User u WHERE u.username = :username")
     Optional<Long> getUserIdByUsername(@Param("username") String username);
 
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> getUserIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    Optional<String> getUsernameById(@Param("id") Long id);
+
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> getExistingUsernames(@Param("usernames") Collection<String> usernames);
+
     boolean existsByUsername(String username);
+
+    /**
+     * Inserts the users whose username is still free; the arrays are parallel.
+     * <p>
+     * Ids are taken the way Hibernate's pooled generator takes them: every value of {@code users_seq}
+     * is the top of a block of 50 ids, so one value serves 50 users. The column default would spend a
+     * whole block on each of them.
+     *
+     * @return the users that were inserted, usernames taken meanwhile are left out
+     */
+    @Query(value = """
+        WITH input AS (
+            SELECT u.username, u.password, u.n - 1 AS n
+            FROM unnest(CAST(:usernames AS varchar[]), CAST(:passwords AS varchar[]))
+                WITH ORDINALITY AS u(username, password, n)
+        ),
+        blocks AS (
+            SELECT b.n - 1 AS n, nextval('users_seq') AS top
+            FROM generate_series(1, (SELECT (count(*) + 49) / 50 FROM input)) WITH ORDINALITY AS b(i, n)
+        )
+        INSERT INTO users (user_id, username, password, role_mask)
+        SELECT b.top - 49 + i.n % 50, i.username, i.password, :roleMask
+        FROM input i
+        JOIN blocks b ON b.n = i.n / 50
+        ON CONFLICT (username) DO NOTHING
+        RETURNING user_id AS id, username
+        """, nativeQuery = true)
+    List<InsertedUser> insertIfAbsent(
+        @Param("usernames") String[] usernames,
+        @Param("passwords") String[] passwords,
+        @Param("roleMask") int roleMask
+    );
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    void updatePassword(@Param("username") String username, @Param("password") String password);
+
+    interface InsertedUser {
+        Long getId();
+
+        String getUsername();
+    }
 }
@@ -0,0 +1,49 @@
+package com.arsnyan.cloudstorageservice.scheduling;
+
+import com.arsnyan.cloudstorageservice.repository.ScheduledTaskLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Keeps a scheduled task that every instance triggers from running on more than one of them at a
+ * time. The lease is given back when the task ends, and expires on its own if the instance dies.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ScheduledTaskLock {
+    private final ScheduledTaskLeaseRepository leaseRepository;
+    private final String owner = UUID.randomUUID().toString();
+
+    /**
+     * @param lease longer than the task can run, or another instance may start it again
+     * @return whether the task ran here
+     */
+    public boolean runExclusively(String task, Duration lease, Runnable runnable) {
+        try {
+            if (leaseRepository.tryAcquire(task, lease.toSeconds(), owner) == 0) {
+                log.debug("Skipping {}, another instance is running it", task);
+                return false;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to acquire the lease of {}, skipping this run: {}", task, e.getMessage());
+            return false;
+        }
+
+        try {
+            runnable.run();
+            return true;
+        } finally {
+            try {
+                leaseRepository.release(task, owner);
+            } catch (DataAccessException e) {
+                log.warn("Failed to release the lease of {}, it expires on its own: {}", task, e.getMessage());
+            }
+        }
+    }
+}
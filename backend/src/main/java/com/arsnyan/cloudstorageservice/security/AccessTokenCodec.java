@@ -0,0 +1,118 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Issues and verifies access tokens of the form {@code base64url(claims).base64url(hmac)}. The
+ * claims are a small binary record (session, user, role bits, expiry, username) signed with
+ * HMAC-SHA256, so a token can be checked without touching Redis or the database.
+ */
+public class AccessTokenCodec {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 0x01;
+    private static final int MIN_KEY_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Clock clock;
+    // Mac instances are not thread-safe, but creating one per request is wasteful
+    private final ThreadLocal<Mac> macs;
+
+    public AccessTokenCodec(byte[] secret) {
+        this(secret, Clock.systemUTC());
+    }
+
+    AccessTokenCodec(byte[] secret, Clock clock) {
+        if (secret.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException("Token signing key must be at least %d bytes".formatted(MIN_KEY_LENGTH));
+        }
+
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public String encode(TokenClaims claims) {
+        var buffer = new ByteArrayOutputStream(64);
+        try (var output = new DataOutputStream(buffer)) {
+            output.writeByte(VERSION);
+            output.writeLong(claims.sessionId());
+            output.writeLong(claims.userId());
+            output.writeInt(claims.roleMask());
+            output.writeLong(claims.expiresAt().getEpochSecond());
+            output.writeUTF(claims.username());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode access token", e);
+        }
+
+        var payload = buffer.toByteArray();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    public TokenClaims decode(String token) {
+        var separator = token.indexOf('.');
+        if (separator <= 0 || separator != token.lastIndexOf('.')) {
+            throw new BadCredentialsException("Malformed access token");
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, separator));
+            signature = DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("Malformed access token");
+        }
+
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            throw new BadCredentialsException("Invalid access token signature");
+        }
+
+        TokenClaims claims;
+        try (var input = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (input.readByte() != VERSION) {
+                throw new BadCredentialsException("Unsupported access token version");
+            }
+
+            var sessionId = input.readLong();
+            var userId = input.readLong();
+            var roleMask = input.readInt();
+            var expiresAt = Instant.ofEpochSecond(input.readLong());
+            claims = new TokenClaims(sessionId, userId, input.readUTF(), roleMask, expiresAt);
+        } catch (IOException e) {
+            throw new BadCredentialsException("Malformed access token");
+        }
+
+        if (!claims.expiresAt().isAfter(clock.instant())) {
+            throw new CredentialsExpiredException("Access token has expired");
+        }
+
+        return claims;
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
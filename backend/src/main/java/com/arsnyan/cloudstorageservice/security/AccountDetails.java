@@ -0,0 +1,34 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import com.arsnyan.cloudstorageservice.model.Role;
+import lombok.Getter;
+import org.springframework.security.core.userdetails.User;
+
+import java.io.Serial;
+
+/**
+ * Full account loaded for a sign-in attempt, including the password hash. Only lives for the
+ * duration of authentication; what stays in the session is a {@link SessionUser}.
+ */
+@Getter
+public class AccountDetails extends User {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Long userId;
+    private final int roleMask;
+
+    public AccountDetails(Long userId, String username, String password, int roleMask,
+                          boolean enabled, boolean accountNonExpired, boolean credentialsNonExpired,
+                          boolean accountNonLocked) {
+        super(username, password, enabled, accountNonExpired, credentialsNonExpired, accountNonLocked,
+            Role.toAuthorities(roleMask));
+        this.userId = userId;
+        this.roleMask = roleMask;
+    }
+
+    public AccountDetails withPassword(String newPassword) {
+        return new AccountDetails(userId, getUsername(), newPassword, roleMask, isEnabled(),
+            isAccountNonExpired(), isCredentialsNonExpired(), isAccountNonLocked());
+    }
+}
@@ -0,0 +1,189 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs a delegate encoder on a small fixed pool sized to the CPU count, so a burst of sign-ins
+ * can't occupy every CPU with hashing. Work beyond the pool and a bounded queue is refused
+ * straight away with {@link ServiceOverloadedException} instead of piling up.
+ * <p>
+ * This is admission control only: the calling request thread still waits for its hash, up to the
+ * timeout, as {@link PasswordEncoder} and the authentication manager above it are synchronous.
+ * What it bounds is the number of hashes computed at once and the number of threads left waiting.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueTimer;
+    private final Counter rejections;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration timeout,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thread.ofPlatform().name("password-hashing-", 0).daemon().factory(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        this.queueTimer = Timer.builder("security.password.hash.queue")
+            .description("Time password hashing tasks wait for a free thread")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.rejections = Counter.builder("security.password.hash.rejected")
+            .register(meterRegistry);
+        Gauge.builder("security.password.hash.queued", executor, e -> e.getQueue().size())
+            .register(meterRegistry);
+        Gauge.builder("security.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    /**
+     * Encodes a batch of passwords for bulk provisioning. Fewer tasks than hashing threads are
+     * kept in flight, so sign-ins arriving meanwhile wait for a free thread instead of behind
+     * the whole batch.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        var window = Math.max(1, executor.getMaximumPoolSize() - 1);
+        var encoded = new String[rawPasswords.size()];
+        var inFlight = new ArrayDeque<PendingHash>();
+
+        for (var i = 0; i < rawPasswords.size(); i++) {
+            if (inFlight.size() >= window) {
+                inFlight.poll().complete(encoded);
+            }
+
+            var rawPassword = rawPasswords.get(i);
+            while (true) {
+                try {
+                    inFlight.add(new PendingHash(i, executor.submit(() -> encodeTimer.record(() -> delegate.encode(rawPassword)))));
+                    break;
+                } catch (RejectedExecutionException e) {
+                    // The queue is full of sign-ins; let them through before submitting more
+                    if (inFlight.isEmpty()) {
+                        pause();
+                    } else {
+                        inFlight.poll().complete(encoded);
+                    }
+                }
+            }
+        }
+
+        while (!inFlight.isEmpty()) {
+            inFlight.poll().complete(encoded);
+        }
+
+        return Arrays.asList(encoded);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T submit(Timer timer, Supplier<T> task) {
+        var submittedAt = System.nanoTime();
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return timer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new ServiceOverloadedException("Too many sign-in attempts at the moment, try again shortly", RETRY_AFTER);
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejections.increment();
+            throw new ServiceOverloadedException("Password check timed out, try again shortly", RETRY_AFTER);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+
+    private record PendingHash(int index, Future<String> future) {
+        void complete(String[] encoded) {
+            try {
+                encoded[index] = future.get();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("Password hashing failed", e.getCause());
+            }
+        }
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("security.password.hash")
+            .description("Time spent computing password hashes")
+            .tag("operation", operation)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+}
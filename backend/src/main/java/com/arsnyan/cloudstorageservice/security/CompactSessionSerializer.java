@@ -0,0 +1,121 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.*;
+
+/**
+ * Serializer for Spring Session attributes. A security context holding a {@link SessionUser}
+ * is written as a few bytes (id, role bits, username) instead of a JDK-serialized object graph;
+ * anything else falls back to JDK serialization. Values written by the plain JDK serializer
+ * before this one was introduced still deserialize, since they start with the JDK stream magic.
+ */
+public class CompactSessionSerializer implements RedisSerializer<Object> {
+    private static final byte SECURITY_CONTEXT_V1 = 0x01;
+
+    private final JdkSerializationRedisSerializer fallback = new JdkSerializationRedisSerializer();
+
+    private final Timer serializeTimer;
+    private final Timer deserializeTimer;
+    private final DistributionSummary compactSize;
+    private final DistributionSummary jdkSize;
+
+    public CompactSessionSerializer(MeterRegistry meterRegistry) {
+        this.serializeTimer = Timer.builder("session.serialization")
+            .tag("operation", "serialize")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.deserializeTimer = Timer.builder("session.serialization")
+            .tag("operation", "deserialize")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.compactSize = attributeSize(meterRegistry, "compact");
+        this.jdkSize = attributeSize(meterRegistry, "jdk");
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+
+        return serializeTimer.record(() -> {
+            var principal = compactPrincipal(value);
+            if (principal == null) {
+                var bytes = fallback.serialize(value);
+                jdkSize.record(bytes.length);
+                return bytes;
+            }
+
+            var buffer = new ByteArrayOutputStream(64);
+            try (var output = new DataOutputStream(buffer)) {
+                output.writeByte(SECURITY_CONTEXT_V1);
+                output.writeLong(principal.getUserId());
+                output.writeInt(principal.getRoleMask());
+                output.writeUTF(principal.getUsername());
+            } catch (IOException e) {
+                throw new SerializationException("Failed to serialize security context", e);
+            }
+
+            var bytes = buffer.toByteArray();
+            compactSize.record(bytes.length);
+            return bytes;
+        });
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        return deserializeTimer.record(() -> {
+            if (bytes[0] != SECURITY_CONTEXT_V1) {
+                return fallback.deserialize(bytes);
+            }
+
+            try (var input = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+                var userId = input.readLong();
+                var roleMask = input.readInt();
+                var principal = new SessionUser(userId, input.readUTF(), roleMask);
+
+                return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(
+                    principal,
+                    null,
+                    principal.getAuthorities()
+                ));
+            } catch (IOException e) {
+                throw new SerializationException("Failed to deserialize security context", e);
+            }
+        });
+    }
+
+    private static SessionUser compactPrincipal(Object value) {
+        if (value instanceof SecurityContext context
+            && context.getAuthentication() instanceof UsernamePasswordAuthenticationToken authentication
+            && authentication.getPrincipal() instanceof SessionUser principal
+            && authentication.isAuthenticated()
+            && authentication.getDetails() == null) {
+            return principal;
+        }
+
+        return null;
+    }
+
+    private static DistributionSummary attributeSize(MeterRegistry meterRegistry, String format) {
+        return DistributionSummary.builder("session.attribute.size")
+            .description("Serialized size of session attributes")
+            .baseUnit("bytes")
+            .tag("format", format)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,37 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import com.arsnyan.cloudstorageservice.model.Role;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.io.Serial;
+import java.util.Collection;
+
+/**
+ * Principal kept in the session after sign-in: just enough to identify the user and their
+ * roles, without the password hash or authority objects.
+ */
+@Value
+public class SessionUser implements UserDetails {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    Long userId;
+    String username;
+    int roleMask;
+
+    public static SessionUser from(AccountDetails account) {
+        return new SessionUser(account.getUserId(), account.getUsername(), account.getRoleMask());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Role.toAuthorities(roleMask);
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import java.time.Instant;
+
+public record TokenClaims(
+    long sessionId,
+    long userId,
+    String username,
+    int roleMask,
+    Instant expiresAt
+) {
+    public SessionUser toPrincipal() {
+        return new SessionUser(userId, username, roleMask);
+    }
+}
@@ -0,0 +1,64 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import com.arsnyan.cloudstorageservice.repository.AuthSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local copy of recently revoked sessions, checked on every token-authenticated request.
+ * Revocations made on this instance apply at once; ones made elsewhere are picked up by
+ * {@link #sync()}. Entries only need to outlive the access tokens issued before the revocation,
+ * so the list never holds more than one access token lifetime worth of sign-outs.
+ */
+@Slf4j
+public class TokenRevocationList {
+    private final AuthSessionRepository authSessionRepository;
+    private final Duration accessTokenTtl;
+    private final Clock clock;
+
+    // Session id -> when the entry can be forgotten
+    private final Map<Long, Long> revoked = new ConcurrentHashMap<>();
+
+    public TokenRevocationList(AuthSessionRepository authSessionRepository, Duration accessTokenTtl, Clock clock) {
+        this.authSessionRepository = authSessionRepository;
+        this.accessTokenTtl = accessTokenTtl;
+        this.clock = clock;
+    }
+
+    public boolean isRevoked(long sessionId) {
+        return revoked.containsKey(sessionId);
+    }
+
+    public void revoke(long sessionId) {
+        var now = clock.instant();
+        revoked.put(sessionId, now.plus(accessTokenTtl).toEpochMilli());
+        authSessionRepository.revoke(sessionId, now);
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.token.revocation-sync-interval:PT15S}")
+    public void sync() {
+        var now = clock.instant();
+        var forgetAt = now.plus(accessTokenTtl).toEpochMilli();
+
+        try {
+            for (var sessionId : authSessionRepository.getRevokedSince(now.minus(accessTokenTtl))) {
+                revoked.putIfAbsent(sessionId, forgetAt);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to sync token revocations: {}", e.getMessage());
+        }
+
+        var nowMillis = now.toEpochMilli();
+        revoked.values().removeIf(expiry -> expiry <= nowMillis);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+}
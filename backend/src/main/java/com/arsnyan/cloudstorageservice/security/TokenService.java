@@ -0,0 +1,173 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import com.arsnyan.cloudstorageservice.dto.authentication.AuthTokensDto;
+import com.arsnyan.cloudstorageservice.model.AuthSession;
+import com.arsnyan.cloudstorageservice.repository.AuthSessionRepository;
+import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Stateless authentication: short-lived signed access tokens verified in memory, backed by
+ * long-lived refresh tokens stored (hashed) in {@code auth_sessions}. Refreshing rotates the
+ * refresh token and reloads the account, so role changes and locks apply within one access
+ * token lifetime.
+ */
+@Slf4j
+public class TokenService {
+    private static final String TOKEN_TYPE = "Bearer";
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
+    private final AuthSessionRepository authSessionRepository;
+    private final UserRepository userRepository;
+    private final UserDetailsService userDetailsService;
+    private final AccessTokenCodec codec;
+    private final TokenRevocationList revocationList;
+    private final Duration accessTokenTtl;
+    private final Duration refreshTokenTtl;
+    private final Clock clock;
+
+    private final SecureRandom random = new SecureRandom();
+    private final AccountStatusUserDetailsChecker accountChecker = new AccountStatusUserDetailsChecker();
+
+    private final Counter validTokens;
+    private final Counter invalidTokens;
+    private final Counter expiredTokens;
+    private final Counter revokedTokens;
+
+    public TokenService(AuthSessionRepository authSessionRepository, UserRepository userRepository,
+                        UserDetailsService userDetailsService, AccessTokenCodec codec,
+                        TokenRevocationList revocationList, Duration accessTokenTtl, Duration refreshTokenTtl,
+                        Clock clock, MeterRegistry meterRegistry) {
+        this.authSessionRepository = authSessionRepository;
+        this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.codec = codec;
+        this.revocationList = revocationList;
+        this.accessTokenTtl = accessTokenTtl;
+        this.refreshTokenTtl = refreshTokenTtl;
+        this.clock = clock;
+
+        this.validTokens = verifications(meterRegistry, "valid");
+        this.invalidTokens = verifications(meterRegistry, "invalid");
+        this.expiredTokens = verifications(meterRegistry, "expired");
+        this.revokedTokens = verifications(meterRegistry, "revoked");
+    }
+
+    public AuthTokensDto issue(SessionUser user) {
+        var now = clock.instant();
+        var refreshToken = newRefreshToken();
+
+        var session = authSessionRepository.save(
+            new AuthSession(null, user.getUserId(), hash(refreshToken), now, now.plus(refreshTokenTtl), null)
+        );
+
+        return tokens(session.getId(), user, refreshToken, now);
+    }
+
+    public AuthTokensDto refresh(String refreshToken) {
+        var now = clock.instant();
+        var hash = hash(refreshToken);
+
+        var session = authSessionRepository.findByRefreshTokenHash(hash)
+            .filter(s -> s.getRevokedAt() == null && s.getExpiresAt().isAfter(now))
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+
+        var username = userRepository.getUsernameById(session.getUserId())
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        var account = (AccountDetails) userDetailsService.loadUserByUsername(username);
+        accountChecker.check(account);
+
+        var newRefreshToken = newRefreshToken();
+        if (authSessionRepository.rotate(session.getId(), hash, hash(newRefreshToken), now.plus(refreshTokenTtl)) == 0) {
+            throw new BadCredentialsException("Refresh token has already been used");
+        }
+
+        return tokens(session.getId(), SessionUser.from(account), newRefreshToken, now);
+    }
+
+    public Authentication authenticate(String accessToken) {
+        TokenClaims claims;
+        try {
+            claims = codec.decode(accessToken);
+        } catch (CredentialsExpiredException e) {
+            expiredTokens.increment();
+            throw e;
+        } catch (AuthenticationException e) {
+            invalidTokens.increment();
+            throw e;
+        }
+
+        if (revocationList.isRevoked(claims.sessionId())) {
+            revokedTokens.increment();
+            throw new CredentialsExpiredException("Session has been signed out");
+        }
+
+        validTokens.increment();
+        var principal = claims.toPrincipal();
+        var authentication = UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+        authentication.setDetails(claims);
+        return authentication;
+    }
+
+    public void revoke(long sessionId) {
+        revocationList.revoke(sessionId);
+    }
+
+    // Revoked sessions are kept for one access token lifetime so other instances can see them
+    @Scheduled(fixedDelayString = "PT1H", initialDelayString = "PT1M")
+    public void purgeExpiredSessions() {
+        var purged = authSessionRepository.deleteExpired(clock.instant().minus(accessTokenTtl));
+        if (purged > 0) {
+            log.info("Purged {} expired or revoked sessions", purged);
+        }
+    }
+
+    private AuthTokensDto tokens(long sessionId, SessionUser user, String refreshToken, Instant now) {
+        var claims = new TokenClaims(sessionId, user.getUserId(), user.getUsername(), user.getRoleMask(),
+            now.plus(accessTokenTtl));
+        return new AuthTokensDto(codec.encode(claims), TOKEN_TYPE, accessTokenTtl.toSeconds(), refreshToken);
+    }
+
+    private String newRefreshToken() {
+        var bytes = new byte[REFRESH_TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // Refresh tokens are random, so a plain digest is enough to keep them out of the database
+    private static String hash(String refreshToken) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Counter verifications(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("security.token.verifications")
+            .description("Access token verifications by outcome")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,15 @@
+package com.arsnyan.cloudstorageservice.service;
+
+import com.arsnyan.cloudstorageservice.dto.resource.ExtractionStatusDto;
+
+public interface ArchiveExtractionService {
+    /**
+     * Checks the archive and the destination, then unpacks the archive in the background.
+     *
+     * @param destination folder to create for the contents, or {@code null} for a folder named
+     *                    after the archive next to it
+     */
+    ExtractionStatusDto start(Long userId, String path, String destination);
+
+    ExtractionStatusDto getStatus(Long userId, String id);
+}
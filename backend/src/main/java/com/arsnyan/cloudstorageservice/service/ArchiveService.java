@@ -0,0 +1,45 @@
+package com.arsnyan.cloudstorageservice.service;
+
+import com.arsnyan.cloudstorageservice.dto.resource.ArchiveEntryDto;
+import com.arsnyan.cloudstorageservice.dto.resource.FileDownloadResponseDto;
+import org.springframework.http.HttpRange;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+public interface ArchiveService {
+    /**
+     * An object to pack. Folder placeholders, whose entry names end with "/", become directory
+     * entries.
+     */
+    record ArchiveSource(
+        String entryName,
+        String objectKey,
+        long size,
+        String etag,
+        ZonedDateTime lastModified
+    ) {
+        public boolean isDirectory() {
+            return entryName.endsWith("/");
+        }
+    }
+
+    /**
+     * Packs the objects into a ZIP archive streamed as the response is written.
+     *
+     * @param range part of the archive to send, or {@code null} for all of it; ignored when the
+     *              length of the archive cannot be known up front
+     */
+    FileDownloadResponseDto createArchive(String filename, List<ArchiveSource> sources, HttpRange range);
+
+    /**
+     * Lists the entries of a stored ZIP archive from its central directory, which is read with
+     * ranged requests and cached per version of the object.
+     */
+    List<ArchiveEntryDto> listEntries(String objectKey);
+
+    /**
+     * Streams one entry of a stored ZIP archive, reading only its local header and data.
+     */
+    FileDownloadResponseDto getEntry(String objectKey, String entryName);
+}
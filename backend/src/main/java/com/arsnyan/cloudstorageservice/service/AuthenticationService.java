@@ -1,5 +1,7 @@
 package com.arsnyan.cloudstorageservice.service;
 
+import com.arsnyan.cloudstorageservice.dto.authentication.AuthTokensDto;
+import com.arsnyan.cloudstorageservice.dto.authentication.UserLoginResponseDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterResponseDto;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,9 +9,11 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.userdetails.UserDetails;
 
 public interface AuthenticationService {
-    void login(String username, String password, HttpServletRequest request, HttpServletResponse response);
+    UserLoginResponseDto login(String username, String password, HttpServletRequest request, HttpServletResponse response);
 
     UserRegisterResponseDto register(UserRegisterRequestDto dto, HttpServletRequest request, HttpServletResponse response);
 
     void logout(UserDetails user, HttpServletRequest request);
+
+    AuthTokensDto refresh(String refreshToken);
 }
@@ -0,0 +1,23 @@
+package com.arsnyan.cloudstorageservice.service;
+
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeFeedDto;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+
+import java.util.List;
+
+/**
+ * A per-user log of changes that sync clients read from a cursor, so finding what changed costs
+ * as much as the changes themselves instead of a walk over the whole tree.
+ */
+public interface ChangeJournalService {
+    /**
+     * @param cursor the cursor of the previous response, or {@code null} to start syncing
+     */
+    ChangeFeedDto getChanges(Long userId, Long cursor);
+
+    /**
+     * Records changes that clients see but storage does not, such as moving a resource to the trash.
+     * Everything published as a storage change event is recorded without being passed here.
+     */
+    void append(Long userId, List<ObjectChange> changes);
+}
@@ -1,8 +1,14 @@
 package com.arsnyan.cloudstorageservice.service;
 
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeFeedDto;
 import com.arsnyan.cloudstorageservice.dto.resource.AddFolderResponseDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ArchiveEntryDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ExtractionStatusDto;
 import com.arsnyan.cloudstorageservice.dto.resource.FileDownloadResponseDto;
 import com.arsnyan.cloudstorageservice.dto.resource.ResourceGetInfoResponseDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ThumbnailDto;
+import com.arsnyan.cloudstorageservice.dto.trash.TrashEntryDto;
+import org.springframework.http.HttpRange;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -11,9 +17,21 @@ public interface FileStorageService {
     ResourceGetInfoResponseDto getResourceInfo(String username, String path);
     void deleteResource(String username, String path);
     FileDownloadResponseDto getDownloadableResource(String username, String path);
+    FileDownloadResponseDto getDownloadableResource(String username, String path, HttpRange range, String ifRange);
+    FileDownloadResponseDto getDownloadableArchive(String username, List<String> paths);
+    ThumbnailDto getThumbnail(String username, String path, int size, String ifNoneMatch);
+    List<ArchiveEntryDto> listArchiveEntries(String username, String path);
+    FileDownloadResponseDto getArchiveEntry(String username, String path, String entry);
+    ExtractionStatusDto extractArchive(String username, String path, String destination);
+    ExtractionStatusDto getExtractionStatus(String username, String id);
     ResourceGetInfoResponseDto moveResource(String username, String from, String to);
+    ResourceGetInfoResponseDto copyResource(String username, String from, String to);
     List<ResourceGetInfoResponseDto> searchResources(String username, String query);
     List<ResourceGetInfoResponseDto> uploadResources(String username, String path, List<MultipartFile> files);
     List<ResourceGetInfoResponseDto> listFolderContents(String username, String path);
     AddFolderResponseDto createFolder(String username, String path);
+    List<TrashEntryDto> listTrash(String username);
+    void restoreFromTrash(String username, Long id);
+    void deleteFromTrash(String username, Long id);
+    ChangeFeedDto getChanges(String username, Long cursor);
 }
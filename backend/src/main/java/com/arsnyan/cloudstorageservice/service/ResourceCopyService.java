@@ -0,0 +1,9 @@
+package com.arsnyan.cloudstorageservice.service;
+
+public interface ResourceCopyService {
+    /**
+     * Copies a file, or a folder with everything in it, to a path that does not exist yet.
+     * Objects are copied by the storage server, never read by this application.
+     */
+    void copy(Long userId, String from, String to);
+}
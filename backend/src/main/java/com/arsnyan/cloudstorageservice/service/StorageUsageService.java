@@ -0,0 +1,41 @@
+package com.arsnyan.cloudstorageservice.service;
+
+import com.arsnyan.cloudstorageservice.dto.storage.StorageUsageResponseDto;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface StorageUsageService {
+    StorageUsageResponseDto getUsage(String username);
+
+    /**
+     * Counts the bytes towards the user's quota until the returned reservation is closed, which
+     * should happen once the write has ended and its change event has been published.
+     *
+     * @throws com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException when the
+     *         bytes do not fit in the quota alongside what is stored and reserved already
+     */
+    QuotaReservation reserveQuota(Long userId, long incomingBytes);
+
+    /**
+     * Bytes stored at or below the folder. Trashed resources count until they are purged, as they
+     * do towards the quota, rather than recounting every folder above them on each trash and restore.
+     */
+    long getFolderSize(Long userId, String folderPath);
+
+    // Same as getFolderSize, for many folders at once
+    Map<String, Long> getFolderSizes(Long userId, Collection<String> folderPaths);
+
+    /**
+     * Whether the user is known to have nothing stored, so their root listing can be answered
+     * without asking object storage. {@code false} when that is not known.
+     */
+    boolean isKnownEmpty(Long userId);
+
+    void reconcile(Long userId);
+
+    interface QuotaReservation extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
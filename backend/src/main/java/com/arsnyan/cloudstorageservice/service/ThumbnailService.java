@@ -0,0 +1,14 @@
+package com.arsnyan.cloudstorageservice.service;
+
+import com.arsnyan.cloudstorageservice.dto.resource.ThumbnailDto;
+
+public interface ThumbnailService {
+    boolean supports(String path);
+
+    /**
+     * Returns a thumbnail of the object that fits in a square of the given size, generating and
+     * storing it first when there is none yet. The content is left out when {@code ifNoneMatch}
+     * already names the current version.
+     */
+    ThumbnailDto getThumbnail(String objectKey, int size, String ifNoneMatch);
+}
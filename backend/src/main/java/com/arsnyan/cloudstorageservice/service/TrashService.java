@@ -0,0 +1,41 @@
+package com.arsnyan.cloudstorageservice.service;
+
+import com.arsnyan.cloudstorageservice.dto.trash.TrashEntryDto;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Deleted files and folders stay in storage, hidden, until the retention period runs out. Paths are
+ * relative to the user's root, with a trailing "/" for folders.
+ */
+public interface TrashService {
+    /**
+     * Hides a resource and everything below it with a single write; its objects are removed later.
+     */
+    TrashEntryDto moveToTrash(Long userId, String path);
+
+    List<TrashEntryDto> listTrash(Long userId);
+
+    void restore(Long userId, Long id);
+
+    void deleteFromTrash(Long userId, Long id);
+
+    /**
+     * Looks up the trash entries that can hide something at or below the scope once and answers
+     * for any number of paths starting with it, so a listing costs one query.
+     */
+    Predicate<String> visibleFilter(Long userId, String scope);
+
+    /**
+     * Moves trashed resources that would collide with something about to be written at the path
+     * into the trash folder, unless a visible resource is already in the way. They are moved back
+     * on restore, which is refused while the path is taken again.
+     */
+    void makeRoomFor(Long userId, String path);
+
+    /**
+     * Carries the entries of trashed resources below a moved folder along to its new path.
+     */
+    void relocate(Long userId, String from, String to);
+}
@@ -1,8 +1,12 @@
 package com.arsnyan.cloudstorageservice.service;
 
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersRequestDto;
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersResponseDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterResponseDto;
 
 public interface UserService {
     UserRegisterResponseDto registerAccount(UserRegisterRequestDto dto);
+
+    ProvisionUsersResponseDto provisionAccounts(ProvisionUsersRequestDto dto);
 }
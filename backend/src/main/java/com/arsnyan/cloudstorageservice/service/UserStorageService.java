@@ -0,0 +1,9 @@
+package com.arsnyan.cloudstorageservice.service;
+
+public interface UserStorageService {
+    /**
+     * Prepares storage for a new user: their root folder placeholder and an empty usage record.
+     * Safe to repeat.
+     */
+    void bootstrap(Long userId);
+}
@@ -0,0 +1,426 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.cache.BoundedLocalCache;
+import com.arsnyan.cloudstorageservice.config.ArchiveProperties;
+import com.arsnyan.cloudstorageservice.dto.resource.ArchiveEntryDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ExtractionStatusDto;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import com.arsnyan.cloudstorageservice.exception.UnsupportedArchiveException;
+import com.arsnyan.cloudstorageservice.model.ResourceType;
+import com.arsnyan.cloudstorageservice.service.ArchiveExtractionService;
+import com.arsnyan.cloudstorageservice.service.ArchiveService;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService.QuotaReservation;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
+import com.google.common.io.ByteStreams;
+import io.minio.SnowballObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
+
+/**
+ * Unpacks a stored ZIP file into a new folder without its bytes leaving the server. The central
+ * directory is read first, through {@link ArchiveService#listEntries}, which gives the size of
+ * every file for the quota check and every folder to create. Then the archive is read once, front
+ * to back, through a {@link ZipInputStream}. Small files are gathered into snowball batches that
+ * are uploaded in parallel; larger ones are streamed straight into their own object. Memory per
+ * job therefore stays within a few batches, whatever the size of the archive.
+ * <p>
+ * Extraction runs in the background. Its progress is kept on the instance running it while it runs
+ * and for an hour after it ends. A job that fails leaves what it extracted so far in place, and its
+ * status says so.
+ */
+@Slf4j
+@Service
+public class ArchiveExtractionServiceImpl implements ArchiveExtractionService, AutoCloseable {
+    private static final String ARCHIVE_EXTENSION = ".zip";
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(30);
+
+    private final S3Client s3Client;
+    private final ArchiveService archiveService;
+    private final StorageUsageService storageUsageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TrashService trashService;
+    private final long smallFileSize;
+    private final long batchSize;
+    private final int batchEntries;
+    private final int maxEntries;
+    private final int uploadsPerJob;
+    private final ThreadPoolExecutor jobs;
+    private final ExecutorService uploads;
+    // Bounded by the workers and the queue, a job only moves to the expiring cache once it has ended
+    private final Map<String, Job> runningJobs = new ConcurrentHashMap<>();
+    private final BoundedLocalCache<String, Job> finishedJobs = new BoundedLocalCache<>(10_000, Duration.ofHours(1));
+
+    public ArchiveExtractionServiceImpl(
+        S3Client s3Client,
+        ArchiveService archiveService,
+        StorageUsageService storageUsageService,
+        ApplicationEventPublisher eventPublisher,
+        TrashService trashService,
+        ArchiveProperties properties
+    ) {
+        var extract = properties.extract();
+        this.s3Client = s3Client;
+        this.archiveService = archiveService;
+        this.storageUsageService = storageUsageService;
+        this.eventPublisher = eventPublisher;
+        this.trashService = trashService;
+        this.smallFileSize = extract.smallFileSize().toBytes();
+        this.batchSize = extract.batchSize().toBytes();
+        this.batchEntries = extract.batchEntries();
+        this.maxEntries = extract.maxEntries();
+        this.uploadsPerJob = extract.uploadsPerJob();
+
+        this.jobs = new ThreadPoolExecutor(
+            extract.workers(),
+            extract.workers(),
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(extract.queueCapacity()),
+            Thread.ofPlatform().name("archive-extract-", 0).daemon().factory()
+        );
+        this.uploads = Executors.newFixedThreadPool(
+            extract.workers() * extract.uploadsPerJob(),
+            Thread.ofPlatform().name("archive-upload-", 0).daemon().factory()
+        );
+    }
+
+    private static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final Long userId;
+        private final String path;
+        private final String destination;
+        private final long totalFiles;
+        private final long totalBytes;
+        private final long skippedEntries;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong extractedFiles = new AtomicLong();
+        private final AtomicLong extractedBytes = new AtomicLong();
+        private volatile boolean running = true;
+        private volatile boolean wroteAny;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private Job(Long userId, String path, String destination, Plan plan) {
+            this.userId = userId;
+            this.path = path;
+            this.destination = destination;
+            this.totalFiles = plan.files().size();
+            this.totalBytes = plan.totalBytes();
+            this.skippedEntries = plan.skippedEntries();
+        }
+
+        private ExtractionStatusDto status() {
+            return new ExtractionStatusDto(id, path, destination, running, totalFiles, extractedFiles.get(),
+                totalBytes, extractedBytes.get(), skippedEntries, error, error != null && wroteAny,
+                startedAt, finishedAt);
+        }
+    }
+
+    /**
+     * @param files sizes by entry name, in archive order
+     * @param folders every folder to create, relative to the destination, parents first
+     */
+    private record Plan(Map<String, Long> files, Set<String> folders, long totalBytes, long skippedEntries) {}
+
+    private record BatchFile(String name, byte[] content) {}
+
+    @Override
+    public ExtractionStatusDto start(Long userId, String path, String destination) {
+        if (path.endsWith("/")) {
+            throw new NoSuchEntityException("Archive not found");
+        }
+
+        var target = destination != null ? destination : defaultDestination(path);
+        if (!target.endsWith("/")) {
+            target += "/";
+        }
+
+        var plan = plan(archiveService.listEntries(resolvePath(userId, path)));
+        if (plan.files().size() + plan.folders().size() > maxEntries) {
+            throw new UnsupportedArchiveException("Archive has more than %d entries to extract".formatted(maxEntries));
+        }
+
+        trashService.makeRoomFor(userId, target);
+        var targetKey = resolvePath(userId, target);
+        if (Streams.stream(s3Client.listObjects(targetKey, false)).findAny().isPresent()
+            || s3Client.hasNamingConflict(targetKey)) {
+            throw new EntityAlreadyExistsException("Folder %s already exists".formatted(target));
+        }
+        // Held until the job ends, so extractions running side by side cannot together exceed the quota
+        var reservation = storageUsageService.reserveQuota(userId, plan.totalBytes());
+
+        var job = new Job(userId, path, target, plan);
+        runningJobs.put(job.id, job);
+        try {
+            jobs.execute(() -> run(job, plan, reservation));
+        } catch (RejectedExecutionException e) {
+            runningJobs.remove(job.id);
+            reservation.close();
+            throw new ServiceOverloadedException("Too many archives are being extracted, try again later", RETRY_AFTER);
+        }
+
+        return job.status();
+    }
+
+    @Override
+    public ExtractionStatusDto getStatus(Long userId, String id) {
+        var job = runningJobs.get(id);
+        if (job == null) {
+            job = finishedJobs.get(id);
+        }
+        if (job == null || !job.userId.equals(userId)) {
+            throw new NoSuchEntityException("Extraction not found");
+        }
+        return job.status();
+    }
+
+    @Override
+    public void close() {
+        jobs.shutdownNow();
+        uploads.shutdownNow();
+    }
+
+    private void run(Job job, Plan plan, QuotaReservation reservation) {
+        try (reservation) {
+            createFolders(job, plan.folders());
+            extractFiles(job, plan.files());
+            log.info("Extracted {} files of {} into {} for user {}",
+                job.extractedFiles.get(), job.path, job.destination, job.userId);
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            log.warn("Failed to extract {} for user {}: {}", job.path, job.userId, e.getMessage());
+        } finally {
+            job.finishedAt = Instant.now();
+            job.running = false;
+            finishedJobs.put(job.id, job);
+            runningJobs.remove(job.id);
+        }
+    }
+
+    // The destination did not exist, so every folder in it is new and one request creates many
+    private void createFolders(Job job, Set<String> folders) {
+        var userRoot = resolvePath(job.userId, "");
+        for (var ancestor : getAncestorFolders(job.destination)) {
+            s3Client.ensureFolderPlaceholderExists(userRoot + ancestor);
+        }
+
+        for (var batch : Lists.partition(List.copyOf(folders), batchEntries)) {
+            s3Client.uploadSnowballObject(batch.stream()
+                .map(folder -> new SnowballObject(
+                    resolvePath(job.userId, job.destination + folder),
+                    InputStream.nullInputStream(),
+                    0,
+                    null
+                ))
+                .toList());
+            job.wroteAny = true;
+            publishChanges(job.userId, batch.stream()
+                .map(folder -> ObjectChange.created(job.destination + folder, 0))
+                .toList());
+        }
+    }
+
+    private void extractFiles(Job job, Map<String, Long> files) throws Exception {
+        var remaining = new LinkedHashMap<>(files);
+        var permits = new Semaphore(uploadsPerJob);
+        var pending = new ArrayList<CompletableFuture<Void>>();
+        var failure = new AtomicReference<Throwable>();
+        var batch = new ArrayList<BatchFile>();
+        var batchBytes = 0L;
+
+        try (var zip = new ZipInputStream(s3Client.getObject(resolvePath(job.userId, job.path)))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (failure.get() != null) break;
+
+                // Removing it also skips any later entry of the same name
+                var name = safeName(entry.getName());
+                var size = name != null ? remaining.remove(name) : null;
+                if (size == null) continue;
+
+                if (size < smallFileSize) {
+                    var content = zip.readNBytes(Math.toIntExact(size));
+                    ensureEntryEnded(zip, content.length, size, name);
+                    batch.add(new BatchFile(name, content));
+                    batchBytes += content.length;
+
+                    if (batchBytes >= batchSize || batch.size() >= batchEntries) {
+                        pending.add(uploadBatch(job, List.copyOf(batch), permits, failure));
+                        batch.clear();
+                        batchBytes = 0;
+                    }
+                } else {
+                    s3Client.putObject(resolvePath(job.userId, job.destination + name), uncloseable(ByteStreams.limit(zip, size)), size);
+                    ensureEntryEnded(zip, size, size, name);
+                    recordExtracted(job, List.of(ObjectChange.created(job.destination + name, size)));
+                }
+            }
+
+            if (!batch.isEmpty() && failure.get() == null) {
+                pending.add(uploadBatch(job, List.copyOf(batch), permits, failure));
+            }
+        } finally {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        }
+
+        if (failure.get() != null) {
+            throw new IOException(failure.get().getMessage(), failure.get());
+        }
+        if (!remaining.isEmpty()) {
+            throw new ZipException("%d files listed in the central directory were not found in the archive"
+                .formatted(remaining.size()));
+        }
+    }
+
+    // Waits for a free slot first, so at most a few batches per job are held in memory
+    private CompletableFuture<Void> uploadBatch(Job job, List<BatchFile> batch, Semaphore permits,
+                                                AtomicReference<Throwable> failure) throws InterruptedException {
+        permits.acquire();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                s3Client.uploadSnowballObject(batch.stream()
+                    .map(file -> new SnowballObject(
+                        resolvePath(job.userId, job.destination + file.name()),
+                        new ByteArrayInputStream(file.content()),
+                        file.content().length,
+                        null
+                    ))
+                    .toList());
+                recordExtracted(job, batch.stream()
+                    .map(file -> ObjectChange.created(job.destination + file.name(), file.content().length))
+                    .toList());
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            } finally {
+                permits.release();
+            }
+        }, uploads);
+    }
+
+    private void recordExtracted(Job job, List<ObjectChange> changes) {
+        job.wroteAny = true;
+        job.extractedFiles.addAndGet(changes.size());
+        job.extractedBytes.addAndGet(changes.stream().mapToLong(ObjectChange::size).sum());
+        publishChanges(job.userId, changes);
+    }
+
+    private void publishChanges(Long userId, List<ObjectChange> changes) {
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(StorageChangeEvent.of(userId, changes));
+        }
+    }
+
+    private Plan plan(List<ArchiveEntryDto> entries) {
+        var files = new LinkedHashMap<String, Long>();
+        var folders = new TreeSet<String>();
+        var skipped = 0L;
+
+        for (var entry : entries) {
+            var name = safeName(entry.path());
+            if (name == null) {
+                skipped++;
+            } else if (entry.type() == ResourceType.DIRECTORY) {
+                folders.add(name);
+            } else {
+                files.putIfAbsent(name, entry.size());
+                folders.addAll(getAncestorFolders(name));
+            }
+        }
+
+        // A name used both as a file and as a folder can only be one of them
+        for (var iterator = files.keySet().iterator(); iterator.hasNext(); ) {
+            if (folders.contains(iterator.next() + "/")) {
+                iterator.remove();
+                skipped++;
+            }
+        }
+        folders.add("");
+
+        var totalBytes = files.values().stream().mapToLong(Long::longValue).sum();
+        return new Plan(files, folders, totalBytes, skipped);
+    }
+
+    /**
+     * @return the entry name as a path below the destination, or {@code null} for names that
+     * are absolute, climb out of it or would not be valid paths here
+     */
+    static String safeName(String name) {
+        if (name.isEmpty() || name.startsWith("/") || name.contains("\\") || name.contains("//")) {
+            return null;
+        }
+
+        var segments = name.split("/");
+        for (var segment : segments) {
+            if (segment.equals("..") || segment.equals(".") || segment.isBlank()) {
+                return null;
+            }
+        }
+        return name;
+    }
+
+    private static String defaultDestination(String path) {
+        var name = extractResourceName(path);
+        if (name.toLowerCase(Locale.ROOT).endsWith(ARCHIVE_EXTENSION) && name.length() > ARCHIVE_EXTENSION.length()) {
+            name = name.substring(0, name.length() - ARCHIVE_EXTENSION.length());
+        }
+        return getParentFolder(path) + name + "/";
+    }
+
+    // Refuses entries that inflate to more than their directory record says, such as zip bombs
+    private static void ensureEntryEnded(ZipInputStream zip, long read, long size, String name) throws IOException {
+        if (read < size) {
+            throw new ZipException("Entry %s is shorter than its directory record".formatted(name));
+        }
+        if (zip.read() >= 0) {
+            throw new ZipException("Entry %s is longer than its directory record".formatted(name));
+        }
+    }
+
+    // Backends close what they upload, which must not close the archive being read
+    private static InputStream uncloseable(InputStream stream) {
+        return new FilterInputStream(stream) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
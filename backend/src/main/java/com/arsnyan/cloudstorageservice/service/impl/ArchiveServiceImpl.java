@@ -0,0 +1,379 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.cache.BoundedLocalCache;
+import com.arsnyan.cloudstorageservice.config.ArchiveProperties;
+import com.arsnyan.cloudstorageservice.dto.resource.ArchiveEntryDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ContentRange;
+import com.arsnyan.cloudstorageservice.dto.resource.FileDownloadResponseDto;
+import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.UnsupportedArchiveException;
+import com.arsnyan.cloudstorageservice.model.ObjectChecksum;
+import com.arsnyan.cloudstorageservice.model.ObjectChecksumId;
+import com.arsnyan.cloudstorageservice.repository.ObjectChecksumRepository;
+import com.arsnyan.cloudstorageservice.service.ArchiveService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import com.arsnyan.cloudstorageservice.util.StoredZipArchive;
+import com.arsnyan.cloudstorageservice.util.ZipCentralDirectory;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import io.minio.StatObjectResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
+
+/**
+ * Builds folder and selection downloads. By default entries are stored uncompressed, which costs
+ * no CPU and is no bigger for the photos and videos that make up most of the bytes. With sizes
+ * from the listing and CRCs from {@link ObjectChecksumRepository}, the exact archive is known
+ * before streaming, so it is sent with a Content-Length and can be resumed with Range requests.
+ * <p>
+ * A CRC that is not stored yet is computed by reading the object once. When that would mean
+ * reading more than the configured budget before the first byte is sent, the archive is
+ * deflated and streamed instead, without a known length, and the CRCs of what it streamed are
+ * stored on the way, so the next download of the same objects has a known length.
+ * <p>
+ * Stored ZIP files can also be browsed without downloading them: the central directory at their
+ * end lists every entry with the offset of its data, so a listing or a single entry costs a few
+ * ranged reads.
+ */
+@Slf4j
+@Service
+public class ArchiveServiceImpl implements ArchiveService {
+    private static final String ARCHIVE_CONTENT_TYPE = "application/zip";
+    // Stays well under the bind parameter limit of a single query
+    private static final int CHECKSUM_LOOKUP_BATCH = 1000;
+    private static final String ENTRY_CONTENT_TYPE = "application/octet-stream";
+    // Rough footprint of a parsed entry besides its name
+    private static final int DIRECTORY_ENTRY_WEIGHT = 96;
+
+    private final S3Client s3Client;
+    private final ObjectChecksumRepository checksumRepository;
+    private final boolean storedMode;
+    private final long checksumBudget;
+    private final long maxDirectorySize;
+    // Keyed by object version, so a directory is reused for as long as the object is not overwritten
+    private final BoundedLocalCache<DirectoryKey, List<ZipCentralDirectory.Entry>> directories;
+
+    public ArchiveServiceImpl(
+        S3Client s3Client,
+        ObjectChecksumRepository checksumRepository,
+        ArchiveProperties properties
+    ) {
+        this.s3Client = s3Client;
+        this.checksumRepository = checksumRepository;
+        this.storedMode = properties.stored().enabled();
+        this.checksumBudget = properties.stored().maxChecksumBytes().toBytes();
+        this.maxDirectorySize = properties.browse().maxDirectorySize().toBytes();
+        this.directories = new BoundedLocalCache<>(
+            properties.browse().cacheSize().toBytes(),
+            properties.browse().cacheTtl(),
+            (key, entries) -> entries.stream()
+                .mapToLong(entry -> DIRECTORY_ENTRY_WEIGHT + 2L * entry.name().length())
+                .sum()
+        );
+    }
+
+    @Override
+    public FileDownloadResponseDto createArchive(String filename, List<ArchiveSource> sources, HttpRange range) {
+        if (storedMode) {
+            var checksums = resolveChecksums(sources);
+            if (checksums != null) {
+                return storedArchive(filename, sources, checksums, range);
+            }
+        }
+
+        return deflatedArchive(filename, sources);
+    }
+
+    @Override
+    public List<ArchiveEntryDto> listEntries(String objectKey) {
+        return readDirectory(objectKey, statArchive(objectKey)).stream()
+            .map(entry -> new ArchiveEntryDto(
+                entry.name(),
+                entry.isDirectory() ? null : entry.size(),
+                entry.isDirectory() ? null : entry.compressedSize(),
+                getResourceType(entry.name()),
+                entry.lastModified()
+            ))
+            .toList();
+    }
+
+    @Override
+    public FileDownloadResponseDto getEntry(String objectKey, String entryName) {
+        var entry = readDirectory(objectKey, statArchive(objectKey)).stream()
+            .filter(candidate -> !candidate.isDirectory() && candidate.name().equals(entryName))
+            .findFirst()
+            .orElseThrow(() -> new NoSuchEntityException("Archive has no file %s".formatted(entryName)));
+
+        if (entry.encrypted()) {
+            throw new UnsupportedArchiveException("Entry %s is encrypted".formatted(entryName));
+        }
+        if (entry.method() != ZipCentralDirectory.Entry.STORED && entry.method() != ZipCentralDirectory.Entry.DEFLATED) {
+            throw new UnsupportedArchiveException("Entry %s uses unsupported compression method %d"
+                .formatted(entryName, entry.method()));
+        }
+
+        InputStream stream;
+        try {
+            var dataOffset = ZipCentralDirectory.dataOffset(entry, rangeReader(objectKey));
+            stream = entry.compressedSize() > 0
+                ? s3Client.getObject(objectKey, dataOffset, entry.compressedSize())
+                : InputStream.nullInputStream();
+        } catch (ZipException e) {
+            throw new UnsupportedArchiveException("Archive is damaged: " + e.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to read entry {} of {}: {}", entryName, objectKey, e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+
+        if (entry.method() == ZipCentralDirectory.Entry.DEFLATED) {
+            stream = inflating(stream);
+        }
+
+        return new FileDownloadResponseDto(stream, extractResourceName(entryName), entry.size(), ENTRY_CONTENT_TYPE);
+    }
+
+    private StatObjectResponse statArchive(String objectKey) {
+        var stat = objectKey.endsWith("/") ? null : s3Client.getStatObject(objectKey);
+        if (stat == null) {
+            throw new NoSuchEntityException("Archive not found");
+        }
+        return stat;
+    }
+
+    private List<ZipCentralDirectory.Entry> readDirectory(String objectKey, StatObjectResponse stat) {
+        // The object key keeps users apart, an ETag alone may match another user's archive
+        var key = new DirectoryKey(objectKey, normalizeEtag(stat.etag()));
+        var cached = directories.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            var entries = ZipCentralDirectory.read(stat.size(), rangeReader(objectKey), maxDirectorySize);
+            directories.put(key, entries);
+            return entries;
+        } catch (ZipException e) {
+            throw new UnsupportedArchiveException("Not a readable ZIP archive: " + e.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to read central directory of {}: {}", objectKey, e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    private record DirectoryKey(String objectKey, String etag) {}
+
+    private ZipCentralDirectory.RangeReader rangeReader(String objectKey) {
+        return (offset, length) -> {
+            try (var stream = s3Client.getObject(objectKey, offset, (long) length)) {
+                var bytes = stream.readNBytes(length);
+                if (bytes.length != length) {
+                    throw new EOFException("Archive %s is shorter than its directory says".formatted(objectKey));
+                }
+                return bytes;
+            }
+        };
+    }
+
+    // Entries carry raw deflate data without a zlib header
+    private static InputStream inflating(InputStream stream) {
+        var inflater = new Inflater(true);
+        return new InflaterInputStream(stream, inflater, 64 * 1024) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private FileDownloadResponseDto storedArchive(String filename, List<ArchiveSource> sources,
+                                                  Map<String, Long> checksums, HttpRange range) {
+        var entries = sources.stream()
+            .map(source -> new StoredZipArchive.Entry(
+                source.entryName(),
+                source.objectKey(),
+                source.isDirectory() ? 0 : source.size(),
+                source.isDirectory() ? 0 : checksums.get(source.objectKey()),
+                source.lastModified() != null ? source.lastModified().toInstant() : null
+            ))
+            .toList();
+
+        var archive = new StoredZipArchive(entries);
+        var contentRange = range != null ? ContentRange.of(range, archive.length()) : null;
+        var start = contentRange != null ? contentRange.start() : 0L;
+        var end = contentRange != null ? contentRange.end() : archive.length() - 1;
+
+        StreamingResponseBody streamingBody = outputStream -> archive.write(
+            outputStream,
+            start,
+            end,
+            (objectKey, offset, length) -> s3Client.getObject(objectKey, offset, length)
+        );
+
+        return new FileDownloadResponseDto(
+            null,
+            filename,
+            contentRange != null ? contentRange.length() : archive.length(),
+            ARCHIVE_CONTENT_TYPE,
+            streamingBody,
+            null,
+            contentRange,
+            archiveEtag(sources)
+        );
+    }
+
+    private FileDownloadResponseDto deflatedArchive(String filename, List<ArchiveSource> sources) {
+        StreamingResponseBody streamingBody = outputStream -> {
+            // ZipOutputStream switches to ZIP64 records by itself past 4 GB or 65535 entries
+            try (var zipStream = new ZipOutputStream(outputStream)) {
+                for (var source : sources) {
+                    var entry = new ZipEntry(source.entryName());
+                    if (source.lastModified() != null) {
+                        entry.setLastModifiedTime(FileTime.from(source.lastModified().toInstant()));
+                    }
+                    zipStream.putNextEntry(entry);
+
+                    if (!source.isDirectory()) {
+                        var crc = new CRC32();
+                        try (var entryStream = new CheckedInputStream(s3Client.getObject(source.objectKey()), crc)) {
+                            var written = entryStream.transferTo(zipStream);
+                            if (written == source.size()) {
+                                rememberChecksum(source, crc.getValue());
+                            }
+                        }
+                    }
+                    zipStream.closeEntry();
+                }
+            }
+        };
+
+        return new FileDownloadResponseDto(
+            null,
+            filename,
+            -1L,
+            ARCHIVE_CONTENT_TYPE,
+            streamingBody
+        );
+    }
+
+    /**
+     * @return CRCs by object key, or {@code null} when computing the missing ones would read
+     * more than the budget allows
+     */
+    private Map<String, Long> resolveChecksums(List<ArchiveSource> sources) {
+        var files = sources.stream()
+            .filter(source -> !source.isDirectory())
+            .toList();
+
+        var stored = new HashMap<ObjectChecksumId, ObjectChecksum>();
+        var versions = files.stream()
+            .filter(source -> source.etag() != null)
+            .map(ArchiveServiceImpl::versionOf)
+            .distinct()
+            .toList();
+        for (var batch : Lists.partition(versions, CHECKSUM_LOOKUP_BATCH)) {
+            checksumRepository.findAllByVersions(
+                batch.stream().map(ObjectChecksumId::getObjectKey).toArray(String[]::new),
+                batch.stream().map(ObjectChecksumId::getEtag).toArray(String[]::new)
+            ).forEach(checksum -> stored.put(checksum.getId(), checksum));
+        }
+
+        var checksums = new HashMap<String, Long>();
+        var missing = new ArrayList<ArchiveSource>();
+        for (var source : files) {
+            var checksum = source.etag() != null ? stored.get(versionOf(source)) : null;
+            if (source.size() == 0) {
+                checksums.put(source.objectKey(), new CRC32().getValue());
+            } else if (checksum != null && checksum.getSize() == source.size()) {
+                checksums.put(source.objectKey(), checksum.getCrc32());
+            } else {
+                missing.add(source);
+            }
+        }
+
+        var missingBytes = missing.stream().mapToLong(ArchiveSource::size).sum();
+        if (missingBytes > checksumBudget) {
+            log.debug("Checksums of {} bytes are missing, streaming a deflated archive instead", missingBytes);
+            return null;
+        }
+
+        for (var source : missing) {
+            var crc = computeChecksum(source);
+            checksums.put(source.objectKey(), crc);
+            rememberChecksum(source, crc);
+        }
+
+        return checksums;
+    }
+
+    // Best effort, a checksum that is not stored is simply computed again next time
+    private void rememberChecksum(ArchiveSource source, long crc) {
+        if (source.etag() == null) return;
+
+        try {
+            checksumRepository.saveIfMissing(source.objectKey(), normalizeEtag(source.etag()), source.size(), crc);
+        } catch (RuntimeException e) {
+            log.debug("Failed to store checksum of {}: {}", source.objectKey(), e.getMessage());
+        }
+    }
+
+    private static ObjectChecksumId versionOf(ArchiveSource source) {
+        return new ObjectChecksumId(source.objectKey(), normalizeEtag(source.etag()));
+    }
+
+    private long computeChecksum(ArchiveSource source) {
+        try (var input = new CheckedInputStream(s3Client.getObject(source.objectKey()), new CRC32())) {
+            var read = input.transferTo(OutputStream.nullOutputStream());
+            if (read != source.size()) {
+                throw new MinioWrappedException("Object %s changed while it was being packed"
+                    .formatted(source.objectKey()));
+            }
+            return input.getChecksum().getValue();
+        } catch (IOException e) {
+            log.error("Failed to compute checksum of {}: {}", source.objectKey(), e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    // Changes whenever a name, a version or the layout of the archive does, so If-Range is safe to honour
+    private static String archiveEtag(List<ArchiveSource> sources) {
+        var hasher = Hashing.murmur3_128().newHasher();
+        for (var source : sources) {
+            hasher.putString(source.entryName(), StandardCharsets.UTF_8)
+                .putLong(source.size())
+                .putString(String.valueOf(source.etag()), StandardCharsets.UTF_8)
+                .putLong(source.lastModified() != null ? source.lastModified().toEpochSecond() : 0);
+        }
+        return "\"zip-%s\"".formatted(hasher.hash());
+    }
+
+    private static String normalizeEtag(String etag) {
+        return etag.replace("\"", "");
+    }
+}
@@ -1,50 +1,108 @@
 package com.arsnyan.cloudstorageservice.service.impl;
 
+import com.arsnyan.cloudstorageservice.dto.authentication.AuthTokensDto;
+import com.arsnyan.cloudstorageservice.dto.authentication.UserLoginResponseDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterResponseDto;
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import com.arsnyan.cloudstorageservice.security.AccountDetails;
+import com.arsnyan.cloudstorageservice.security.SessionUser;
+import com.arsnyan.cloudstorageservice.security.TokenClaims;
+import com.arsnyan.cloudstorageservice.security.TokenService;
 import com.arsnyan.cloudstorageservice.service.AuthenticationService;
 import com.arsnyan.cloudstorageservice.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class AuthenticationServiceImpl implements AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final SecurityContextRepository securityContextRepository;
     private final UserService userService;
+    private final MeterRegistry meterRegistry;
+    // Present only in token mode
+    private final Optional<TokenService> tokenService;
 
     @Override
-    public void login(String username, String password, HttpServletRequest request, HttpServletResponse response) {
+    public UserLoginResponseDto login(String username, String password, HttpServletRequest request, HttpServletResponse response) {
         Authentication authRequest = UsernamePasswordAuthenticationToken.unauthenticated(username , password);
 
-        Authentication authResponse = authenticationManager.authenticate(authRequest);
+        var sample = Timer.start(meterRegistry);
+        var result = "success";
+        Authentication authResponse;
+        try {
+            authResponse = authenticationManager.authenticate(authRequest);
+        } catch (AuthenticationException e) {
+            result = "failure";
+            throw e;
+        } catch (ServiceOverloadedException e) {
+            result = "rejected";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("security.login")
+                .description("Sign-in attempts by outcome")
+                .tag("result", result)
+                .register(meterRegistry));
+        }
+
+        // Keep only the compact principal in the session, not the loaded account
+        var principal = SessionUser.from((AccountDetails) authResponse.getPrincipal());
+        if (tokenService.isPresent()) {
+            return new UserLoginResponseDto(principal.getUsername(), tokenService.get().issue(principal));
+        }
 
         var securityContext = SecurityContextHolder.createEmptyContext();
-        securityContext.setAuthentication(authResponse);
+        securityContext.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+            principal,
+            null,
+            principal.getAuthorities()
+        ));
         securityContextRepository.saveContext(securityContext, request, response);
+        return new UserLoginResponseDto(principal.getUsername());
     }
 
     @Override
     public UserRegisterResponseDto register(UserRegisterRequestDto dto, HttpServletRequest request, HttpServletResponse response) {
         var registeredUser = userService.registerAccount(dto);
 
-        login(dto.username(), dto.password(), request, response);
+        var loggedIn = login(dto.username(), dto.password(), request, response);
 
-        return registeredUser;
+        return new UserRegisterResponseDto(registeredUser.username(), loggedIn.tokens());
     }
 
     @Override
     public void logout(UserDetails user, HttpServletRequest request) {
-        request.getSession().invalidate();
+        if (tokenService.isPresent()) {
+            var authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getDetails() instanceof TokenClaims claims) {
+                tokenService.get().revoke(claims.sessionId());
+            }
+        } else {
+            request.getSession().invalidate();
+        }
         SecurityContextHolder.clearContext();
     }
+
+    @Override
+    public AuthTokensDto refresh(String refreshToken) {
+        // Session mode never hands out refresh tokens
+        return tokenService
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"))
+            .refresh(refreshToken);
+    }
 }
@@ -0,0 +1,127 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.ChangesProperties;
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeDto;
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeFeedDto;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.repository.ChangeJournalRepository;
+import com.arsnyan.cloudstorageservice.service.ChangeJournalService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.isInTrashFolder;
+
+/**
+ * Journals every storage change event, whichever path through the application or the bucket made
+ * it. Change ids come from a sequence, and a transaction holding a lower id can commit after one
+ * holding a higher id, so a page only includes changes older than a short settle delay; otherwise
+ * a client could move its cursor past a change that was not visible yet.
+ * <p>
+ * Compaction first drops changes superseded by a newer change of the same path, which clients
+ * never notice, and then everything past the retention period. The latter raises the user's floor,
+ * and a client with a cursor below it is told to list its tree again.
+ */
+@Slf4j
+@Service
+public class ChangeJournalServiceImpl implements ChangeJournalService {
+    private final ChangeJournalRepository changeJournalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private final Duration settleDelay;
+    private final Duration compactAfter;
+    private final Duration retention;
+
+    public ChangeJournalServiceImpl(
+        ChangeJournalRepository changeJournalRepository,
+        TransactionTemplate transactionTemplate,
+        ChangesProperties properties
+    ) {
+        this.changeJournalRepository = changeJournalRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.pageSize = properties.pageSize();
+        this.settleDelay = properties.settleDelay();
+        this.compactAfter = properties.compactAfter();
+        this.retention = properties.retention();
+    }
+
+    @Override
+    public ChangeFeedDto getChanges(Long userId, Long cursor) {
+        var floor = changeJournalRepository.getFloor(userId).orElse(0L);
+        if (cursor == null || cursor < floor) {
+            // Replaying a change the listing already shows does no harm, skipping one that settles later does
+            var latest = changeJournalRepository.getLatestSettledId(userId, settleInterval()).orElse(floor);
+            return new ChangeFeedDto(List.of(), latest, false, true);
+        }
+
+        var entries = changeJournalRepository.findSettled(userId, cursor, settleInterval(), pageSize);
+        var changes = entries.stream()
+            .map(entry -> new ChangeDto(entry.getId(), entry.getPath(), entry.getType(), entry.getSize(),
+                entry.getChangedAt()))
+            .toList();
+
+        return new ChangeFeedDto(
+            changes,
+            changes.isEmpty() ? cursor : changes.getLast().id(),
+            changes.size() == pageSize,
+            false
+        );
+    }
+
+    private String settleInterval() {
+        return "%d milliseconds".formatted(settleDelay.toMillis());
+    }
+
+    @Override
+    public void append(Long userId, List<ObjectChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        try {
+            changeJournalRepository.appendAll(
+                userId,
+                changes.stream().map(ObjectChange::path).toArray(String[]::new),
+                changes.stream().map(change -> change.type().name()).toArray(String[]::new),
+                changes.stream().map(ObjectChange::size).toArray(Long[]::new)
+            );
+        } catch (DataAccessException e) {
+            // Nothing recomputes the journal, so clients only pick this change up with their next full listing
+            log.error("Failed to journal {} changes of user {}: {}", changes.size(), userId, e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onStorageChange(StorageChangeEvent event) {
+        // Clients never see the trash folder, only resources leaving or coming back to their paths
+        append(event.userId(), event.changes().stream()
+            .filter(change -> !isInTrashFolder(change.path()))
+            .toList());
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.changes.compaction-interval:PT1H}",
+        fixedDelayString = "${app.changes.compaction-interval:PT1H}"
+    )
+    public void compact() {
+        var now = Instant.now();
+        var superseded = changeJournalRepository.deleteSuperseded(now.minus(compactAfter));
+
+        var expired = transactionTemplate.execute(status -> {
+            changeJournalRepository.raiseFloors(now.minus(retention));
+            return changeJournalRepository.deleteBefore(now.minus(retention));
+        });
+
+        if (superseded > 0 || expired != null && expired > 0) {
+            log.info("Compacted change journal: {} superseded and {} expired changes removed", superseded, expired);
+        }
+    }
+}
@@ -1,18 +1,20 @@
 package com.arsnyan.cloudstorageservice.service.impl;
 
 import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import com.arsnyan.cloudstorageservice.security.AccountDetails;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
 
     @NonNull
@@ -21,18 +23,23 @@ public class CustomUserDetailsService implements UserDetailsService {
         var loadedUser = userRepository.getUserByUsername(username)
             .orElseThrow(() -> new UsernameNotFoundException("User %s not found".formatted(username)));
 
-        var authorities = loadedUser.getRoles().stream()
-            .map(userRole -> new SimpleGrantedAuthority(userRole.getId().getRole()))
-            .toArray(SimpleGrantedAuthority[]::new);
+        return new AccountDetails(
+            loadedUser.getId(),
+            loadedUser.getUsername(),
+            loadedUser.getPassword(),
+            loadedUser.getRoleMask(),
+            !loadedUser.getIsDisabled(),
+            !loadedUser.getIsExpired(),
+            !loadedUser.getIsCredentialsExpired(),
+            !loadedUser.getIsLocked()
+        );
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        log.info("Upgraded password hash of user {}", user.getUsername());
 
-        return User.builder()
-            .username(loadedUser.getUsername())
-            .password(loadedUser.getPassword())
-            .accountLocked(loadedUser.getIsLocked())
-            .accountExpired(loadedUser.getIsExpired())
-            .credentialsExpired(loadedUser.getIsCredentialsExpired())
-            .disabled(loadedUser.getIsDisabled())
-            .authorities(authorities)
-            .build();
+        return ((AccountDetails) user).withPassword(newPassword);
     }
 }
@@ -1,28 +1,49 @@
 package com.arsnyan.cloudstorageservice.service.impl;
 
+import com.arsnyan.cloudstorageservice.cache.BoundedLocalCache;
+import com.arsnyan.cloudstorageservice.cache.DirectoryListingCache;
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeFeedDto;
 import com.arsnyan.cloudstorageservice.dto.resource.AddFolderResponseDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ArchiveEntryDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ContentRange;
+import com.arsnyan.cloudstorageservice.dto.resource.ExtractionStatusDto;
 import com.arsnyan.cloudstorageservice.dto.resource.FileDownloadResponseDto;
 import com.arsnyan.cloudstorageservice.dto.resource.ResourceGetInfoResponseDto;
+import com.arsnyan.cloudstorageservice.dto.resource.ThumbnailDto;
+import com.arsnyan.cloudstorageservice.dto.trash.TrashEntryDto;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
 import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.InvalidResourcePathException;
 import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
 import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException;
 import com.arsnyan.cloudstorageservice.mapper.ResourceMapper;
 import com.arsnyan.cloudstorageservice.model.ResourceType;
 import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import com.arsnyan.cloudstorageservice.service.ArchiveExtractionService;
+import com.arsnyan.cloudstorageservice.service.ArchiveService;
+import com.arsnyan.cloudstorageservice.service.ArchiveService.ArchiveSource;
+import com.arsnyan.cloudstorageservice.service.ChangeJournalService;
 import com.arsnyan.cloudstorageservice.service.FileStorageService;
-import com.arsnyan.cloudstorageservice.util.MinioS3Client;
+import com.arsnyan.cloudstorageservice.service.ResourceCopyService;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.service.ThumbnailService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.HttpRanges;
+import com.arsnyan.cloudstorageservice.util.S3Client;
 import com.google.common.collect.Streams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpRange;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashSet;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import static com.arsnyan.cloudstorageservice.mapper.ResourceMapper.*;
 import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
@@ -31,18 +52,44 @@ import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
 @Service
 @RequiredArgsConstructor
 public class FileStorageServiceImpl implements FileStorageService {
+    private static final String BATCH_ARCHIVE_FILENAME = "download.zip";
+
     private final UserRepository userRepository;
-    private final MinioS3Client s3Client;
+    private final S3Client s3Client;
+    private final DirectoryListingCache listingCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StorageUsageService storageUsageService;
+    private final ThumbnailService thumbnailService;
+    private final ArchiveService archiveService;
+    private final ArchiveExtractionService archiveExtractionService;
+    private final ResourceCopyService resourceCopyService;
+    private final TrashService trashService;
+    private final ChangeJournalService changeJournalService;
+
+    // Ids never change for a username and every operation needs one to build the user's prefix
+    private final BoundedLocalCache<String, Long> userIds = new BoundedLocalCache<>(10_000, Duration.ofMinutes(10));
 
     @Override
     public ResourceGetInfoResponseDto getResourceInfo(String username, String path) {
-        var resolvedPath = resolvePath(getUserId(username), path);
-        var objectStats = s3Client.getStatObject(resolvedPath);
+        var userId = getUserId(username);
+        requireVisible(userId, path);
+
+        Long size;
+        if (path.endsWith("/")) {
+            size = storageUsageService.getFolderSize(userId, path);
+            // Usage is only kept for folders with files below them, so an empty one is looked up in storage
+            if (size == 0 && !folderExists(resolvePath(userId, path))) {
+                throw new NoSuchEntityException("Resource not found");
+            }
+        } else {
+            var objectStats = s3Client.getStatObject(resolvePath(userId, path));
+            size = objectStats != null ? objectStats.size() : null;
+        }
 
         return new ResourceGetInfoResponseDto(
             getParentPath(path),
             extractResourceName(path),
-            objectStats != null ? objectStats.size() : null,
+            size,
             getResourceType(path)
         );
     }
@@ -51,39 +98,48 @@ public class FileStorageServiceImpl implements FileStorageService {
     public void deleteResource(String username, String path) {
         var userId = getUserId(username);
         var resolvedPath = resolvePath(userId, path);
-        var userRootPath = resolvePath(userId, "");
+        requireVisible(userId, path);
 
-        if (!path.endsWith("/")) {
-            s3Client.removeObject(resolvedPath);
-
-            var parentPath = getParentPath(path);
-            if (parentPath.length() > userRootPath.length()) {
-                preserveParentFolder(username, parentPath);
-            }
-        } else {
-            var minioResults = s3Client.listObjects(resolvedPath, true);
-            var resourceItems = mapResultsToResourceObjects(minioResults);
-            resourceItems.forEach(item -> s3Client.removeObject(item.name()));
+        var exists = path.endsWith("/")
+            ? folderExists(resolvedPath)
+            : s3Client.getStatObject(resolvedPath) != null;
+        if (!exists) {
+            throw new NoSuchEntityException("Resource not found");
         }
+
+        trashService.moveToTrash(userId, path);
     }
 
-    private void preserveParentFolder(String username, String parentPath) {
-        if (!parentPath.isEmpty() && !parentPath.equals(resolvePath(getUserId(username), ""))) {
+    // Either its placeholder or anything below it, which the listing of the folder both include
+    private boolean folderExists(String resolvedPath) {
+        return Streams.stream(s3Client.listObjects(resolvedPath, false)).findAny().isPresent();
+    }
+
+    private void preserveParentFolder(Long userId, String userRootPath, String parentPath, List<ObjectChange> changes) {
+        if (!parentPath.isEmpty() && !parentPath.equals(userRootPath)) {
             var remainingItems = s3Client.listObjects(parentPath, false);
             var hasContents = Streams.stream(remainingItems)
                 .map(ResourceMapper::mapRawObjectToItem)
                 .anyMatch(item -> !item.objectName().equals(parentPath));
 
-            if (!hasContents) {
-                s3Client.ensureFolderPlaceholderExists(parentPath);
+            if (!hasContents && s3Client.ensureFolderPlaceholderExists(parentPath)) {
+                changes.add(ObjectChange.created(getRelativePath(userId, parentPath), 0));
             }
         }
     }
 
     @Override
     public FileDownloadResponseDto getDownloadableResource(String username, String path) {
-        var resolvedPath = resolvePath(getUserId(username), path);
+        return getDownloadableResource(username, path, null, null);
+    }
+
+    @Override
+    public FileDownloadResponseDto getDownloadableResource(String username, String path, HttpRange range,
+                                                           String ifRange) {
+        var userId = getUserId(username);
+        var resolvedPath = resolvePath(userId, path);
         var filename = extractResourceName(path);
+        requireVisible(userId, path);
 
         if (!path.endsWith("/")) {
             var objectStats = s3Client.getStatObject(resolvedPath);
@@ -91,17 +147,96 @@ public class FileStorageServiceImpl implements FileStorageService {
                 throw new NoSuchEntityException("Resource not found");
             }
 
-            var stream = s3Client.getObject(resolvedPath);
+            var etag = objectStats.etag() != null ? "\"%s\"".formatted(objectStats.etag().replace("\"", "")) : null;
+            // A resumed download must not splice in bytes of a file that has changed since
+            var contentRange = range != null && HttpRanges.ifRangeMatches(ifRange, etag, objectStats.lastModified())
+                ? ContentRange.of(range, objectStats.size())
+                : null;
+            var contentLength = contentRange != null ? contentRange.length() : objectStats.size();
+
+            var localFile = s3Client.getLocalFile(resolvedPath);
+            if (localFile != null) {
+                return new FileDownloadResponseDto(
+                    null,
+                    filename,
+                    contentLength,
+                    objectStats.contentType(),
+                    null,
+                    localFile,
+                    contentRange,
+                    etag,
+                    objectStats.lastModified()
+                );
+            }
+
+            var stream = contentRange != null
+                ? s3Client.getObject(resolvedPath, contentRange.start(), contentRange.length())
+                : s3Client.getObject(resolvedPath);
 
             return new FileDownloadResponseDto(
                 stream,
                 filename,
-                objectStats.size(),
-                objectStats.contentType()
+                contentLength,
+                objectStats.contentType(),
+                null,
+                null,
+                contentRange,
+                etag,
+                objectStats.lastModified()
             );
         }
 
-        return streamFolderAsZip(username, path, resolvedPath);
+        var zipFilename = extractResourceName(path.substring(0, path.length() - 1)) + ".zip";
+        var sources = collectArchiveSources(userId, List.of(path));
+        var archive = archiveService.createArchive(zipFilename, sources, range);
+        if (archive.contentRange() != null && !HttpRanges.ifRangeMatches(ifRange, archive.etag(), null)) {
+            return archiveService.createArchive(zipFilename, sources, null);
+        }
+        return archive;
+    }
+
+    @Override
+    public FileDownloadResponseDto getDownloadableArchive(String username, List<String> paths) {
+        var userId = getUserId(username);
+        var sources = collectArchiveSources(userId, paths);
+
+        var zipFilename = paths.size() == 1 && paths.getFirst().endsWith("/")
+            ? extractResourceName(paths.getFirst().substring(0, paths.getFirst().length() - 1)) + ".zip"
+            : BATCH_ARCHIVE_FILENAME;
+        return archiveService.createArchive(zipFilename, sources, null);
+    }
+
+    @Override
+    public ThumbnailDto getThumbnail(String username, String path, int size, String ifNoneMatch) {
+        var userId = getUserId(username);
+        requireVisible(userId, path);
+        return thumbnailService.getThumbnail(resolvePath(userId, path), size, ifNoneMatch);
+    }
+
+    @Override
+    public List<ArchiveEntryDto> listArchiveEntries(String username, String path) {
+        var userId = getUserId(username);
+        requireVisible(userId, path);
+        return archiveService.listEntries(resolvePath(userId, path));
+    }
+
+    @Override
+    public FileDownloadResponseDto getArchiveEntry(String username, String path, String entry) {
+        var userId = getUserId(username);
+        requireVisible(userId, path);
+        return archiveService.getEntry(resolvePath(userId, path), entry);
+    }
+
+    @Override
+    public ExtractionStatusDto extractArchive(String username, String path, String destination) {
+        var userId = getUserId(username);
+        requireVisible(userId, path);
+        return archiveExtractionService.start(userId, path, destination);
+    }
+
+    @Override
+    public ExtractionStatusDto getExtractionStatus(String username, String id) {
+        return archiveExtractionService.getStatus(getUserId(username), id);
     }
 
     @Override
@@ -112,6 +247,9 @@ public class FileStorageServiceImpl implements FileStorageService {
         var sourceParentPath = getParentPath(resolvedPathFrom);
         var userRootPath = resolvePath(userId, from);
 
+        requireVisible(userId, from);
+        trashService.makeRoomFor(userId, to);
+
         var nestedObjects = Streams.stream(s3Client.listObjects(resolvedPathFrom, true))
             .map(ResourceMapper::mapRawObjectToItem)
             .toList();
@@ -121,90 +259,134 @@ public class FileStorageServiceImpl implements FileStorageService {
         }
 
         var processedFolders = new HashSet<String>();
-        for (var item : nestedObjects) {
-            var objectName = item.objectName();
-            var relativePath = objectName.replaceFirst(Pattern.quote(resolvedPathFrom), "");
-            var finalPath = resolvedPathTo + relativePath;
-
-            if (finalPath.endsWith("/")) {
-                if (s3Client.hasNamingConflict(finalPath)) {
-                    throw new EntityAlreadyExistsException("File already exists");
-                }
-                s3Client.ensureFolderPlaceholderExists(finalPath);
-                processedFolders.add(finalPath);
-            } else {
-                if (s3Client.isPathAvailable(finalPath)) {
-                    throw new EntityAlreadyExistsException("Destination already exists");
-                }
+        var changes = new ArrayList<ObjectChange>();
+        try {
+            for (var item : nestedObjects) {
+                var objectName = item.objectName();
+                var relativePath = objectName.replaceFirst(Pattern.quote(resolvedPathFrom), "");
+                var finalPath = resolvedPathTo + relativePath;
+
+                if (finalPath.endsWith("/")) {
+                    if (s3Client.hasNamingConflict(finalPath)) {
+                        throw new EntityAlreadyExistsException("File already exists");
+                    }
+                    s3Client.ensureFolderPlaceholderExists(finalPath);
+                    processedFolders.add(finalPath);
+                } else {
+                    if (s3Client.isPathAvailable(finalPath)) {
+                        throw new EntityAlreadyExistsException("Destination already exists");
+                    }
 
-                var parent = getParentPath(finalPath);
+                    var parent = getParentPath(finalPath);
 
-                while (parent.length() > userRootPath.length() && processedFolders.add(parent)) {
-                    if (s3Client.hasNamingConflict(parent)) {
-                        throw new EntityAlreadyExistsException("File already exists, cannot create parent folder");
+                    while (parent.length() > userRootPath.length() && processedFolders.add(parent)) {
+                        if (s3Client.hasNamingConflict(parent)) {
+                            throw new EntityAlreadyExistsException("File already exists, cannot create parent folder");
+                        }
+                        if (s3Client.ensureFolderPlaceholderExists(parent)) {
+                            changes.add(ObjectChange.created(getRelativePath(userId, parent), 0));
+                        }
+                        parent = getParentPath(parent);
                     }
-                    s3Client.ensureFolderPlaceholderExists(parent);
-                    parent = getParentPath(parent);
                 }
+
+                s3Client.copyObject(item, finalPath);
+                changes.add(ObjectChange.created(getRelativePath(userId, finalPath), item.size()));
+                s3Client.removeObject(objectName);
+                changes.add(ObjectChange.removed(getRelativePath(userId, objectName), item.size()));
             }
 
-            s3Client.copyObject(item, finalPath);
-            s3Client.removeObject(objectName);
-        }
+            if (sourceParentPath.length() > userRootPath.length()) {
+                preserveParentFolder(userId, resolvePath(userId, ""), sourceParentPath, changes);
+            }
 
-        if (sourceParentPath.length() > userRootPath.length()) {
-            preserveParentFolder(username, sourceParentPath);
+            // Trashed objects below the source moved along and stay hidden at the new path
+            trashService.relocate(userId, from, to);
+        } finally {
+            publishChanges(userId, changes);
         }
 
         return getResourceInfo(username, to);
     }
 
+    @Override
+    public ResourceGetInfoResponseDto copyResource(String username, String from, String to) {
+        resourceCopyService.copy(getUserId(username), from, to);
+        return getResourceInfo(username, to);
+    }
+
     @Override
     public List<ResourceGetInfoResponseDto> searchResources(String username, String query) {
-        var allUserResources = listObjectsAsDto(s3Client.listObjects(resolvePath(getUserId(username), ""), true), "");
+        var userId = getUserId(username);
+        var allUserResources = listObjectsAsDto(s3Client.listObjects(resolvePath(userId, ""), true), "");
+        var visible = trashService.visibleFilter(userId, "");
 
         return allUserResources.stream()
             .filter(object -> object.name().contains(query))
+            .filter(object -> visible.test(object.path() + object.name()))
             .toList();
     }
 
     @Override
     public List<ResourceGetInfoResponseDto> uploadResources(String username, String path, List<MultipartFile> files) {
+        // Filenames carry folders of their own, which the path validation never sees
+        if (files.stream().map(MultipartFile::getOriginalFilename)
+            .anyMatch(filename -> filename != null && isInTrashFolder(path + filename))) {
+            throw new InvalidResourcePathException("Cannot upload to %s".formatted(TRASH_FOLDER));
+        }
+
         try {
             var userId = getUserId(username);
+            var changes = new ArrayList<ObjectChange>();
+
+            var incomingBytes = files.stream().mapToLong(MultipartFile::getSize).sum();
+            // Released only after the changes are published, so the bytes count towards the quota throughout
+            try (var reservation = storageUsageService.reserveQuota(userId, incomingBytes)) {
+                try {
+                    for (MultipartFile file : files) {
+                        var filename = file.getOriginalFilename();
+                        if (filename == null) continue;
+
+                        trashService.makeRoomFor(userId, path + filename);
+                        var filePath = resolvePath(userId, path + filename);
+                        if (s3Client.isPathAvailable(filePath)) {
+                            throw new EntityAlreadyExistsException("File %s already exists".formatted(filename));
+                        }
 
-            for (MultipartFile file : files) {
-                var filename = file.getOriginalFilename();
-                if (filename == null) continue;
-
-                var filePath = resolvePath(userId, path + filename);
-                if (s3Client.isPathAvailable(filePath)) {
-                    throw new EntityAlreadyExistsException("File %s already exists".formatted(filename));
-                }
+                        if (filename.contains("/")) {
+                            var parts = filename.split("/");
+                            var folderBuilder = new StringBuilder(path);
 
-                if (filename.contains("/")) {
-                    var parts = filename.split("/");
-                    var folderBuilder = new StringBuilder(path);
+                            for (int i = 0; i < parts.length - 1; i++) {
+                                folderBuilder.append(parts[i]).append("/");
+                                var folderPath = resolvePath(userId, folderBuilder.toString());
 
-                    for (int i = 0; i < parts.length - 1; i++) {
-                        folderBuilder.append(parts[i]).append("/");
-                        var folderPath = resolvePath(userId, folderBuilder.toString());
+                                if (s3Client.hasNamingConflict(folderPath)) {
+                                    var folderName = extractResourceName(folderPath);
+                                    throw new EntityAlreadyExistsException("File %s already exists, cannot create folder"
+                                        .formatted(folderName));
+                                }
 
-                        if (s3Client.hasNamingConflict(folderPath)) {
-                            var folderName = extractResourceName(folderPath);
-                            throw new EntityAlreadyExistsException("File %s already exists, cannot create folder"
-                                .formatted(folderName));
+                                if (s3Client.ensureFolderPlaceholderExists(folderPath)) {
+                                    changes.add(ObjectChange.created(folderBuilder.toString(), 0));
+                                }
+                            }
                         }
-
-                        s3Client.ensureFolderPlaceholderExists(folderPath);
                     }
-                }
-            }
 
-            var snowballObjects = mapToSnowballObjects(userId, path, files);
-            s3Client.uploadSnowballObject(snowballObjects);
+                    var snowballObjects = mapToSnowballObjects(userId, path, files);
+                    s3Client.uploadSnowballObject(snowballObjects);
+                    files.stream()
+                        .filter(file -> file.getOriginalFilename() != null)
+                        .forEach(file -> changes.add(ObjectChange.created(path + file.getOriginalFilename(), file.getSize())));
 
-            return mapFilesToDto(path, files);
+                    return mapFilesToDto(path, files);
+                } finally {
+                    publishChanges(userId, changes);
+                }
+            }
+        } catch (StorageQuotaExceededException | ServiceOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to upload files for path {}: {}", path, e.getMessage());
             throw MinioWrappedException.from(e);
@@ -213,19 +395,63 @@ public class FileStorageServiceImpl implements FileStorageService {
 
     @Override
     public List<ResourceGetInfoResponseDto> listFolderContents(String username, String path) {
-        var resolvedPath = resolvePath(getUserId(username), path);
-        return listObjectsAsDto(s3Client.listObjects(resolvedPath, false), resolvedPath);
+        var userId = getUserId(username);
+        var folderPath = path == null ? "" : path;
+        var resolvedPath = resolvePath(userId, folderPath);
+        var visible = trashService.visibleFilter(userId, folderPath);
+        if (!visible.test(folderPath)) {
+            throw new NoSuchEntityException("Resource not found");
+        }
+
+        // Trashed resources are dropped after the cache, so moving things in and out of the trash never invalidates it
+        var contents = listingCache.getOrLoad(userId, folderPath, () ->
+            // Saves the object storage round trip for users who haven't stored anything yet
+            folderPath.isEmpty() && storageUsageService.isKnownEmpty(userId)
+                ? List.of()
+                : listObjectsAsDto(s3Client.listObjects(resolvedPath, false), resolvedPath)
+        );
+
+        return withFolderSizes(userId, folderPath, contents.stream()
+            .filter(resource -> visible.test(resource.path() + resource.name()))
+            .toList());
+    }
+
+    // Folder sizes change with every write below them, so they are looked up on each listing instead of cached
+    private List<ResourceGetInfoResponseDto> withFolderSizes(Long userId, String folderPath,
+                                                             List<ResourceGetInfoResponseDto> contents) {
+        var subfolders = contents.stream()
+            .filter(resource -> resource.type() == ResourceType.DIRECTORY)
+            .map(resource -> folderPath + resource.name())
+            .toList();
+        if (subfolders.isEmpty()) {
+            return contents;
+        }
+
+        var sizes = storageUsageService.getFolderSizes(userId, subfolders);
+        return contents.stream()
+            .map(resource -> resource.type() == ResourceType.DIRECTORY
+                ? new ResourceGetInfoResponseDto(
+                    resource.path(),
+                    resource.name(),
+                    sizes.getOrDefault(folderPath + resource.name(), 0L),
+                    resource.type()
+                )
+                : resource)
+            .toList();
     }
 
     @Override
     public AddFolderResponseDto createFolder(String username, String path) {
-        var resolvedPath = resolvePath(getUserId(username), path);
+        var userId = getUserId(username);
+        var resolvedPath = resolvePath(userId, path);
 
+        trashService.makeRoomFor(userId, path);
         if (s3Client.isPathAvailable(resolvedPath)) {
             throw new EntityAlreadyExistsException("Object already exists");
         }
 
         s3Client.makeFolderInS3(resolvedPath);
+        publishChanges(userId, List.of(ObjectChange.created(path, 0)));
 
         return new AddFolderResponseDto(
             getParentPath(path),
@@ -234,43 +460,101 @@ public class FileStorageServiceImpl implements FileStorageService {
         );
     }
 
-    private Long getUserId(String username) {
-        return userRepository.getUserIdByUsername(username)
-            .orElseThrow(() -> new NoSuchEntityException("User not found"));
+    @Override
+    public List<TrashEntryDto> listTrash(String username) {
+        return trashService.listTrash(getUserId(username));
     }
 
-    private FileDownloadResponseDto streamFolderAsZip(String username, String path, String resolvedPath) {
-        var zipFilename = extractResourceName(path.substring(0, path.length() - 1)) + ".zip";
+    @Override
+    public void restoreFromTrash(String username, Long id) {
+        trashService.restore(getUserId(username), id);
+    }
 
-        StreamingResponseBody streamingBody = outputStream -> {
-            try (var zipStream = new ZipOutputStream(outputStream)) {
-                var items = Streams.stream(s3Client.listObjects(resolvedPath, true))
-                    .map(ResourceMapper::mapRawObjectToItem)
-                    .toList();
+    @Override
+    public void deleteFromTrash(String username, Long id) {
+        trashService.deleteFromTrash(getUserId(username), id);
+    }
 
-                for (var item : items) {
-                    if (item.isDir()) continue;
+    @Override
+    public ChangeFeedDto getChanges(String username, Long cursor) {
+        return changeJournalService.getChanges(getUserId(username), cursor);
+    }
 
-                    var absoluteKey = item.objectName();
-                    var relativeZipPath = getRelativeZipPath(getUserId(username), absoluteKey);
+    private void requireVisible(Long userId, String path) {
+        if (!trashService.visibleFilter(userId, path).test(path)) {
+            throw new NoSuchEntityException("Resource not found");
+        }
+    }
 
-                    var entry = new ZipEntry(relativeZipPath);
-                    zipStream.putNextEntry(entry);
+    private void publishChanges(Long userId, List<ObjectChange> changes) {
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(StorageChangeEvent.of(userId, changes));
+        }
+    }
 
-                    try (var entryStream = s3Client.getObject(absoluteKey)) {
-                        entryStream.transferTo(zipStream);
-                    }
-                    zipStream.closeEntry();
+    private Long getUserId(String username) {
+        var userId = userIds.get(username);
+        if (userId == null) {
+            userId = userRepository.getUserIdByUsername(username)
+                .orElseThrow(() -> new NoSuchEntityException("User not found"));
+            userIds.put(username, userId);
+        }
+        return userId;
+    }
+
+    /**
+     * Finds every object to pack for the selected paths. Everything is looked up before the
+     * archive starts streaming, so a missing path fails the request instead of truncating the
+     * download. Paths inside another selected folder are already covered by its listing.
+     */
+    private List<ArchiveSource> collectArchiveSources(Long userId, Collection<String> paths) {
+        var folders = paths.stream().filter(path -> path.endsWith("/")).toList();
+        var sources = new LinkedHashMap<String, ArchiveSource>();
+
+        for (var path : new LinkedHashSet<>(paths)) {
+            if (folders.stream().anyMatch(folder -> !folder.equals(path) && path.startsWith(folder))) {
+                continue;
+            }
+
+            var resolvedPath = resolvePath(userId, path);
+            var visible = trashService.visibleFilter(userId, path);
+            if (!visible.test(path)) {
+                throw new NoSuchEntityException("Resource %s not found".formatted(path));
+            }
+            if (!path.endsWith("/")) {
+                var objectStats = s3Client.getStatObject(resolvedPath);
+                if (objectStats == null) {
+                    throw new NoSuchEntityException("Resource %s not found".formatted(path));
                 }
+                sources.put(resolvedPath, new ArchiveSource(
+                    getRelativeZipPath(userId, resolvedPath),
+                    resolvedPath,
+                    objectStats.size(),
+                    objectStats.etag(),
+                    objectStats.lastModified()
+                ));
+                continue;
             }
-        };
-
-        return new FileDownloadResponseDto(
-            null,
-            zipFilename,
-            -1L,
-            "application/zip",
-            streamingBody
-        );
+
+            var items = Streams.stream(s3Client.listObjects(resolvedPath, true))
+                .map(ResourceMapper::mapRawObjectToItem)
+                .filter(item -> !item.isDir())
+                .filter(item -> visible.test(getRelativePath(userId, item.objectName())))
+                .toList();
+            if (items.isEmpty()) {
+                throw new NoSuchEntityException("Resource %s not found".formatted(path));
+            }
+            for (var item : items) {
+                sources.put(item.objectName(), new ArchiveSource(
+                    getRelativeZipPath(userId, item.objectName()),
+                    item.objectName(),
+                    item.size(),
+                    item.etag(),
+                    item.lastModified()
+                ));
+            }
+        }
+
+        return List.copyOf(sources.values());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,195 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.CopyProperties;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.InvalidResourcePathException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.mapper.ResourceMapper;
+import com.arsnyan.cloudstorageservice.service.ResourceCopyService;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
+import io.minio.SnowballObject;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
+
+/**
+ * Copies with server-side CopyObject requests, a few at a time per request and a bounded number
+ * across the instance, so a folder of thousands of files takes as long as its largest objects
+ * rather than the sum of all round trips. The destination must not exist, which makes every folder
+ * in the copy new, so their placeholders are written in snowball batches instead of one by one.
+ */
+@Slf4j
+@Service
+public class ResourceCopyServiceImpl implements ResourceCopyService, AutoCloseable {
+    private final S3Client s3Client;
+    private final StorageUsageService storageUsageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TrashService trashService;
+    private final int parallelismPerRequest;
+    private final int folderBatchSize;
+    private final ExecutorService executor;
+
+    public ResourceCopyServiceImpl(
+        S3Client s3Client,
+        StorageUsageService storageUsageService,
+        ApplicationEventPublisher eventPublisher,
+        TrashService trashService,
+        CopyProperties properties
+    ) {
+        this.s3Client = s3Client;
+        this.storageUsageService = storageUsageService;
+        this.eventPublisher = eventPublisher;
+        this.trashService = trashService;
+        this.parallelismPerRequest = properties.parallelismPerRequest();
+        this.folderBatchSize = properties.folderBatchSize();
+        this.executor = Executors.newFixedThreadPool(
+            properties.workers(),
+            Thread.ofPlatform().name("resource-copy-", 0).daemon().factory()
+        );
+    }
+
+    @Override
+    public void copy(Long userId, String from, String to) {
+        var resolvedFrom = resolvePath(userId, from);
+        var resolvedTo = resolvePath(userId, to);
+
+        if (from.endsWith("/") != to.endsWith("/")) {
+            throw new InvalidResourcePathException("A file can only be copied to a file path and a folder to a folder path");
+        }
+        if (from.endsWith("/") && to.startsWith(from)) {
+            throw new EntityAlreadyExistsException("Cannot copy a folder into itself");
+        }
+
+        var visible = trashService.visibleFilter(userId, from);
+        var items = Streams.stream(s3Client.listObjects(resolvedFrom, true))
+            .map(ResourceMapper::mapRawObjectToItem)
+            .filter(item -> from.endsWith("/") || item.objectName().equals(resolvedFrom))
+            .filter(item -> visible.test(getRelativePath(userId, item.objectName())))
+            .toList();
+        if (items.isEmpty()) {
+            throw new NoSuchEntityException("Source resource not found %s".formatted(from));
+        }
+
+        trashService.makeRoomFor(userId, to);
+        if (s3Client.isPathAvailable(resolvedTo) || s3Client.hasNamingConflict(resolvedTo)
+            || to.endsWith("/") && Streams.stream(s3Client.listObjects(resolvedTo, false)).findAny().isPresent()) {
+            throw new EntityAlreadyExistsException("Destination already exists");
+        }
+
+        var files = items.stream()
+            .filter(item -> !item.objectName().endsWith("/"))
+            .toList();
+        var changes = new ConcurrentLinkedQueue<ObjectChange>();
+        try (var reservation = storageUsageService.reserveQuota(userId, files.stream().mapToLong(Item::size).sum())) {
+            try {
+                createFolders(userId, to, folders(resolvedFrom, to, items), changes);
+                copyFiles(userId, resolvedFrom, resolvedTo, files, changes);
+            } finally {
+                if (!changes.isEmpty()) {
+                    eventPublisher.publishEvent(StorageChangeEvent.of(userId, new ArrayList<>(changes)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return every folder of the copy relative to the user's root, parents first
+     */
+    private static TreeSet<String> folders(String resolvedFrom, String to, List<Item> items) {
+        var folders = new TreeSet<String>();
+        if (!to.endsWith("/")) {
+            return folders;
+        }
+
+        folders.add(to);
+        for (var item : items) {
+            var target = to + item.objectName().substring(resolvedFrom.length());
+            if (target.endsWith("/")) {
+                folders.add(target);
+            }
+            getAncestorFolders(target).stream()
+                .filter(folder -> folder.startsWith(to))
+                .forEach(folders::add);
+        }
+        return folders;
+    }
+
+    private void createFolders(Long userId, String to, TreeSet<String> folders, Collection<ObjectChange> changes) {
+        // Folders above the destination may exist already, unlike anything inside it
+        for (var ancestor : getAncestorFolders(to)) {
+            if (s3Client.hasNamingConflict(resolvePath(userId, ancestor))) {
+                throw new EntityAlreadyExistsException("File already exists, cannot create parent folder");
+            }
+            if (s3Client.ensureFolderPlaceholderExists(resolvePath(userId, ancestor))) {
+                changes.add(ObjectChange.created(ancestor, 0));
+            }
+        }
+
+        for (var batch : Lists.partition(List.copyOf(folders), folderBatchSize)) {
+            s3Client.uploadSnowballObject(batch.stream()
+                .map(folder -> new SnowballObject(resolvePath(userId, folder), InputStream.nullInputStream(), 0, null))
+                .toList());
+            batch.forEach(folder -> changes.add(ObjectChange.created(folder, 0)));
+        }
+    }
+
+    // Stops handing out copies at the first failure; the ones already made stay and are reported
+    private void copyFiles(Long userId, String resolvedFrom, String resolvedTo, List<Item> files,
+                           Collection<ObjectChange> changes) {
+        var permits = new Semaphore(parallelismPerRequest);
+        var failure = new AtomicReference<RuntimeException>();
+        var pending = new ArrayList<CompletableFuture<Void>>(files.size());
+
+        for (var item : files) {
+            permits.acquireUninterruptibly();
+            if (failure.get() != null) {
+                permits.release();
+                break;
+            }
+
+            var target = resolvedTo + item.objectName().substring(resolvedFrom.length());
+            pending.add(CompletableFuture.runAsync(() -> {
+                try {
+                    s3Client.copyObject(item, target);
+                    changes.add(ObjectChange.created(getRelativePath(userId, target), item.size()));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            }, executor));
+        }
+
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        if (failure.get() != null) {
+            log.error("Failed to copy {} to {}: {}", resolvedFrom, resolvedTo, failure.get().getMessage());
+            throw failure.get();
+        }
+    }
+}
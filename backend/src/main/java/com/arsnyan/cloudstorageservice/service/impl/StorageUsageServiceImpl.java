@@ -0,0 +1,359 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.StorageProperties;
+import com.arsnyan.cloudstorageservice.dto.storage.StorageUsageResponseDto;
+import com.arsnyan.cloudstorageservice.event.ChangeSource;
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException;
+import com.arsnyan.cloudstorageservice.mapper.ResourceMapper;
+import com.arsnyan.cloudstorageservice.model.FolderUsage;
+import com.arsnyan.cloudstorageservice.model.FolderUsageId;
+import com.arsnyan.cloudstorageservice.model.StorageUsage;
+import com.arsnyan.cloudstorageservice.repository.FolderUsageRepository;
+import com.arsnyan.cloudstorageservice.repository.ObjectSizeRepository;
+import com.arsnyan.cloudstorageservice.repository.StorageUsageRepository;
+import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import com.arsnyan.cloudstorageservice.scheduling.ScheduledTaskLock;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
+
+/**
+ * Keeps a running total of bytes and objects per user, and per folder for everything below it,
+ * updated from storage change events. Folder placeholders are not counted. Counters can drift
+ * when an event is lost, so a periodic scan recomputes them from the bucket. Writes reserve their
+ * bytes before they start, so concurrent writes cannot each fit the quota and together exceed it.
+ * <p>
+ * Bucket notifications carry no size for removals and do not say whether a write replaced an
+ * object, so they are applied against the last known size of each object: a write over a known
+ * object counts as its removal and a new object, and a removal of an unknown one counts nothing.
+ */
+@Slf4j
+@Service
+public class StorageUsageServiceImpl implements StorageUsageService {
+    private static final int RECONCILIATION_BATCH_SIZE = 100;
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final FolderUsageRepository folderUsageRepository;
+    private final ObjectSizeRepository objectSizeRepository;
+    private final UserRepository userRepository;
+    private final S3Client s3Client;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledTaskLock scheduledTaskLock;
+    private final boolean quotaEnabled;
+    private final DataSize defaultQuota;
+    private final Duration reservationTimeout;
+    private final Duration reconciliationInterval;
+
+    public StorageUsageServiceImpl(
+        StorageUsageRepository storageUsageRepository,
+        FolderUsageRepository folderUsageRepository,
+        ObjectSizeRepository objectSizeRepository,
+        UserRepository userRepository,
+        S3Client s3Client,
+        TransactionTemplate transactionTemplate,
+        ScheduledTaskLock scheduledTaskLock,
+        StorageProperties properties
+    ) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.folderUsageRepository = folderUsageRepository;
+        this.objectSizeRepository = objectSizeRepository;
+        this.userRepository = userRepository;
+        this.s3Client = s3Client;
+        this.transactionTemplate = transactionTemplate;
+        this.scheduledTaskLock = scheduledTaskLock;
+        this.quotaEnabled = properties.quota().enabled();
+        this.defaultQuota = properties.quota().defaultQuota();
+        this.reservationTimeout = properties.quota().reservationTimeout();
+        this.reconciliationInterval = properties.usage().reconciliationInterval();
+    }
+
+    @Override
+    public StorageUsageResponseDto getUsage(String username) {
+        var userId = userRepository.getUserIdByUsername(username)
+            .orElseThrow(() -> new NoSuchEntityException("User not found"));
+        var usage = storageUsageRepository.findById(userId).orElseGet(StorageUsage::new);
+
+        return new StorageUsageResponseDto(
+            usage.getUsedBytes(),
+            usage.getObjectCount(),
+            quotaEnabled ? quotaOf(usage) : null
+        );
+    }
+
+    @Override
+    public QuotaReservation reserveQuota(Long userId, long incomingBytes) {
+        if (!quotaEnabled || incomingBytes <= 0) {
+            return () -> {};
+        }
+
+        storageUsageRepository.createIfMissing(userId);
+        if (storageUsageRepository.reserve(userId, incomingBytes, defaultQuota.toBytes()) == 0) {
+            var quota = storageUsageRepository.findById(userId)
+                .map(this::quotaOf)
+                .orElseGet(defaultQuota::toBytes);
+            throw new StorageQuotaExceededException("Uploading %d bytes would exceed the storage quota of %d bytes"
+                .formatted(incomingBytes, quota));
+        }
+
+        var released = new AtomicBoolean();
+        return () -> {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                storageUsageRepository.release(userId, incomingBytes);
+            } catch (DataAccessException e) {
+                // Reconciliation drops the reservation once it times out
+                log.error("Failed to release {} reserved bytes of user {}: {}", incomingBytes, userId, e.getMessage());
+            }
+        };
+    }
+
+    @Override
+    public long getFolderSize(Long userId, String folderPath) {
+        return folderUsageRepository.findById(new FolderUsageId(userId, folderPath))
+            .map(FolderUsage::getTotalBytes)
+            .orElse(0L);
+    }
+
+    @Override
+    public Map<String, Long> getFolderSizes(Long userId, Collection<String> folderPaths) {
+        if (folderPaths.isEmpty()) {
+            return Map.of();
+        }
+
+        return folderUsageRepository.getFolderUsages(userId, folderPaths).stream()
+            .collect(Collectors.toMap(usage -> usage.getId().getPath(), FolderUsage::getTotalBytes));
+    }
+
+    @Override
+    public boolean isKnownEmpty(Long userId) {
+        return storageUsageRepository.findById(userId)
+            .map(usage -> usage.getRootEntries() != null && usage.getRootEntries() == 0 && usage.getObjectCount() == 0)
+            .orElse(false);
+    }
+
+    @EventListener
+    public void onStorageChange(StorageChangeEvent event) {
+        try {
+            var changes = event.source() == ChangeSource.BUCKET_NOTIFICATION
+                ? againstKnownSizes(event.userId(), event.changes())
+                : event.changes();
+            addUsage(event.userId(), changes);
+            rememberSizes(event.userId(), changes);
+        } catch (DataAccessException e) {
+            // The next reconciliation run corrects the counters
+            log.error("Failed to update storage usage of user {}: {}", event.userId(), e.getMessage());
+        }
+    }
+
+    private void addUsage(Long userId, List<ObjectChange> changes) {
+        var total = new Usage();
+        var folders = new LinkedHashMap<String, Usage>();
+        var rootEntries = 0L;
+
+        for (var change : changes) {
+            var sign = change.type() == ChangeType.CREATED ? 1 : -1;
+            if (getParentFolder(change.path()).isEmpty()) {
+                rootEntries += sign;
+            }
+
+            if (change.isFolder()) continue;
+
+            total.add(sign * change.size(), sign);
+            for (var folder : getAncestorFolders(change.path())) {
+                folders.computeIfAbsent(folder, f -> new Usage()).add(sign * change.size(), sign);
+            }
+        }
+
+        if (total.isEmpty() && rootEntries == 0 && folders.values().stream().allMatch(Usage::isEmpty)) {
+            return;
+        }
+
+        // Also bumps the version, so a concurrent reconciliation scan discards its results
+        storageUsageRepository.addUsage(userId, total.bytes, total.objects);
+        if (rootEntries != 0) {
+            storageUsageRepository.addRootEntries(userId, rootEntries);
+        }
+
+        folders.forEach((folder, usage) -> {
+            if (!usage.isEmpty()) {
+                folderUsageRepository.addUsage(userId, folder, usage.bytes, usage.objects);
+            }
+        });
+        if (folders.values().stream().anyMatch(usage -> usage.objects < 0)) {
+            folderUsageRepository.deleteEmpty(userId);
+        }
+    }
+
+    // Turns bucket events into changes the counters can add up, in the order the events happened
+    private List<ObjectChange> againstKnownSizes(Long userId, List<ObjectChange> changes) {
+        var paths = changes.stream().map(ObjectChange::path).collect(Collectors.toSet());
+        var known = new HashMap<String, Long>();
+        objectSizeRepository.getSizes(userId, paths)
+            .forEach(size -> known.put(size.getId().getPath(), size.getSize()));
+
+        var applied = new ArrayList<ObjectChange>();
+        for (var change : changes) {
+            var previous = known.remove(change.path());
+            if (previous != null) {
+                applied.add(ObjectChange.removed(change.path(), previous));
+            }
+            if (change.type() == ChangeType.CREATED) {
+                applied.add(change);
+                known.put(change.path(), change.size());
+            }
+        }
+        return applied;
+    }
+
+    private void rememberSizes(Long userId, List<ObjectChange> changes) {
+        // Only the last change of a path decides whether it still exists
+        var latest = new LinkedHashMap<String, ObjectChange>();
+        changes.forEach(change -> latest.put(change.path(), change));
+
+        var created = latest.values().stream().filter(change -> change.type() == ChangeType.CREATED).toList();
+        var removed = latest.values().stream().filter(change -> change.type() == ChangeType.REMOVED).toList();
+        if (!created.isEmpty()) {
+            objectSizeRepository.putSizes(
+                userId,
+                created.stream().map(ObjectChange::path).toArray(String[]::new),
+                created.stream().mapToLong(ObjectChange::size).toArray()
+            );
+        }
+        if (!removed.isEmpty()) {
+            objectSizeRepository.deleteSizes(userId, removed.stream().map(ObjectChange::path).toArray(String[]::new));
+        }
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.storage.usage.reconciliation-interval:PT6H}",
+        fixedDelayString = "${app.storage.usage.reconciliation-interval:PT6H}"
+    )
+    public void reconcileAll() {
+        // Every instance schedules the scan, but one pass is enough
+        scheduledTaskLock.runExclusively("storage-usage-reconciliation", reconciliationInterval, this::reconcileUsers);
+    }
+
+    private void reconcileUsers() {
+        var released = storageUsageRepository.releaseReservedBefore(Instant.now().minus(reservationTimeout));
+        if (released > 0) {
+            log.warn("Released quota reservations of {} users that were never given back", released);
+        }
+
+        var lastUserId = 0L;
+        var reconciled = 0;
+
+        while (true) {
+            var userIds = userRepository.getUserIdsAfter(lastUserId, PageRequest.ofSize(RECONCILIATION_BATCH_SIZE));
+            if (userIds.isEmpty()) break;
+
+            for (var userId : userIds) {
+                try {
+                    reconcile(userId);
+                    reconciled++;
+                } catch (RuntimeException e) {
+                    log.error("Failed to reconcile storage usage of user {}: {}", userId, e.getMessage());
+                }
+            }
+            lastUserId = userIds.getLast();
+        }
+
+        log.info("Reconciled storage usage of {} users", reconciled);
+    }
+
+    @Override
+    public void reconcile(Long userId) {
+        storageUsageRepository.createIfMissing(userId);
+        var version = storageUsageRepository.findById(userId)
+            .map(StorageUsage::getVersion)
+            .orElse(0L);
+
+        var total = new Usage();
+        var folders = new HashMap<String, Usage>();
+        var sizes = new HashMap<String, Long>();
+        var rootEntries = new HashSet<String>();
+        for (var result : s3Client.listObjects(resolvePath(userId, ""), true)) {
+            var item = ResourceMapper.mapRawObjectToItem(result);
+            var path = getRelativePath(userId, item.objectName());
+
+            // The first path segment is what the root listing shows, including implicit folders
+            var separator = path.indexOf('/');
+            if (!path.isEmpty()) {
+                rootEntries.add(separator < 0 ? path : path.substring(0, separator + 1));
+            }
+
+            if (item.isDir()) continue;
+            sizes.put(path, item.size());
+
+            if (item.objectName().endsWith("/")) continue;
+
+            total.add(item.size(), 1);
+            for (var folder : getAncestorFolders(path)) {
+                folders.computeIfAbsent(folder, f -> new Usage()).add(item.size(), 1);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (storageUsageRepository.reconcile(userId, total.bytes, total.objects, rootEntries.size(), version) == 0) {
+                log.info("Storage usage of user {} changed during reconciliation, leaving it for the next run", userId);
+                return;
+            }
+
+            var paths = folders.keySet().toArray(String[]::new);
+            folderUsageRepository.deleteAllOfUserExcept(userId, paths);
+            folderUsageRepository.replaceUsages(
+                userId,
+                paths,
+                Arrays.stream(paths).mapToLong(path -> folders.get(path).bytes).toArray(),
+                Arrays.stream(paths).mapToLong(path -> folders.get(path).objects).toArray()
+            );
+
+            var objectPaths = sizes.keySet().toArray(String[]::new);
+            objectSizeRepository.deleteAllOfUserExcept(userId, objectPaths);
+            objectSizeRepository.putSizes(
+                userId,
+                objectPaths,
+                Arrays.stream(objectPaths).mapToLong(sizes::get).toArray()
+            );
+        });
+    }
+
+    private long quotaOf(StorageUsage usage) {
+        return usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuota.toBytes();
+    }
+
+    private static final class Usage {
+        private long bytes;
+        private long objects;
+
+        void add(long bytes, long objects) {
+            this.bytes += bytes;
+            this.objects += objects;
+        }
+
+        boolean isEmpty() {
+            return bytes == 0 && objects == 0;
+        }
+    }
+}
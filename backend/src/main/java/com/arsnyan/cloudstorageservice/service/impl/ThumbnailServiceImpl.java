@@ -0,0 +1,301 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.ThumbnailProperties;
+import com.arsnyan.cloudstorageservice.dto.resource.ThumbnailDto;
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.mapper.ResourceMapper;
+import com.arsnyan.cloudstorageservice.service.ThumbnailService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import com.google.common.collect.Streams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.SnowballObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.isInTrashFolder;
+import static com.arsnyan.cloudstorageservice.util.FileUtils.resolveDerivativesPath;
+import static com.arsnyan.cloudstorageservice.util.FileUtils.resolvePath;
+
+/**
+ * Small JPEG previews of images, stored next to nothing the user can see (see
+ * {@link com.arsnyan.cloudstorageservice.util.FileUtils#DERIVATIVES_PREFIX}). A thumbnail is named
+ * after the version of its original, so overwriting the original simply leads to a new one.
+ * <p>
+ * Thumbnails of the default size are made in the background as images are uploaded; any other
+ * size, or one whose background task was dropped under load, is made on its first request.
+ * Concurrent requests for the same missing thumbnail share a single generation.
+ */
+@Slf4j
+@Service
+public class ThumbnailServiceImpl implements ThumbnailService, AutoCloseable {
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final S3Client s3Client;
+    private final List<Integer> sizes;
+    private final int pregeneratedSize;
+    private final long maxSourceBytes;
+    private final long maxSourcePixels;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+    private final Counter dropped;
+    private final Timer generation;
+
+    public ThumbnailServiceImpl(
+        S3Client s3Client,
+        MeterRegistry meterRegistry,
+        ThumbnailProperties properties
+    ) {
+        this.s3Client = s3Client;
+        this.sizes = properties.sizes().stream().sorted().toList();
+        this.pregeneratedSize = properties.pregeneratedSize();
+        this.maxSourceBytes = properties.maxSourceSize().toBytes();
+        this.maxSourcePixels = properties.maxSourcePixels();
+
+        this.dropped = Counter.builder("storage.thumbnails.dropped")
+            .description("Background thumbnail tasks dropped because the queue was full")
+            .register(meterRegistry);
+        // Dropping is safe, a missing thumbnail is made when it is first asked for
+        this.executor = new ThreadPoolExecutor(
+            properties.workers(),
+            properties.workers(),
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.queueCapacity()),
+            Thread.ofPlatform().name("thumbnails-", 0).daemon().factory(),
+            (task, pool) -> dropped.increment()
+        );
+
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.notModified = requestCounter(meterRegistry, "not-modified");
+        this.generation = Timer.builder("storage.thumbnails.generation")
+            .register(meterRegistry);
+        Gauge.builder("storage.thumbnails.queued", executor, e -> e.getQueue().size())
+            .register(meterRegistry);
+    }
+
+    @Override
+    public boolean supports(String path) {
+        var dot = path.lastIndexOf('.');
+        return dot >= 0 && !path.endsWith("/")
+            && SUPPORTED_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public ThumbnailDto getThumbnail(String objectKey, int size, String ifNoneMatch) {
+        if (!supports(objectKey)) {
+            throw new NoSuchEntityException("No thumbnail is available for this resource");
+        }
+
+        var stat = s3Client.getStatObject(objectKey);
+        if (stat == null) {
+            throw new NoSuchEntityException("Resource not found");
+        }
+        if (stat.size() > maxSourceBytes) {
+            throw new NoSuchEntityException("No thumbnail is available for this resource");
+        }
+
+        var edge = snapSize(size);
+        var version = stat.etag().replace("\"", "");
+        var etag = "\"%s-%d\"".formatted(version, edge);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            notModified.increment();
+            return new ThumbnailDto(etag, null);
+        }
+
+        var derivativeKey = resolveDerivativesPath(objectKey) + "thumbnail-%d-%s.jpg".formatted(edge, version);
+        if (s3Client.getStatObject(derivativeKey) != null) {
+            try (var stream = s3Client.getObject(derivativeKey)) {
+                hits.increment();
+                return new ThumbnailDto(etag, stream.readAllBytes());
+            } catch (IOException e) {
+                log.warn("Failed to read thumbnail {}, making it again: {}", derivativeKey, e.getMessage());
+            }
+        }
+
+        misses.increment();
+        return new ThumbnailDto(etag, generateOnce(objectKey, derivativeKey, edge));
+    }
+
+    @EventListener
+    public void onStorageChange(StorageChangeEvent event) {
+        for (var change : event.changes()) {
+            var objectKey = resolvePath(event.userId(), change.path());
+
+            if (change.type() == ChangeType.REMOVED) {
+                executor.execute(() -> removeDerivatives(objectKey));
+            } else if (supports(change.path()) && !isInTrashFolder(change.path())) {
+                executor.execute(() -> {
+                    try {
+                        getThumbnail(objectKey, pregeneratedSize, null);
+                    } catch (RuntimeException e) {
+                        log.debug("Failed to make a thumbnail of {}: {}", objectKey, e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Only a few sizes are stored, so arbitrary sizes in requests cannot multiply derivatives
+    private int snapSize(int requested) {
+        for (var size : sizes) {
+            if (size >= requested) return size;
+        }
+        return sizes.getLast();
+    }
+
+    private byte[] generateOnce(String objectKey, String derivativeKey, int edge) {
+        var future = new CompletableFuture<byte[]>();
+        var existing = inFlight.putIfAbsent(derivativeKey, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            var content = generation.record(() -> generate(objectKey, edge));
+            s3Client.uploadSnowballObject(List.of(
+                new SnowballObject(derivativeKey, new ByteArrayInputStream(content), content.length, null)
+            ));
+            future.complete(content);
+            return content;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(derivativeKey, future);
+        }
+    }
+
+    private byte[] generate(String objectKey, int edge) {
+        try (var stream = s3Client.getObject(objectKey)) {
+            var content = render(stream, edge, maxSourcePixels);
+            if (content == null) {
+                throw new NoSuchEntityException("No thumbnail is available for this resource");
+            }
+            return content;
+        } catch (IOException e) {
+            log.warn("Failed to make a thumbnail of {}: {}", objectKey, e.getMessage());
+            throw new NoSuchEntityException("No thumbnail is available for this resource");
+        }
+    }
+
+    private void removeDerivatives(String objectKey) {
+        try {
+            var items = Streams.stream(s3Client.listObjects(resolveDerivativesPath(objectKey), true))
+                .map(ResourceMapper::mapRawObjectToItem)
+                .toList();
+            for (var item : items) {
+                s3Client.removeObject(item.objectName());
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to remove derivatives of {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes an image at a fraction of its resolution, so a photo of tens of megapixels never
+     * sits in memory whole, and scales it to fit in a square of {@code edge} pixels.
+     *
+     * @return the JPEG thumbnail, or {@code null} when the input is not an image ImageIO can read
+     * or has more than {@code maxPixels} pixels
+     */
+    static byte[] render(InputStream source, int edge, long maxPixels) throws IOException {
+        try (var input = ImageIO.createImageInputStream(source)) {
+            if (input == null) return null;
+
+            var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return null;
+
+            var reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                var width = reader.getWidth(0);
+                var height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) return null;
+
+                // Keep about twice the target resolution so the final scaling can smooth the result
+                var param = reader.getDefaultReadParam();
+                var subsampling = Math.max(1, Math.max(width, height) / (edge * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                var decoded = reader.read(0, param);
+
+                var scale = Math.min(1.0, (double) edge / Math.max(decoded.getWidth(), decoded.getHeight()));
+                var targetWidth = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+                var targetHeight = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+
+                var thumbnail = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+                var graphics = thumbnail.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                    // JPEG has no transparency, so transparent areas become white instead of black
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, targetWidth, targetHeight);
+                    graphics.drawImage(decoded, 0, 0, targetWidth, targetHeight, null);
+                } finally {
+                    graphics.dispose();
+                }
+
+                return encodeJpeg(thumbnail);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        var writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        var output = new ByteArrayOutputStream();
+
+        try (var stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            var param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return output.toByteArray();
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("storage.thumbnails.requests")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
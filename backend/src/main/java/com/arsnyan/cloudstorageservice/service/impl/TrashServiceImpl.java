@@ -0,0 +1,367 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.TrashProperties;
+import com.arsnyan.cloudstorageservice.dto.trash.TrashEntryDto;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.mapper.ResourceMapper;
+import com.arsnyan.cloudstorageservice.model.TrashEntry;
+import com.arsnyan.cloudstorageservice.repository.TrashEntryRepository;
+import com.arsnyan.cloudstorageservice.scheduling.ScheduledTaskLock;
+import com.arsnyan.cloudstorageservice.service.ChangeJournalService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.FileUtils;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import com.google.common.collect.Streams;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.*;
+
+/**
+ * A trashed resource is one row naming its path; listings, searches and downloads drop whatever is
+ * at or below a trashed path, so deleting a folder of any size is a single insert and restoring it
+ * a single delete. The objects are removed with batched delete requests once the entry expires,
+ * and only then do they stop counting towards the owner's storage usage and the sizes of the folders
+ * they were in.
+ * <p>
+ * Writing over a trashed path first moves its objects under {@link FileUtils#TRASH_FOLDER}, so newer
+ * data never mixes with them; restoring such an entry moves them back if the path is still free.
+ */
+@Slf4j
+@Service
+public class TrashServiceImpl implements TrashService {
+    private final TrashEntryRepository trashEntryRepository;
+    private final S3Client s3Client;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeJournalService changeJournalService;
+    private final ScheduledTaskLock scheduledTaskLock;
+    private final Duration retention;
+    private final Duration purgeInterval;
+    private final int purgeBatchSize;
+
+    public TrashServiceImpl(
+        TrashEntryRepository trashEntryRepository,
+        S3Client s3Client,
+        ApplicationEventPublisher eventPublisher,
+        ChangeJournalService changeJournalService,
+        ScheduledTaskLock scheduledTaskLock,
+        TrashProperties properties
+    ) {
+        this.trashEntryRepository = trashEntryRepository;
+        this.s3Client = s3Client;
+        this.eventPublisher = eventPublisher;
+        this.changeJournalService = changeJournalService;
+        this.scheduledTaskLock = scheduledTaskLock;
+        this.retention = properties.retention();
+        this.purgeInterval = properties.purgeInterval();
+        this.purgeBatchSize = properties.purgeBatchSize();
+    }
+
+    @Override
+    public TrashEntryDto moveToTrash(Long userId, String path) {
+        var entry = trashEntryRepository.save(new TrashEntry(null, userId, path, Instant.now(), null));
+        // Sync clients drop the whole subtree on a removed folder, as they would for a real delete
+        changeJournalService.append(userId, List.of(ObjectChange.removed(path, 0)));
+        return toDto(entry);
+    }
+
+    @Override
+    public List<TrashEntryDto> listTrash(Long userId) {
+        return trashEntryRepository.findAllByUserIdOrderByTrashedAtDesc(userId).stream()
+            .map(this::toDto)
+            .toList();
+    }
+
+    @Override
+    public void restore(Long userId, Long id) {
+        var entry = trashEntryRepository.findByIdAndUserId(id, userId)
+            .orElseThrow(() -> new NoSuchEntityException("Trash entry not found"));
+        if (entry.getStoredPath() != null) {
+            moveBack(entry);
+        }
+        if (trashEntryRepository.deleteEntry(id, userId) == 0) {
+            throw new NoSuchEntityException("Trash entry not found");
+        }
+
+        var size = 0L;
+        if (!entry.getPath().endsWith("/")) {
+            var objectStats = s3Client.getStatObject(resolvePath(userId, entry.getPath()));
+            size = objectStats != null ? objectStats.size() : 0;
+        }
+        changeJournalService.append(userId, List.of(ObjectChange.created(entry.getPath(), size)));
+    }
+
+    @Override
+    public void deleteFromTrash(Long userId, Long id) {
+        var entry = trashEntryRepository.findByIdAndUserId(id, userId)
+            .orElseThrow(() -> new NoSuchEntityException("Trash entry not found"));
+        purge(entry);
+    }
+
+    @Override
+    public Predicate<String> visibleFilter(Long userId, String scope) {
+        // Only the scope's own folders can hide it, and anything trashed below it
+        var candidates = new ArrayList<>(getAncestorFolders(scope));
+        candidates.add(scope);
+        var trashedPaths = Set.copyOf(trashEntryRepository.getTrashedPaths(userId, candidates, scope));
+        if (trashedPaths.isEmpty()) {
+            return path -> !isInTrashFolder(path);
+        }
+
+        return path -> !isInTrashFolder(path)
+            && !trashedPaths.contains(path)
+            && getAncestorFolders(path).stream().noneMatch(trashedPaths::contains);
+    }
+
+    @Override
+    public void makeRoomFor(Long userId, String path) {
+        // A file and a folder of the same name collide as well, since storage cannot hold both
+        var name = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        var candidates = new ArrayList<String>();
+        for (var folder : getAncestorFolders(name)) {
+            candidates.add(folder);
+            candidates.add(folder.substring(0, folder.length() - 1));
+        }
+        candidates.add(name);
+
+        var overlapping = trashEntryRepository.findAllInPlace(userId, candidates, name).stream()
+            .filter(entry -> overlaps(entry.getPath(), path))
+            .sorted(Comparator.comparingInt(entry -> entry.getPath().length()))
+            .toList();
+        // Newer data in the way is the caller's conflict to report, and the trash stays as it is
+        if (overlapping.isEmpty() || isTakenByVisible(userId, name)) {
+            return;
+        }
+
+        var setAside = new ArrayList<String>();
+        for (var entry : overlapping) {
+            // An entry below another one in the list went with it
+            if (setAside.stream().anyMatch(outer -> covers(outer, entry.getPath()))) continue;
+
+            var location = TRASH_FOLDER + entry.getId() + "/" + extractResourceName(entry.getPath());
+            moveObjects(userId, entry.getPath(), location);
+            relocateStored(userId, entry.getPath(), location);
+            setAside.add(entry.getPath());
+        }
+    }
+
+    @Override
+    public void relocate(Long userId, String from, String to) {
+        if (!from.endsWith("/")) {
+            return;
+        }
+
+        var moved = trashEntryRepository.findAllInPlace(userId, List.of(from), from).stream()
+            .filter(entry -> entry.getPath().startsWith(from))
+            .toList();
+        moved.forEach(entry -> entry.setPath(to + entry.getPath().substring(from.length())));
+        trashEntryRepository.saveAll(moved);
+    }
+
+    @Scheduled(
+        initialDelayString = "${app.trash.purge-interval:PT1H}",
+        fixedDelayString = "${app.trash.purge-interval:PT1H}"
+    )
+    public void purgeExpired() {
+        // Instances purging side by side would pick the same oldest entries
+        scheduledTaskLock.runExclusively("trash-purge", purgeInterval, this::purgeExpiredEntries);
+    }
+
+    private void purgeExpiredEntries() {
+        var purged = 0;
+
+        while (true) {
+            var expired = trashEntryRepository.findByTrashedAtBeforeOrderByTrashedAt(
+                Instant.now().minus(retention), Limit.of(purgeBatchSize)
+            );
+
+            var failed = false;
+            for (var entry : expired) {
+                try {
+                    purge(entry);
+                    purged++;
+                } catch (RuntimeException e) {
+                    log.error("Failed to purge {} of user {} from trash: {}",
+                        entry.getPath(), entry.getUserId(), e.getMessage());
+                    failed = true;
+                }
+            }
+
+            // Failed entries would come back in the next batch, so they wait for the next run instead
+            if (failed || expired.size() < purgeBatchSize) break;
+        }
+
+        if (purged > 0) {
+            log.info("Purged {} expired trash entries", purged);
+        }
+    }
+
+    /**
+     * Removes the entry's objects, then the entry itself along with any entries below it.
+     * The row goes last, so a failed purge leaves the resource hidden and is retried later.
+     */
+    private void purge(TrashEntry entry) {
+        var userId = entry.getUserId();
+        var location = entry.getLocation();
+        var resolvedPath = resolvePath(userId, location);
+        var changes = new ArrayList<ObjectChange>();
+
+        try {
+            if (location.endsWith("/")) {
+                var items = Streams.stream(s3Client.listObjects(resolvedPath, true))
+                    .map(ResourceMapper::mapRawObjectToItem)
+                    .toList();
+                s3Client.removeObjects(items.stream().map(Item::objectName).toList());
+                items.forEach(item ->
+                    changes.add(ObjectChange.removed(getRelativePath(userId, item.objectName()), item.size())));
+            } else {
+                var objectStats = s3Client.getStatObject(resolvedPath);
+                if (objectStats != null) {
+                    s3Client.removeObject(resolvedPath);
+                    changes.add(ObjectChange.removed(location, objectStats.size()));
+                }
+            }
+
+            keepParentListed(userId, location, changes);
+
+            var covered = trashEntryRepository.findAllStoredUnder(userId, location).stream()
+                .filter(other -> covers(location, other.getLocation()))
+                .toList();
+            trashEntryRepository.deleteAllInBatch(covered);
+        } finally {
+            if (!changes.isEmpty()) {
+                eventPublisher.publishEvent(StorageChangeEvent.of(userId, changes));
+            }
+        }
+    }
+
+    private void moveBack(TrashEntry entry) {
+        var userId = entry.getUserId();
+        var path = entry.getPath();
+
+        makeRoomFor(userId, path);
+        var resolvedPath = resolvePath(userId, path);
+        var ancestors = getAncestorFolders(path);
+        if (s3Client.isPathAvailable(resolvedPath)
+            || ancestors.stream().anyMatch(folder -> s3Client.hasNamingConflict(resolvePath(userId, folder)))) {
+            throw new EntityAlreadyExistsException("Resource %s already exists".formatted(path));
+        }
+
+        var changes = new ArrayList<ObjectChange>();
+        try {
+            for (var folder : ancestors) {
+                if (s3Client.ensureFolderPlaceholderExists(resolvePath(userId, folder))) {
+                    changes.add(ObjectChange.created(folder, 0));
+                }
+            }
+        } finally {
+            if (!changes.isEmpty()) {
+                eventPublisher.publishEvent(StorageChangeEvent.of(userId, changes));
+            }
+        }
+
+        moveObjects(userId, entry.getStoredPath(), path);
+        relocateStored(userId, entry.getStoredPath(), path);
+    }
+
+    // Copies, then removes, everything at or below the path; entries still point at the old one
+    private void moveObjects(Long userId, String from, String to) {
+        var resolvedFrom = resolvePath(userId, from);
+        var resolvedTo = resolvePath(userId, to);
+        var changes = new ArrayList<ObjectChange>();
+
+        try {
+            var items = Streams.stream(s3Client.listObjects(resolvedFrom, true))
+                .map(ResourceMapper::mapRawObjectToItem)
+                .filter(item -> from.endsWith("/") || item.objectName().equals(resolvedFrom))
+                .toList();
+
+            for (var item : items) {
+                var target = resolvedTo + item.objectName().substring(resolvedFrom.length());
+                s3Client.copyObject(item, target);
+                changes.add(ObjectChange.created(getRelativePath(userId, target), item.size()));
+            }
+            s3Client.removeObjects(items.stream().map(Item::objectName).toList());
+            items.forEach(item ->
+                changes.add(ObjectChange.removed(getRelativePath(userId, item.objectName()), item.size())));
+
+            keepParentListed(userId, from, changes);
+        } finally {
+            if (!changes.isEmpty()) {
+                eventPublisher.publishEvent(StorageChangeEvent.of(userId, changes));
+            }
+        }
+    }
+
+    // Points the entries whose objects were at or below one path at where they are now
+    private void relocateStored(Long userId, String from, String to) {
+        var moved = trashEntryRepository.findAllStoredUnder(userId, from).stream()
+            .filter(entry -> covers(from, entry.getLocation()))
+            .toList();
+
+        for (var entry : moved) {
+            var location = to + entry.getLocation().substring(from.length());
+            entry.setStoredPath(location.equals(entry.getPath()) ? null : location);
+        }
+        trashEntryRepository.saveAll(moved);
+    }
+
+    // The removed objects may have been all that kept the parent folder listed
+    private void keepParentListed(Long userId, String path, List<ObjectChange> changes) {
+        var parentPath = getParentFolder(path);
+        if (!parentPath.isEmpty() && !isInTrashFolder(parentPath)
+            && s3Client.ensureFolderPlaceholderExists(resolvePath(userId, parentPath))) {
+            changes.add(ObjectChange.created(parentPath, 0));
+        }
+    }
+
+    // Whether anything the user can see is at the path, as a file or as a folder
+    private boolean isTakenByVisible(Long userId, String name) {
+        var visible = visibleFilter(userId, name);
+        if (s3Client.getStatObject(resolvePath(userId, name)) != null && visible.test(name)) {
+            return true;
+        }
+
+        return Streams.stream(s3Client.listObjects(resolvePath(userId, name + "/"), false))
+            .map(ResourceMapper::mapRawObjectToItem)
+            .anyMatch(item -> visible.test(getRelativePath(userId, item.objectName())));
+    }
+
+    private TrashEntryDto toDto(TrashEntry entry) {
+        return new TrashEntryDto(
+            entry.getId(),
+            getParentFolder(entry.getPath()),
+            extractResourceName(entry.getPath()),
+            getResourceType(entry.getPath()),
+            entry.getTrashedAt(),
+            entry.getTrashedAt().plus(retention)
+        );
+    }
+
+    // Whether a trashed path hides the given one
+    private static boolean covers(String trashed, String path) {
+        return path.equals(trashed) || trashed.endsWith("/") && path.startsWith(trashed);
+    }
+
+    // Whether a trashed path and one being written cannot both be in storage
+    private static boolean overlaps(String trashed, String path) {
+        var a = trashed.endsWith("/") ? trashed.substring(0, trashed.length() - 1) : trashed;
+        var b = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return a.equals(b) || a.startsWith(b + "/") || b.startsWith(a + "/");
+    }
+}
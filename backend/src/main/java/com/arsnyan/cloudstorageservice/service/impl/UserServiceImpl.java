@@ -1,47 +1,129 @@
 package com.arsnyan.cloudstorageservice.service.impl;
 
+import com.arsnyan.cloudstorageservice.config.ProvisioningProperties;
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersRequestDto;
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersResponseDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterResponseDto;
+import com.arsnyan.cloudstorageservice.event.UserRegisteredEvent;
 import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.model.Role;
 import com.arsnyan.cloudstorageservice.model.User;
-import com.arsnyan.cloudstorageservice.model.UserRole;
-import com.arsnyan.cloudstorageservice.model.UserRoleId;
 import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import com.arsnyan.cloudstorageservice.repository.UserRepository.InsertedUser;
+import com.arsnyan.cloudstorageservice.security.BoundedPasswordEncoder;
 import com.arsnyan.cloudstorageservice.service.UserService;
+import com.arsnyan.cloudstorageservice.service.UserStorageService;
+import com.google.common.collect.Lists;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final UserStorageService userStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProvisioningProperties provisioningProperties;
 
     @Override
     @Transactional
     public UserRegisterResponseDto registerAccount(UserRegisterRequestDto dto) {
-        if (userRepository.getUserByUsername(dto.username()).isPresent()) {
+        if (userRepository.existsByUsername(dto.username())) {
             throw new EntityAlreadyExistsException("Username already taken");
         }
-        
+
         var encryptedPassword = passwordEncoder.encode(dto.password());
         var user = new User();
         user.setUsername(dto.username());
         user.setPassword(encryptedPassword);
+        user.setRoleMask(Role.DEFAULT.bit());
 
-        var defaultRoleId = new UserRoleId();
-        defaultRoleId.setRole("DEFAULT");
-        var defaultRole = new UserRole(defaultRoleId, user);
+        var saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserRegisteredEvent(saved.getId()));
 
-        user.setRoles(Set.of(defaultRole));
+        return new UserRegisterResponseDto(dto.username());
+    }
 
+    /**
+     * Creates users in batches, each committed on its own, and gives them an empty root folder.
+     * Usernames that already exist, including ones registered while the request runs, are skipped
+     * and reported rather than failing the request, so a partially applied request can simply be
+     * sent again.
+     */
+    @Override
+    public ProvisionUsersResponseDto provisionAccounts(ProvisionUsersRequestDto dto) {
+        var passwords = new LinkedHashMap<String, String>();
+        var skipped = new ArrayList<String>();
 
-        userRepository.save(user);
+        for (var user : dto.users()) {
+            if (passwords.putIfAbsent(user.username(), user.password()) != null) {
+                skipped.add(user.username());
+            }
+        }
 
-        return new UserRegisterResponseDto(dto.username());
+        for (var usernames : Lists.partition(List.copyOf(passwords.keySet()), provisioningProperties.batchSize())) {
+            for (var existing : userRepository.getExistingUsernames(usernames)) {
+                passwords.remove(existing);
+                skipped.add(existing);
+            }
+        }
+
+        var created = 0;
+        for (var batch : Lists.partition(List.copyOf(passwords.entrySet()), provisioningProperties.batchSize())) {
+            var hashes = passwordEncoder.encodeAll(batch.stream().map(Map.Entry::getValue).toList());
+
+            var usernames = batch.stream().map(Map.Entry::getKey).toArray(String[]::new);
+
+            var inserted = transactionTemplate.execute(status -> userRepository.insertIfAbsent(
+                usernames,
+                hashes.toArray(String[]::new),
+                Role.DEFAULT.bit()
+            ));
+            var insertedUsernames = inserted.stream().map(InsertedUser::getUsername).collect(Collectors.toSet());
+            for (var username : usernames) {
+                if (!insertedUsernames.contains(username)) {
+                    skipped.add(username);
+                }
+            }
+
+            bootstrapStorage(inserted.stream().map(InsertedUser::getId).toList());
+            created += inserted.size();
+        }
+
+        log.info("Provisioned {} users, skipped {}", created, skipped.size());
+        return new ProvisionUsersResponseDto(created, skipped);
+    }
+
+    private void bootstrapStorage(List<Long> userIds) {
+        var permits = new Semaphore(provisioningProperties.folderConcurrency());
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var userId : userIds) {
+                executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        userStorageService.bootstrap(userId);
+                    } catch (RuntimeException e) {
+                        // Storage works without it, the first listing just has to ask object storage
+                        log.warn("Failed to bootstrap storage of user {}: {}", userId, e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
     }
 }
@@ -0,0 +1,39 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.event.UserRegisteredEvent;
+import com.arsnyan.cloudstorageservice.repository.StorageUsageRepository;
+import com.arsnyan.cloudstorageservice.service.UserStorageService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.resolvePath;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserStorageServiceImpl implements UserStorageService {
+    private final S3Client s3Client;
+    private final StorageUsageRepository storageUsageRepository;
+
+    // Runs off the sign-up request; a failure only means the first listing goes to object storage
+    @Async
+    @TransactionalEventListener
+    public void onUserRegistered(UserRegisteredEvent event) {
+        try {
+            bootstrap(event.userId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to bootstrap storage of user {}: {}", event.userId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void bootstrap(Long userId) {
+        storageUsageRepository.initializeManifest(userId);
+        // Rewriting an existing empty placeholder is harmless, so there is no need to check first
+        s3Client.makeFolderInS3(resolvePath(userId, ""));
+    }
+}
@@ -0,0 +1,104 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import java.time.Duration;
+
+/**
+ * Stops calls to a failing shard for a while instead of letting every request wait for it.
+ * Trips when the failure rate over the last {@code window} calls reaches the threshold, fails
+ * fast while open, and then lets a single call through to probe whether the shard recovered.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int window, int minimumCalls, double failureRateThreshold, Duration openDuration) {
+        this.outcomes = new boolean[window];
+        this.minimumCalls = Math.min(minimumCalls, window);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * @return whether the call may go ahead; every permitted call must be followed by
+     * {@link #onSuccess()} or {@link #onFailure()}
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probing) yield false;
+                probing = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            reset(State.OPEN);
+            return;
+        }
+        record(true);
+
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            reset(State.OPEN);
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Duration remainingOpen() {
+        return state == State.OPEN
+            ? Duration.ofNanos(Math.max(openNanos - (System.nanoTime() - openedAt), 0))
+            : Duration.ZERO;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) failures--;
+        } else {
+            recorded++;
+        }
+
+        outcomes[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void reset(State newState) {
+        state = newState;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        probing = false;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Places users on a hash ring where every shard owns a number of points proportional to its
+ * weight. Adding a shard only takes users over from its neighbours on the ring, so a rebalance
+ * moves roughly the new shard's share of users instead of reshuffling all of them.
+ */
+public class ConsistentHashPlacementStrategy implements PlacementStrategy {
+    private final NavigableMap<Long, StorageShard> ring = new TreeMap<>();
+
+    public ConsistentHashPlacementStrategy(Collection<StorageShard> shards, int pointsPerWeight) {
+        for (var shard : shards) {
+            for (var i = 0; i < shard.weight() * pointsPerWeight; i++) {
+                var point = Hashing.murmur3_128().hashString(shard.name() + "#" + i, StandardCharsets.UTF_8).asLong();
+                ring.put(point, shard);
+            }
+        }
+
+        if (ring.isEmpty()) {
+            throw new IllegalArgumentException("At least one storage shard needs a positive weight");
+        }
+    }
+
+    @Override
+    public StorageShard place(Long userId) {
+        var entry = ring.ceilingEntry(Hashing.murmur3_128().hashLong(userId).asLong());
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+}
@@ -0,0 +1,225 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the requests of one MinIO client over the nodes of a distributed deployment.
+ * <p>
+ * Requests are signed for the configured endpoint and only their URL is pointed at a node; the
+ * signed Host header is kept, which every node of the deployment accepts. A node is picked by
+ * comparing two random healthy nodes and taking the one with the lower expected wait, that is
+ * its moving average latency times the requests it has in flight. Nodes that keep failing are
+ * left out for a while, and requests that are safe to repeat move on to another node when one
+ * cannot be connected to.
+ * <p>
+ * Failures after a node was reached, such as a 503 or a read timeout, are passed on as they are:
+ * {@link ResilientReads} decides whether a read is worth repeating, and repeating it here as well
+ * would multiply the attempts of the two.
+ */
+@Slf4j
+public class EndpointBalancer implements Interceptor {
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "DELETE");
+    private static final Set<Integer> UNAVAILABLE_CODES = Set.of(502, 503, 504);
+    // Weight of the newest sample in the latency average
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final int maxAttempts;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+
+    public EndpointBalancer(String name, List<String> nodeUrls, int maxAttempts, int failureThreshold,
+                            Duration ejection, MeterRegistry meterRegistry) {
+        for (var url : nodeUrls) {
+            var node = new Node(
+                HttpUrl.get(url),
+                Timer.builder("storage.minio.node.requests")
+                    .tag("client", name)
+                    .tag("node", url)
+                    .register(meterRegistry),
+                Counter.builder("storage.minio.node.failures")
+                    .tag("client", name)
+                    .tag("node", url)
+                    .register(meterRegistry)
+            );
+
+            Gauge.builder("storage.minio.node.latency", node, n -> n.ewmaNanos / 1_000_000)
+                .tag("client", name)
+                .tag("node", url)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+            Gauge.builder("storage.minio.node.in-flight", node, n -> n.inFlight.get())
+                .tag("client", name)
+                .tag("node", url)
+                .register(meterRegistry);
+            Gauge.builder("storage.minio.node.available", node, n -> n.isAvailable(System.nanoTime()) ? 1 : 0)
+                .tag("client", name)
+                .tag("node", url)
+                .register(meterRegistry);
+
+            nodes.add(node);
+        }
+
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one MinIO node is needed");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = ejection.toNanos();
+    }
+
+    @Override
+    public @NonNull Response intercept(@NonNull Chain chain) throws IOException {
+        var request = chain.request();
+        var attempts = IDEMPOTENT_METHODS.contains(request.method()) ? Math.min(maxAttempts, nodes.size()) : 1;
+        var tried = new ArrayList<Node>(attempts);
+
+        while (true) {
+            var node = choose(tried);
+            tried.add(node);
+
+            var url = request.url().newBuilder()
+                .scheme(node.url.scheme())
+                .host(node.url.host())
+                .port(node.url.port())
+                .build();
+
+            var start = System.nanoTime();
+            node.inFlight.incrementAndGet();
+            try {
+                var response = chain.proceed(request.newBuilder().url(url).build());
+                var elapsed = System.nanoTime() - start;
+
+                if (UNAVAILABLE_CODES.contains(response.code())) {
+                    node.failed(elapsed, failureThreshold, ejectionNanos);
+                } else {
+                    node.succeeded(elapsed);
+                }
+                return response;
+            } catch (IOException e) {
+                node.failed(System.nanoTime() - start, failureThreshold, ejectionNanos);
+                if (tried.size() >= attempts || !isConnectFailure(e)) {
+                    throw e;
+                }
+                log.debug("Could not connect to MinIO node {}, trying another one: {}", node.url, e.getMessage());
+            } finally {
+                node.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    // The request never reached the node, so nothing of it can have taken effect
+    private static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException
+            || e instanceof NoRouteToHostException
+            || e instanceof UnknownHostException
+            || e instanceof SocketTimeoutException && e.getMessage() != null
+                && e.getMessage().toLowerCase().contains("connect");
+    }
+
+    // Power of two choices: cheap to compute and avoids herding onto the single fastest node
+    private Node choose(List<Node> exclude) {
+        var now = System.nanoTime();
+        var candidates = new ArrayList<Node>(nodes.size());
+        for (var node : nodes) {
+            if (!exclude.contains(node) && node.isAvailable(now)) {
+                candidates.add(node);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            // Everything looks down; try the node that has been left out the longest rather than give up
+            Node best = null;
+            for (var node : nodes) {
+                if (!exclude.contains(node) && (best == null || node.ejectedUntil - best.ejectedUntil < 0)) {
+                    best = node;
+                }
+            }
+            return best != null ? best : nodes.getFirst();
+        }
+
+        if (candidates.size() == 1) {
+            return candidates.getFirst();
+        }
+
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(candidates.size());
+        var second = random.nextInt(candidates.size() - 1);
+        if (second >= first) second++;
+
+        var a = candidates.get(first);
+        var b = candidates.get(second);
+        return a.expectedWait() <= b.expectedWait() ? a : b;
+    }
+
+    private static final class Node {
+        private final HttpUrl url;
+        private final Timer timer;
+        private final Counter failures;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private volatile boolean ejected;
+        private volatile long ejectedUntil;
+
+        private Node(HttpUrl url, Timer timer, Counter failures) {
+            this.url = url;
+            this.timer = timer;
+            this.failures = failures;
+        }
+
+        private boolean isAvailable(long now) {
+            return !ejected || now - ejectedUntil >= 0;
+        }
+
+        private double expectedWait() {
+            return ewmaNanos * (inFlight.get() + 1);
+        }
+
+        private void succeeded(long elapsedNanos) {
+            consecutiveFailures.set(0);
+            record(elapsedNanos);
+        }
+
+        private void failed(long elapsedNanos, int threshold, long ejectionNanos) {
+            record(elapsedNanos);
+            failures.increment();
+            if (consecutiveFailures.incrementAndGet() >= threshold) {
+                consecutiveFailures.set(0);
+                ejectedUntil = System.nanoTime() + ejectionNanos;
+                ejected = true;
+                log.warn("MinIO node {} failed {} times in a row, leaving it out for {} ms",
+                    url, threshold, TimeUnit.NANOSECONDS.toMillis(ejectionNanos));
+            }
+        }
+
+        // Racing updates may drop a sample, which an average does not mind
+        private void record(long elapsedNanos) {
+            timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            var current = ewmaNanos;
+            ewmaNanos = current == 0 ? elapsedNanos : current + EWMA_ALPHA * (elapsedNanos - current);
+        }
+    }
+}
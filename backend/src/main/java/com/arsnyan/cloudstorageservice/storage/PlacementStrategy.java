@@ -0,0 +1,10 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+/**
+ * Decides which shard a user's objects belong on. Users keep the shard they were first placed on
+ * until {@link ShardRebalancer} moves them, so a strategy is free to change its mind when shards
+ * are added or removed.
+ */
+public interface PlacementStrategy {
+    StorageShard place(Long userId);
+}
@@ -0,0 +1,407 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.Result;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Makes reads from object storage ride out short hiccups. Failed reads are repeated after a
+ * jittered backoff, reads that take longer than usual get a second request racing the first,
+ * and a shard that keeps failing is given a break by a {@link CircuitBreaker}, during which
+ * reads fail fast with {@link ServiceOverloadedException}.
+ * <p>
+ * Only failures that another attempt might not hit count: network errors and server errors.
+ * An answer such as "no such key" is a healthy response and is passed on at once.
+ */
+@Slf4j
+public class ResilientReads implements AutoCloseable {
+    private static final Set<String> RETRYABLE_CODES = Set.of(
+        "InternalError", "ServiceUnavailable", "SlowDown", "RequestTimeout", "XMinioServerNotInitialized"
+    );
+    // Hedging on a handful of samples would mostly double the load
+    private static final int MIN_HEDGE_SAMPLES = 32;
+
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final boolean hedgingEnabled;
+    private final double hedgePercentile;
+    private final Duration minHedgeDelay;
+    private final Function<String, CircuitBreaker> breakerFactory;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ResilientReads(int maxAttempts, Duration backoff, Duration maxBackoff, boolean hedgingEnabled,
+                          double hedgePercentile, Duration minHedgeDelay, Function<String, CircuitBreaker> breakerFactory,
+                          MeterRegistry meterRegistry) {
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelay = minHedgeDelay;
+        this.breakerFactory = breakerFactory;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs a read that returns its whole answer at once. A result that loses a hedged race is
+     * closed when it is {@link AutoCloseable}, so streams do not leak.
+     */
+    public <T> T read(StorageShard shard, String operation, Callable<T> call) throws Exception {
+        var breaker = breaker(shard);
+
+        for (var attempt = 1; ; attempt++) {
+            acquire(shard, breaker);
+            try {
+                var result = hedgingEnabled ? hedged(operation, call) : timed(operation, call);
+                breaker.onSuccess();
+                return result;
+            } catch (Exception e) {
+                if (!isRetryable(e)) {
+                    breaker.onSuccess();
+                    throw e;
+                }
+
+                breaker.onFailure();
+                if (attempt >= maxAttempts) throw e;
+
+                retried(operation, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Wraps a listing, which MinIO fetches page by page while it is iterated. A page that fails is
+     * fetched again: from the start when nothing has been returned yet, or after the last returned
+     * key when {@code resumable}. Listings that fold keys into folders are not resumable, since
+     * starting after a folder would return it again.
+     *
+     * @param lister starts the listing after the given key, or from the start for {@code null}
+     */
+    public Iterable<Result<Item>> list(StorageShard shard, boolean resumable,
+                                       Function<String, Iterable<Result<Item>>> lister) {
+        return () -> new ResilientIterator(shard, resumable, lister);
+    }
+
+    public static boolean isRetryable(Throwable e) {
+        if (e instanceof ErrorResponseException error) {
+            return RETRYABLE_CODES.contains(error.errorResponse().code())
+                || error.response() != null && error.response().code() >= 500;
+        }
+
+        return e instanceof IOException || e instanceof ServerException;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private CircuitBreaker breaker(StorageShard shard) {
+        return breakers.computeIfAbsent(shard.name(), name -> {
+            var breaker = breakerFactory.apply(name);
+            Gauge.builder("storage.reads.circuit.state", breaker, b -> b.state().ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .tag("shard", name)
+                .register(meterRegistry);
+            return breaker;
+        });
+    }
+
+    private void acquire(StorageShard shard, CircuitBreaker breaker) {
+        if (!breaker.tryAcquire()) {
+            Counter.builder("storage.reads.rejected").tag("shard", shard.name()).register(meterRegistry).increment();
+            var retryAfter = breaker.remainingOpen();
+            throw new ServiceOverloadedException(
+                "Object storage is unavailable",
+                retryAfter.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : retryAfter
+            );
+        }
+    }
+
+    private void retried(String operation, int attempt, Exception e) {
+        Counter.builder("storage.reads.retries").tag("operation", operation).register(meterRegistry).increment();
+        log.debug("Retrying {} after attempt {} failed: {}", operation, attempt, e.getMessage());
+
+        // Full jitter keeps clients that failed together from retrying together
+        var cap = Math.min(backoff.toNanos() << Math.min(attempt - 1, 20), maxBackoff.toNanos());
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(cap + 1)));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting to retry " + operation);
+        }
+    }
+
+    private <T> T timed(String operation, Callable<T> call) throws Exception {
+        var start = System.nanoTime();
+        var result = call.call();
+        latencies(operation).add(System.nanoTime() - start);
+        return result;
+    }
+
+    private <T> T hedged(String operation, Callable<T> call) throws Exception {
+        var window = latencies(operation);
+        var delay = window.percentile(hedgePercentile);
+        if (delay < 0) {
+            return timed(operation, call);
+        }
+
+        var start = System.nanoTime();
+        var primary = submit(call);
+        try {
+            var result = primary.get(Math.max(delay, minHedgeDelay.toNanos()), TimeUnit.NANOSECONDS);
+            window.add(System.nanoTime() - start);
+            return result;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (TimeoutException e) {
+            // Slower than usual: race a second request against the first
+        } catch (InterruptedException e) {
+            primary.thenAccept(ResilientReads::closeQuietly);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+
+        var hedge = submit(call);
+        var winner = new CompletableFuture<String>();
+        var result = new CompletableFuture<T>();
+        var failures = new AtomicInteger();
+
+        for (var entry : Map.of("primary", primary, "hedge", hedge).entrySet()) {
+            entry.getValue().whenComplete((value, error) -> {
+                if (error == null) {
+                    if (result.complete(value)) {
+                        winner.complete(entry.getKey());
+                    } else {
+                        closeQuietly(value);
+                    }
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+
+        var returned = false;
+        try {
+            var value = result.get();
+            window.add(System.nanoTime() - start);
+            Counter.builder("storage.reads.hedges")
+                .tag("operation", operation)
+                .tag("winner", winner.getNow("primary"))
+                .register(meterRegistry)
+                .increment();
+            returned = true;
+            return value;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            if (!returned) {
+                // Interrupted while waiting: nobody takes either result now, so both get closed
+                primary.cancel(false);
+                hedge.cancel(false);
+                if (!result.cancel(false) && !result.isCompletedExceptionally()) {
+                    closeQuietly(result.join());
+                }
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        var future = new CompletableFuture<T>();
+        executor.execute(() -> {
+            try {
+                var value = call.call();
+                // Cancelled by a caller that stopped waiting
+                if (!future.complete(value)) {
+                    closeQuietly(value);
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private LatencyWindow latencies(String operation) {
+        return latencies.computeIfAbsent(operation, name -> {
+            var window = new LatencyWindow(256);
+            Gauge.builder("storage.reads.hedge-delay", window, w -> Math.max(w.percentile(hedgePercentile), 0) / 1e6)
+                .tag("operation", name)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+            return window;
+        });
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        var cause = e.getCause();
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception exception) return exception;
+        if (cause instanceof Error error) throw error;
+        return e;
+    }
+
+    private static void closeQuietly(Object value) {
+        if (value instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.debug("Failed to close the result of a hedged read: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The latest latencies of an operation. The percentile is recomputed every few samples rather
+     * than on every read, and racing writers may overwrite each other's samples, which is fine for
+     * an estimate.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile double cachedPercentile = -1;
+        private volatile long cachedNanos = -1;
+        private volatile int cachedAt;
+
+        private LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        private void add(long nanos) {
+            var index = count.getAndIncrement();
+            samples[Math.floorMod(index, samples.length)] = nanos;
+        }
+
+        private long percentile(double percentile) {
+            var total = count.get();
+            if (total < MIN_HEDGE_SAMPLES) return -1;
+
+            if (cachedPercentile != percentile || total - cachedAt >= 16) {
+                var sorted = Arrays.copyOf(samples, Math.min(total, samples.length));
+                Arrays.sort(sorted);
+                cachedNanos = sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+                cachedPercentile = percentile;
+                cachedAt = total;
+            }
+
+            return cachedNanos;
+        }
+    }
+
+    private final class ResilientIterator implements Iterator<Result<Item>> {
+        private final StorageShard shard;
+        private final boolean resumable;
+        private final Function<String, Iterable<Result<Item>>> lister;
+        private final CircuitBreaker breaker;
+
+        private Iterator<Result<Item>> current;
+        private boolean settled;
+        private String lastKey;
+        private int attempt = 1;
+        private Result<Item> pending;
+        private boolean failed;
+
+        private ResilientIterator(StorageShard shard, boolean resumable, Function<String, Iterable<Result<Item>>> lister) {
+            this.shard = shard;
+            this.resumable = resumable;
+            this.lister = lister;
+            this.breaker = breaker(shard);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending == null && !failed) {
+                pending = fetch();
+            }
+            return pending != null;
+        }
+
+        @Override
+        public Result<Item> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            var result = pending;
+            pending = null;
+            return result;
+        }
+
+        private void open() {
+            acquire(shard, breaker);
+            settled = false;
+            current = lister.apply(lastKey).iterator();
+        }
+
+        private Result<Item> fetch() {
+            if (current == null) {
+                open();
+            }
+
+            while (true) {
+                if (!current.hasNext()) {
+                    settle(true);
+                    return null;
+                }
+
+                var result = current.next();
+                try {
+                    var item = result.get();
+                    settle(true);
+                    lastKey = item.objectName();
+                    return result;
+                } catch (Exception e) {
+                    var canRestart = lastKey == null || resumable;
+                    if (!isRetryable(e)) {
+                        settle(true);
+                        failed = true;
+                        return result;
+                    }
+
+                    settle(false);
+                    if (!canRestart || attempt >= maxAttempts) {
+                        failed = true;
+                        return result;
+                    }
+
+                    retried("listObjects", attempt++, e);
+                    open();
+                }
+            }
+        }
+
+        // The breaker hears about each listing request once, when its first page answers
+        private void settle(boolean succeeded) {
+            if (settled) return;
+            settled = true;
+
+            if (succeeded) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+        }
+    }
+}
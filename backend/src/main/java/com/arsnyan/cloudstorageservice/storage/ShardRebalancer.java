@@ -0,0 +1,328 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.dto.admin.RebalanceStatusDto;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.model.StoragePlacement;
+import com.arsnyan.cloudstorageservice.model.StorageRebalance;
+import com.arsnyan.cloudstorageservice.repository.StoragePlacementRepository;
+import com.arsnyan.cloudstorageservice.repository.StorageRebalanceRepository;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.resolveDerivativesPath;
+import static com.arsnyan.cloudstorageservice.util.FileUtils.resolvePath;
+
+/**
+ * Moves users whose shard differs from where the {@link PlacementStrategy} would place them now,
+ * for example after a shard was added or its weight changed. Users stay online while they move:
+ * <ol>
+ *     <li>their objects are copied to the new shard while requests keep using the old one;</li>
+ *     <li>their placement is switched, and the rebalancer waits until no instance can still be
+ *     routing them by a cached placement;</li>
+ *     <li>objects written or removed on the old shard in the meantime are carried over, unless the
+ *     new shard has been written to since the switch, then the old shard is cleared.</li>
+ * </ol>
+ * Users are moved in batches so the wait in step 2 is paid once per batch. A user that fails
+ * before the switch stays where they were and is retried by the next run.
+ * <p>
+ * One rebalance runs across all instances at a time. Its progress is kept in the database, which
+ * also works as its lease: the instance running it reports at least every third of the lease, and
+ * another instance may take over once it has not for a whole lease.
+ */
+@Slf4j
+public class ShardRebalancer {
+    private static final long MAX_SINGLE_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private final ShardRegistry registry;
+    private final ShardRouter router;
+    private final StoragePlacementRepository placementRepository;
+    private final StorageRebalanceRepository rebalanceRepository;
+    private final int batchSize;
+    private final Duration placementCacheTtl;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    // Progress of the rebalance running on this instance
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong moved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile Instant reportedAt;
+
+    /**
+     * @param lease well over the placement cache TTL, which a batch waits for without reporting
+     */
+    public ShardRebalancer(ShardRegistry registry, ShardRouter router, StoragePlacementRepository placementRepository,
+                           StorageRebalanceRepository rebalanceRepository, int batchSize, Duration placementCacheTtl,
+                           Duration lease) {
+        this.registry = registry;
+        this.router = router;
+        this.placementRepository = placementRepository;
+        this.rebalanceRepository = rebalanceRepository;
+        this.batchSize = batchSize;
+        this.placementCacheTtl = placementCacheTtl;
+        this.lease = lease;
+    }
+
+    public RebalanceStatusDto start() {
+        if (rebalanceRepository.tryStart(owner, lease.toSeconds()) == 0) {
+            throw new EntityAlreadyExistsException("A storage rebalance is already running");
+        }
+
+        checked.set(0);
+        moved.set(0);
+        failed.set(0);
+        reportedAt = Instant.now();
+
+        Thread.ofPlatform()
+            .name("shard-rebalancer")
+            .daemon()
+            .start(this::run);
+
+        return status();
+    }
+
+    public RebalanceStatusDto status() {
+        var rebalance = rebalanceRepository.findById(StorageRebalance.ID).orElseGet(StorageRebalance::new);
+        // A rebalance whose instance stopped reporting has died with it
+        var running = rebalance.isRunning()
+            && rebalance.getReportedAt() != null
+            && rebalance.getReportedAt().isAfter(Instant.now().minus(lease));
+
+        return new RebalanceStatusDto(
+            running,
+            rebalance.getCheckedUsers(),
+            rebalance.getMovedUsers(),
+            rebalance.getFailedUsers(),
+            rebalance.getStartedAt(),
+            rebalance.getFinishedAt()
+        );
+    }
+
+    private void run() {
+        try {
+            var afterId = 0L;
+            List<StoragePlacement> batch;
+
+            while (!(batch = placementRepository.findByUserIdGreaterThanOrderByUserId(afterId, Limit.of(batchSize))).isEmpty()) {
+                afterId = batch.getLast().getUserId();
+                rebalance(batch);
+                report(true);
+            }
+
+            log.info("Storage rebalance finished: {} users checked, {} moved, {} failed",
+                checked.get(), moved.get(), failed.get());
+        } catch (RuntimeException e) {
+            log.error("Storage rebalance stopped: {}", e.getMessage(), e);
+        } finally {
+            try {
+                rebalanceRepository.finish(owner, checked.get(), moved.get(), failed.get());
+            } catch (RuntimeException e) {
+                log.warn("Failed to record the end of the storage rebalance, it expires with its lease: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Renews the lease along with the progress, at least every third of it unless forced
+    private void report(boolean force) {
+        if (!force && reportedAt.isAfter(Instant.now().minus(lease.dividedBy(3)))) return;
+
+        if (rebalanceRepository.report(owner, checked.get(), moved.get(), failed.get()) == 0) {
+            throw new LeaseLostException();
+        }
+        reportedAt = Instant.now();
+    }
+
+    private void rebalance(List<StoragePlacement> batch) {
+        var moves = new ArrayList<Move>();
+
+        for (var placement : batch) {
+            checked.incrementAndGet();
+            var from = registry.get(placement.getShard());
+            var to = router.target(placement.getUserId());
+            if (from.name().equals(to.name())) continue;
+
+            try {
+                var copied = new HashMap<String, String>();
+                for (var item : list(from, placement.getUserId())) {
+                    copy(from, to, item);
+                    copied.put(item.objectName(), etag(item.etag()));
+                    report(false);
+                }
+
+                var switchedAt = Instant.now();
+                if (router.move(placement.getUserId(), from, to)) {
+                    moves.add(new Move(placement.getUserId(), from, to, copied, switchedAt));
+                }
+            } catch (LeaseLostException e) {
+                throw e;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.warn("Failed to copy user {} from shard {} to {}: {}",
+                    placement.getUserId(), from.name(), to.name(), e.getMessage());
+            }
+        }
+
+        if (moves.isEmpty()) return;
+
+        try {
+            Thread.sleep(placementCacheTtl);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (var move : moves) {
+            try {
+                finish(move);
+                moved.incrementAndGet();
+                report(false);
+            } catch (LeaseLostException e) {
+                throw e;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                // The user is served from the new shard already; whatever is left on the old one is not
+                log.error("Failed to clear user {} from shard {} after moving to {}, leftover objects need a manual cleanup: {}",
+                    move.userId(), move.from().name(), move.to().name(), e.getMessage());
+            }
+        }
+    }
+
+    private void finish(Move move) throws Exception {
+        var remaining = new ArrayList<String>();
+
+        for (var item : list(move.from(), move.userId())) {
+            remaining.add(item.objectName());
+            if (!etag(item.etag()).equals(move.copied().get(item.objectName()))
+                && !writtenSinceSwitch(move, item.objectName())) {
+                copy(move.from(), move.to(), item);
+            }
+        }
+
+        // Removed from the old shard while the first copy ran; kept if it has been rewritten since
+        var removed = new HashSet<>(move.copied().keySet());
+        remaining.forEach(removed::remove);
+        for (var key : removed) {
+            try {
+                var stat = move.to().client().statObject(
+                    StatObjectArgs.builder().bucket(move.to().bucket()).object(key).build()
+                );
+                if (etag(stat.etag()).equals(move.copied().get(key))) {
+                    move.to().client().removeObject(
+                        RemoveObjectArgs.builder().bucket(move.to().bucket()).object(key).build()
+                    );
+                }
+            } catch (ErrorResponseException e) {
+                if (!e.errorResponse().code().equals("NoSuchKey")) throw e;
+            }
+        }
+
+        if (remaining.isEmpty()) return;
+
+        var errors = move.from().client().removeObjects(
+            RemoveObjectsArgs.builder()
+                .bucket(move.from().bucket())
+                .objects(remaining.stream().map(DeleteObject::new).toList())
+                .build()
+        );
+        for (var error : errors) {
+            var deleteError = error.get();
+            log.warn("Failed to remove {} from shard {}: {}", deleteError.objectName(), move.from().name(), deleteError.message());
+        }
+    }
+
+    // A request routed to the new shard wrote it, and that is newer than anything left on the old one
+    private static boolean writtenSinceSwitch(Move move, String key) throws Exception {
+        try {
+            var stat = move.to().client().statObject(
+                StatObjectArgs.builder().bucket(move.to().bucket()).object(key).build()
+            );
+            return stat.lastModified().toInstant().isAfter(move.switchedAt());
+        } catch (ErrorResponseException e) {
+            if (!e.errorResponse().code().equals("NoSuchKey")) throw e;
+            return false;
+        }
+    }
+
+    // The user's objects and whatever was derived from them
+    private List<Item> list(StorageShard shard, Long userId) throws Exception {
+        var items = new ArrayList<Item>();
+
+        for (var prefix : List.of(resolvePath(userId, ""), resolveDerivativesPath(resolvePath(userId, "")))) {
+            var results = shard.client().listObjects(
+                ListObjectsArgs.builder()
+                    .bucket(shard.bucket())
+                    .prefix(prefix)
+                    .recursive(true)
+                    .build()
+            );
+
+            for (var result : results) {
+                items.add(result.get());
+            }
+        }
+
+        return items;
+    }
+
+    private static void copy(StorageShard from, StorageShard to, Item item) throws Exception {
+        var key = item.objectName();
+
+        // Shards on the same MinIO deployment can copy server-side
+        if (from.client() == to.client()) {
+            if (item.size() > MAX_SINGLE_COPY_SIZE) {
+                // Compose splits the source into part copies, so the bytes still stay on the server
+                to.client().composeObject(
+                    ComposeObjectArgs.builder()
+                        .bucket(to.bucket())
+                        .object(key)
+                        .sources(List.of(ComposeSource.builder().bucket(from.bucket()).object(key).build()))
+                        .build()
+                );
+            } else {
+                to.client().copyObject(
+                    CopyObjectArgs.builder()
+                        .bucket(to.bucket())
+                        .object(key)
+                        .source(CopySource.builder().bucket(from.bucket()).object(key).build())
+                        .build()
+                );
+            }
+            return;
+        }
+
+        try (var stream = from.client().getObject(GetObjectArgs.builder().bucket(from.bucket()).object(key).build())) {
+            var args = PutObjectArgs.builder()
+                .bucket(to.bucket())
+                .object(key)
+                .stream(stream, item.size(), -1);
+
+            var contentType = stream.headers().get("Content-Type");
+            if (contentType != null) {
+                args.contentType(contentType);
+            }
+
+            to.client().putObject(args.build());
+        }
+    }
+
+    // Depending on the response, ETags may come wrapped in quotes
+    private static String etag(String etag) {
+        return etag == null ? "" : etag.replace("\"", "");
+    }
+
+    private static class LeaseLostException extends RuntimeException {
+        LeaseLostException() {
+            super("Another instance has taken the storage rebalance over");
+        }
+    }
+
+    private record Move(Long userId, StorageShard from, StorageShard to, Map<String, String> copied, Instant switchedAt) {}
+}
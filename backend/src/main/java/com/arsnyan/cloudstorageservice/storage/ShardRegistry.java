@@ -0,0 +1,48 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.exception.ServerErrorException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The configured storage shards. The default shard is the root bucket, which held every user
+ * before sharding existed; objects that do not belong to a user always stay there.
+ */
+public class ShardRegistry {
+    public static final String DEFAULT_SHARD = "default";
+
+    private final Map<String, StorageShard> shards = new LinkedHashMap<>();
+
+    public ShardRegistry(List<StorageShard> shards) {
+        for (var shard : shards) {
+            if (this.shards.putIfAbsent(shard.name(), shard) != null) {
+                throw new IllegalArgumentException("Duplicate storage shard " + shard.name());
+            }
+        }
+
+        if (!this.shards.containsKey(DEFAULT_SHARD)) {
+            throw new IllegalArgumentException("The default storage shard is missing");
+        }
+    }
+
+    public StorageShard get(String name) {
+        var shard = shards.get(name);
+        if (shard == null) {
+            // Removing a shard that still has users would lose their objects, so refuse to guess
+            throw new ServerErrorException("Storage shard " + name + " is not configured", null);
+        }
+
+        return shard;
+    }
+
+    public StorageShard defaultShard() {
+        return shards.get(DEFAULT_SHARD);
+    }
+
+    public Collection<StorageShard> shards() {
+        return shards.values();
+    }
+}
@@ -0,0 +1,78 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.cache.BoundedLocalCache;
+import com.arsnyan.cloudstorageservice.repository.StoragePlacementRepository;
+
+import java.time.Duration;
+
+import static com.arsnyan.cloudstorageservice.util.FileUtils.DERIVATIVES_PREFIX;
+import static com.arsnyan.cloudstorageservice.util.FileUtils.extractUserId;
+
+/**
+ * Finds the shard holding a user's objects. A user is placed by the {@link PlacementStrategy} on
+ * their first access to storage and stays on that shard until the rebalancer moves them, so
+ * placements survive changes to the shard list or their weights.
+ */
+public class ShardRouter {
+    private final ShardRegistry registry;
+    private final PlacementStrategy strategy;
+    private final StoragePlacementRepository placementRepository;
+    private final BoundedLocalCache<Long, StorageShard> placements;
+
+    /**
+     * @param cacheTtl how long a placement may be used after the rebalancer changed it on another
+     *                 instance; the rebalancer waits this long before it clears the old shard
+     */
+    public ShardRouter(ShardRegistry registry, PlacementStrategy strategy,
+                       StoragePlacementRepository placementRepository, int cacheSize, Duration cacheTtl) {
+        this.registry = registry;
+        this.strategy = strategy;
+        this.placementRepository = placementRepository;
+        this.placements = new BoundedLocalCache<>(cacheSize, cacheTtl);
+    }
+
+    public StorageShard forKey(String key) {
+        // MinIO ignores a leading slash, so neither does routing
+        var normalized = key.startsWith("/") ? key.substring(1) : key;
+        // Derivatives stay next to the objects they were made from
+        if (normalized.startsWith(DERIVATIVES_PREFIX)) {
+            normalized = normalized.substring(DERIVATIVES_PREFIX.length());
+        }
+
+        var userId = extractUserId(normalized);
+        return userId == null ? registry.defaultShard() : forUser(userId);
+    }
+
+    public StorageShard forUser(Long userId) {
+        var cached = placements.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        var name = placementRepository.getShard(userId);
+        if (name == null) {
+            name = placementRepository.assignIfMissing(userId, strategy.place(userId).name());
+        }
+        if (name == null) {
+            // A concurrent assignment committed after this statement started; it is visible now
+            name = placementRepository.getShard(userId);
+        }
+
+        var shard = registry.get(name);
+        placements.put(userId, shard);
+        return shard;
+    }
+
+    public StorageShard target(Long userId) {
+        return strategy.place(userId);
+    }
+
+    /**
+     * Points the user at another shard unless their placement changed since {@code from} was read.
+     */
+    public boolean move(Long userId, StorageShard from, StorageShard to) {
+        var moved = placementRepository.reassign(userId, from.name(), to.name()) == 1;
+        placements.invalidate(userId);
+        return moved;
+    }
+}
@@ -0,0 +1,11 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import io.minio.MinioClient;
+
+/**
+ * A bucket holding the objects of some of the users, possibly on a MinIO deployment of its own.
+ *
+ * @param weight relative share of new users placed on the shard; 0 keeps it for existing users only
+ */
+public record StorageShard(String name, MinioClient client, String bucket, int weight) {
+}
@@ -0,0 +1,88 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import com.google.common.collect.Streams;
+import io.minio.GetObjectResponse;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Shared logic of the S3Client backends that keep objects inside this JVM's host
+ * instead of a MinIO server. Keys follow the same rules as in the MinIO bucket:
+ * a key ending with "/" is a folder placeholder, and a leading "/" is ignored.
+ */
+public abstract class AbstractLocalS3Client implements S3Client {
+    protected static final String LOCAL_BUCKET = "local";
+
+    private static final DateTimeFormatter HTTP_DATE_FORMAT = DateTimeFormatter
+        .ofPattern("EEE',' dd MMM yyyy HH':'mm':'ss 'GMT'", Locale.US)
+        .withZone(ZoneOffset.UTC);
+
+    @Override
+    public boolean isPathUnavailable(String path) {
+        return getStatObject(path) == null;
+    }
+
+    @Override
+    public boolean ensureFolderPlaceholderExists(String folderPath) {
+        if (isPathUnavailable(folderPath)) {
+            makeFolderInS3(folderPath);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean hasNamingConflict(String path) {
+        if (path.endsWith("/")) {
+            return !isPathUnavailable(path.substring(0, path.length() - 1));
+        }
+
+        var folderPath = path + "/";
+        if (!isPathUnavailable(folderPath)) {
+            return true;
+        }
+
+        return Streams.stream(listObjects(folderPath, false)).findAny().isPresent();
+    }
+
+    @Override
+    public boolean isPathAvailable(String path) {
+        return !isPathUnavailable(path) || hasNamingConflict(path);
+    }
+
+    protected static String normalizeKey(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Object key must not be null");
+        }
+
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    protected static StatObjectResponse statResponse(String key, long size, Instant lastModified, String etag) {
+        return new StatObjectResponse(headers(key, size, lastModified, etag), LOCAL_BUCKET, null, key);
+    }
+
+    protected static GetObjectResponse getResponse(String key, long size, Instant lastModified, String etag,
+                                                   InputStream body) {
+        return new GetObjectResponse(headers(key, size, lastModified, etag), LOCAL_BUCKET, null, key, body);
+    }
+
+    private static Headers headers(String key, long size, Instant lastModified, String etag) {
+        var contentType = key.endsWith("/") ? "application/x-directory" : URLConnection.guessContentTypeFromName(key);
+
+        return Headers.of(
+            "Content-Length", Long.toString(size),
+            "Content-Type", contentType != null ? contentType : "application/octet-stream",
+            "Last-Modified", HTTP_DATE_FORMAT.format(lastModified),
+            "ETag", "\"%s\"".formatted(etag)
+        );
+    }
+}
@@ -0,0 +1,399 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
+import com.arsnyan.cloudstorageservice.exception.ServerErrorException;
+import io.minio.GetObjectResponse;
+import io.minio.Result;
+import io.minio.SnowballObject;
+import io.minio.StatObjectResponse;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Stores objects as plain files under {@code <root>/objects}, one file per key. Folder
+ * placeholders are directories, and directories left empty by a removal are pruned so
+ * that a folder disappears with its last object, like it does in a bucket.
+ * Writes go to {@code <root>/tmp} first and are atomically moved into place.
+ */
+@Slf4j
+public class FileSystemS3Client extends AbstractLocalS3Client {
+    private final Path objectsDir;
+    private final Path tmpDir;
+    private final long mmapThreshold;
+
+    public FileSystemS3Client(Path rootDir, long mmapThreshold) {
+        this.objectsDir = rootDir.toAbsolutePath().normalize().resolve("objects");
+        this.tmpDir = rootDir.toAbsolutePath().normalize().resolve("tmp");
+        this.mmapThreshold = mmapThreshold;
+
+        try {
+            Files.createDirectories(objectsDir);
+            Files.createDirectories(tmpDir);
+        } catch (IOException e) {
+            throw new ServerErrorException("Failed to initialize storage directory %s".formatted(rootDir), e);
+        }
+    }
+
+    @Override
+    public void uploadSnowballObject(List<SnowballObject> objects) {
+        if (objects == null) {
+            throw new MinioWrappedException("Objects to upload must not be null");
+        }
+
+        for (var object : objects) {
+            var target = resolve(object.name());
+
+            invoke(object.name(), () -> {
+                if (object.filename() != null) {
+                    writeAtomically(target, Path.of(object.filename()));
+                } else {
+                    try (var stream = object.stream()) {
+                        writeAtomically(target, Channels.newChannel(stream), object.size());
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void copyObject(Item item, String pathTo) {
+        var source = resolve(item.objectName());
+        var target = resolve(pathTo);
+
+        invoke(item.objectName(), () -> {
+            if (Files.isDirectory(source) && item.objectName().endsWith("/")) {
+                Files.createDirectories(target);
+            } else if (Files.isRegularFile(source)) {
+                writeAtomically(target, source);
+            } else {
+                throw new MinioWrappedException("Object %s does not exist".formatted(item.objectName()));
+            }
+        });
+    }
+
+    @Override
+    public GetObjectResponse getObject(String path) {
+        return getObject(path, 0, null);
+    }
+
+    @Override
+    public GetObjectResponse getObject(String path, long offset, Long length) {
+        var key = normalizeKey(path);
+        var file = resolve(key);
+
+        try {
+            if (key.endsWith("/") && Files.isDirectory(file)) {
+                var lastModified = Files.getLastModifiedTime(file).toInstant();
+                return getResponse(key, 0, lastModified, etag(0, lastModified), InputStream.nullInputStream());
+            }
+            if (!Files.isRegularFile(file)) {
+                throw new MinioWrappedException("Object %s does not exist".formatted(key));
+            }
+
+            var channel = FileChannel.open(file, StandardOpenOption.READ);
+            var size = channel.size();
+            var lastModified = Files.getLastModifiedTime(file).toInstant();
+            var start = Math.min(offset, size);
+            var count = length == null ? size - start : Math.min(length, size - start);
+
+            InputStream body;
+            if (count <= mmapThreshold) {
+                try (channel) {
+                    body = new MappedBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, count));
+                }
+            } else {
+                body = new BoundedInputStream(Channels.newInputStream(channel.position(start)), count);
+            }
+
+            return getResponse(key, count, lastModified, etag(size, lastModified), body);
+        } catch (IOException e) {
+            log.error("Failed to read object {}: {}", key, e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    @Override
+    public Path getLocalFile(String path) {
+        var file = resolve(path);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    @Override
+    public void removeObject(String path) {
+        var key = normalizeKey(path);
+        var file = resolve(key);
+
+        invoke(key, () -> {
+            if (key.endsWith("/")) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (DirectoryNotEmptyException e) {
+                    return;
+                }
+            } else if (!Files.isRegularFile(file) || !Files.deleteIfExists(file)) {
+                return;
+            }
+
+            pruneEmptyParents(file.getParent());
+        });
+    }
+
+    @Override
+    public Iterable<Result<Item>> listObjects(String path, boolean recursive) {
+        var prefix = path == null ? "" : normalizeKey(path);
+        var delimiterIndex = prefix.lastIndexOf('/');
+        var dirKey = prefix.substring(0, delimiterIndex + 1);
+        var namePrefix = prefix.substring(delimiterIndex + 1);
+        var dir = resolve(dirKey);
+
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+
+        var items = new ArrayList<Item>();
+        invoke(prefix, () -> {
+            if (namePrefix.isEmpty() && !dirKey.isEmpty() && isEmptyDirectory(dir)) {
+                items.add(itemFor(dirKey, dir));
+            }
+
+            if (recursive) {
+                try (Stream<Path> walk = Files.walk(dir)) {
+                    walk.filter(p -> !p.equals(dir))
+                        .filter(p -> Files.isRegularFile(p) || isEmptyDirectory(p))
+                        .forEach(p -> {
+                            var key = keyOf(p);
+                            if (key.startsWith(prefix)) {
+                                items.add(itemFor(key, p));
+                            }
+                        });
+                }
+            } else {
+                try (Stream<Path> children = Files.list(dir)) {
+                    children.filter(p -> p.getFileName().toString().startsWith(namePrefix))
+                        .forEach(p -> items.add(Files.isDirectory(p)
+                            ? LocalObjectItem.prefix(keyOf(p))
+                            : itemFor(keyOf(p), p)));
+                }
+            }
+        });
+
+        return items.stream()
+            .sorted(Comparator.comparing(Item::objectName))
+            .map(item -> new Result<>(item))
+            .toList();
+    }
+
+    @Override
+    public StatObjectResponse getStatObject(String path) {
+        var key = normalizeKey(path);
+        var file = resolve(key);
+        var exists = key.endsWith("/") ? Files.isDirectory(file) : Files.isRegularFile(file);
+        if (!exists) {
+            return null;
+        }
+
+        try {
+            var size = key.endsWith("/") ? 0 : Files.size(file);
+            var lastModified = Files.getLastModifiedTime(file).toInstant();
+            return statResponse(key, size, lastModified, etag(size, lastModified));
+        } catch (IOException e) {
+            log.error("Getting stats for object {} failed: {}", key, e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    @Override
+    public void makeFolderInS3(String path) {
+        var dir = resolve(path);
+        invoke(path, () -> Files.createDirectories(dir));
+    }
+
+    private Path resolve(String path) {
+        var key = normalizeKey(path);
+        for (var segment : key.split("/")) {
+            if (segment.equals(".") || segment.equals("..")) {
+                throw new MinioWrappedException("Object key %s is not allowed".formatted(key));
+            }
+        }
+
+        var resolved = objectsDir.resolve(key).normalize();
+        if (!resolved.startsWith(objectsDir)) {
+            throw new MinioWrappedException("Object key %s is not allowed".formatted(key));
+        }
+
+        return resolved;
+    }
+
+    private String keyOf(Path file) {
+        var relative = objectsDir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+        return Files.isDirectory(file) ? relative + "/" : relative;
+    }
+
+    private Item itemFor(String key, Path file) {
+        try {
+            var size = Files.isDirectory(file) ? 0 : Files.size(file);
+            var lastModified = Files.getLastModifiedTime(file).toInstant();
+            return LocalObjectItem.object(key, size, lastModified.atZone(ZoneOffset.UTC), etag(size, lastModified));
+        } catch (IOException e) {
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    private void writeAtomically(Path target, Path source) throws IOException {
+        var tmpFile = tmpDir.resolve(UUID.randomUUID().toString());
+
+        try (var in = FileChannel.open(source, StandardOpenOption.READ);
+             var out = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var size = in.size();
+            var position = 0L;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+
+        moveIntoPlace(tmpFile, target);
+    }
+
+    private void writeAtomically(Path target, ReadableByteChannel source, long size) throws IOException {
+        var tmpFile = tmpDir.resolve(UUID.randomUUID().toString());
+
+        try (var out = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var position = 0L;
+            while (size < 0 || position < size) {
+                var transferred = out.transferFrom(source, position, size < 0 ? 1 << 20 : size - position);
+                if (transferred <= 0) break;
+                position += transferred;
+            }
+        }
+
+        moveIntoPlace(tmpFile, target);
+    }
+
+    private void moveIntoPlace(Path tmpFile, Path target) throws IOException {
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(tmpFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private void pruneEmptyParents(Path dir) throws IOException {
+        while (dir != null && dir.startsWith(objectsDir) && !dir.equals(objectsDir) && isEmptyDirectory(dir)) {
+            Files.delete(dir);
+            dir = dir.getParent();
+        }
+    }
+
+    private static boolean isEmptyDirectory(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.findAny().isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String etag(long size, Instant lastModified) {
+        return "%x-%x".formatted(size, lastModified.toEpochMilli());
+    }
+
+    private static void invoke(String key, IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            log.error("Failed to invoke method for object {}: {}", key, e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+
+            var value = super.read();
+            if (value >= 0) remaining--;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+
+            var count = super.read(b, off, (int) Math.min(len, remaining));
+            if (count > 0) remaining -= count;
+            return count;
+        }
+    }
+
+    private static class MappedBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        MappedBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            var count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            var count = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+    }
+}
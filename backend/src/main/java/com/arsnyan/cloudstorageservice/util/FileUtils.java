@@ -2,7 +2,23 @@ package com.arsnyan.cloudstorageservice.util;
 
 import com.arsnyan.cloudstorageservice.model.ResourceType;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 public class FileUtils {
+    private static final Pattern USER_KEY_PATTERN = Pattern.compile("^user-(\\d+)-files/");
+
+    // Derived objects such as thumbnails live outside user folders, so listings and usage never see them
+    public static final String DERIVATIVES_PREFIX = ".derivatives/";
+
+    // Trashed resources moved out of the way of newer ones, inside the user's folder so they still count towards usage
+    public static final String TRASH_FOLDER = ".trash/";
+
+    public static boolean isInTrashFolder(String path) {
+        return (path + "/").startsWith(TRASH_FOLDER);
+    }
+
     public static ResourceType getResourceType(String path) {
         if (path.endsWith("/")) {
             return ResourceType.DIRECTORY;
@@ -12,6 +28,10 @@ public class FileUtils {
     }
 
     public static String getRelativeZipPath(Long userId, String absoluteObjectKey) {
+        return getRelativePath(userId, absoluteObjectKey);
+    }
+
+    public static String getRelativePath(Long userId, String absoluteObjectKey) {
         var userPrefix = "user-%s-files/".formatted(userId);
 
         if (absoluteObjectKey.startsWith(userPrefix)) {
@@ -21,10 +41,43 @@ public class FileUtils {
         return absoluteObjectKey;
     }
 
+    public static Long extractUserId(String absoluteObjectKey) {
+        var matcher = USER_KEY_PATTERN.matcher(absoluteObjectKey);
+        return matcher.find() ? Long.valueOf(matcher.group(1)) : null;
+    }
+
+    public static String getParentFolder(String path) {
+        var parentPath = getParentPath(path);
+        return parentPath.equals("/") ? "" : parentPath;
+    }
+
+    /**
+     * Lists the folders containing a path, outermost first, without the root folder.
+     * For "a/b/c.txt" and "a/b/c/" that is "a/" and "a/b/".
+     */
+    public static List<String> getAncestorFolders(String path) {
+        var ancestors = new ArrayList<String>();
+        var end = path.endsWith("/") ? path.length() - 1 : path.length();
+
+        for (int i = path.indexOf('/'); i >= 0 && i < end; i = path.indexOf('/', i + 1)) {
+            ancestors.add(path.substring(0, i + 1));
+        }
+
+        return ancestors;
+    }
+
     public static String resolvePath(Long userId, String path) {
         return "user-%s-files/%s".formatted(userId, path);
     }
 
+    /**
+     * The prefix holding everything derived from an object, or from every object in a folder.
+     * For "user-1-files/a.jpg" that is ".derivatives/user-1-files/a.jpg/".
+     */
+    public static String resolveDerivativesPath(String absoluteObjectKey) {
+        return DERIVATIVES_PREFIX + absoluteObjectKey + (absoluteObjectKey.endsWith("/") ? "" : "/");
+    }
+
     public static String getParentPath(String path) {
         if (path == null || path.isEmpty()) return "/";
 
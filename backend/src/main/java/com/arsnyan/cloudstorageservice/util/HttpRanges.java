@@ -0,0 +1,48 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import org.springframework.http.HttpRange;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+public class HttpRanges {
+    /**
+     * Only single ranges are served; anything else, malformed headers included, gets the whole resource.
+     */
+    public static HttpRange parseSingle(String rangeHeader) {
+        if (rangeHeader == null) {
+            return null;
+        }
+
+        try {
+            var ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether a range may be served under the If-Range header: an entity tag has to match strongly, a
+     * date has to be the exact last modification time. Otherwise the client gets the whole resource.
+     */
+    public static boolean ifRangeMatches(String ifRange, String etag, ZonedDateTime lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+
+        try {
+            var date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return lastModified != null && date.toEpochSecond() == lastModified.toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
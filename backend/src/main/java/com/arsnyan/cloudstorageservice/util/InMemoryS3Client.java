@@ -0,0 +1,148 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
+import io.minio.GetObjectResponse;
+import io.minio.Result;
+import io.minio.SnowballObject;
+import io.minio.StatObjectResponse;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps every object on the heap in a sorted map, so prefix listings are a range scan.
+ * Meant for tests and benchmarks, content is lost on restart.
+ */
+@Slf4j
+public class InMemoryS3Client extends AbstractLocalS3Client {
+    private final ConcurrentNavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void uploadSnowballObject(List<SnowballObject> objects) {
+        if (objects == null) {
+            throw new MinioWrappedException("Objects to upload must not be null");
+        }
+
+        for (var object : objects) {
+            put(normalizeKey(object.name()), readContent(object));
+        }
+    }
+
+    @Override
+    public void copyObject(Item item, String pathTo) {
+        var source = objects.get(normalizeKey(item.objectName()));
+        if (source == null) {
+            log.error("Failed to copy an object at path {}: no such object", item.objectName());
+            throw new MinioWrappedException("Object %s does not exist".formatted(item.objectName()));
+        }
+
+        put(normalizeKey(pathTo), source.content());
+    }
+
+    @Override
+    public GetObjectResponse getObject(String path) {
+        return getObject(path, 0, null);
+    }
+
+    @Override
+    public GetObjectResponse getObject(String path, long offset, Long length) {
+        var key = normalizeKey(path);
+        var object = objects.get(key);
+        if (object == null) {
+            throw new MinioWrappedException("Object %s does not exist".formatted(key));
+        }
+
+        var content = object.content();
+        var start = (int) Math.min(offset, content.length);
+        var count = length == null ? content.length - start : (int) Math.min(length, content.length - start);
+
+        return getResponse(key, count, object.lastModified(), object.etag(),
+            new ByteArrayInputStream(content, start, count));
+    }
+
+    @Override
+    public void removeObject(String path) {
+        objects.remove(normalizeKey(path));
+    }
+
+    @Override
+    public Iterable<Result<Item>> listObjects(String path, boolean recursive) {
+        var prefix = path == null ? "" : normalizeKey(path);
+        var results = new ArrayList<Result<Item>>();
+        String lastCommonPrefix = null;
+
+        for (var entry : objects.tailMap(prefix).entrySet()) {
+            var key = entry.getKey();
+            if (!key.startsWith(prefix)) break;
+
+            var delimiterIndex = key.indexOf('/', prefix.length());
+            if (!recursive && delimiterIndex >= 0) {
+                var commonPrefix = key.substring(0, delimiterIndex + 1);
+                if (!commonPrefix.equals(lastCommonPrefix)) {
+                    results.add(new Result<>(LocalObjectItem.prefix(commonPrefix)));
+                    lastCommonPrefix = commonPrefix;
+                }
+                continue;
+            }
+
+            var object = entry.getValue();
+            results.add(new Result<>(LocalObjectItem.object(
+                key,
+                object.content().length,
+                object.lastModified().atZone(ZoneOffset.UTC),
+                object.etag()
+            )));
+        }
+
+        return results;
+    }
+
+    @Override
+    public StatObjectResponse getStatObject(String path) {
+        var key = normalizeKey(path);
+        var object = objects.get(key);
+        if (object == null) {
+            return null;
+        }
+
+        return statResponse(key, object.content().length, object.lastModified(), object.etag());
+    }
+
+    @Override
+    public void makeFolderInS3(String path) {
+        put(normalizeKey(path), new byte[0]);
+    }
+
+    private void put(String key, byte[] content) {
+        objects.put(key, new StoredObject(content, Instant.now(), DigestUtils.md5DigestAsHex(content)));
+    }
+
+    private static byte[] readContent(SnowballObject object) {
+        try {
+            if (object.filename() != null) {
+                return Files.readAllBytes(Path.of(object.filename()));
+            }
+
+            try (InputStream stream = object.stream()) {
+                return stream.readAllBytes();
+            }
+        } catch (IOException e) {
+            log.error("Failed to read object {}: {}", object.name(), e.getMessage());
+            throw MinioWrappedException.from(e);
+        }
+    }
+
+    private record StoredObject(byte[] content, Instant lastModified, String etag) {}
+}
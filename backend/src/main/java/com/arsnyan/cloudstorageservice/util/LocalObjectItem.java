@@ -0,0 +1,60 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import io.minio.messages.Item;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+class LocalObjectItem extends Item {
+    private final String objectName;
+    private final long size;
+    private final ZonedDateTime lastModified;
+    private final String etag;
+    private final boolean isDir;
+
+    private LocalObjectItem(String objectName, long size, ZonedDateTime lastModified, String etag, boolean isDir) {
+        this.objectName = objectName;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.etag = etag;
+        this.isDir = isDir;
+    }
+
+    static LocalObjectItem object(String objectName, long size, ZonedDateTime lastModified, String etag) {
+        return new LocalObjectItem(objectName, size, lastModified, etag, false);
+    }
+
+    static LocalObjectItem prefix(String prefix) {
+        return new LocalObjectItem(prefix, 0, null, null, true);
+    }
+
+    @Override
+    public String objectName() {
+        return objectName;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public ZonedDateTime lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String etag() {
+        return etag;
+    }
+
+    @Override
+    public boolean isDir() {
+        return isDir;
+    }
+
+    @Override
+    public Map<String, String> userMetadata() {
+        return Map.of();
+    }
+}
@@ -1,104 +1,247 @@
 package com.arsnyan.cloudstorageservice.util;
 
+import com.arsnyan.cloudstorageservice.cache.BoundedLocalCache;
+import com.arsnyan.cloudstorageservice.cache.ObjectStatCache;
+import com.arsnyan.cloudstorageservice.event.ChangeSource;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
 import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import com.arsnyan.cloudstorageservice.storage.ResilientReads;
+import com.arsnyan.cloudstorageservice.storage.ShardRouter;
+import com.arsnyan.cloudstorageservice.storage.StorageShard;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Streams;
 import io.minio.*;
 import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
+import org.springframework.context.event.EventListener;
 import org.springframework.util.function.ThrowingFunction;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.List;
 
+import static com.arsnyan.cloudstorageservice.util.FileUtils.resolvePath;
+
+/**
+ * Object storage on one or more MinIO buckets. Every request goes to the shard of the user the
+ * key belongs to, see {@link ShardRouter}. Reads go through {@link ResilientReads}; writes are
+ * not repeated, since a write that failed halfway may still have taken effect.
+ */
 @Slf4j
-@Component
-@RequiredArgsConstructor
 public class MinioS3Client implements S3Client {
-    private final MinioClient minioClient;
+    // Largest object a single CopyObject request may copy
+    private static final long MAX_SINGLE_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final int MAX_DELETE_BATCH_SIZE = 1000;
+
+    private final ShardRouter router;
+    private final ResilientReads reads;
+    private final ObjectStatCache statCache;
 
-    @Value("${app.minio.root-bucket-name}")
-    private String rootBucket;
+    public MinioS3Client(ShardRouter router, ResilientReads reads) {
+        this(router, reads, new ObjectStatCache(new BoundedLocalCache<>(0, Duration.ZERO), null));
+    }
+
+    /**
+     * @param statCache caches object stats by key; every write made through this client
+     *                  invalidates the keys it touches on every node
+     */
+    public MinioS3Client(ShardRouter router, ResilientReads reads, ObjectStatCache statCache) {
+        this.router = router;
+        this.reads = reads;
+        this.statCache = statCache;
+    }
 
     public void uploadSnowballObject(List<SnowballObject> objects) {
-        invoke(objects, o ->
-            minioClient.uploadSnowballObjects(
-                UploadSnowballObjectsArgs.builder()
-                    .bucket(rootBucket)
-                    .objects(objects)
-                    .build()
-            )
-        );
+        try {
+            invoke(objects, o -> {
+                // An upload normally belongs to one user, but nothing stops a caller from mixing them
+                var byShard = new LinkedHashMap<StorageShard, List<SnowballObject>>();
+                for (var object : o) {
+                    byShard.computeIfAbsent(router.forKey(object.name()), shard -> new ArrayList<>()).add(object);
+                }
+
+                for (var entry : byShard.entrySet()) {
+                    entry.getKey().client().uploadSnowballObjects(
+                        UploadSnowballObjectsArgs.builder()
+                            .bucket(entry.getKey().bucket())
+                            .objects(entry.getValue())
+                            .build()
+                    );
+                }
+
+                return byShard;
+            });
+        } finally {
+            if (objects != null) {
+                invalidateStats(objects.stream().map(SnowballObject::name).toList());
+            }
+        }
     }
 
     public void copyObject(Item item, String pathTo) {
         var objectPath = item.objectName();
 
         try {
-            minioClient.copyObject(
-                CopyObjectArgs.builder()
-                    .bucket(rootBucket)
-                    .source(
-                        CopySource.builder()
-                            .bucket(rootBucket)
-                            .object(objectPath)
-                            .build()
-                    )
-                    .object(pathTo)
-                    .build()
-            );
+            // Copies stay within a user, so both keys are on the same shard
+            var shard = router.forKey(pathTo);
+            if (item.size() > MAX_SINGLE_COPY_SIZE) {
+                // Compose splits the source into part copies, so the bytes still stay on the server
+                shard.client().composeObject(
+                    ComposeObjectArgs.builder()
+                        .bucket(shard.bucket())
+                        .object(pathTo)
+                        .sources(List.of(
+                            ComposeSource.builder()
+                                .bucket(shard.bucket())
+                                .object(objectPath)
+                                .build()
+                        ))
+                        .build()
+                );
+            } else {
+                shard.client().copyObject(
+                    CopyObjectArgs.builder()
+                        .bucket(shard.bucket())
+                        .source(
+                            CopySource.builder()
+                                .bucket(shard.bucket())
+                                .object(objectPath)
+                                .build()
+                        )
+                        .object(pathTo)
+                        .build()
+                );
+            }
         } catch (Exception e) {
             log.error("Failed to copy an object at path {}: {}", objectPath, e.getMessage());
             throw MinioWrappedException.from(e);
+        } finally {
+            invalidateStats(List.of(pathTo));
         }
     }
 
     public GetObjectResponse getObject(String path) {
-        return invoke(path, p ->
-            minioClient.getObject(
+        return invoke(path, p -> {
+            var shard = router.forKey(p);
+            return reads.read(shard, "getObject", () -> shard.client().getObject(
                 GetObjectArgs.builder()
-                    .bucket(rootBucket)
+                    .bucket(shard.bucket())
                     .object(p)
                     .build()
-            )
-        );
+            ));
+        });
     }
 
-    public void removeObject(String path) {
-        invoke(path, p -> {
-            minioClient.removeObject(
-                RemoveObjectArgs.builder()
-                    .bucket(rootBucket)
+    public GetObjectResponse getObject(String path, long offset, Long length) {
+        return invoke(path, p -> {
+            var shard = router.forKey(p);
+            return reads.read(shard, "getObject", () -> shard.client().getObject(
+                GetObjectArgs.builder()
+                    .bucket(shard.bucket())
                     .object(p)
+                    .offset(offset)
+                    .length(length)
                     .build()
-            );
-
-            return new Void[0];
+            ));
         });
     }
 
+    public void removeObject(String path) {
+        try {
+            invoke(path, p -> {
+                var shard = router.forKey(p);
+                shard.client().removeObject(
+                    RemoveObjectArgs.builder()
+                        .bucket(shard.bucket())
+                        .object(p)
+                        .build()
+                );
+
+                return new Void[0];
+            });
+        } finally {
+            invalidateStats(List.of(path));
+        }
+    }
+
+    @Override
+    public void removeObjects(List<String> paths) {
+        try {
+            invoke(paths, p -> {
+                var byShard = new LinkedHashMap<StorageShard, List<DeleteObject>>();
+                for (var path : p) {
+                    byShard.computeIfAbsent(router.forKey(path), shard -> new ArrayList<>()).add(new DeleteObject(path));
+                }
+
+                for (var entry : byShard.entrySet()) {
+                    // DeleteObjects takes at most 1000 keys, and the results are lazy: nothing is sent until they are read
+                    for (var batch : Lists.partition(entry.getValue(), MAX_DELETE_BATCH_SIZE)) {
+                        var results = entry.getKey().client().removeObjects(
+                            RemoveObjectsArgs.builder()
+                                .bucket(entry.getKey().bucket())
+                                .objects(batch)
+                                .build()
+                        );
+                        for (var result : results) {
+                            var error = result.get();
+                            throw new IllegalStateException("Failed to remove %s: %s".formatted(error.objectName(), error.message()));
+                        }
+                    }
+                }
+
+                return byShard;
+            });
+        } finally {
+            if (paths != null) {
+                invalidateStats(paths);
+            }
+        }
+    }
+
     public Iterable<Result<Item>> listObjects(String path, boolean recursive) {
-        return minioClient.listObjects(
-            ListObjectsArgs.builder()
-                .bucket(rootBucket)
+        var shard = router.forKey(path);
+        return reads.list(shard, recursive, startAfter -> {
+            var args = ListObjectsArgs.builder()
+                .bucket(shard.bucket())
                 .prefix(path)
-                .recursive(recursive)
-                .build()
-        );
+                .recursive(recursive);
+            if (startAfter != null) {
+                args.startAfter(startAfter);
+            }
+
+            return shard.client().listObjects(args.build());
+        });
     }
 
     public StatObjectResponse getStatObject(String path) {
+        var key = statKey(path);
+        var cached = statCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        var generation = statCache.generation();
         try {
-            return minioClient.statObject(
+            var shard = router.forKey(path);
+            var stat = reads.read(shard, "statObject", () -> shard.client().statObject(
                 StatObjectArgs.builder()
-                    .bucket(rootBucket)
+                    .bucket(shard.bucket())
                     .object(path)
                     .build()
-            );
+            ));
+
+            statCache.put(key, stat, generation);
+
+            return stat;
+        } catch (ServiceOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             if (e instanceof ErrorResponseException && ((ErrorResponseException) e).errorResponse().code().equals("NoSuchKey")) {
                 return null;
@@ -110,45 +253,56 @@ public class MinioS3Client implements S3Client {
     }
 
     public boolean isPathUnavailable(String path) {
-        try {
-            minioClient.statObject(
-                StatObjectArgs.builder()
-                    .bucket(rootBucket)
-                    .object(path)
-                    .build()
-            );
-
-            return false;
-        } catch (Exception e) {
-            if (e instanceof ErrorResponseException && ((ErrorResponseException) e).errorResponse().code().equals("NoSuchKey")) {
-                return true;
-            }
+        return getStatObject(path) == null;
+    }
 
-            log.error(e.getMessage(), e);
-            throw MinioWrappedException.from(e);
+    public void makeFolderInS3(String path) {
+        try {
+            invoke(path, p -> {
+                var shard = router.forKey(p);
+                return shard.client().putObject(
+                    PutObjectArgs.builder()
+                        .bucket(shard.bucket())
+                        .object(path)
+                        .stream(InputStream.nullInputStream(), 0, -1)
+                        .build()
+                );
+            });
+        } finally {
+            invalidateStats(List.of(path));
         }
     }
 
-    public void makeFolderInS3(String path) {
-        invoke(path, p ->
-            minioClient.putObject(
-                PutObjectArgs.builder()
-                    .bucket(rootBucket)
-                    .object(path)
-                    .stream(InputStream.nullInputStream(), 0, -1)
-                    .build()
-            )
-        );
+    // Snowball uploads build their tar in memory, a plain put streams the object in parts
+    @Override
+    public void putObject(String path, InputStream stream, long size) {
+        try {
+            invoke(path, p -> {
+                var shard = router.forKey(p);
+                return shard.client().putObject(
+                    PutObjectArgs.builder()
+                        .bucket(shard.bucket())
+                        .object(path)
+                        .stream(stream, size, -1)
+                        .build()
+                );
+            });
+        } finally {
+            invalidateStats(List.of(path));
+        }
     }
 
     @Override
-    public void ensureFolderPlaceholderExists(String folderPath) {
+    public boolean ensureFolderPlaceholderExists(String folderPath) {
         if (!folderPath.startsWith("/")) {
             folderPath = "/" + folderPath;
         }
         if (isPathUnavailable(folderPath)) {
             makeFolderInS3(folderPath);
+            return true;
         }
+
+        return false;
     }
 
     @Override
@@ -173,10 +327,28 @@ public class MinioS3Client implements S3Client {
         return !isPathUnavailable(path) || hasNamingConflict(path);
     }
 
+    @EventListener
+    public void onStorageChange(StorageChangeEvent event) {
+        if (event.source() == ChangeSource.BUCKET_NOTIFICATION) {
+            invalidateStats(event.changes().stream().map(change -> resolvePath(event.userId(), change.path())).toList());
+        }
+    }
+
+    private void invalidateStats(Collection<String> paths) {
+        statCache.invalidate(paths.stream().map(MinioS3Client::statKey).toList());
+    }
+
+    // MinIO ignores a leading slash, so "/a" and "a" name the same object
+    private static String statKey(String path) {
+        return path != null && path.startsWith("/") ? path.substring(1) : path;
+    }
+
     private <Input, LambdaOutput> LambdaOutput invoke(Input path,
                                                       ThrowingFunction<@NonNull Input, @NonNull LambdaOutput> function) {
         try {
             return function.apply(path);
+        } catch (ServiceOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to invoke method: {}", e.getMessage());
             throw MinioWrappedException.from(e);
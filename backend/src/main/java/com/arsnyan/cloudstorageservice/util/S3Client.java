@@ -6,6 +6,8 @@ import io.minio.SnowballObject;
 import io.minio.StatObjectResponse;
 import io.minio.messages.Item;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface S3Client {
@@ -15,19 +17,49 @@ public interface S3Client {
 
     GetObjectResponse getObject(String path);
 
+    GetObjectResponse getObject(String path, long offset, Long length);
+
     void removeObject(String path);
 
+    /**
+     * Removes many objects, in as few requests as the backend allows. Missing objects are ignored.
+     */
+    default void removeObjects(List<String> paths) {
+        paths.forEach(this::removeObject);
+    }
+
     Iterable<Result<Item>> listObjects(String path, boolean recursive);
 
     StatObjectResponse getStatObject(String path);
 
     boolean isPathUnavailable(String path);
 
-    void ensureFolderPlaceholderExists(String folderPath);
+    /**
+     * Creates an empty placeholder object for the folder unless one exists already.
+     *
+     * @return whether a placeholder had to be created
+     */
+    boolean ensureFolderPlaceholderExists(String folderPath);
 
     boolean hasNamingConflict(String path);
 
     boolean isPathAvailable(String path);
 
     void makeFolderInS3(String path);
+
+    /**
+     * Writes a single object from a stream of known length without holding it in memory.
+     * Backends that stream snowball objects already need nothing more.
+     */
+    default void putObject(String path, InputStream stream, long size) {
+        uploadSnowballObject(List.of(new SnowballObject(path, stream, size, null)));
+    }
+
+    /**
+     * Returns the file backing an object when the backend keeps it on a local disk, so it can be
+     * sent without copying through the heap. Backends without local files return {@code null}.
+     */
+    default Path getLocalFile(String path) {
+        return null;
+    }
 }
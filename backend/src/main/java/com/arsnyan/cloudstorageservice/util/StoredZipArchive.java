@@ -0,0 +1,268 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ZIP archive of uncompressed entries whose sizes and CRCs are known before any content is
+ * read. Its exact length is therefore known up front, and any byte range of it can be written on
+ * its own, reading only the parts of objects that fall into the range. ZIP64 records are used
+ * where an entry, an offset or the number of entries outgrows the classic format.
+ * <p>
+ * The same entries always give the same bytes, which is what lets a client resume a download.
+ */
+public class StoredZipArchive {
+    public record Entry(
+        String name,
+        String objectKey,
+        long size,
+        long crc32,
+        Instant lastModified
+    ) {
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    @FunctionalInterface
+    public interface ContentReader {
+        InputStream open(String objectKey, long offset, long length) throws IOException;
+    }
+
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_COUNT_LIMIT = 0xFFFF;
+    private static final short VERSION = 20;
+    private static final short VERSION_ZIP64 = 45;
+    private static final short UTF8_NAMES = 0x0800;
+    private static final short STORED = 0;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+
+    private sealed interface Segment permits Bytes, Content {
+        long length();
+    }
+
+    private record Bytes(byte[] data) implements Segment {
+        @Override
+        public long length() {
+            return data.length;
+        }
+    }
+
+    private record Content(String objectKey, long length) implements Segment {}
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final long length;
+
+    public StoredZipArchive(List<Entry> entries) {
+        var centralDirectory = new ArrayList<byte[]>(entries.size());
+        var offset = 0L;
+
+        for (var entry : entries) {
+            var name = entry.name().getBytes(StandardCharsets.UTF_8);
+            var time = dosTime(entry.lastModified());
+
+            var localHeader = localHeader(entry, name, time, offset);
+            segments.add(new Bytes(localHeader));
+            if (entry.size() > 0) {
+                segments.add(new Content(entry.objectKey(), entry.size()));
+            }
+
+            centralDirectory.add(centralHeader(entry, name, time, offset));
+            offset += localHeader.length + entry.size();
+        }
+
+        var centralDirectoryOffset = offset;
+        var centralDirectorySize = 0L;
+        for (var header : centralDirectory) {
+            segments.add(new Bytes(header));
+            centralDirectorySize += header.length;
+        }
+
+        segments.add(new Bytes(end(entries.size(), centralDirectoryOffset, centralDirectorySize)));
+        this.length = segments.stream().mapToLong(Segment::length).sum();
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public void write(OutputStream output, ContentReader reader) throws IOException {
+        write(output, 0, length - 1, reader);
+    }
+
+    /**
+     * Writes bytes {@code start} to {@code end} of the archive, both inclusive.
+     */
+    public void write(OutputStream output, long start, long end, ContentReader reader) throws IOException {
+        var position = 0L;
+
+        for (var segment : segments) {
+            var segmentEnd = position + segment.length();
+            if (segmentEnd <= start) {
+                position = segmentEnd;
+                continue;
+            }
+            if (position > end) {
+                break;
+            }
+
+            var from = Math.max(start, position) - position;
+            var to = Math.min(end + 1, segmentEnd) - position;
+
+            switch (segment) {
+                case Bytes bytes -> output.write(bytes.data(), (int) from, (int) (to - from));
+                case Content content -> {
+                    try (var input = reader.open(content.objectKey(), from, to - from)) {
+                        copyExactly(input, output, to - from, content.objectKey());
+                    }
+                }
+            }
+
+            position = segmentEnd;
+        }
+    }
+
+    private static byte[] localHeader(Entry entry, byte[] name, int time, long offset) {
+        var zip64Size = entry.size() >= ZIP64_LIMIT;
+        var extraLength = zip64Size ? 20 : 0;
+
+        var buffer = ByteBuffer.allocate(30 + name.length + extraLength).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(0x04034b50)
+            .putShort(versionNeeded(entry, offset))
+            .putShort(UTF8_NAMES)
+            .putShort(STORED)
+            .putInt(time)
+            .putInt((int) entry.crc32())
+            .putInt(zip64Size ? -1 : (int) entry.size())
+            .putInt(zip64Size ? -1 : (int) entry.size())
+            .putShort((short) name.length)
+            .putShort((short) extraLength)
+            .put(name);
+
+        if (zip64Size) {
+            buffer.putShort(ZIP64_EXTRA_ID).putShort((short) 16).putLong(entry.size()).putLong(entry.size());
+        }
+
+        return buffer.array();
+    }
+
+    private static byte[] centralHeader(Entry entry, byte[] name, int time, long offset) {
+        var zip64Size = entry.size() >= ZIP64_LIMIT;
+        var zip64Offset = offset >= ZIP64_LIMIT;
+        var extraData = (zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0);
+        var extraLength = extraData > 0 ? 4 + extraData : 0;
+
+        var buffer = ByteBuffer.allocate(46 + name.length + extraLength).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(0x02014b50)
+            .putShort(VERSION_ZIP64)
+            .putShort(versionNeeded(entry, offset))
+            .putShort(UTF8_NAMES)
+            .putShort(STORED)
+            .putInt(time)
+            .putInt((int) entry.crc32())
+            .putInt(zip64Size ? -1 : (int) entry.size())
+            .putInt(zip64Size ? -1 : (int) entry.size())
+            .putShort((short) name.length)
+            .putShort((short) extraLength)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putInt(entry.isDirectory() ? DIRECTORY_ATTRIBUTE : 0)
+            .putInt(zip64Offset ? -1 : (int) offset)
+            .put(name);
+
+        if (extraLength > 0) {
+            buffer.putShort(ZIP64_EXTRA_ID).putShort((short) extraData);
+            if (zip64Size) {
+                buffer.putLong(entry.size()).putLong(entry.size());
+            }
+            if (zip64Offset) {
+                buffer.putLong(offset);
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static byte[] end(int count, long centralDirectoryOffset, long centralDirectorySize) {
+        var zip64 = count >= ZIP64_COUNT_LIMIT
+            || centralDirectoryOffset >= ZIP64_LIMIT
+            || centralDirectorySize >= ZIP64_LIMIT;
+        var buffer = ByteBuffer.allocate((zip64 ? 56 + 20 : 0) + 22).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (zip64) {
+            var zip64EndOffset = centralDirectoryOffset + centralDirectorySize;
+            buffer.putInt(0x06064b50)
+                .putLong(44)
+                .putShort(VERSION_ZIP64)
+                .putShort(VERSION_ZIP64)
+                .putInt(0)
+                .putInt(0)
+                .putLong(count)
+                .putLong(count)
+                .putLong(centralDirectorySize)
+                .putLong(centralDirectoryOffset);
+
+            buffer.putInt(0x07064b50)
+                .putInt(0)
+                .putLong(zip64EndOffset)
+                .putInt(1);
+        }
+
+        var classicCount = (short) Math.min(count, ZIP64_COUNT_LIMIT);
+        buffer.putInt(0x06054b50)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putShort(classicCount)
+            .putShort(classicCount)
+            .putInt((int) Math.min(centralDirectorySize, ZIP64_LIMIT))
+            .putInt((int) Math.min(centralDirectoryOffset, ZIP64_LIMIT))
+            .putShort((short) 0);
+
+        return buffer.array();
+    }
+
+    private static short versionNeeded(Entry entry, long offset) {
+        return entry.size() >= ZIP64_LIMIT || offset >= ZIP64_LIMIT ? VERSION_ZIP64 : VERSION;
+    }
+
+    // MS-DOS time in the low half and date in the high half, in UTC so every server writes the same bytes
+    private static int dosTime(Instant instant) {
+        var time = instant == null ? LocalDateTime.of(1980, 1, 1, 0, 0) : LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        } else if (time.getYear() > 2107) {
+            time = LocalDateTime.of(2107, 12, 31, 23, 59, 58);
+        }
+
+        var date = (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+        var clock = time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+        return date << 16 | clock;
+    }
+
+    private static void copyExactly(InputStream input, OutputStream output, long length, String objectKey)
+        throws IOException {
+        var buffer = new byte[64 * 1024];
+        var remaining = length;
+
+        while (remaining > 0) {
+            var read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("Object %s is shorter than expected, it changed during the download"
+                    .formatted(objectKey));
+            }
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the table of contents of a ZIP archive that is only reachable through ranged reads. The
+ * end of central directory record is found in the last few kilobytes, and it points at the
+ * central directory, so listing even a huge archive reads only its tail. Supports ZIP64.
+ */
+public class ZipCentralDirectory {
+    public record Entry(
+        String name,
+        int method,
+        long crc32,
+        long compressedSize,
+        long size,
+        long localHeaderOffset,
+        Instant lastModified,
+        boolean encrypted
+    ) {
+        public static final int STORED = 0;
+        public static final int DEFLATED = 8;
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    @FunctionalInterface
+    public interface RangeReader {
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_LENGTH = 22;
+    private static final int ZIP64_END_LENGTH = 56;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    /**
+     * @param maxDirectorySize largest central directory to read, which bounds the memory an
+     *                         archive with millions of entries can take
+     */
+    public static List<Entry> read(long archiveSize, RangeReader reader, long maxDirectorySize) throws IOException {
+        if (archiveSize < END_LENGTH) {
+            throw new ZipException("Too short to be a ZIP archive");
+        }
+
+        var tailLength = (int) Math.min(archiveSize, END_LENGTH + MAX_COMMENT_LENGTH + ZIP64_LOCATOR_LENGTH);
+        var tailOffset = archiveSize - tailLength;
+        var tail = buffer(reader.read(tailOffset, tailLength));
+
+        var end = findEnd(tail);
+        long entryCount = Short.toUnsignedInt(tail.getShort(end + 10));
+        long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+
+        var locator = end - ZIP64_LOCATOR_LENGTH;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            var zip64EndOffset = tail.getLong(locator + 8);
+            var zip64End = buffer(reader.read(zip64EndOffset, ZIP64_END_LENGTH));
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("Broken ZIP64 end of central directory record");
+            }
+            entryCount = zip64End.getLong(32);
+            directorySize = zip64End.getLong(40);
+            directoryOffset = zip64End.getLong(48);
+        }
+
+        if (directorySize > maxDirectorySize) {
+            throw new ZipException("Central directory of %d bytes is too large to read".formatted(directorySize));
+        }
+        if (directoryOffset < 0 || directorySize < 0 || directoryOffset + directorySize > archiveSize) {
+            throw new ZipException("Central directory lies outside of the archive");
+        }
+
+        // Small archives have their whole directory in the tail that was read already
+        ByteBuffer directory;
+        if (directoryOffset >= tailOffset) {
+            var start = (int) (directoryOffset - tailOffset);
+            directory = buffer(tail.array()).position(start).slice().limit((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        } else {
+            directory = buffer(reader.read(directoryOffset, (int) directorySize));
+        }
+
+        return parseDirectory(directory, entryCount);
+    }
+
+    /**
+     * @return offset of the first byte of the entry's data, found by reading its local header,
+     * whose extra field may differ in length from the one in the central directory
+     */
+    public static long dataOffset(Entry entry, RangeReader reader) throws IOException {
+        var header = buffer(reader.read(entry.localHeaderOffset(), LOCAL_HEADER_LENGTH));
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Broken local header of entry " + entry.name());
+        }
+
+        var nameLength = Short.toUnsignedInt(header.getShort(26));
+        var extraLength = Short.toUnsignedInt(header.getShort(28));
+        return entry.localHeaderOffset() + LOCAL_HEADER_LENGTH + nameLength + extraLength;
+    }
+
+    private static int findEnd(ByteBuffer tail) throws ZipException {
+        for (var position = tail.limit() - END_LENGTH; position >= 0; position--) {
+            if (tail.getInt(position) == END_SIGNATURE) {
+                var commentLength = Short.toUnsignedInt(tail.getShort(position + 20));
+                // The signature may also turn up inside the comment or the last entry
+                if (position + END_LENGTH + commentLength == tail.limit()) {
+                    return position;
+                }
+            }
+        }
+        throw new ZipException("No end of central directory record, not a ZIP archive");
+    }
+
+    private static List<Entry> parseDirectory(ByteBuffer directory, long entryCount) throws ZipException {
+        var entries = new ArrayList<Entry>((int) Math.min(entryCount, 100_000));
+        var position = 0;
+
+        while (position + CENTRAL_HEADER_LENGTH <= directory.limit()) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                break;
+            }
+
+            var flags = Short.toUnsignedInt(directory.getShort(position + 8));
+            var method = Short.toUnsignedInt(directory.getShort(position + 10));
+            var dosTime = directory.getInt(position + 12);
+            var crc = Integer.toUnsignedLong(directory.getInt(position + 16));
+            long compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+            long size = Integer.toUnsignedLong(directory.getInt(position + 24));
+            var nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            var extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            var commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+
+            var nameStart = position + CENTRAL_HEADER_LENGTH;
+            var extraStart = nameStart + nameLength;
+            var next = extraStart + extraLength + commentLength;
+            if (next > directory.limit()) {
+                throw new ZipException("Central directory is truncated");
+            }
+
+            var nameBytes = new byte[nameLength];
+            directory.get(nameStart, nameBytes);
+
+            // ZIP64 values follow in this order, present only for fields that hold the marker
+            var extra = extraStart;
+            while (extra + 4 <= extraStart + extraLength) {
+                var id = Short.toUnsignedInt(directory.getShort(extra));
+                var length = Short.toUnsignedInt(directory.getShort(extra + 2));
+                if (id == 0x0001) {
+                    var field = extra + 4;
+                    if (size == ZIP64_MARKER && field + 8 <= extra + 4 + length) {
+                        size = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MARKER && field + 8 <= extra + 4 + length) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MARKER && field + 8 <= extra + 4 + length) {
+                        localHeaderOffset = directory.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+
+            entries.add(new Entry(
+                new String(nameBytes, StandardCharsets.UTF_8),
+                method,
+                crc,
+                compressedSize,
+                size,
+                localHeaderOffset,
+                fromDosTime(dosTime),
+                (flags & 1) != 0
+            ));
+            position = next;
+        }
+
+        return entries;
+    }
+
+    // DOS times carry no zone; UTC is as good a guess as any and matches what StoredZipArchive writes
+    private static Instant fromDosTime(int dosTime) {
+        try {
+            return LocalDateTime.of(
+                (dosTime >>> 25) + 1980,
+                dosTime >>> 21 & 0x0F,
+                dosTime >>> 16 & 0x1F,
+                dosTime >>> 11 & 0x1F,
+                dosTime >>> 5 & 0x3F,
+                (dosTime & 0x1F) * 2
+            ).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer buffer(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
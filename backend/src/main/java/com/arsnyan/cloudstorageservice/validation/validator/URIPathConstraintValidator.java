@@ -1,5 +1,6 @@
 package com.arsnyan.cloudstorageservice.validation.validator;
 
+import com.arsnyan.cloudstorageservice.util.FileUtils;
 import com.arsnyan.cloudstorageservice.validation.ResourcePath;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
@@ -30,6 +31,11 @@ public class URIPathConstraintValidator implements ConstraintValidator<ResourceP
             return false;
         }
 
+        // reserved for trashed resources moved out of the way
+        if (FileUtils.isInTrashFolder(normalized)) {
+            return false;
+        }
+
         // basic URI syntax check - encode path segments to handle spaces and special characters
         try {
             String[] segments = normalized.split("/", -1);
@@ -0,0 +1,83 @@
+package com.arsnyan.cloudstorageservice.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedLocalCacheTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void get_returnsNull_afterTtlElapsed() {
+        var cache = new BoundedLocalCache<String, String>(10, Duration.ofNanos(100), clock::get);
+        cache.put("key", "value");
+
+        clock.addAndGet(99);
+        assertThat(cache.get("key")).isEqualTo("value");
+
+        clock.addAndGet(1);
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsedEntry_whenFull() {
+        var cache = new BoundedLocalCache<String, String>(2, Duration.ofMinutes(1), clock::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+
+        cache.put("c", "3");
+
+        assertThat(cache.get("a")).isEqualTo("1");
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo("3");
+    }
+
+    @Test
+    void put_evictsUntilTotalWeightFits() {
+        var cache = new BoundedLocalCache<String, String>(10, Duration.ofMinutes(1), (key, value) -> value.length(), clock::get);
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        cache.put("c", "123");
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.weight()).isEqualTo(7);
+    }
+
+    @Test
+    void put_skipsValuesHeavierThanTheWholeCache() {
+        var cache = new BoundedLocalCache<String, String>(3, Duration.ofMinutes(1), (key, value) -> value.length(), clock::get);
+
+        cache.put("a", "1234");
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidateIf_removesMatchingKeys() {
+        var cache = new BoundedLocalCache<String, String>(10, Duration.ofMinutes(1), clock::get);
+        cache.put("docs/", "1");
+        cache.put("docs/nested/", "2");
+        cache.put("photos/", "3");
+
+        cache.invalidateIf(key -> key.startsWith("docs/"));
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("photos/")).isEqualTo("3");
+    }
+
+    @Test
+    void hitRatio_countsHitsAndMisses() {
+        var cache = new BoundedLocalCache<String, String>(10, Duration.ofMinutes(1), clock::get);
+        cache.put("key", "value");
+
+        cache.get("key");
+        cache.get("missing");
+
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+}
@@ -0,0 +1,57 @@
+package com.arsnyan.cloudstorageservice.cache;
+
+import io.minio.StatObjectResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ObjectStatCacheTest {
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final ObjectStatCache cache = new ObjectStatCache(new BoundedLocalCache<>(10, Duration.ofMinutes(1)), redisTemplate);
+
+    @Test
+    void invalidate_dropsKeysLocally_andBroadcastsThem() {
+        var stat = mock(StatObjectResponse.class);
+        cache.put("a", stat, cache.generation());
+        cache.put("b", stat, cache.generation());
+
+        cache.invalidate(List.of("a", "b"));
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isNull();
+        verify(redisTemplate).convertAndSend(ObjectStatCache.INVALIDATION_CHANNEL, "a\0b");
+    }
+
+    @Test
+    void onMessage_dropsKeysInvalidatedByAnotherNode() {
+        var stat = mock(StatObjectResponse.class);
+        cache.put("a", stat, cache.generation());
+        cache.put("c", stat, cache.generation());
+
+        cache.onMessage(new DefaultMessage(
+            ObjectStatCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            "a\0b".getBytes(StandardCharsets.UTF_8)
+        ), null);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("c")).isSameAs(stat);
+    }
+
+    @Test
+    void put_skipsStat_loadedBeforeAnInvalidation() {
+        var generation = cache.generation();
+        cache.invalidate(List.of("a"));
+
+        cache.put("a", mock(StatObjectResponse.class), generation);
+
+        assertThat(cache.get("a")).isNull();
+    }
+}
@@ -0,0 +1,92 @@
+package com.arsnyan.cloudstorageservice.event;
+
+import com.arsnyan.cloudstorageservice.config.MinioProperties;
+import com.arsnyan.cloudstorageservice.model.BucketEvent;
+import com.arsnyan.cloudstorageservice.repository.BucketEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BucketEventConsumerTest {
+    private final BucketEventRepository bucketEventRepository = mock(BucketEventRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private BucketEventConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+            invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        var notifications = new MinioProperties.Notifications(
+            true, 2, Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofDays(7)
+        );
+        consumer = new BucketEventConsumer(bucketEventRepository, eventPublisher, transactionTemplate,
+            new MinioProperties(null, null, List.of(), null, Map.of(), notifications, null, null, null, null));
+    }
+
+    private static BucketEvent event(long id, String key, ChangeType type, long size) {
+        return new BucketEvent(id, "user-files", key, type, size, "", null, null);
+    }
+
+    @Test
+    void consume_publishesOneEventPerUserAndBatch() {
+        when(bucketEventRepository.findByIdGreaterThanAndReceivedAtBeforeOrderById(eq(10L), any(), eq(Limit.of(2))))
+            .thenReturn(List.of(
+                event(11, "user-1-files/a.txt", ChangeType.CREATED, 3),
+                event(12, "user-2-files/b.txt", ChangeType.REMOVED, 4)
+            ));
+        when(bucketEventRepository.lockCheckpoint(BucketEventConsumer.CONSUMER))
+            .thenReturn(Optional.of(10L), Optional.of(12L));
+        when(bucketEventRepository.findByIdGreaterThanAndReceivedAtBeforeOrderById(eq(12L), any(), any()))
+            .thenReturn(List.of(event(13, "user-1-files/c/", ChangeType.CREATED, 0)));
+
+        consumer.consume();
+
+        var captor = ArgumentCaptor.forClass(StorageChangeEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(captor.capture());
+        assertThat(captor.getAllValues()).containsExactly(
+            new StorageChangeEvent(1L, List.of(ObjectChange.created("a.txt", 3)), ChangeSource.BUCKET_NOTIFICATION),
+            new StorageChangeEvent(2L, List.of(ObjectChange.removed("b.txt", 4)), ChangeSource.BUCKET_NOTIFICATION),
+            new StorageChangeEvent(1L, List.of(ObjectChange.created("c/", 0)), ChangeSource.BUCKET_NOTIFICATION)
+        );
+        verify(bucketEventRepository).advanceCheckpoint(BucketEventConsumer.CONSUMER, 12L);
+        verify(bucketEventRepository).advanceCheckpoint(BucketEventConsumer.CONSUMER, 13L);
+    }
+
+    @Test
+    void consume_whileAnotherInstanceHoldsCheckpoint_doesNothing() {
+        when(bucketEventRepository.lockCheckpoint(BucketEventConsumer.CONSUMER)).thenReturn(Optional.empty());
+
+        consumer.consume();
+
+        verifyNoInteractions(eventPublisher);
+        verify(bucketEventRepository, never()).findByIdGreaterThanAndReceivedAtBeforeOrderById(any(), any(), any());
+    }
+
+    @Test
+    void consume_whenListenerFails_keepsCheckpointForReplay() {
+        when(bucketEventRepository.lockCheckpoint(BucketEventConsumer.CONSUMER)).thenReturn(Optional.of(0L));
+        when(bucketEventRepository.findByIdGreaterThanAndReceivedAtBeforeOrderById(eq(0L), any(), any()))
+            .thenReturn(List.of(event(1, "user-1-files/a.txt", ChangeType.CREATED, 3)));
+        doThrow(new IllegalStateException("usage update failed")).when(eventPublisher).publishEvent(any(Object.class));
+
+        consumer.consume();
+
+        verify(bucketEventRepository, never()).advanceCheckpoint(any(), anyLong());
+    }
+}
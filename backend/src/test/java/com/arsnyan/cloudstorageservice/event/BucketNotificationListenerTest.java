@@ -0,0 +1,52 @@
+package com.arsnyan.cloudstorageservice.event;
+
+import com.arsnyan.cloudstorageservice.repository.BucketEventRepository;
+import com.arsnyan.cloudstorageservice.storage.StorageShard;
+import io.minio.messages.Event;
+import io.minio.messages.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BucketNotificationListenerTest {
+    private static final StorageShard SHARD = new StorageShard("default", null, "user-files", 1);
+
+    private final BucketEventRepository bucketEventRepository = mock(BucketEventRepository.class);
+    private final BucketNotificationListener listener =
+        new BucketNotificationListener(List.of(SHARD), bucketEventRepository, "cloud-storage");
+
+    private static Event event(String type, String key) {
+        var event = mock(Event.class);
+        when(event.eventType()).thenReturn(EventType.fromString(type));
+        when(event.objectName()).thenReturn(key);
+        when(event.objectSize()).thenReturn(3L);
+        when(event.userAgent()).thenReturn("mc");
+        return event;
+    }
+
+    @Test
+    void record_skipsEventsThatOnlyChangeMetadata() {
+        listener.record(SHARD, List.of(
+            event("s3:ObjectCreated:PutTagging", "user-1-files/a.txt"),
+            event("s3:ObjectCreated:DeleteTagging", "user-1-files/a.txt"),
+            event("s3:ObjectCreated:PutRetention", "user-1-files/a.txt"),
+            event("s3:ObjectCreated:PutLegalHold", "user-1-files/a.txt")
+        ));
+
+        verify(bucketEventRepository, never()).insertIfAbsent(any(), any(), any(), anyLong(), any(), any());
+    }
+
+    @Test
+    void record_storesWritesWithoutSequencerAsEmpty() {
+        listener.record(SHARD, List.of(event("s3:ObjectCreated:Put", "user-1-files/a.txt")));
+
+        verify(bucketEventRepository).insertIfAbsent(
+            eq("user-files"), eq("user-1-files/a.txt"), eq("CREATED"), eq(3L), eq(""), any()
+        );
+    }
+}
@@ -0,0 +1,142 @@
+package com.arsnyan.cloudstorageservice.repository;
+
+import com.arsnyan.cloudstorageservice.TestcontainersConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+class UsersIndexTest {
+    private static final String LOOKUP_ID = "SELECT user_id FROM users WHERE username = ?";
+    private static final String LOOKUP_ACCOUNT = """
+        SELECT user_id, username, password, is_disabled, is_expired, credentials_expired, is_locked, role_mask
+        FROM users WHERE username = ?
+        """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'index_test_%'");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS users_bench_before, users_bench_after");
+    }
+
+    @Test
+    void users_hasNoIndexesBesidesPrimaryKeyAndUsername() {
+        var indexes = jdbcTemplate.queryForList("""
+            SELECT indexname FROM pg_indexes
+            WHERE tablename = 'users'
+              AND indexname NOT IN (SELECT conname FROM pg_constraint WHERE contype = 'p')
+            """, String.class);
+
+        assertThat(indexes).containsExactly("uq_users_username");
+    }
+
+    @Test
+    void usernameLookups_useIndexOnlyScan() {
+        insertUsers("users", "index_test_", 1_000);
+        jdbcTemplate.execute("VACUUM ANALYZE users");
+
+        assertThat(explain(LOOKUP_ID, "index_test_1")).contains("Index Only Scan using uq_users_username");
+        assertThat(explain(LOOKUP_ACCOUNT, "index_test_1")).contains("Index Only Scan using uq_users_username");
+    }
+
+    /**
+     * Compares the schema from changelog-1.0 with the current one on scratch copies of the table.
+     * Timings depend on the machine, so results are only logged. Run with RUN_BENCHMARKS=true.
+     */
+    @Test
+    @DisplayName("Benchmark: inserts and username lookups before and after the index changes")
+    @EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+    void benchmark_insertsAndLookups() {
+        var rows = 50_000;
+        var lookups = 20_000;
+
+        jdbcTemplate.execute("CREATE TABLE users_bench_before (LIKE users INCLUDING DEFAULTS INCLUDING IDENTITY)");
+        jdbcTemplate.execute("ALTER TABLE users_bench_before ADD PRIMARY KEY (user_id)");
+        jdbcTemplate.execute("ALTER TABLE users_bench_before ADD UNIQUE (username)");
+        jdbcTemplate.execute("CREATE INDEX ON users_bench_before (username)");
+        jdbcTemplate.execute("CREATE INDEX ON users_bench_before (is_disabled DESC)");
+        jdbcTemplate.execute("CREATE INDEX ON users_bench_before (is_expired DESC)");
+        jdbcTemplate.execute("CREATE INDEX ON users_bench_before (is_locked DESC)");
+
+        jdbcTemplate.execute("CREATE TABLE users_bench_after (LIKE users INCLUDING DEFAULTS INCLUDING IDENTITY)");
+        jdbcTemplate.execute("ALTER TABLE users_bench_after ADD PRIMARY KEY (user_id)");
+        jdbcTemplate.execute("""
+            ALTER TABLE users_bench_after ADD UNIQUE (username)
+            INCLUDE (user_id, password, is_disabled, is_expired, credentials_expired, is_locked, role_mask)
+            """);
+
+        for (var table : List.of("users_bench_before", "users_bench_after")) {
+            var insertStart = System.nanoTime();
+            insertUsers(table, "bench_", rows);
+            var insertMillis = (System.nanoTime() - insertStart) / 1_000_000;
+
+            jdbcTemplate.execute("VACUUM ANALYZE " + table);
+
+            var random = ThreadLocalRandom.current();
+            var lookupStart = System.nanoTime();
+            for (var i = 0; i < lookups; i++) {
+                jdbcTemplate.queryForList(LOOKUP_ACCOUNT.replace("users", table), "bench_" + random.nextInt(rows));
+            }
+            var lookupMicros = (System.nanoTime() - lookupStart) / 1_000 / lookups;
+
+            var indexBytes = jdbcTemplate.queryForObject("SELECT pg_indexes_size(?::regclass)", Long.class, table);
+
+            log.info("{}: {} inserts in {} ms, {} us per account lookup, {} KB of indexes",
+                table, rows, insertMillis, lookupMicros, indexBytes / 1024);
+        }
+    }
+
+    private void insertUsers(String table, String prefix, int count) {
+        var batch = new ArrayList<Object[]>(count);
+        for (var i = 0; i < count; i++) {
+            batch.add(new Object[] {prefix + i, "{bcrypt}$2a$10$" + "x".repeat(53)});
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO " + table + " (username, password) VALUES (?, ?)", batch);
+    }
+
+    // Forces the planner off sequential scans, which it would otherwise prefer on a small table
+    private String explain(String query, String username) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            setSeqScan(connection, false);
+            try (var statement = connection.prepareStatement("EXPLAIN " + query)) {
+                statement.setString(1, username);
+                var plan = new StringBuilder();
+                try (var result = statement.executeQuery()) {
+                    while (result.next()) {
+                        plan.append(result.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            } finally {
+                setSeqScan(connection, true);
+            }
+        });
+    }
+
+    private static void setSeqScan(Connection connection, boolean enabled) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("SET enable_seqscan = " + enabled);
+        }
+    }
+}
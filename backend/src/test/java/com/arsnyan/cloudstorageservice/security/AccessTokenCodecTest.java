@@ -0,0 +1,58 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccessTokenCodecTest {
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final byte[] secret = new byte[32];
+    private final AccessTokenCodec codec = new AccessTokenCodec(secret, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void decode_returnsEncodedClaims() {
+        var claims = new TokenClaims(7L, 42L, "user", 1, NOW.plusSeconds(300));
+
+        assertThat(codec.decode(codec.encode(claims))).isEqualTo(claims);
+    }
+
+    @Test
+    void decode_throws_whenSignedWithAnotherKey() {
+        var otherSecret = Arrays.copyOf(secret, secret.length);
+        otherSecret[0] = 1;
+        var token = new AccessTokenCodec(otherSecret).encode(new TokenClaims(7L, 42L, "user", 1, NOW.plusSeconds(300)));
+
+        assertThatThrownBy(() -> codec.decode(token)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void decode_throws_whenPayloadIsTampered() {
+        var token = codec.encode(new TokenClaims(7L, 42L, "user", 1, NOW.plusSeconds(300)));
+        var forged = codec.encode(new TokenClaims(7L, 42L, "user", 3, NOW.plusSeconds(300)));
+        var tampered = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertThatThrownBy(() -> codec.decode(tampered)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void decode_throws_whenExpired() {
+        var token = codec.encode(new TokenClaims(7L, 42L, "user", 1, NOW));
+
+        assertThatThrownBy(() -> codec.decode(token)).isInstanceOf(CredentialsExpiredException.class);
+    }
+
+    @Test
+    void decode_throws_whenMalformed() {
+        assertThatThrownBy(() -> codec.decode("not-a-token")).isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> codec.decode("a.b.c")).isInstanceOf(BadCredentialsException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.close();
+    }
+
+    @Test
+    void encodeAndMatches_delegateAndRecordHashTime() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, Duration.ofSeconds(5), meterRegistry);
+
+        var hash = encoder.encode("password");
+
+        assertThat(encoder.matches("password", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(meterRegistry.get("security.password.hash").tag("operation", "matches").timer().count())
+            .isEqualTo(2);
+    }
+
+    @Test
+    void encodeAll_returnsHashesInInputOrder_evenWhenQueueIsTiny() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 1, Duration.ofSeconds(5), meterRegistry);
+        var passwords = List.of("first", "second", "third", "fourth", "fifth");
+
+        var hashes = encoder.encodeAll(passwords);
+
+        assertThat(hashes).hasSize(passwords.size());
+        for (var i = 0; i < passwords.size(); i++) {
+            assertThat(encoder.matches(passwords.get(i), hashes.get(i))).isTrue();
+        }
+        assertThat(meterRegistry.get("security.password.hash.rejected").counter().count()).isZero();
+    }
+
+    @Test
+    void matches_rejectsWork_whenPoolAndQueueAreFull() throws Exception {
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+        PasswordEncoder blocking = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        encoder = new BoundedPasswordEncoder(blocking, 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        var running = CompletableFuture.supplyAsync(() -> encoder.matches("a", "hash"));
+        started.await();
+        var queued = CompletableFuture.supplyAsync(() -> encoder.matches("b", "hash"));
+        while (meterRegistry.get("security.password.hash.queued").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> encoder.matches("c", "hash"))
+            .isInstanceOf(ServiceOverloadedException.class);
+
+        release.countDown();
+        assertThat(running.get()).isTrue();
+        assertThat(queued.get()).isTrue();
+        assertThat(meterRegistry.get("security.password.hash.rejected").counter().count()).isEqualTo(1);
+    }
+}
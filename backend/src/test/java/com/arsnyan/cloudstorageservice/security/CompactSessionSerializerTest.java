@@ -0,0 +1,48 @@
+package com.arsnyan.cloudstorageservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactSessionSerializerTest {
+    private final CompactSessionSerializer serializer = new CompactSessionSerializer(new SimpleMeterRegistry());
+
+    @Test
+    void serialize_roundTripsSecurityContextWithSessionUser() {
+        var principal = new SessionUser(42L, "user", 0b11);
+        var context = new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(
+            principal,
+            null,
+            principal.getAuthorities()
+        ));
+
+        var bytes = serializer.serialize(context);
+        var restored = (SecurityContext) serializer.deserialize(bytes);
+
+        assertThat(bytes).hasSizeLessThan(32);
+        assertThat(restored.getAuthentication().getPrincipal()).isEqualTo(principal);
+        assertThat(restored.getAuthentication().isAuthenticated()).isTrue();
+        assertThat(restored.getAuthentication().getAuthorities())
+            .extracting(Object::toString)
+            .containsExactlyInAnyOrder("DEFAULT", "ADMIN");
+    }
+
+    @Test
+    void serialize_fallsBackToJdk_forOtherValues() {
+        var bytes = serializer.serialize(1234L);
+
+        assertThat(serializer.deserialize(bytes)).isEqualTo(1234L);
+    }
+
+    @Test
+    void deserialize_readsValuesWrittenByJdkSerializer() {
+        var legacy = new JdkSerializationRedisSerializer().serialize("attribute");
+
+        assertThat(serializer.deserialize(legacy)).isEqualTo("attribute");
+    }
+}
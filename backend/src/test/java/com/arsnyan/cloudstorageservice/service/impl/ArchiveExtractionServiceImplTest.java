@@ -0,0 +1,187 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.ArchiveProperties;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException;
+import com.arsnyan.cloudstorageservice.repository.ObjectChecksumRepository;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.TestS3Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class ArchiveExtractionServiceImplTest {
+    private static final Long USER_ID = 1L;
+    private static final byte[] BIG_FILE = randomBytes(10_000);
+
+    private final StorageUsageService storageUsageService = mock(StorageUsageService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private TestS3Client s3Client;
+    private ArchiveExtractionServiceImpl extractionService;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new TestS3Client();
+        // Tiny limits, so both batched and streamed files and several batches are exercised
+        var properties = new ArchiveProperties(
+            new ArchiveProperties.Stored(true, DataSize.ofGigabytes(1)),
+            new ArchiveProperties.Browse(DataSize.ofMegabytes(32), Duration.ofHours(1), DataSize.ofMegabytes(64)),
+            new ArchiveProperties.Extract(DataSize.ofBytes(100), DataSize.ofKilobytes(1), 2, 1000, 1, 10, 2)
+        );
+        var archiveService = new ArchiveServiceImpl(s3Client, mock(ObjectChecksumRepository.class), properties);
+        extractionService = new ArchiveExtractionServiceImpl(
+            s3Client, archiveService, storageUsageService, eventPublisher,
+            mock(TrashService.class), properties
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        extractionService.close();
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        return bytes;
+    }
+
+    private void uploadArchive(String key, Map<String, byte[]> entries) throws IOException {
+        var output = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(output)) {
+            for (var entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+
+        s3Client.upload(key, output.toByteArray());
+    }
+
+    // Extraction runs on the service's own threads
+    private static boolean eventually(Callable<Boolean> condition) throws Exception {
+        var deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (condition.call()) return true;
+            Thread.sleep(20);
+        }
+        return condition.call();
+    }
+
+    @Test
+    void start_extractsArchiveIntoFolderNamedAfterIt() throws Exception {
+        uploadArchive("user-1-files/uploads/pack.zip", Map.of(
+            "docs/", new byte[0],
+            "docs/a.txt", "hello".getBytes(StandardCharsets.UTF_8),
+            "docs/b.txt", "world".getBytes(StandardCharsets.UTF_8),
+            "docs/deep/big.bin", BIG_FILE,
+            "readme.md", "# pack".getBytes(StandardCharsets.UTF_8)
+        ));
+
+        var started = extractionService.start(USER_ID, "uploads/pack.zip", null);
+
+        assertThat(started.destination()).isEqualTo("uploads/pack/");
+        assertThat(started.totalFiles()).isEqualTo(4);
+        assertThat(eventually(() -> !extractionService.getStatus(USER_ID, started.id()).running())).isTrue();
+
+        var status = extractionService.getStatus(USER_ID, started.id());
+        assertThat(status.error()).isNull();
+        assertThat(status.extractedFiles()).isEqualTo(4);
+        assertThat(status.extractedBytes()).isEqualTo(status.totalBytes());
+        assertThat(s3Client.read("user-1-files/uploads/pack/docs/a.txt")).asString(StandardCharsets.UTF_8).isEqualTo("hello");
+        assertThat(s3Client.read("user-1-files/uploads/pack/docs/deep/big.bin")).isEqualTo(BIG_FILE);
+        assertThat(s3Client.read("user-1-files/uploads/pack/readme.md")).asString(StandardCharsets.UTF_8).isEqualTo("# pack");
+        assertThat(s3Client.getStatObject("user-1-files/uploads/pack/")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/uploads/pack/docs/deep/")).isNotNull();
+    }
+
+    @Test
+    void start_skipsEntriesThatEscapeDestination() throws Exception {
+        uploadArchive("user-1-files/pack.zip", Map.of(
+            "../escape.txt", "nope".getBytes(StandardCharsets.UTF_8),
+            "ok.txt", "fine".getBytes(StandardCharsets.UTF_8)
+        ));
+
+        var started = extractionService.start(USER_ID, "pack.zip", "out/");
+
+        assertThat(started.skippedEntries()).isEqualTo(1);
+        assertThat(eventually(() -> !extractionService.getStatus(USER_ID, started.id()).running())).isTrue();
+        assertThat(s3Client.read("user-1-files/out/ok.txt")).asString(StandardCharsets.UTF_8).isEqualTo("fine");
+        assertThat(s3Client.getStatObject("user-1-files/escape.txt")).isNull();
+    }
+
+    @Test
+    void start_intoExistingFolder_throwsConflict() throws IOException {
+        uploadArchive("user-1-files/pack.zip", Map.of("a.txt", new byte[]{1}));
+        s3Client.makeFolderInS3("user-1-files/pack/");
+
+        assertThatThrownBy(() -> extractionService.start(USER_ID, "pack.zip", null))
+            .isInstanceOf(EntityAlreadyExistsException.class);
+    }
+
+    @Test
+    void start_beyondQuota_throwsBeforeWritingAnything() throws IOException {
+        uploadArchive("user-1-files/pack.zip", Map.of("big.bin", BIG_FILE));
+        doThrow(new StorageQuotaExceededException("Quota exceeded"))
+            .when(storageUsageService).reserveQuota(eq(USER_ID), anyLong());
+
+        assertThatThrownBy(() -> extractionService.start(USER_ID, "pack.zip", null))
+            .isInstanceOf(StorageQuotaExceededException.class);
+        assertThat(s3Client.getStatObject("user-1-files/pack/")).isNull();
+    }
+
+    @Test
+    void start_whenWritingFails_reportsWhatWasLeftBehind() throws Exception {
+        uploadArchive("user-1-files/pack.zip", Map.of("big.bin", BIG_FILE));
+        doThrow(new IllegalStateException("Publishing failed")).when(eventPublisher).publishEvent(any(Object.class));
+
+        var started = extractionService.start(USER_ID, "pack.zip", null);
+
+        assertThat(eventually(() -> !extractionService.getStatus(USER_ID, started.id()).running())).isTrue();
+        var status = extractionService.getStatus(USER_ID, started.id());
+        assertThat(status.error()).isEqualTo("Publishing failed");
+        assertThat(status.partial()).isTrue();
+        assertThat(s3Client.getStatObject("user-1-files/pack/big.bin")).isNotNull();
+    }
+
+    @Test
+    void getStatus_ofAnotherUsersJob_throwsNotFound() throws IOException {
+        uploadArchive("user-1-files/pack.zip", Map.of("a.txt", new byte[]{1}));
+        var started = extractionService.start(USER_ID, "pack.zip", null);
+
+        assertThatThrownBy(() -> extractionService.getStatus(2L, started.id()))
+            .isInstanceOf(NoSuchEntityException.class);
+    }
+
+    @Test
+    void safeName_rejectsAbsoluteAndClimbingNames() {
+        assertThat(ArchiveExtractionServiceImpl.safeName("a/b.txt")).isEqualTo("a/b.txt");
+        assertThat(ArchiveExtractionServiceImpl.safeName("a/")).isEqualTo("a/");
+        assertThat(ArchiveExtractionServiceImpl.safeName("/etc/passwd")).isNull();
+        assertThat(ArchiveExtractionServiceImpl.safeName("a/../../b")).isNull();
+        assertThat(ArchiveExtractionServiceImpl.safeName("a\\b")).isNull();
+    }
+}
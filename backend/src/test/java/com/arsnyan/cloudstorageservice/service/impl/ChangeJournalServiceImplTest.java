@@ -0,0 +1,113 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.ChangesProperties;
+import com.arsnyan.cloudstorageservice.dto.changes.ChangeDto;
+import com.arsnyan.cloudstorageservice.event.ChangeType;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.model.ChangeJournalEntry;
+import com.arsnyan.cloudstorageservice.repository.ChangeJournalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChangeJournalServiceImplTest {
+    private static final Long USER_ID = 1L;
+
+    private final ChangeJournalRepository changeJournalRepository = mock(ChangeJournalRepository.class);
+    private ChangeJournalServiceImpl changeJournalService;
+
+    @BeforeEach
+    void setUp() {
+        changeJournalService = new ChangeJournalServiceImpl(
+            changeJournalRepository, mock(TransactionTemplate.class),
+            new ChangesProperties(2, Duration.ofSeconds(2), Duration.ofDays(1), Duration.ofDays(30), Duration.ofHours(1))
+        );
+    }
+
+    private static ChangeJournalEntry entry(long id, String path) {
+        return new ChangeJournalEntry(id, USER_ID, path, ChangeType.CREATED, 1, Instant.parse("2024-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void getChanges_withoutCursor_asksForFullListingFromLatestSettledChange() {
+        when(changeJournalRepository.getLatestSettledId(USER_ID, "2000 milliseconds")).thenReturn(Optional.of(42L));
+
+        var feed = changeJournalService.getChanges(USER_ID, null);
+
+        assertThat(feed.reset()).isTrue();
+        assertThat(feed.cursor()).isEqualTo(42L);
+        assertThat(feed.changes()).isEmpty();
+    }
+
+    @Test
+    void getChanges_belowCompactionFloor_asksForFullListing() {
+        when(changeJournalRepository.getFloor(USER_ID)).thenReturn(Optional.of(10L));
+        when(changeJournalRepository.getLatestSettledId(eq(USER_ID), any())).thenReturn(Optional.of(42L));
+
+        var feed = changeJournalService.getChanges(USER_ID, 5L);
+
+        assertThat(feed.reset()).isTrue();
+        assertThat(feed.cursor()).isEqualTo(42L);
+        verify(changeJournalRepository, never()).findSettled(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getChanges_returnsPageAndAdvancesCursor() {
+        when(changeJournalRepository.findSettled(eq(USER_ID), eq(10L), any(), eq(2))).thenReturn(List.of(entry(11, "a.txt"), entry(14, "b/")));
+
+        var feed = changeJournalService.getChanges(USER_ID, 10L);
+
+        assertThat(feed.reset()).isFalse();
+        assertThat(feed.hasMore()).isTrue();
+        assertThat(feed.cursor()).isEqualTo(14L);
+        assertThat(feed.changes()).extracting(ChangeDto::path).containsExactly("a.txt", "b/");
+    }
+
+    @Test
+    void getChanges_withNothingNew_keepsCursor() {
+        var feed = changeJournalService.getChanges(USER_ID, 10L);
+
+        assertThat(feed.cursor()).isEqualTo(10L);
+        assertThat(feed.hasMore()).isFalse();
+    }
+
+    @Test
+    void onStorageChange_journalsEveryChange() {
+        changeJournalService.onStorageChange(StorageChangeEvent.of(USER_ID, List.of(
+            ObjectChange.created("a.txt", 3),
+            ObjectChange.removed("b.txt", 4)
+        )));
+
+        verify(changeJournalRepository).appendAll(
+            eq(USER_ID),
+            aryEq(new String[] {"a.txt", "b.txt"}),
+            aryEq(new String[] {"CREATED", "REMOVED"}),
+            aryEq(new Long[] {3L, 4L})
+        );
+    }
+
+    @Test
+    void onStorageChange_whenJournalFails_doesNotFailTheChange() {
+        doThrow(new DataIntegrityViolationException("down"))
+            .when(changeJournalRepository).appendAll(any(), any(), any(), any());
+
+        assertThatCode(() -> changeJournalService.onStorageChange(
+            StorageChangeEvent.of(USER_ID, List.of(ObjectChange.created("a.txt", 3)))
+        )).doesNotThrowAnyException();
+    }
+}
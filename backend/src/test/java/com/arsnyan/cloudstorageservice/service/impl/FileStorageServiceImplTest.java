@@ -1,14 +1,26 @@
 package com.arsnyan.cloudstorageservice.service.impl;
 
+import com.arsnyan.cloudstorageservice.cache.DirectoryListingCache;
+import com.arsnyan.cloudstorageservice.dto.resource.ContentRange;
 import com.arsnyan.cloudstorageservice.dto.resource.ResourceGetInfoResponseDto;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
 import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
 import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
 import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.exception.RangeNotSatisfiableException;
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException;
 import com.arsnyan.cloudstorageservice.model.ResourceType;
 import com.arsnyan.cloudstorageservice.repository.UserRepository;
-import com.arsnyan.cloudstorageservice.util.MinioS3Client;
+import com.arsnyan.cloudstorageservice.service.ArchiveService;
+import com.arsnyan.cloudstorageservice.service.ArchiveService.ArchiveSource;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.S3Client;
 import io.minio.Result;
 import io.minio.SnowballObject;
+import io.minio.StatObjectResponse;
 import io.minio.messages.Item;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -20,13 +32,19 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpRange;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -40,7 +58,22 @@ class FileStorageServiceImplTest {
     private UserRepository userRepository;
 
     @Mock
-    private MinioS3Client s3Client;
+    private S3Client s3Client;
+
+    @Mock
+    private DirectoryListingCache listingCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StorageUsageService storageUsageService;
+
+    @Mock
+    private ArchiveService archiveService;
+
+    @Mock
+    private TrashService trashService;
 
     @InjectMocks
     private FileStorageServiceImpl fileStorageService;
@@ -48,6 +81,9 @@ class FileStorageServiceImplTest {
     @Captor
     private ArgumentCaptor<List<SnowballObject>> snowballObjectsCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<ArchiveSource>> archiveSourcesCaptor;
+
     private static final String USERNAME = "testuser";
     private static final Long USER_ID = 1L;
     private static final String USER_PREFIX = "user-1-files/";
@@ -56,6 +92,7 @@ class FileStorageServiceImplTest {
     void setUp() {
         lenient().when(userRepository.getUserIdByUsername(USERNAME))
             .thenReturn(Optional.of(USER_ID));
+        lenient().when(trashService.visibleFilter(eq(USER_ID), anyString())).thenReturn(path -> true);
     }
 
     @Nested
@@ -107,6 +144,47 @@ class FileStorageServiceImplTest {
             assertThat(snowballObjectsCaptor.getValue()).hasSize(2);
         }
 
+        @Test
+        @DisplayName("should reject upload exceeding the storage quota before uploading anything")
+        void uploadFile_quotaExceeded_throwsException() {
+            var file = new MockMultipartFile("file", "large.bin", "application/octet-stream", new byte[16]);
+
+            doThrow(new StorageQuotaExceededException("Quota exceeded"))
+                .when(storageUsageService).reserveQuota(USER_ID, 16L);
+
+            assertThatThrownBy(() -> fileStorageService.uploadResources(USERNAME, "", List.of(file)))
+                .isInstanceOf(StorageQuotaExceededException.class);
+
+            verify(s3Client, never()).uploadSnowballObject(any());
+        }
+
+        @Test
+        @DisplayName("should keep the storage backend's overload signal instead of wrapping it")
+        void uploadFile_storageOverloaded_rethrowsException() {
+            var file = new MockMultipartFile("file", "test.txt", "text/plain", "content".getBytes());
+
+            doThrow(new ServiceOverloadedException("Storage is overloaded", Duration.ofSeconds(5)))
+                .when(s3Client).uploadSnowballObject(any());
+
+            assertThatThrownBy(() -> fileStorageService.uploadResources(USERNAME, "", List.of(file)))
+                .isInstanceOf(ServiceOverloadedException.class)
+                .hasFieldOrPropertyWithValue("retryAfter", Duration.ofSeconds(5));
+        }
+
+        @Test
+        @DisplayName("should release the quota reservation once the upload's changes are published")
+        void uploadFile_releasesReservation_afterPublishingChanges() {
+            var file = new MockMultipartFile("file", "test.txt", "text/plain", "content".getBytes());
+            var reservation = mock(StorageUsageService.QuotaReservation.class);
+            when(storageUsageService.reserveQuota(USER_ID, 7L)).thenReturn(reservation);
+
+            fileStorageService.uploadResources(USERNAME, "", List.of(file));
+
+            var order = inOrder(eventPublisher, reservation);
+            order.verify(eventPublisher).publishEvent(any(StorageChangeEvent.class));
+            order.verify(reservation).close();
+        }
+
         @Test
         @DisplayName("should throw EntityAlreadyExistsException when file already exists")
         void uploadFile_fileAlreadyExists_throwsException() {
@@ -253,6 +331,20 @@ class FileStorageServiceImplTest {
             verify(s3Client).makeFolderInS3(USER_PREFIX + path);
         }
 
+        @Test
+        @DisplayName("should publish change of the created folder")
+        void createFolder_publishesChange() {
+            var path = "parent/newFolder/";
+
+            when(s3Client.isPathAvailable(USER_PREFIX + path)).thenReturn(false);
+
+            fileStorageService.createFolder(USERNAME, path);
+
+            verify(eventPublisher).publishEvent(
+                StorageChangeEvent.of(USER_ID, List.of(ObjectChange.created(path, 0)))
+            );
+        }
+
         @Test
         @DisplayName("should create nested folder successfully")
         void createNestedFolder_success() {
@@ -314,6 +406,231 @@ class FileStorageServiceImplTest {
         }
     }
 
+    @Nested
+    @DisplayName("getDownloadableResource")
+    class DownloadFileTests {
+        private static final ZonedDateTime MODIFIED = ZonedDateTime.of(2024, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC);
+
+        @BeforeEach
+        void setUp() {
+            var stats = mock(StatObjectResponse.class);
+            lenient().when(stats.size()).thenReturn(100L);
+            lenient().when(stats.etag()).thenReturn("abc");
+            lenient().when(stats.lastModified()).thenReturn(MODIFIED);
+            when(s3Client.getStatObject(USER_PREFIX + "a.txt")).thenReturn(stats);
+        }
+
+        @Test
+        @DisplayName("should return the requested range along with the file's validators")
+        void getDownloadableResource_withRange_returnsPartOfFile() {
+            var result = fileStorageService.getDownloadableResource(
+                USERNAME, "a.txt", HttpRange.createByteRange(10, 19), null
+            );
+
+            assertThat(result.contentRange()).isEqualTo(new ContentRange(10, 19, 100));
+            assertThat(result.contentLength()).isEqualTo(10);
+            assertThat(result.etag()).isEqualTo("\"abc\"");
+            assertThat(result.lastModified()).isEqualTo(MODIFIED);
+            verify(s3Client).getObject(USER_PREFIX + "a.txt", 10, 10L);
+        }
+
+        @Test
+        @DisplayName("should return the whole file with validators when no range is requested")
+        void getDownloadableResource_withoutRange_returnsWholeFile() {
+            var result = fileStorageService.getDownloadableResource(USERNAME, "a.txt");
+
+            assertThat(result.contentRange()).isNull();
+            assertThat(result.contentLength()).isEqualTo(100);
+            assertThat(result.etag()).isEqualTo("\"abc\"");
+            verify(s3Client).getObject(USER_PREFIX + "a.txt");
+        }
+
+        @Test
+        @DisplayName("should throw RangeNotSatisfiableException for a range outside of the file")
+        void getDownloadableResource_rangeOutsideFile_throwsException() {
+            assertThatThrownBy(() -> fileStorageService.getDownloadableResource(
+                USERNAME, "a.txt", HttpRange.createByteRange(200, 300), null
+            )).isInstanceOf(RangeNotSatisfiableException.class);
+            verify(s3Client, never()).getObject(anyString(), anyLong(), any());
+        }
+
+        @Test
+        @DisplayName("should honour the range when If-Range names the current version")
+        void getDownloadableResource_ifRangeMatches_returnsRange() {
+            var byEtag = fileStorageService.getDownloadableResource(
+                USERNAME, "a.txt", HttpRange.createByteRange(10, 19), "\"abc\""
+            );
+            var byDate = fileStorageService.getDownloadableResource(
+                USERNAME, "a.txt", HttpRange.createByteRange(10, 19), "Tue, 2 Jan 2024 03:04:05 GMT"
+            );
+
+            assertThat(byEtag.contentRange()).isNotNull();
+            assertThat(byDate.contentRange()).isNotNull();
+        }
+
+        @Test
+        @DisplayName("should return the whole file when the file changed since If-Range")
+        void getDownloadableResource_ifRangeDoesNotMatch_returnsWholeFile() {
+            var result = fileStorageService.getDownloadableResource(
+                USERNAME, "a.txt", HttpRange.createByteRange(10, 19), "\"old\""
+            );
+
+            assertThat(result.contentRange()).isNull();
+            assertThat(result.contentLength()).isEqualTo(100);
+            verify(s3Client).getObject(USER_PREFIX + "a.txt");
+            verify(s3Client, never()).getObject(anyString(), anyLong(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("getDownloadableArchive")
+    class DownloadArchiveTests {
+
+        @Test
+        @DisplayName("should pack selected files and folders into one archive")
+        void getDownloadableArchive_packsSelection() {
+            var folderItem = createMockItem(USER_PREFIX + "docs/");
+            var nestedItem = createMockItem(USER_PREFIX + "docs/a.txt");
+            when(s3Client.listObjects(USER_PREFIX + "docs/", true)).thenReturn(List.of(
+                new Result<>(folderItem), new Result<>(nestedItem)
+            ));
+            when(s3Client.getStatObject(USER_PREFIX + "b.txt")).thenReturn(mock(StatObjectResponse.class));
+
+            fileStorageService.getDownloadableArchive(USERNAME, List.of("docs/", "docs/a.txt", "b.txt"));
+
+            verify(archiveService).createArchive(eq("download.zip"), archiveSourcesCaptor.capture(), isNull());
+            assertThat(archiveSourcesCaptor.getValue())
+                .extracting(ArchiveSource::entryName)
+                .containsExactly("docs/", "docs/a.txt", "b.txt");
+            verify(s3Client, never()).getStatObject(USER_PREFIX + "docs/a.txt");
+            verify(userRepository, times(1)).getUserIdByUsername(USERNAME);
+        }
+
+        @Test
+        @DisplayName("should name the archive after the folder when only one is selected")
+        void getDownloadableArchive_namesArchiveAfterSingleFolder() {
+            var folderItem = createMockItem(USER_PREFIX + "photos/");
+            when(s3Client.listObjects(USER_PREFIX + "photos/", true)).thenReturn(List.of(new Result<>(folderItem)));
+
+            fileStorageService.getDownloadableArchive(USERNAME, List.of("photos/"));
+
+            verify(archiveService).createArchive(eq("photos.zip"), anyList(), isNull());
+        }
+
+        @Test
+        @DisplayName("should throw NoSuchEntityException before streaming when a selected file is missing")
+        void getDownloadableArchive_fileNotFound_throwsException() {
+            when(s3Client.getStatObject(USER_PREFIX + "missing.txt")).thenReturn(null);
+
+            assertThatThrownBy(() -> fileStorageService.getDownloadableArchive(USERNAME, List.of("missing.txt")))
+                .isInstanceOf(NoSuchEntityException.class);
+            verifyNoInteractions(archiveService);
+        }
+
+        @Test
+        @DisplayName("should throw NoSuchEntityException when a selected folder does not exist")
+        void getDownloadableArchive_folderNotFound_throwsException() {
+            when(s3Client.listObjects(USER_PREFIX + "missing/", true)).thenReturn(List.of());
+
+            assertThatThrownBy(() -> fileStorageService.getDownloadableArchive(USERNAME, List.of("missing/")))
+                .isInstanceOf(NoSuchEntityException.class);
+        }
+
+        private Item createMockItem(String objectName) {
+            var item = mock(Item.class);
+            lenient().when(item.objectName()).thenReturn(objectName);
+            return item;
+        }
+    }
+
+    @Nested
+    @DisplayName("listFolderContents")
+    class ListFolderContentsTests {
+
+        @Test
+        @DisplayName("should answer root listing without object storage for a user known to be empty")
+        void listFolderContents_skipsObjectStorage_whenUserIsKnownEmpty() {
+            when(listingCache.getOrLoad(eq(USER_ID), eq(""), any())).thenAnswer(invocation ->
+                invocation.<Supplier<List<ResourceGetInfoResponseDto>>>getArgument(2).get()
+            );
+            when(storageUsageService.isKnownEmpty(USER_ID)).thenReturn(true);
+
+            var contents = fileStorageService.listFolderContents(USERNAME, "");
+
+            assertThat(contents).isEmpty();
+            verifyNoInteractions(s3Client);
+        }
+
+        @Test
+        @DisplayName("should hide trashed resources from a cached listing")
+        void listFolderContents_hidesTrashedResources() {
+            when(listingCache.getOrLoad(eq(USER_ID), eq("docs/"), any())).thenReturn(List.of(
+                new ResourceGetInfoResponseDto("docs/", "kept.txt", 1L, ResourceType.FILE),
+                new ResourceGetInfoResponseDto("docs/", "trashed.txt", 1L, ResourceType.FILE)
+            ));
+            when(trashService.visibleFilter(eq(USER_ID), anyString())).thenReturn(path -> !path.equals("docs/trashed.txt"));
+
+            var contents = fileStorageService.listFolderContents(USERNAME, "docs/");
+
+            assertThat(contents).extracting(ResourceGetInfoResponseDto::name).containsExactly("kept.txt");
+        }
+    }
+
+    @Nested
+    @DisplayName("getResourceInfo")
+    class GetResourceInfoTests {
+
+        @Test
+        @DisplayName("should report the folder size from usage accounting")
+        void getFolderInfo_returnsFolderSize() {
+            when(storageUsageService.getFolderSize(USER_ID, "docs/")).thenReturn(42L);
+
+            var result = fileStorageService.getResourceInfo(USERNAME, "docs/");
+
+            assertThat(result.size()).isEqualTo(42L);
+            assertThat(result.type()).isEqualTo(ResourceType.DIRECTORY);
+        }
+
+        @Test
+        @DisplayName("should throw when the folder does not exist")
+        void getMissingFolderInfo_throwsNotFound() {
+            when(storageUsageService.getFolderSize(USER_ID, "missing/")).thenReturn(0L);
+            when(s3Client.listObjects(USER_PREFIX + "missing/", false)).thenReturn(List.of());
+
+            assertThatThrownBy(() -> fileStorageService.getResourceInfo(USERNAME, "missing/"))
+                .isInstanceOf(NoSuchEntityException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("deleteResource")
+    class DeleteResourceTests {
+
+        @Test
+        @DisplayName("should move folder to trash without touching its objects")
+        void deleteFolder_movesToTrash() {
+            @SuppressWarnings("unchecked")
+            Result<Item> placeholder = mock(Result.class);
+            when(s3Client.listObjects(USER_PREFIX + "docs/", false)).thenReturn(List.of(placeholder));
+
+            fileStorageService.deleteResource(USERNAME, "docs/");
+
+            verify(trashService).moveToTrash(USER_ID, "docs/");
+            verify(s3Client, never()).removeObject(anyString());
+            verify(s3Client, never()).removeObjects(anyList());
+        }
+
+        @Test
+        @DisplayName("should throw when resource is already in trash")
+        void deleteTrashedResource_throwsNotFound() {
+            when(trashService.visibleFilter(eq(USER_ID), anyString())).thenReturn(path -> false);
+
+            assertThatThrownBy(() -> fileStorageService.deleteResource(USERNAME, "a.txt"))
+                .isInstanceOf(NoSuchEntityException.class);
+            verify(trashService, never()).moveToTrash(any(), any());
+        }
+    }
+
     @Nested
     @DisplayName("moveResource")
     class MoveResourceTests {
@@ -358,12 +675,13 @@ class FileStorageServiceImplTest {
             when(s3Client.listObjects(resolvedFrom, true)).thenReturn(resultItems);
             when(s3Client.hasNamingConflict(anyString())).thenReturn(false);
             when(s3Client.isPathAvailable(anyString())).thenReturn(false);
-            when(s3Client.getStatObject(resolvedTo)).thenReturn(null);
+            when(storageUsageService.getFolderSize(USER_ID, to)).thenReturn(42L);
 
             var result = fileStorageService.moveResource(USERNAME, from, to);
 
             assertThat(result).isNotNull();
             assertThat(result.type()).isEqualTo(ResourceType.DIRECTORY);
+            assertThat(result.size()).isEqualTo(42L);
 
             verify(s3Client).copyObject(eq(folderItem), eq(resolvedTo));
             verify(s3Client).copyObject(eq(fileItem), eq(resolvedTo + "file.txt"));
@@ -522,7 +840,8 @@ class FileStorageServiceImplTest {
             when(s3Client.listObjects(resolvedFrom, true)).thenReturn(resultItems);
             when(s3Client.hasNamingConflict(anyString())).thenReturn(false);
             when(s3Client.isPathAvailable(anyString())).thenReturn(false);
-            when(s3Client.getStatObject(resolvedTo)).thenReturn(null);
+            when(storageUsageService.getFolderSize(USER_ID, to)).thenReturn(0L);
+            when(s3Client.listObjects(resolvedTo, false)).thenReturn(createResultList(folder1));
 
             fileStorageService.moveResource(USERNAME, from, to);
 
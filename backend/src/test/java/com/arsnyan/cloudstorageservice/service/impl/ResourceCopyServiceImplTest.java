@@ -0,0 +1,136 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.CopyProperties;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.InvalidResourcePathException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.service.StorageUsageService;
+import com.arsnyan.cloudstorageservice.service.TrashService;
+import com.arsnyan.cloudstorageservice.util.TestS3Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResourceCopyServiceImplTest {
+    private static final Long USER_ID = 1L;
+
+    private final StorageUsageService storageUsageService = mock(StorageUsageService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final TrashService trashService = mock(TrashService.class);
+    private TestS3Client s3Client;
+    private ResourceCopyServiceImpl copyService;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new TestS3Client();
+        when(trashService.visibleFilter(eq(USER_ID), anyString())).thenReturn(path -> true);
+        copyService = new ResourceCopyServiceImpl(s3Client, storageUsageService, eventPublisher, trashService, new CopyProperties(4, 2, 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        copyService.close();
+    }
+
+    @Test
+    void copy_ofFolder_copiesEveryObjectAndCreatesFolders() throws IOException {
+        s3Client.makeFolderInS3("user-1-files/docs/");
+        s3Client.makeFolderInS3("user-1-files/docs/empty/");
+        for (var i = 0; i < 10; i++) {
+            s3Client.upload("user-1-files/docs/nested/file-%d.txt".formatted(i), "content " + i);
+        }
+
+        copyService.copy(USER_ID, "docs/", "backup/docs/");
+
+        for (var i = 0; i < 10; i++) {
+            assertThat(s3Client.readString("user-1-files/backup/docs/nested/file-%d.txt".formatted(i))).isEqualTo("content " + i);
+            assertThat(s3Client.readString("user-1-files/docs/nested/file-%d.txt".formatted(i))).isEqualTo("content " + i);
+        }
+        assertThat(s3Client.getStatObject("user-1-files/backup/")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/backup/docs/empty/")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/backup/docs/nested/")).isNotNull();
+    }
+
+    @Test
+    void copy_publishesCreatedObjects() {
+        s3Client.upload("user-1-files/a.txt", "hello");
+
+        copyService.copy(USER_ID, "a.txt", "b.txt");
+
+        var captor = ArgumentCaptor.forClass(StorageChangeEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertThat(captor.getValue().changes()).containsExactly(ObjectChange.created("b.txt", 5));
+    }
+
+    @Test
+    void copy_ofFile_ignoresObjectsSharingItsPrefix() {
+        s3Client.upload("user-1-files/a.txt", "hello");
+        s3Client.upload("user-1-files/a.txt.bak", "old");
+
+        copyService.copy(USER_ID, "a.txt", "b.txt");
+
+        assertThat(s3Client.getStatObject("user-1-files/b.txt")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/b.txt.bak")).isNull();
+    }
+
+    @Test
+    void copy_ofFolder_skipsTrashedObjects() {
+        s3Client.upload("user-1-files/docs/kept.txt", "kept");
+        s3Client.upload("user-1-files/docs/old/gone.txt", "gone");
+        when(trashService.visibleFilter(eq(USER_ID), anyString())).thenReturn(path -> !path.startsWith("docs/old/"));
+
+        copyService.copy(USER_ID, "docs/", "copy/");
+
+        assertThat(s3Client.getStatObject("user-1-files/copy/kept.txt")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/copy/old/gone.txt")).isNull();
+    }
+
+    @Test
+    void copy_toExistingPath_throwsConflict() {
+        s3Client.upload("user-1-files/a.txt", "hello");
+        s3Client.upload("user-1-files/b.txt", "world");
+
+        assertThatThrownBy(() -> copyService.copy(USER_ID, "a.txt", "b.txt"))
+            .isInstanceOf(EntityAlreadyExistsException.class);
+    }
+
+    @Test
+    void copy_ofFolderIntoItself_throwsConflict() {
+        s3Client.upload("user-1-files/docs/a.txt", "hello");
+
+        assertThatThrownBy(() -> copyService.copy(USER_ID, "docs/", "docs/inner/"))
+            .isInstanceOf(EntityAlreadyExistsException.class);
+    }
+
+    @Test
+    void copy_betweenFileAndFolderPaths_throwsBadRequest() {
+        s3Client.upload("user-1-files/a.txt", "hello");
+        s3Client.upload("user-1-files/docs/b.txt", "world");
+
+        assertThatThrownBy(() -> copyService.copy(USER_ID, "a.txt", "copy/"))
+            .isInstanceOf(InvalidResourcePathException.class);
+        assertThatThrownBy(() -> copyService.copy(USER_ID, "docs/", "copy.txt"))
+            .isInstanceOf(InvalidResourcePathException.class);
+        assertThat(s3Client.getStatObject("user-1-files/copy/")).isNull();
+    }
+
+    @Test
+    void copy_ofMissingResource_throwsNotFound() {
+        assertThatThrownBy(() -> copyService.copy(USER_ID, "missing/", "copy/"))
+            .isInstanceOf(NoSuchEntityException.class);
+    }
+}
@@ -0,0 +1,175 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.StorageProperties;
+import com.arsnyan.cloudstorageservice.event.ChangeSource;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.StorageQuotaExceededException;
+import com.arsnyan.cloudstorageservice.model.ObjectSize;
+import com.arsnyan.cloudstorageservice.model.ObjectSizeId;
+import com.arsnyan.cloudstorageservice.model.StorageUsage;
+import com.arsnyan.cloudstorageservice.repository.FolderUsageRepository;
+import com.arsnyan.cloudstorageservice.repository.ObjectSizeRepository;
+import com.arsnyan.cloudstorageservice.repository.StorageUsageRepository;
+import com.arsnyan.cloudstorageservice.repository.UserRepository;
+import com.arsnyan.cloudstorageservice.scheduling.ScheduledTaskLock;
+import com.arsnyan.cloudstorageservice.util.TestS3Client;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StorageUsageServiceImplTest {
+    private static final Long USER_ID = 1L;
+
+    private final StorageUsageRepository storageUsageRepository = mock(StorageUsageRepository.class);
+    private final FolderUsageRepository folderUsageRepository = mock(FolderUsageRepository.class);
+    private final ObjectSizeRepository objectSizeRepository = mock(ObjectSizeRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final ScheduledTaskLock scheduledTaskLock = mock(ScheduledTaskLock.class);
+    private TestS3Client s3Client;
+    private StorageUsageServiceImpl storageUsageService;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new TestS3Client();
+        storageUsageService = new StorageUsageServiceImpl(
+            storageUsageRepository, folderUsageRepository, objectSizeRepository, userRepository, s3Client,
+            transactionTemplate, scheduledTaskLock,
+            new StorageProperties(
+                "memory",
+                null,
+                new StorageProperties.Quota(true, DataSize.ofBytes(100), Duration.ofHours(24)),
+                new StorageProperties.Usage(Duration.ofHours(6))
+            )
+        );
+    }
+
+    private void knownSizes(ObjectSize... sizes) {
+        when(objectSizeRepository.getSizes(eq(USER_ID), any())).thenReturn(List.of(sizes));
+    }
+
+    private static ObjectSize size(String path, long size) {
+        return new ObjectSize(new ObjectSizeId(USER_ID, path), size);
+    }
+
+    private void onBucketChanges(ObjectChange... changes) {
+        storageUsageService.onStorageChange(
+            new StorageChangeEvent(USER_ID, List.of(changes), ChangeSource.BUCKET_NOTIFICATION)
+        );
+    }
+
+    @Test
+    void onStorageChange_fromBucket_removalSubtractsLastKnownSize() {
+        knownSizes(size("docs/a.txt", 7));
+
+        // Removal notifications report no size
+        onBucketChanges(ObjectChange.removed("docs/a.txt", 0));
+
+        verify(storageUsageRepository).addUsage(USER_ID, -7, -1);
+        verify(folderUsageRepository).addUsage(USER_ID, "docs/", -7, -1);
+        verify(objectSizeRepository).deleteSizes(USER_ID, new String[] {"docs/a.txt"});
+    }
+
+    @Test
+    void onStorageChange_fromBucket_writeOverKnownObjectCountsOnlyTheDifference() {
+        knownSizes(size("a.txt", 7));
+
+        onBucketChanges(ObjectChange.created("a.txt", 10));
+
+        verify(storageUsageRepository).addUsage(USER_ID, 3, 0);
+        verify(storageUsageRepository, never()).addRootEntries(any(), anyLong());
+        verify(objectSizeRepository).putSizes(USER_ID, new String[] {"a.txt"}, new long[] {10});
+    }
+
+    @Test
+    void onStorageChange_fromBucket_repeatedWritesOfNewObjectCountItOnce() {
+        knownSizes();
+
+        onBucketChanges(ObjectChange.created("a.txt", 4), ObjectChange.created("a.txt", 6));
+
+        verify(storageUsageRepository).addUsage(USER_ID, 6, 1);
+        verify(storageUsageRepository).addRootEntries(USER_ID, 1);
+    }
+
+    @Test
+    void onStorageChange_fromBucket_removalOfUnknownObjectCountsNothing() {
+        knownSizes();
+
+        onBucketChanges(ObjectChange.removed("a.txt", 0));
+
+        verify(storageUsageRepository, never()).addUsage(any(), anyLong(), anyLong());
+        verify(storageUsageRepository, never()).addRootEntries(any(), anyLong());
+        verify(objectSizeRepository, never()).deleteSizes(any(), any());
+    }
+
+    @Test
+    void onStorageChange_fromApplication_trustsReportedSizes() {
+        storageUsageService.onStorageChange(StorageChangeEvent.of(USER_ID, List.of(ObjectChange.created("a.txt", 5))));
+
+        verify(objectSizeRepository, never()).getSizes(any(), any());
+        verify(storageUsageRepository).addUsage(USER_ID, 5, 1);
+        verify(objectSizeRepository).putSizes(USER_ID, new String[] {"a.txt"}, new long[] {5});
+    }
+
+    @Test
+    void reserveQuota_overQuota_throwsWithoutReserving() {
+        when(storageUsageRepository.reserve(USER_ID, 60, 100)).thenReturn(0);
+
+        assertThatThrownBy(() -> storageUsageService.reserveQuota(USER_ID, 60))
+            .isInstanceOf(StorageQuotaExceededException.class)
+            .hasMessageContaining("100 bytes");
+
+        verify(storageUsageRepository, never()).release(any(), anyLong());
+    }
+
+    @Test
+    void reserveQuota_releasesReservedBytesOnce_whenClosed() {
+        when(storageUsageRepository.reserve(USER_ID, 60, 100)).thenReturn(1);
+
+        var reservation = storageUsageService.reserveQuota(USER_ID, 60);
+        verify(storageUsageRepository, never()).release(any(), anyLong());
+
+        reservation.close();
+        reservation.close();
+
+        verify(storageUsageRepository, times(1)).release(USER_ID, 60);
+    }
+
+    @Test
+    void reconcile_discardsScan_whenUsageChangedMeanwhile() {
+        s3Client.upload("user-1-files/docs/a.txt", "abc");
+        when(storageUsageRepository.findById(USER_ID)).thenReturn(Optional.of(usageAtVersion(4)));
+        // A write bumped the version while the bucket was listed
+        when(storageUsageRepository.reconcile(USER_ID, 3, 1, 1, 4)).thenReturn(0);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        storageUsageService.reconcile(USER_ID);
+
+        verify(storageUsageRepository).reconcile(USER_ID, 3, 1, 1, 4);
+        verifyNoInteractions(folderUsageRepository, objectSizeRepository);
+    }
+
+    private static StorageUsage usageAtVersion(long version) {
+        var usage = new StorageUsage();
+        usage.setUserId(USER_ID);
+        usage.setVersion(version);
+        return usage;
+    }
+}
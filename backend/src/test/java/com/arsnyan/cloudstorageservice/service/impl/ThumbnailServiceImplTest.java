@@ -0,0 +1,226 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.ThumbnailProperties;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.util.TestS3Client;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThumbnailServiceImplTest {
+    private static final String IMAGE_KEY = "user-1-files/photos/cat.png";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TestS3Client s3Client;
+    private ThumbnailServiceImpl thumbnailService;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new TestS3Client();
+        thumbnailService = new ThumbnailServiceImpl(
+            s3Client, meterRegistry,
+            new ThumbnailProperties(List.of(128, 256, 512), 256, DataSize.ofMegabytes(30), 100_000_000, 1, 10)
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailService.close();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        var graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width, height / 2);
+        graphics.dispose();
+
+        var output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+
+    private List<String> listNames(String prefix) throws Exception {
+        var names = new ArrayList<String>();
+        for (Result<Item> result : s3Client.listObjects(prefix, true)) {
+            names.add(result.get().objectName());
+        }
+        return names;
+    }
+
+    // Background tasks run on the service's own threads
+    private static boolean eventually(Callable<Boolean> condition) throws Exception {
+        var deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (condition.call()) return true;
+            Thread.sleep(20);
+        }
+        return condition.call();
+    }
+
+    @Nested
+    class GetThumbnailTests {
+        @Test
+        void getThumbnail_scalesImageToFitRequestedSize() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(2000, 1000));
+
+            var thumbnail = thumbnailService.getThumbnail(IMAGE_KEY, 256, null);
+
+            var image = ImageIO.read(new ByteArrayInputStream(thumbnail.content()));
+            assertThat(image.getWidth()).isEqualTo(256);
+            assertThat(image.getHeight()).isEqualTo(128);
+        }
+
+        @Test
+        void getThumbnail_roundsSizeUpToConfiguredOne() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(2000, 2000));
+
+            var thumbnail = thumbnailService.getThumbnail(IMAGE_KEY, 200, null);
+
+            var image = ImageIO.read(new ByteArrayInputStream(thumbnail.content()));
+            assertThat(image.getWidth()).isEqualTo(256);
+            assertThat(thumbnail.etag()).endsWith("-256\"");
+        }
+
+        @Test
+        void getThumbnail_doesNotUpscaleSmallImages() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(40, 20));
+
+            var thumbnail = thumbnailService.getThumbnail(IMAGE_KEY, 512, null);
+
+            var image = ImageIO.read(new ByteArrayInputStream(thumbnail.content()));
+            assertThat(image.getWidth()).isEqualTo(40);
+            assertThat(image.getHeight()).isEqualTo(20);
+        }
+
+        @Test
+        void getThumbnail_storesDerivativeOutsideUserFolder() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(600, 600));
+
+            thumbnailService.getThumbnail(IMAGE_KEY, 128, null);
+
+            assertThat(listNames(".derivatives/user-1-files/photos/cat.png/")).hasSize(1);
+            assertThat(listNames("user-1-files/")).containsExactly(IMAGE_KEY);
+        }
+
+        @Test
+        void getThumbnail_servesStoredDerivativeOnSecondRequest() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(600, 600));
+
+            var first = thumbnailService.getThumbnail(IMAGE_KEY, 128, null);
+            var second = thumbnailService.getThumbnail(IMAGE_KEY, 128, null);
+
+            assertThat(second.content()).isEqualTo(first.content());
+            assertThat(meterRegistry.get("storage.thumbnails.requests").tag("result", "miss").counter().count())
+                .isEqualTo(1);
+            assertThat(meterRegistry.get("storage.thumbnails.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1);
+        }
+
+        @Test
+        void getThumbnail_omitsContent_whenEtagMatches() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(600, 600));
+            var etag = thumbnailService.getThumbnail(IMAGE_KEY, 128, null).etag();
+
+            var thumbnail = thumbnailService.getThumbnail(IMAGE_KEY, 128, etag);
+
+            assertThat(thumbnail.etag()).isEqualTo(etag);
+            assertThat(thumbnail.content()).isNull();
+        }
+
+        @Test
+        void getThumbnail_changesEtag_whenOriginalIsOverwritten() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(600, 600));
+            var before = thumbnailService.getThumbnail(IMAGE_KEY, 128, null).etag();
+
+            s3Client.upload(IMAGE_KEY, png(300, 600));
+            var after = thumbnailService.getThumbnail(IMAGE_KEY, 128, before);
+
+            assertThat(after.etag()).isNotEqualTo(before);
+            assertThat(after.content()).isNotNull();
+        }
+
+        @Test
+        void getThumbnail_throwsException_whenResourceIsMissing() {
+            assertThatThrownBy(() -> thumbnailService.getThumbnail(IMAGE_KEY, 128, null))
+                .isInstanceOf(NoSuchEntityException.class);
+        }
+
+        @Test
+        void getThumbnail_throwsException_whenResourceIsNotAnImage() {
+            s3Client.upload("user-1-files/notes.txt", "hello".getBytes(StandardCharsets.UTF_8));
+
+            assertThatThrownBy(() -> thumbnailService.getThumbnail("user-1-files/notes.txt", 128, null))
+                .isInstanceOf(NoSuchEntityException.class);
+        }
+
+        @Test
+        void getThumbnail_throwsException_whenImageCannotBeDecoded() {
+            s3Client.upload("user-1-files/broken.jpg", "not a jpeg".getBytes(StandardCharsets.UTF_8));
+
+            assertThatThrownBy(() -> thumbnailService.getThumbnail("user-1-files/broken.jpg", 128, null))
+                .isInstanceOf(NoSuchEntityException.class);
+        }
+
+        @Test
+        void getThumbnail_throwsException_whenImageHasTooManyPixels() throws Exception {
+            try (var limited = new ThumbnailServiceImpl(
+                s3Client, meterRegistry,
+                new ThumbnailProperties(List.of(128), 128, DataSize.ofMegabytes(30), 10_000, 1, 10)
+            )) {
+                s3Client.upload(IMAGE_KEY, png(200, 200));
+
+                assertThatThrownBy(() -> limited.getThumbnail(IMAGE_KEY, 128, null))
+                    .isInstanceOf(NoSuchEntityException.class);
+            }
+        }
+    }
+
+    @Nested
+    class StorageChangeTests {
+        @Test
+        void onStorageChange_generatesThumbnailsOfUploadedImages() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(600, 600));
+
+            thumbnailService.onStorageChange(StorageChangeEvent.of(1L, List.of(
+                ObjectChange.created("photos/cat.png", 100),
+                ObjectChange.created("photos/", 0)
+            )));
+
+            assertThat(eventually(() -> listNames(".derivatives/user-1-files/photos/cat.png/").size() == 1)).isTrue();
+        }
+
+        @Test
+        void onStorageChange_removesDerivativesOfRemovedFolders() throws Exception {
+            s3Client.upload(IMAGE_KEY, png(600, 600));
+            thumbnailService.getThumbnail(IMAGE_KEY, 128, null);
+
+            thumbnailService.onStorageChange(StorageChangeEvent.of(1L, List.of(
+                ObjectChange.removed("photos/", 0)
+            )));
+
+            assertThat(eventually(() -> listNames(".derivatives/").isEmpty())).isTrue();
+        }
+    }
+}
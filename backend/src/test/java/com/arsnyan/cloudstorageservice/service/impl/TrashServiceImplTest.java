@@ -0,0 +1,224 @@
+package com.arsnyan.cloudstorageservice.service.impl;
+
+import com.arsnyan.cloudstorageservice.config.TrashProperties;
+import com.arsnyan.cloudstorageservice.event.ObjectChange;
+import com.arsnyan.cloudstorageservice.event.StorageChangeEvent;
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.exception.NoSuchEntityException;
+import com.arsnyan.cloudstorageservice.model.TrashEntry;
+import com.arsnyan.cloudstorageservice.repository.TrashEntryRepository;
+import com.arsnyan.cloudstorageservice.scheduling.ScheduledTaskLock;
+import com.arsnyan.cloudstorageservice.service.ChangeJournalService;
+import com.arsnyan.cloudstorageservice.util.TestS3Client;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TrashServiceImplTest {
+    private static final Long USER_ID = 1L;
+
+    private final TrashEntryRepository trashEntryRepository = mock(TrashEntryRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ChangeJournalService changeJournalService = mock(ChangeJournalService.class);
+    private final ScheduledTaskLock scheduledTaskLock = mock(ScheduledTaskLock.class);
+    private TestS3Client s3Client;
+    private TrashServiceImpl trashService;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new TestS3Client();
+        trashService = new TrashServiceImpl(
+            trashEntryRepository, s3Client, eventPublisher, changeJournalService, scheduledTaskLock,
+            new TrashProperties(Duration.ofDays(30), Duration.ofHours(1), 2)
+        );
+        when(scheduledTaskLock.runExclusively(any(), any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+    }
+
+    private static TrashEntry entry(long id, String path) {
+        return new TrashEntry(id, USER_ID, path, Instant.parse("2024-01-01T00:00:00Z"), null);
+    }
+
+    @Test
+    void visibleFilter_hidesTrashedFilesAndEverythingInTrashedFolders() {
+        when(trashEntryRepository.getTrashedPaths(USER_ID, List.of(""), "")).thenReturn(List.of("docs/", "a.txt"));
+
+        var visible = trashService.visibleFilter(USER_ID, "");
+
+        assertThat(visible.test("docs/")).isFalse();
+        assertThat(visible.test("docs/deep/b.txt")).isFalse();
+        assertThat(visible.test("a.txt")).isFalse();
+        assertThat(visible.test("docs2/b.txt")).isTrue();
+        assertThat(visible.test("a.txt.bak")).isTrue();
+    }
+
+    @Test
+    void visibleFilter_looksUpOnlyTheScopesFoldersAndWhatIsBelowIt() {
+        when(trashEntryRepository.getTrashedPaths(USER_ID, List.of("work/", "work/docs/"), "work/docs/"))
+            .thenReturn(List.of("work/docs/old/"));
+
+        var visible = trashService.visibleFilter(USER_ID, "work/docs/");
+
+        assertThat(visible.test("work/docs/")).isTrue();
+        assertThat(visible.test("work/docs/old/a.txt")).isFalse();
+        assertThat(visible.test("work/docs/new.txt")).isTrue();
+    }
+
+    @Test
+    void deleteFromTrash_removesObjectsAndKeepsParentFolder() {
+        s3Client.makeFolderInS3("user-1-files/work/");
+        s3Client.upload("user-1-files/work/docs/a.txt", new byte[3]);
+        s3Client.upload("user-1-files/work/docs/deep/b.txt", new byte[4]);
+        s3Client.upload("user-1-files/work/other.txt", new byte[5]);
+        var docs = entry(1, "work/docs/");
+        var nested = entry(2, "work/docs/deep/b.txt");
+        when(trashEntryRepository.findByIdAndUserId(1L, USER_ID)).thenReturn(Optional.of(docs));
+        when(trashEntryRepository.findAllStoredUnder(USER_ID, "work/docs/")).thenReturn(List.of(docs, nested));
+
+        trashService.deleteFromTrash(USER_ID, 1L);
+
+        assertThat(s3Client.getStatObject("user-1-files/work/docs/a.txt")).isNull();
+        assertThat(s3Client.getStatObject("user-1-files/work/docs/deep/b.txt")).isNull();
+        assertThat(s3Client.getStatObject("user-1-files/work/other.txt")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/work/")).isNotNull();
+        verify(trashEntryRepository).deleteAllInBatch(List.of(docs, nested));
+
+        var captor = ArgumentCaptor.forClass(StorageChangeEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertThat(captor.getValue().changes()).containsExactlyInAnyOrder(
+            ObjectChange.removed("work/docs/a.txt", 3),
+            ObjectChange.removed("work/docs/deep/b.txt", 4)
+        );
+    }
+
+    @Test
+    void makeRoomFor_setsTrashedFileAside_andRestoreMovesItBack() {
+        s3Client.upload("user-1-files/docs/a.txt", new byte[3]);
+        var a = entry(1, "docs/a.txt");
+        when(trashEntryRepository.findAllInPlace(eq(USER_ID), any(), eq("docs/a.txt")))
+            .thenReturn(List.of(a), List.of());
+        when(trashEntryRepository.getTrashedPaths(eq(USER_ID), any(), any())).thenReturn(List.of("docs/a.txt"));
+        when(trashEntryRepository.findAllStoredUnder(USER_ID, "docs/a.txt")).thenReturn(List.of(a));
+        when(trashEntryRepository.findAllStoredUnder(USER_ID, ".trash/1/a.txt")).thenReturn(List.of(a));
+
+        trashService.makeRoomFor(USER_ID, "docs/a.txt");
+
+        assertThat(s3Client.getStatObject("user-1-files/docs/a.txt")).isNull();
+        assertThat(s3Client.getStatObject("user-1-files/.trash/1/a.txt")).isNotNull();
+        assertThat(a.getStoredPath()).isEqualTo(".trash/1/a.txt");
+
+        when(trashEntryRepository.findByIdAndUserId(1L, USER_ID)).thenReturn(Optional.of(a));
+        when(trashEntryRepository.deleteEntry(1L, USER_ID)).thenReturn(1);
+
+        trashService.restore(USER_ID, 1L);
+
+        assertThat(s3Client.getStatObject("user-1-files/docs/a.txt")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/.trash/1/a.txt")).isNull();
+        assertThat(a.getStoredPath()).isNull();
+        verify(changeJournalService).append(USER_ID, List.of(ObjectChange.created("docs/a.txt", 3)));
+    }
+
+    @Test
+    void makeRoomFor_leavesTrashAlone_whenAVisibleResourceIsInTheWay() {
+        s3Client.upload("user-1-files/report", new byte[1]);
+        s3Client.upload("user-1-files/report/x.txt", new byte[1]);
+        when(trashEntryRepository.findAllInPlace(eq(USER_ID), any(), eq("report")))
+            .thenReturn(List.of(entry(1, "report")));
+        when(trashEntryRepository.getTrashedPaths(eq(USER_ID), any(), any())).thenReturn(List.of("report"));
+
+        trashService.makeRoomFor(USER_ID, "report/");
+
+        assertThat(s3Client.getStatObject("user-1-files/report")).isNotNull();
+        assertThat(s3Client.getStatObject("user-1-files/.trash/1/report")).isNull();
+        verify(trashEntryRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void restore_ofEntrySetAside_whenPathIsTakenAgain_throwsConflict() {
+        s3Client.upload("user-1-files/.trash/1/a.txt", new byte[1]);
+        s3Client.upload("user-1-files/a.txt", new byte[2]);
+        var a = new TrashEntry(1L, USER_ID, "a.txt", Instant.parse("2024-01-01T00:00:00Z"), ".trash/1/a.txt");
+        when(trashEntryRepository.findByIdAndUserId(1L, USER_ID)).thenReturn(Optional.of(a));
+
+        assertThatThrownBy(() -> trashService.restore(USER_ID, 1L))
+            .isInstanceOf(EntityAlreadyExistsException.class);
+        assertThat(s3Client.getStatObject("user-1-files/.trash/1/a.txt")).isNotNull();
+        verify(trashEntryRepository, never()).deleteEntry(anyLong(), anyLong());
+    }
+
+    @Test
+    void purgeExpired_purgesInBatchesUntilNothingIsLeft() {
+        s3Client.upload("user-1-files/a.txt", new byte[1]);
+        s3Client.upload("user-1-files/b.txt", new byte[1]);
+        s3Client.upload("user-1-files/c.txt", new byte[1]);
+        var a = entry(1, "a.txt");
+        var b = entry(2, "b.txt");
+        var c = entry(3, "c.txt");
+        when(trashEntryRepository.findByTrashedAtBeforeOrderByTrashedAt(any(), any(Limit.class)))
+            .thenReturn(List.of(a, b), List.of(c));
+        when(trashEntryRepository.findAllStoredUnder(eq(USER_ID), anyString())).thenReturn(List.of(a, b, c));
+
+        trashService.purgeExpired();
+
+        assertThat(s3Client.getStatObject("user-1-files/a.txt")).isNull();
+        assertThat(s3Client.getStatObject("user-1-files/b.txt")).isNull();
+        assertThat(s3Client.getStatObject("user-1-files/c.txt")).isNull();
+        verify(trashEntryRepository, times(2)).findByTrashedAtBeforeOrderByTrashedAt(any(), any(Limit.class));
+    }
+
+    @Test
+    void purgeExpired_leavesEntriesAlone_whileAnotherInstanceIsPurging() {
+        when(scheduledTaskLock.runExclusively(any(), any(), any())).thenReturn(false);
+
+        trashService.purgeExpired();
+
+        verify(trashEntryRepository, never()).findByTrashedAtBeforeOrderByTrashedAt(any(), any(Limit.class));
+    }
+
+    @Test
+    void moveToTrash_journalsRemovalWithoutTouchingObjects() {
+        s3Client.upload("user-1-files/docs/a.txt", new byte[1]);
+        when(trashEntryRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        trashService.moveToTrash(USER_ID, "docs/");
+
+        assertThat(s3Client.getStatObject("user-1-files/docs/a.txt")).isNotNull();
+        verify(changeJournalService).append(USER_ID, List.of(ObjectChange.removed("docs/", 0)));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void restore_journalsFileAsCreatedAgain() {
+        s3Client.upload("user-1-files/a.txt", new byte[7]);
+        when(trashEntryRepository.findByIdAndUserId(1L, USER_ID)).thenReturn(Optional.of(entry(1, "a.txt")));
+        when(trashEntryRepository.deleteEntry(1L, USER_ID)).thenReturn(1);
+
+        trashService.restore(USER_ID, 1L);
+
+        verify(changeJournalService).append(USER_ID, List.of(ObjectChange.created("a.txt", 7)));
+    }
+
+    @Test
+    void restore_ofUnknownEntry_throwsNotFound() {
+        when(trashEntryRepository.findByIdAndUserId(5L, USER_ID)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> trashService.restore(USER_ID, 5L))
+            .isInstanceOf(NoSuchEntityException.class);
+    }
+}
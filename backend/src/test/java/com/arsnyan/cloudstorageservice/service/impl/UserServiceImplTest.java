@@ -1,7 +1,10 @@
 package com.arsnyan.cloudstorageservice.service.impl;
 
+import com.arsnyan.cloudstorageservice.dto.admin.ProvisionUsersRequestDto;
 import com.arsnyan.cloudstorageservice.dto.authentication.UserRegisterRequestDto;
 import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.model.Role;
+import com.arsnyan.cloudstorageservice.model.User;
 import com.arsnyan.cloudstorageservice.repository.UserRepository;
 import com.arsnyan.cloudstorageservice.service.UserService;
 import org.junit.jupiter.api.RepeatedTest;
@@ -12,6 +15,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.transaction.annotation.Transactional;
 import com.arsnyan.cloudstorageservice.TestcontainersConfiguration;
 
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -40,8 +44,7 @@ class UserServiceImplTest {
         assertThat(registeredAccount.username()).isEqualTo(dto.username());
         assertThat(dbUser.get().getPassword()).isNotEqualTo(dto.password());
 
-        assertThat(dbUser.get().getRoles()).isNotEmpty();
-        assertThat(dbUser.get().getRoles()).hasSize(1);
+        assertThat(dbUser.get().getRoleMask()).isEqualTo(Role.DEFAULT.bit());
 
         assertThat(dbUser.get().getIsExpired()).isFalse();
         assertThat(dbUser.get().getIsLocked()).isFalse();
@@ -57,6 +60,25 @@ class UserServiceImplTest {
         assertThrows(EntityAlreadyExistsException.class, () -> userService.registerAccount(dto));
     }
 
+    @Test
+    void provisionAccounts_createsNewUsersAndSkipsExistingOrRepeatedOnes() {
+        userService.registerAccount(new UserRegisterRequestDto("existing", "password"));
+
+        var result = userService.provisionAccounts(new ProvisionUsersRequestDto(List.of(
+            new UserRegisterRequestDto("bulk_first", "password"),
+            new UserRegisterRequestDto("existing", "password"),
+            new UserRegisterRequestDto("bulk_second", "password"),
+            new UserRegisterRequestDto("bulk_first", "another")
+        )));
+
+        assertThat(result.created()).isEqualTo(2);
+        assertThat(result.skipped()).containsExactlyInAnyOrder("bulk_first", "existing");
+        assertThat(userRepository.getUserByUsername("bulk_second"))
+            .get()
+            .extracting(User::getRoleMask)
+            .isEqualTo(Role.DEFAULT.bit());
+    }
+
     @RepeatedTest(value = 3)
     void registerAccount_doesNotAllowRaceConditionsForUserExistanceCheck() {
         UserRegisterRequestDto dto = new UserRegisterRequestDto("user_" + UUID.randomUUID().toString(), "password");
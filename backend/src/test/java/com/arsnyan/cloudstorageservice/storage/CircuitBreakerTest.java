@@ -0,0 +1,72 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+    @Test
+    void opens_whenFailureRateReachesThreshold() {
+        var breaker = new CircuitBreaker(10, 4, 0.5, Duration.ofMinutes(1));
+
+        for (var i = 0; i < 2; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onSuccess();
+        }
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.remainingOpen()).isPositive();
+    }
+
+    @Test
+    void staysClosed_untilMinimumCallsAreRecorded() {
+        var breaker = new CircuitBreaker(10, 5, 0.5, Duration.ofMinutes(1));
+
+        for (var i = 0; i < 4; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure();
+        }
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void letsOneProbeThrough_afterOpenDuration() throws InterruptedException {
+        var breaker = new CircuitBreaker(2, 1, 0.5, Duration.ofMillis(20));
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        Thread.sleep(30);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void reopens_whenProbeFails() throws InterruptedException {
+        var breaker = new CircuitBreaker(2, 1, 0.5, Duration.ofMillis(20));
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        Thread.sleep(30);
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+}
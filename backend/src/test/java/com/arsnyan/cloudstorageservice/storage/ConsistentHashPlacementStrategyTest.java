@@ -0,0 +1,66 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashPlacementStrategyTest {
+    private static final int USERS = 20_000;
+
+    private static StorageShard shard(String name, int weight) {
+        return new StorageShard(name, null, name + "-bucket", weight);
+    }
+
+    @Test
+    void place_spreadsUsersByWeight() {
+        var strategy = new ConsistentHashPlacementStrategy(
+            List.of(shard("default", 1), shard("a", 1), shard("b", 2)), 128
+        );
+
+        var counts = new HashMap<String, Integer>();
+        for (long userId = 1; userId <= USERS; userId++) {
+            counts.merge(strategy.place(userId).name(), 1, Integer::sum);
+        }
+
+        assertThat(counts.get("default")).isBetween(USERS / 4 - USERS / 20, USERS / 4 + USERS / 20);
+        assertThat(counts.get("a")).isBetween(USERS / 4 - USERS / 20, USERS / 4 + USERS / 20);
+        assertThat(counts.get("b")).isBetween(USERS / 2 - USERS / 20, USERS / 2 + USERS / 20);
+    }
+
+    @Test
+    void place_onlyMovesUsersToTheNewShard_whenAShardIsAdded() {
+        var before = new ConsistentHashPlacementStrategy(List.of(shard("default", 1), shard("a", 1)), 128);
+        var after = new ConsistentHashPlacementStrategy(List.of(shard("default", 1), shard("a", 1), shard("b", 1)), 128);
+
+        var moved = 0;
+        for (long userId = 1; userId <= USERS; userId++) {
+            var from = before.place(userId).name();
+            var to = after.place(userId).name();
+            if (!from.equals(to)) {
+                assertThat(to).isEqualTo("b");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(USERS / 3 - USERS / 20, USERS / 3 + USERS / 20);
+    }
+
+    @Test
+    void place_skipsShardsWithoutWeight() {
+        var strategy = new ConsistentHashPlacementStrategy(List.of(shard("default", 0), shard("a", 1)), 128);
+
+        for (long userId = 1; userId <= 1_000; userId++) {
+            assertThat(strategy.place(userId).name()).isEqualTo("a");
+        }
+    }
+
+    @Test
+    void constructor_throws_whenNoShardHasWeight() {
+        assertThatThrownBy(() -> new ConsistentHashPlacementStrategy(List.of(shard("default", 0)), 128))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
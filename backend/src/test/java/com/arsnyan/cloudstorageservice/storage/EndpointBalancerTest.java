@@ -0,0 +1,129 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EndpointBalancerTest {
+    private static final List<String> NODES = List.of("http://node-1:9000", "http://node-2:9000");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> hosts = new ArrayList<>();
+
+    private Interceptor.Chain chain(Request request, Set<String> downHosts) throws IOException {
+        var chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any())).thenAnswer(invocation -> {
+            Request sent = invocation.getArgument(0);
+            hosts.add(sent.url().host());
+            if (downHosts.contains(sent.url().host())) {
+                throw new ConnectException("Connection refused");
+            }
+
+            return new Response.Builder()
+                .request(sent)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .build();
+        });
+        return chain;
+    }
+
+    @Test
+    void intercept_keepsPathAndHostHeader_andPointsUrlAtANode() throws IOException {
+        var balancer = new EndpointBalancer("test", NODES, 2, 3, Duration.ofSeconds(10), meterRegistry);
+        var request = new Request.Builder()
+            .url("http://minio:9000/bucket/user-1-files/a.txt")
+            .header("Host", "minio:9000")
+            .build();
+
+        var response = balancer.intercept(chain(request, Set.of()));
+
+        assertThat(response.request().url().host()).isIn("node-1", "node-2");
+        assertThat(response.request().url().encodedPath()).isEqualTo("/bucket/user-1-files/a.txt");
+        assertThat(response.request().header("Host")).isEqualTo("minio:9000");
+    }
+
+    @Test
+    void intercept_retriesIdempotentRequestsOnAnotherNode() throws IOException {
+        var balancer = new EndpointBalancer("test", NODES, 2, 3, Duration.ofSeconds(10), meterRegistry);
+        var request = new Request.Builder().url("http://minio:9000/bucket/key").get().build();
+
+        for (var i = 0; i < 10; i++) {
+            var response = balancer.intercept(chain(request, Set.of("node-1")));
+            assertThat(response.request().url().host()).isEqualTo("node-2");
+        }
+    }
+
+    @Test
+    void intercept_passesOnFailuresOfANodeThatWasReached() throws IOException {
+        var balancer = new EndpointBalancer("test", NODES, 2, 3, Duration.ofSeconds(10), meterRegistry);
+        var request = new Request.Builder().url("http://minio:9000/bucket/key").get().build();
+        var chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any())).thenAnswer(invocation -> {
+            Request sent = invocation.getArgument(0);
+            hosts.add(sent.url().host());
+            return new Response.Builder()
+                .request(sent)
+                .protocol(Protocol.HTTP_1_1)
+                .code(503)
+                .message("Service Unavailable")
+                .build();
+        });
+
+        var response = balancer.intercept(chain);
+
+        // Reads are repeated by ResilientReads, which would multiply with attempts made here
+        assertThat(response.code()).isEqualTo(503);
+        assertThat(hosts).hasSize(1);
+    }
+
+    @Test
+    void intercept_doesNotRetryUploads() throws IOException {
+        var balancer = new EndpointBalancer("test", List.of("http://node-1:9000"), 2, 3, Duration.ofSeconds(10), meterRegistry);
+        var request = new Request.Builder()
+            .url("http://minio:9000/bucket/key")
+            .put(RequestBody.create(new byte[] {1, 2, 3}))
+            .build();
+
+        assertThatThrownBy(() -> balancer.intercept(chain(request, Set.of("node-1"))))
+            .isInstanceOf(ConnectException.class);
+        assertThat(hosts).containsExactly("node-1");
+    }
+
+    @Test
+    void intercept_leavesOutNodesThatKeepFailing() throws IOException {
+        var balancer = new EndpointBalancer("test", NODES, 2, 3, Duration.ofMinutes(1), meterRegistry);
+        var request = new Request.Builder().url("http://minio:9000/bucket/key").get().build();
+
+        for (var i = 0; i < 20; i++) {
+            balancer.intercept(chain(request, Set.of("node-1")));
+        }
+        var triedNode1 = hosts.stream().filter("node-1"::equals).count();
+
+        assertThat(triedNode1).isEqualTo(3);
+        assertThat(meterRegistry.get("storage.minio.node.available").tag("node", "http://node-1:9000").gauge().value())
+            .isZero();
+        assertThat(meterRegistry.get("storage.minio.node.failures").tag("node", "http://node-1:9000").counter().count())
+            .isEqualTo(3);
+    }
+}
@@ -0,0 +1,146 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientReadsTest {
+    private static final StorageShard SHARD = new StorageShard("default", null, "bucket", 1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResilientReads reads;
+
+    private ResilientReads create(int maxAttempts, boolean hedging, CircuitBreaker breaker) {
+        return new ResilientReads(
+            maxAttempts, Duration.ofMillis(1), Duration.ofMillis(5), hedging, 0.95, Duration.ofMillis(1),
+            shard -> breaker, meterRegistry
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        reads.close();
+    }
+
+    @Test
+    void read_retriesNetworkErrors() throws Exception {
+        reads = create(3, false, new CircuitBreaker(50, 20, 0.5, Duration.ofSeconds(10)));
+        var calls = new AtomicInteger();
+
+        var result = reads.read(SHARD, "statObject", () -> {
+            if (calls.incrementAndGet() < 3) throw new SocketTimeoutException("timeout");
+            return "stat";
+        });
+
+        assertThat(result).isEqualTo("stat");
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("storage.reads.retries").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void read_doesNotRetryOtherErrors() {
+        reads = create(3, false, new CircuitBreaker(50, 20, 0.5, Duration.ofSeconds(10)));
+        var calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> reads.read(SHARD, "statObject", () -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("bad key");
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void read_failsFast_whenCircuitIsOpen() {
+        reads = create(1, false, new CircuitBreaker(4, 2, 0.5, Duration.ofMinutes(1)));
+        var calls = new AtomicInteger();
+
+        for (var i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> reads.read(SHARD, "getObject", () -> {
+                calls.incrementAndGet();
+                throw new IOException("connection reset");
+            })).isInstanceOf(IOException.class);
+        }
+
+        assertThatThrownBy(() -> reads.read(SHARD, "getObject", () -> calls.incrementAndGet()))
+            .isInstanceOf(ServiceOverloadedException.class);
+        assertThat(calls).hasValue(2);
+        assertThat(meterRegistry.get("storage.reads.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void read_hedgesSlowReads_andClosesTheLosingResult() throws Exception {
+        reads = create(1, true, new CircuitBreaker(50, 20, 0.5, Duration.ofSeconds(10)));
+        for (var i = 0; i < 40; i++) {
+            reads.read(SHARD, "getObject", () -> "warm-up");
+        }
+
+        var release = new CountDownLatch(1);
+        var calls = new AtomicInteger();
+        var slowClosed = new AtomicBoolean();
+
+        var result = reads.read(SHARD, "getObject", () -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await(5, TimeUnit.SECONDS);
+                return (Closeable) () -> slowClosed.set(true);
+            }
+            return (Closeable) () -> {};
+        });
+        release.countDown();
+
+        assertThat(calls).hasValue(2);
+        assertThat(result).isNotNull();
+        while (!slowClosed.get()) {
+            Thread.onSpinWait();
+        }
+        assertThat(meterRegistry.get("storage.reads.hedges").tag("winner", "hedge").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void read_closesBothResults_whenInterruptedWhileHedging() throws Exception {
+        reads = create(1, true, new CircuitBreaker(50, 20, 0.5, Duration.ofSeconds(10)));
+        for (var i = 0; i < 40; i++) {
+            reads.read(SHARD, "getObject", () -> "warm-up");
+        }
+
+        var release = new CountDownLatch(1);
+        var calls = new AtomicInteger();
+        var closed = new AtomicInteger();
+
+        var reader = Thread.ofPlatform().start(() -> {
+            try {
+                reads.read(SHARD, "getObject", () -> {
+                    calls.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return (Closeable) closed::incrementAndGet;
+                });
+            } catch (Exception ignored) {
+                // Interrupted on purpose
+            }
+        });
+        while (calls.get() < 2) {
+            Thread.onSpinWait();
+        }
+        reader.interrupt();
+        reader.join();
+        release.countDown();
+
+        var deadline = System.nanoTime() + 5_000_000_000L;
+        while (closed.get() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(closed).hasValue(2);
+    }
+}
@@ -0,0 +1,172 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.exception.EntityAlreadyExistsException;
+import com.arsnyan.cloudstorageservice.model.StoragePlacement;
+import com.arsnyan.cloudstorageservice.repository.StoragePlacementRepository;
+import com.arsnyan.cloudstorageservice.repository.StorageRebalanceRepository;
+import io.minio.*;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ShardRebalancerTest {
+    private static final String KEY = "user-1-files/a.txt";
+
+    private final MinioClient client = mock(MinioClient.class);
+    private final StorageShard from = new StorageShard("default", client, "default-bucket", 1);
+    private final StorageShard to = new StorageShard("other", client, "other-bucket", 1);
+    private final StoragePlacementRepository placementRepository = mock(StoragePlacementRepository.class);
+    private final StorageRebalanceRepository rebalanceRepository = mock(StorageRebalanceRepository.class);
+    private final PlacementStrategy strategy = mock(PlacementStrategy.class);
+    private final ShardRegistry registry = new ShardRegistry(List.of(from, to));
+    private ShardRebalancer rebalancer = rebalancer(Duration.ofMinutes(5));
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(placementRepository.findByUserIdGreaterThanOrderByUserId(eq(0L), any()))
+            .thenReturn(List.of(new StoragePlacement(1L, "default", Instant.now())));
+        when(placementRepository.reassign(1L, "default", "other")).thenReturn(1);
+        when(strategy.place(1L)).thenReturn(to);
+        when(client.removeObjects(any())).thenReturn(List.of());
+        when(rebalanceRepository.tryStart(anyString(), anyLong())).thenReturn(1);
+        when(rebalanceRepository.report(anyString(), anyLong(), anyLong(), anyLong())).thenReturn(1);
+    }
+
+    private ShardRebalancer rebalancer(Duration lease) {
+        return new ShardRebalancer(
+            registry,
+            new ShardRouter(registry, strategy, placementRepository, 10, Duration.ZERO),
+            placementRepository,
+            rebalanceRepository,
+            10,
+            Duration.ZERO,
+            lease
+        );
+    }
+
+    private static Item item(String etag) {
+        return item(etag, 3);
+    }
+
+    private static Item item(String etag, long size) {
+        var item = mock(Item.class);
+        when(item.objectName()).thenReturn(KEY);
+        when(item.etag()).thenReturn(etag);
+        when(item.size()).thenReturn(size);
+        return item;
+    }
+
+    // The first copy lists the user's objects and derivatives, then the same again once switched
+    private void listed(Item beforeSwitch, Item afterSwitch) throws Exception {
+        when(client.listObjects(any())).thenReturn(
+            List.of(new Result<>(beforeSwitch)), List.of(), List.of(new Result<>(afterSwitch)), List.of()
+        );
+    }
+
+    private void targetModifiedAt(Instant lastModified) throws Exception {
+        var stat = mock(StatObjectResponse.class);
+        when(stat.lastModified()).thenReturn(ZonedDateTime.ofInstant(lastModified, ZoneOffset.UTC));
+        when(client.statObject(any())).thenReturn(stat);
+    }
+
+    private void runToCompletion() {
+        rebalancer.start();
+        verify(rebalanceRepository, timeout(5000)).finish(anyString(), anyLong(), anyLong(), anyLong());
+    }
+
+    private void verifyFinished(long checked, long moved, long failed) {
+        verify(rebalanceRepository).finish(anyString(), eq(checked), eq(moved), eq(failed));
+    }
+
+    @Test
+    void start_carriesOverAnObjectRewrittenOnTheOldShard_whenTheNewOneIsOlder() throws Exception {
+        listed(item("\"first\""), item("\"second\""));
+        targetModifiedAt(Instant.now().minus(Duration.ofHours(1)));
+
+        runToCompletion();
+
+        verify(client, times(2)).copyObject(any());
+        verify(client).removeObjects(any());
+        verifyFinished(1, 1, 0);
+    }
+
+    @Test
+    void start_keepsAnObjectWrittenToTheNewShardAfterTheSwitch() throws Exception {
+        listed(item("\"first\""), item("\"second\""));
+        targetModifiedAt(Instant.now().plus(Duration.ofHours(1)));
+
+        runToCompletion();
+
+        verify(client, times(1)).copyObject(any());
+        verify(client).removeObjects(any());
+        verifyFinished(1, 1, 0);
+    }
+
+    @Test
+    void start_doesNotCopyAgain_whenNothingChangedOnTheOldShard() throws Exception {
+        listed(item("\"first\""), item("\"first\""));
+
+        runToCompletion();
+
+        verify(client, times(1)).copyObject(any());
+        verify(client, never()).statObject(any());
+    }
+
+    @Test
+    void start_composesObjectsTooLargeForASingleCopy() throws Exception {
+        var large = item("\"first\"", 6L * 1024 * 1024 * 1024);
+        listed(large, large);
+
+        runToCompletion();
+
+        verify(client).composeObject(any());
+        verify(client, never()).copyObject(any());
+        verifyFinished(1, 1, 0);
+    }
+
+    @Test
+    void start_leavesTheUserInPlace_whenTheCopyFails() throws Exception {
+        listed(item("\"first\""), item("\"first\""));
+        when(client.copyObject(any())).thenThrow(new IllegalStateException("Copy failed"));
+
+        runToCompletion();
+
+        verify(placementRepository, never()).reassign(any(), any(), any());
+        verifyFinished(1, 0, 1);
+    }
+
+    @Test
+    void start_refuses_whileAnotherInstanceHoldsTheRebalance() {
+        when(rebalanceRepository.tryStart(anyString(), anyLong())).thenReturn(0);
+
+        assertThatThrownBy(rebalancer::start).isInstanceOf(EntityAlreadyExistsException.class);
+
+        verifyNoInteractions(placementRepository);
+    }
+
+    @Test
+    void start_stops_onceAnotherInstanceTookTheRebalanceOver() throws Exception {
+        // Without a lease every copied object is reported
+        rebalancer = rebalancer(Duration.ZERO);
+        listed(item("\"first\""), item("\"first\""));
+        when(rebalanceRepository.report(anyString(), anyLong(), anyLong(), anyLong())).thenReturn(0);
+
+        runToCompletion();
+
+        verify(placementRepository, never()).reassign(any(), any(), any());
+        verify(client, never()).removeObjects(any());
+    }
+}
@@ -0,0 +1,66 @@
+package com.arsnyan.cloudstorageservice.storage;
+
+import com.arsnyan.cloudstorageservice.repository.StoragePlacementRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ShardRouterTest {
+    private final StorageShard defaultShard = new StorageShard("default", null, "default-bucket", 1);
+    private final StorageShard otherShard = new StorageShard("other", null, "other-bucket", 1);
+    private final StoragePlacementRepository placementRepository = mock(StoragePlacementRepository.class);
+    private final PlacementStrategy strategy = mock(PlacementStrategy.class);
+    private final ShardRouter router = new ShardRouter(
+        new ShardRegistry(List.of(defaultShard, otherShard)), strategy, placementRepository, 10, Duration.ofMinutes(1)
+    );
+
+    @Test
+    void forUser_assignsTheStrategysShard_toAUserWithoutPlacement() {
+        when(strategy.place(1L)).thenReturn(otherShard);
+        when(placementRepository.assignIfMissing(1L, "other")).thenReturn("other");
+
+        assertThat(router.forUser(1L)).isEqualTo(otherShard);
+        assertThat(router.forUser(1L)).isEqualTo(otherShard);
+        verify(placementRepository, times(1)).getShard(1L);
+    }
+
+    @Test
+    void forUser_keepsTheRecordedShard_whenTheStrategyChangedItsMind() {
+        when(placementRepository.getShard(1L)).thenReturn("default");
+        lenient().when(strategy.place(1L)).thenReturn(otherShard);
+
+        assertThat(router.forUser(1L)).isEqualTo(defaultShard);
+        verify(placementRepository, never()).assignIfMissing(any(), any());
+    }
+
+    @Test
+    void forKey_routesUserObjectsAndTheirDerivativesToTheUsersShard() {
+        when(placementRepository.getShard(7L)).thenReturn("other");
+
+        assertThat(router.forKey("/user-7-files/docs/a.txt")).isEqualTo(otherShard);
+        assertThat(router.forKey(".derivatives/user-7-files/docs/a.txt/256.jpg")).isEqualTo(otherShard);
+        assertThat(router.forKey("shared/readme.txt")).isEqualTo(defaultShard);
+    }
+
+    @Test
+    void move_dropsTheCachedPlacement() {
+        when(placementRepository.getShard(1L)).thenReturn("default", "other");
+        when(placementRepository.reassign(1L, "default", "other")).thenReturn(1);
+        router.forUser(1L);
+
+        assertThat(router.move(1L, defaultShard, otherShard)).isTrue();
+
+        assertThat(router.forUser(1L)).isEqualTo(otherShard);
+    }
+
+    @Test
+    void move_fails_whenThePlacementChangedMeanwhile() {
+        when(placementRepository.reassign(1L, "default", "other")).thenReturn(0);
+
+        assertThat(router.move(1L, defaultShard, otherShard)).isFalse();
+    }
+}
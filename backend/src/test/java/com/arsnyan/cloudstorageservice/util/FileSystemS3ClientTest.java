@@ -0,0 +1,93 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
+import io.minio.SnowballObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemS3ClientTest {
+    @TempDir
+    Path rootDir;
+
+    private FileSystemS3Client s3Client;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new FileSystemS3Client(rootDir, 16);
+    }
+
+    private void createTestFile(String path, String content) {
+        var contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        s3Client.uploadSnowballObject(List.of(
+            new SnowballObject(path, new ByteArrayInputStream(contentBytes), contentBytes.length, null)
+        ));
+    }
+
+    private List<String> listNames(String path, boolean recursive) throws Exception {
+        var names = new ArrayList<String>();
+        for (var result : s3Client.listObjects(path, recursive)) {
+            names.add(result.get().objectName());
+        }
+        return names;
+    }
+
+    @Test
+    void getObject_readsSmallAndLargeObjects() throws Exception {
+        createTestFile("small.txt", "tiny");
+        createTestFile("large.txt", "well above the mmap threshold");
+
+        try (var small = s3Client.getObject("small.txt"); var large = s3Client.getObject("large.txt")) {
+            assertThat(new String(small.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("tiny");
+            assertThat(new String(large.readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("well above the mmap threshold");
+        }
+    }
+
+    @Test
+    void listObjects_matchesBucketSemantics() throws Exception {
+        s3Client.makeFolderInS3("root/empty/");
+        createTestFile("root/file1.txt", "1");
+        createTestFile("root/nested/file2.txt", "2");
+
+        assertThat(listNames("root/", false))
+            .containsExactly("root/empty/", "root/file1.txt", "root/nested/");
+        assertThat(listNames("root/", true))
+            .containsExactly("root/empty/", "root/file1.txt", "root/nested/file2.txt");
+    }
+
+    @Test
+    void removeObject_prunesFoldersLeftEmpty() {
+        createTestFile("root/nested/file.txt", "1");
+
+        s3Client.removeObject("root/nested/file.txt");
+
+        assertNull(s3Client.getStatObject("root/nested/"));
+        assertNull(s3Client.getStatObject("root/"));
+    }
+
+    @Test
+    void copyObject_copiesContent() throws Exception {
+        createTestFile("source.txt", "Copy me!");
+        var item = s3Client.listObjects("source.txt", false).iterator().next().get();
+
+        s3Client.copyObject(item, "copies/destination.txt");
+
+        assertThat(Files.readString(rootDir.resolve("objects/copies/destination.txt"))).isEqualTo("Copy me!");
+    }
+
+    @Test
+    void keysEscapingTheStorageRoot_areRejected() {
+        assertThrows(MinioWrappedException.class, () -> s3Client.getStatObject("../outside.txt"));
+    }
+}
@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class FileUtilsTest {
@@ -199,4 +201,18 @@ class FileUtilsTest {
     void extractResourceName_parameterized(String path, String expected) {
         assertEquals(expected, FileUtils.extractResourceName(path));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAncestorFolders_shouldListEnclosingFoldersOutermostFirst() {
+        assertEquals(List.of("a/", "a/b/"), FileUtils.getAncestorFolders("a/b/c.txt"));
+        assertEquals(List.of("a/", "a/b/"), FileUtils.getAncestorFolders("a/b/c/"));
+        assertEquals(List.of(), FileUtils.getAncestorFolders("file.txt"));
+        assertEquals(List.of(), FileUtils.getAncestorFolders("folder/"));
+    }
+
+    @Test
+    void resolveDerivativesPath_shouldNestDerivativesUnderHiddenPrefix() {
+        assertEquals(".derivatives/user-1-files/a/b.jpg/", FileUtils.resolveDerivativesPath("user-1-files/a/b.jpg"));
+        assertEquals(".derivatives/user-1-files/a/", FileUtils.resolveDerivativesPath("user-1-files/a/"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpRangesTest {
+    private static final ZonedDateTime MODIFIED = ZonedDateTime.of(2024, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC);
+
+    @Test
+    void parseSingle_readsOneRange() {
+        var range = HttpRanges.parseSingle("bytes=10-19");
+
+        assertThat(range).isNotNull();
+        assertThat(range.getRangeStart(100)).isEqualTo(10);
+        assertThat(range.getRangeEnd(100)).isEqualTo(19);
+    }
+
+    @Test
+    void parseSingle_readsSuffixRange() {
+        var range = HttpRanges.parseSingle("bytes=-5");
+
+        assertThat(range).isNotNull();
+        assertThat(range.getRangeStart(100)).isEqualTo(95);
+    }
+
+    @Test
+    void parseSingle_servesWholeResource_forMultipleOrMalformedRanges() {
+        assertThat(HttpRanges.parseSingle(null)).isNull();
+        assertThat(HttpRanges.parseSingle("bytes=0-1,5-6")).isNull();
+        assertThat(HttpRanges.parseSingle("lines=1-2")).isNull();
+        assertThat(HttpRanges.parseSingle("bytes=9-3")).isNull();
+    }
+
+    @Test
+    void ifRangeMatches_withoutHeader_allowsRange() {
+        assertThat(HttpRanges.ifRangeMatches(null, "\"abc\"", MODIFIED)).isTrue();
+    }
+
+    @Test
+    void ifRangeMatches_comparesEntityTagsStrongly() {
+        assertThat(HttpRanges.ifRangeMatches("\"abc\"", "\"abc\"", MODIFIED)).isTrue();
+        assertThat(HttpRanges.ifRangeMatches("\"old\"", "\"abc\"", MODIFIED)).isFalse();
+        assertThat(HttpRanges.ifRangeMatches("W/\"abc\"", "\"abc\"", MODIFIED)).isFalse();
+        assertThat(HttpRanges.ifRangeMatches("\"abc\"", null, MODIFIED)).isFalse();
+    }
+
+    @Test
+    void ifRangeMatches_comparesDatesExactly() {
+        assertThat(HttpRanges.ifRangeMatches("Tue, 2 Jan 2024 03:04:05 GMT", null, MODIFIED)).isTrue();
+        assertThat(HttpRanges.ifRangeMatches("Tue, 2 Jan 2024 03:04:04 GMT", null, MODIFIED)).isFalse();
+        assertThat(HttpRanges.ifRangeMatches("Tue, 2 Jan 2024 03:04:05 GMT", null, null)).isFalse();
+        assertThat(HttpRanges.ifRangeMatches("yesterday", null, MODIFIED)).isFalse();
+    }
+}
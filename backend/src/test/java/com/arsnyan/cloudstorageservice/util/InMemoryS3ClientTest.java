@@ -0,0 +1,153 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import com.arsnyan.cloudstorageservice.exception.MinioWrappedException;
+import io.minio.Result;
+import io.minio.SnowballObject;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryS3ClientTest {
+    private InMemoryS3Client s3Client;
+
+    @BeforeEach
+    void setUp() {
+        s3Client = new InMemoryS3Client();
+    }
+
+    private void createTestFile(String path, String content) {
+        var contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        s3Client.uploadSnowballObject(List.of(
+            new SnowballObject(path, new ByteArrayInputStream(contentBytes), contentBytes.length, null)
+        ));
+    }
+
+    private List<String> listNames(String path, boolean recursive) throws Exception {
+        var names = new ArrayList<String>();
+        for (Result<Item> result : s3Client.listObjects(path, recursive)) {
+            names.add(result.get().objectName());
+        }
+        return names;
+    }
+
+    @Nested
+    class UploadAndReadTests {
+        @Test
+        void uploadSnowballObject_storesContent() throws Exception {
+            createTestFile("folder/file.txt", "Hello, World!");
+
+            var stat = s3Client.getStatObject("folder/file.txt");
+            assertNotNull(stat);
+            assertThat(stat.size()).isEqualTo(13);
+
+            try (var response = s3Client.getObject("folder/file.txt")) {
+                assertThat(new String(response.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("Hello, World!");
+            }
+        }
+
+        @Test
+        void uploadSnowballObject_throwsException_whenObjectsListIsNull() {
+            assertThrows(MinioWrappedException.class, () -> s3Client.uploadSnowballObject(null));
+        }
+
+        @Test
+        void getObject_throwsException_whenObjectDoesNotExist() {
+            assertThrows(MinioWrappedException.class, () -> s3Client.getObject("missing.txt"));
+        }
+
+        @Test
+        void getStatObject_returnsNull_whenObjectDoesNotExist() {
+            assertNull(s3Client.getStatObject("missing.txt"));
+        }
+
+        @Test
+        void leadingSlash_isIgnored() {
+            s3Client.ensureFolderPlaceholderExists("/folder/");
+
+            assertNotNull(s3Client.getStatObject("folder/"));
+        }
+    }
+
+    @Nested
+    class ListObjectsTests {
+        @Test
+        void listObjects_groupsNestedObjectsIntoPrefixes_whenRecursiveIsFalse() throws Exception {
+            s3Client.makeFolderInS3("root/");
+            createTestFile("root/file1.txt", "1");
+            createTestFile("root/nested/file2.txt", "2");
+            createTestFile("root/nested/file3.txt", "3");
+            createTestFile("rootless.txt", "4");
+
+            assertThat(listNames("root/", false))
+                .containsExactly("root/", "root/file1.txt", "root/nested/");
+        }
+
+        @Test
+        void listObjects_returnsEveryObject_whenRecursiveIsTrue() throws Exception {
+            createTestFile("root/file1.txt", "1");
+            createTestFile("root/nested/file2.txt", "2");
+
+            assertThat(listNames("root/", true))
+                .containsExactly("root/file1.txt", "root/nested/file2.txt");
+        }
+
+        @Test
+        void listObjects_marksPrefixesAsDirectories() throws Exception {
+            createTestFile("root/nested/file.txt", "1");
+
+            var item = s3Client.listObjects("root/", false).iterator().next().get();
+            assertTrue(item.isDir());
+        }
+    }
+
+    @Nested
+    class CopyAndRemoveTests {
+        @Test
+        void copyObject_copiesContent() throws Exception {
+            createTestFile("source.txt", "Copy me!");
+            var item = s3Client.listObjects("source.txt", false).iterator().next().get();
+
+            s3Client.copyObject(item, "destination.txt");
+
+            assertNotNull(s3Client.getStatObject("source.txt"));
+            assertThat(s3Client.getStatObject("destination.txt").size()).isEqualTo(8);
+        }
+
+        @Test
+        void removeObject_removesObject_andIsIdempotent() {
+            createTestFile("file.txt", "Delete me");
+
+            s3Client.removeObject("file.txt");
+
+            assertNull(s3Client.getStatObject("file.txt"));
+            assertDoesNotThrow(() -> s3Client.removeObject("file.txt"));
+        }
+    }
+
+    @Nested
+    class NamingConflictTests {
+        @Test
+        void hasNamingConflict_detectsFolderWithSameNameAsFile() {
+            createTestFile("docs/readme.txt", "content");
+
+            assertTrue(s3Client.hasNamingConflict("docs"));
+            assertFalse(s3Client.hasNamingConflict("other"));
+        }
+
+        @Test
+        void hasNamingConflict_detectsFileWithSameNameAsFolder() {
+            createTestFile("docs", "content");
+
+            assertTrue(s3Client.hasNamingConflict("docs/"));
+        }
+    }
+}
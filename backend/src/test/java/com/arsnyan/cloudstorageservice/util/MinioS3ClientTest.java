@@ -318,6 +318,20 @@ class MinioS3ClientTest {
         void getStatObject_throwsException_whenPathIsNull() {
             assertThrows(MinioWrappedException.class, () -> s3Client.getStatObject(null));
         }
+
+        @Test
+        void getStatObject_returnsFreshStats_afterObjectIsOverwrittenOrRemoved() {
+            var objectPath = testPrefix + "cached.txt";
+
+            createTestFile(objectPath, "short");
+            assertThat(s3Client.getStatObject(objectPath).size()).isEqualTo(5);
+
+            createTestFile(objectPath, "a bit longer");
+            assertThat(s3Client.getStatObject(objectPath).size()).isEqualTo(12);
+
+            s3Client.removeObject(objectPath);
+            assertNull(s3Client.getStatObject(objectPath));
+        }
     }
 
     @Nested
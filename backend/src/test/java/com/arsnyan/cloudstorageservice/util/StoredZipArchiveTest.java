@@ -0,0 +1,122 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StoredZipArchiveTest {
+    private static final Instant MODIFIED = Instant.parse("2024-05-06T07:08:10Z");
+
+    private final Map<String, byte[]> objects = Map.of(
+        "user-1-files/docs/a.txt", "hello world".getBytes(StandardCharsets.UTF_8),
+        "user-1-files/docs/b.bin", randomBytes(100_000)
+    );
+    private final StoredZipArchive.ContentReader reader = (key, offset, length) ->
+        new ByteArrayInputStream(objects.get(key), (int) offset, (int) length);
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        return bytes;
+    }
+
+    private StoredZipArchive.Entry entry(String name, String key) {
+        var crc = new CRC32();
+        crc.update(objects.get(key));
+        return new StoredZipArchive.Entry(name, key, objects.get(key).length, crc.getValue(), MODIFIED);
+    }
+
+    private StoredZipArchive archive() {
+        return new StoredZipArchive(List.of(
+            new StoredZipArchive.Entry("docs/", null, 0, 0, MODIFIED),
+            entry("docs/a.txt", "user-1-files/docs/a.txt"),
+            entry("docs/b.bin", "user-1-files/docs/b.bin")
+        ));
+    }
+
+    private byte[] write(StoredZipArchive archive) throws IOException {
+        var output = new ByteArrayOutputStream();
+        archive.write(output, reader);
+        return output.toByteArray();
+    }
+
+    @Test
+    void length_matchesWrittenBytes() throws IOException {
+        var archive = archive();
+
+        assertThat(write(archive)).hasSize((int) archive.length());
+    }
+
+    @Test
+    void write_producesArchiveReadableWithCrcChecks() throws IOException {
+        var names = new ArrayList<String>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(write(archive())))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+                if (!entry.isDirectory()) {
+                    var key = "user-1-files/" + entry.getName();
+                    assertThat(zip.readAllBytes()).isEqualTo(objects.get(key));
+                }
+            }
+        }
+
+        assertThat(names).containsExactly("docs/", "docs/a.txt", "docs/b.bin");
+    }
+
+    @Test
+    void write_rangesJoinIntoWholeArchive() throws IOException {
+        var archive = archive();
+        var whole = write(archive);
+
+        var output = new ByteArrayOutputStream();
+        archive.write(output, 0, 49, reader);
+        archive.write(output, 50, 50_000, reader);
+        archive.write(output, 50_001, archive.length() - 1, reader);
+
+        assertThat(output.toByteArray()).isEqualTo(whole);
+    }
+
+    @Test
+    void write_usesZip64_whenEntryCountExceedsClassicLimit(@TempDir Path directory) throws IOException {
+        var entries = new ArrayList<StoredZipArchive.Entry>();
+        for (int i = 0; i < 70_000; i++) {
+            entries.add(new StoredZipArchive.Entry("folder-%d/".formatted(i), null, 0, 0, null));
+        }
+
+        var file = directory.resolve("many.zip");
+        Files.write(file, write(new StoredZipArchive(entries)));
+
+        try (var zip = new ZipFile(file.toFile())) {
+            assertThat(zip.size()).isEqualTo(70_000);
+        }
+    }
+
+    @Test
+    void write_failsWhenObjectIsShorterThanListed() {
+        var archive = new StoredZipArchive(List.of(
+            new StoredZipArchive.Entry("a.txt", "user-1-files/docs/a.txt", 20, 0, MODIFIED)
+        ));
+        StoredZipArchive.ContentReader shortReader = (key, offset, length) ->
+            new ByteArrayInputStream(objects.get(key));
+
+        assertThatThrownBy(() -> archive.write(new ByteArrayOutputStream(), shortReader))
+            .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,33 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import io.minio.SnowballObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * An {@link InMemoryS3Client} with shortcuts for putting objects in place and reading them back.
+ */
+public class TestS3Client extends InMemoryS3Client {
+    public void upload(String key, byte[] content) {
+        uploadSnowballObject(List.of(
+            new SnowballObject(key, new ByteArrayInputStream(content), content.length, null)
+        ));
+    }
+
+    public void upload(String key, String content) {
+        upload(key, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public byte[] read(String key) throws IOException {
+        try (var stream = getObject(key)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    public String readString(String key) throws IOException {
+        return new String(read(key), StandardCharsets.UTF_8);
+    }
+}
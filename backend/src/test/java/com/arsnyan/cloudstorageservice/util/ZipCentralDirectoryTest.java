@@ -0,0 +1,141 @@
+package com.arsnyan.cloudstorageservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZipCentralDirectoryTest {
+    private static final Instant MODIFIED = Instant.parse("2024-05-06T07:08:10Z");
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    private final List<long[]> reads = new ArrayList<>();
+
+    private ZipCentralDirectory.RangeReader reader(byte[] archive) {
+        return (offset, length) -> {
+            reads.add(new long[]{offset, length});
+            return Arrays.copyOfRange(archive, (int) offset, (int) offset + length);
+        };
+    }
+
+    private static byte[] deflatedArchive(byte[] padding, String comment) throws IOException {
+        var output = new ByteArrayOutputStream();
+        try (var zip = new ZipOutputStream(output)) {
+            zip.setComment(comment);
+
+            var folder = new ZipEntry("docs/");
+            folder.setLastModifiedTime(FileTime.from(MODIFIED));
+            zip.putNextEntry(folder);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("docs/padding.bin"));
+            zip.write(padding);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("docs/hello.txt"));
+            zip.write("hello world".repeat(100).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void read_listsEntriesOfDeflatedArchive() throws IOException {
+        var archive = deflatedArchive(new byte[0], "a comment that hides the end record");
+
+        var entries = ZipCentralDirectory.read(archive.length, reader(archive), NO_LIMIT);
+
+        assertThat(entries).extracting(ZipCentralDirectory.Entry::name)
+            .containsExactly("docs/", "docs/padding.bin", "docs/hello.txt");
+        assertThat(entries.getFirst().isDirectory()).isTrue();
+
+        var hello = entries.getLast();
+        assertThat(hello.method()).isEqualTo(ZipCentralDirectory.Entry.DEFLATED);
+        assertThat(hello.size()).isEqualTo(1100);
+        assertThat(hello.compressedSize()).isLessThan(hello.size());
+        assertThat(hello.encrypted()).isFalse();
+    }
+
+    @Test
+    void read_ofLargeArchive_readsOnlyItsTail() throws IOException {
+        var archive = deflatedArchive(randomBytes(1_000_000), "");
+
+        ZipCentralDirectory.read(archive.length, reader(archive), NO_LIMIT);
+
+        assertThat(reads).hasSize(1);
+        assertThat(reads.getFirst()[1]).isLessThan(70_000);
+    }
+
+    @Test
+    void dataOffset_pointsAtEntryData() throws IOException {
+        var archive = deflatedArchive(randomBytes(10_000), "");
+        var entries = ZipCentralDirectory.read(archive.length, reader(archive), NO_LIMIT);
+        var hello = entries.getLast();
+
+        var offset = ZipCentralDirectory.dataOffset(hello, reader(archive));
+        var data = Arrays.copyOfRange(archive, (int) offset, (int) (offset + hello.compressedSize()));
+
+        try (var input = new InflaterInputStream(new ByteArrayInputStream(data), new Inflater(true))) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("hello world".repeat(100));
+        }
+    }
+
+    @Test
+    void read_parsesZip64ArchiveWrittenByStoredZipArchive() throws IOException {
+        var entries = new ArrayList<StoredZipArchive.Entry>();
+        for (var i = 0; i < 70_000; i++) {
+            entries.add(new StoredZipArchive.Entry("f" + i + "/", null, 0, 0, MODIFIED));
+        }
+        var output = new ByteArrayOutputStream();
+        new StoredZipArchive(entries).write(output, (key, offset, length) -> {
+            throw new AssertionError("Folders have no content");
+        });
+        var archive = output.toByteArray();
+
+        var read = ZipCentralDirectory.read(archive.length, reader(archive), NO_LIMIT);
+
+        assertThat(read).hasSize(70_000);
+        assertThat(read.getLast().name()).isEqualTo("f69999/");
+        assertThat(read.getLast().lastModified()).isEqualTo(MODIFIED);
+    }
+
+    @Test
+    void read_ofOversizedDirectory_throws() throws IOException {
+        var archive = deflatedArchive(new byte[0], "");
+
+        assertThatThrownBy(() -> ZipCentralDirectory.read(archive.length, reader(archive), 10))
+            .isInstanceOf(ZipException.class)
+            .hasMessageContaining("too large");
+    }
+
+    @Test
+    void read_ofNonArchive_throws() {
+        var bytes = randomBytes(5_000);
+
+        assertThatThrownBy(() -> ZipCentralDirectory.read(bytes.length, reader(bytes), NO_LIMIT))
+            .isInstanceOf(ZipException.class);
+    }
+}
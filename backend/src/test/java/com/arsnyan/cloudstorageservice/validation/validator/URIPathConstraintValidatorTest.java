@@ -111,6 +111,13 @@ class URIPathConstraintValidatorTest {
         assertTrue(isValid);
     }
 
+    @Test
+    void isInvalid_IfInput_IsInTrashFolder() {
+        assertFalse(isValid(".trash/"));
+        assertFalse(isValid(".trash/12/text.txt"));
+        assertTrue(isValid(".trashcan/text.txt"));
+    }
+
     // use only to simulate encoding in browsers
     private String encode(String value) {
         return encoder.encode(value, StandardCharsets.UTF_8);